@@ -689,6 +689,14 @@ INSERT INTO event.detector_event_hist (event_id, event_date, event_desc_id, devi
   WHERE event_id = (SELECT MIN(event_id) FROM event.detector_event);
 
 INSERT INTO iris.system_attribute (name, value) VALUES ('detector_reduce_malf_logging', 'false');
-
-
-
+INSERT INTO iris.system_attribute (name, value) VALUES ('sample_archive_open_files', '0');
+INSERT INTO iris.system_attribute (name, value) VALUES ('event_journal_enable', 'true');
+INSERT INTO iris.system_attribute (name, value) VALUES ('event_queue_max', '10000');
+INSERT INTO iris.system_attribute (name, value) VALUES ('comm_pool_protocols', '');
+INSERT INTO iris.system_attribute (name, value) VALUES ('comm_pool_threads', '16');
+INSERT INTO iris.system_attribute (name, value) VALUES ('sample_xml_delta_enable', 'false');
+INSERT INTO iris.system_attribute (name, value) VALUES ('metering_threads', '0');
+INSERT INTO iris.system_attribute (name, value) VALUES ('sample_archive_columnar', 'false');
+INSERT INTO iris.system_attribute (name, value) VALUES ('sonar_notify_window_ms', '250');
+INSERT INTO iris.system_attribute (name, value) VALUES ('snmp_pipeline_window', '1');
+INSERT INTO iris.system_attribute (name, value) VALUES ('flush_queue_max', '1000');
@@ -2482,6 +2482,8 @@ camera_util_panel_enable	false
 camera_wiper_precip_mm_hr	8
 client_units_si	true
 comm_event_purge_days	14
+comm_pool_protocols	
+comm_pool_threads	16
 database_version	4.35.0
 detector_auto_fail_enable	true
 detector_reduce_malf_logging	false
@@ -2536,6 +2538,9 @@ email_smtp_host
 email_recipient_aws	
 email_recipient_dmsxml_reinit	
 email_recipient_gate_arm	
+event_journal_enable	true
+event_queue_max	10000
+flush_queue_max	1000
 gate_arm_alert_timeout_secs	90
 help_trouble_ticket_enable	false
 help_trouble_ticket_url	
@@ -2550,6 +2555,7 @@ meter_green_secs	1.3
 meter_max_red_secs	13.0
 meter_min_red_secs	0.1
 meter_yellow_secs	0.7
+metering_threads	0
 msg_feed_verify	true
 operation_retry_threshold	3
 rtms_read_margin_sec	5
@@ -2569,7 +2575,12 @@ rwis_low_wind_speed_kph	5
 rwis_obs_age_limit_secs	240
 rwis_max_valid_wind_speed_kph	282
 rwis_sort	0
+sample_archive_columnar	false
 sample_archive_enable	true
+sample_archive_open_files	0
+sample_xml_delta_enable	false
+snmp_pipeline_window	1
+sonar_notify_window_ms	250
 speed_limit_min_mph	45
 speed_limit_default_mph	55
 speed_limit_max_mph	75
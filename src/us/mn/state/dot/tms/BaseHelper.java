@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2009  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -14,7 +15,14 @@
  */
 package us.mn.state.dot.tms;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import us.mn.state.dot.sonar.Namespace;
+import us.mn.state.dot.sonar.SonarObject;
 
 /**
  * Base helper class for client/server interfaces.
@@ -31,4 +39,102 @@ abstract public class BaseHelper {
 	protected BaseHelper() {
 		assert false;
 	}
+
+	/** Comparator for sorting objects by name */
+	static private final Comparator<SonarObject> NAME_COMPARATOR =
+		new Comparator<SonarObject>()
+	{
+		public int compare(SonarObject o0, SonarObject o1) {
+			return o0.getName().compareTo(o1.getName());
+		}
+	};
+
+	/** Secondary index of SONAR objects by a key attribute.  The server
+	 * updates an index when objects are added or removed, and when the
+	 * key attribute changes.  An index is not maintained on clients, so
+	 * helpers must check isMaintained and scan the namespace otherwise. */
+	static public class Index<K, T extends SonarObject> {
+
+		/** Objects by key */
+		private final HashMap<K, ArrayList<T>> objects =
+			new HashMap<K, ArrayList<T>>();
+
+		/** Key of each object */
+		private final IdentityHashMap<T, K> keys =
+			new IdentityHashMap<T, K>();
+
+		/** Flag indicating index is maintained */
+		private boolean maintained = false;
+
+		/** Check if the index is maintained */
+		public synchronized boolean isMaintained() {
+			return maintained;
+		}
+
+		/** Update the key of an object.
+		 * @param obj Object to index.
+		 * @param key Key of object (null for none). */
+		public synchronized void update(T obj, K key) {
+			maintained = true;
+			remove(obj);
+			keys.put(obj, key);
+			if (key != null) {
+				ArrayList<T> objs = objects.get(key);
+				if (objs == null) {
+					objs = new ArrayList<T>(1);
+					objects.put(key, objs);
+				}
+				objs.add(obj);
+			}
+		}
+
+		/** Remove an object from the index.
+		 * @param obj Object to remove. */
+		public synchronized void remove(T obj) {
+			if (!keys.containsKey(obj))
+				return;
+			K key = keys.remove(obj);
+			if (key != null) {
+				ArrayList<T> objs = objects.get(key);
+				if (objs != null) {
+					objs.remove(obj);
+					if (objs.isEmpty())
+						objects.remove(key);
+				}
+			}
+		}
+
+		/** Lookup all objects with a key.
+		 * @param key Key to lookup.
+		 * @return List of objects, sorted by name. */
+		public synchronized List<T> lookup(K key) {
+			ArrayList<T> objs = objects.get(key);
+			if (objs == null)
+				return new ArrayList<T>(0);
+			ArrayList<T> res = new ArrayList<T>(objs);
+			Collections.sort(res, NAME_COMPARATOR);
+			return res;
+		}
+
+		/** Lookup the first object (by name) with a key.
+		 * @param key Key to lookup.
+		 * @return First object, or null if none. */
+		public synchronized T lookupFirst(K key) {
+			ArrayList<T> objs = objects.get(key);
+			if (objs == null)
+				return null;
+			T first = null;
+			for (T obj: objs) {
+				if (first == null ||
+				    NAME_COMPARATOR.compare(obj, first) < 0)
+					first = obj;
+			}
+			return first;
+		}
+
+		/** Get the number of indexed objects */
+		public synchronized int size() {
+			return keys.size();
+		}
+	}
 }
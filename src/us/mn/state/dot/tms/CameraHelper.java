@@ -26,6 +26,8 @@ import java.util.List;
 import java.util.TreeMap;
 import us.mn.state.dot.sched.TimeSteward;
 import us.mn.state.dot.tms.geo.Position;
+import us.mn.state.dot.tms.geo.SpatialIndex;
+import us.mn.state.dot.tms.geo.SphericalMercatorPosition;
 import us.mn.state.dot.tms.units.Distance;
 import us.mn.state.dot.tms.utils.GPSutil;
 import us.mn.state.dot.tms.utils.twilight.Sun;
@@ -79,8 +81,43 @@ public class CameraHelper extends BaseHelper {
 			return enc.trim();
 	}
 
+	/** Spatial index of camera locations.  This is only maintained on
+	 * the server; elsewhere, it is empty. */
+	static private final SpatialIndex<Camera> INDEX =
+		new SpatialIndex<Camera>(2000);
+
+	/** Index of cameras by UID */
+	static private final Index<Integer, Camera> BY_UID =
+		new Index<Integer, Camera>();
+
+	/** Update the location and UID of a camera in the indexes */
+	static public void updateIndex(Camera cam) {
+		INDEX.put(cam, GeoLocHelper.getPosition(cam.getGeoLoc()));
+		BY_UID.update(cam, parseUID(cam.getName()));
+	}
+
+	/** Remove a camera from the indexes */
+	static public void removeIndex(Camera cam) {
+		INDEX.remove(cam);
+		BY_UID.remove(cam);
+	}
+
 	/** Find the nearest cameras to a position */
-	static public Collection<Camera> findNearest(Position pos, int n_count){
+	static public Collection<Camera> findNearest(final Position pos,
+		int n_count)
+	{
+		if (INDEX.size() > 0) {
+			return INDEX.findNearest(
+				SphericalMercatorPosition.convert(pos), n_count,
+				new SpatialIndex.Measure<Camera>()
+			{
+				public Double distance(Camera cam) {
+					Distance d = GeoLocHelper.distanceTo(
+						cam.getGeoLoc(), pos);
+					return (d != null) ? d.m() : null;
+				}
+			});
+		}
 		TreeMap<Double, Camera> cams = new TreeMap<Double, Camera>();
 		Iterator<Camera> it = iterator();
 		while(it.hasNext()) {
@@ -99,6 +136,8 @@ public class CameraHelper extends BaseHelper {
 	/** Find a camera with the specific UID */
 	static public Camera findUID(String uid) {
 		Integer id = parseUID(uid);
+		if (id != null && BY_UID.isMaintained())
+			return BY_UID.lookupFirst(id);
 		if (id != null) {
 			Iterator<Camera> it = iterator();
 			while (it.hasNext()) {
@@ -2,6 +2,7 @@
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2008-2016  Minnesota Department of Transportation
  * Copyright (C) 2010-2015  AHMCT, University of California
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -17,6 +18,7 @@ package us.mn.state.dot.tms;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 /**
  * Helper class for detectors.
@@ -27,6 +29,21 @@ import java.util.Iterator;
  */
 public class DetectorHelper extends BaseHelper {
 
+	/** Index of detectors by controller name */
+	static private final Index<String, Detector> BY_CONTROLLER =
+		new Index<String, Detector>();
+
+	/** Update the controller of a detector in the index */
+	static public void updateIndex(Detector d) {
+		Controller c = d.getController();
+		BY_CONTROLLER.update(d, (c != null) ? c.getName() : null);
+	}
+
+	/** Remove a detector from the index */
+	static public void removeIndex(Detector d) {
+		BY_CONTROLLER.remove(d);
+	}
+
 	/** Don't allow instances to be created */
 	private DetectorHelper() {
 		assert false;
@@ -78,6 +95,10 @@ public class DetectorHelper extends BaseHelper {
 	 */
 	static public Detector[] getDetectors(Controller c) {
 		final String cname = c.getName();
+		if (BY_CONTROLLER.isMaintained()) {
+			List<Detector> dets = BY_CONTROLLER.lookup(cname);
+			return dets.toArray(new Detector[dets.size()]);
+		}
 		final ArrayList<Detector> dets = new ArrayList<>();
 		Iterator<Detector> it = iterator();
 		while(it.hasNext()) {
@@ -28,6 +28,12 @@ public class R_NodeHelper extends BaseHelper {
 		assert false;
 	}
 
+	/** Lookup the r_node with the specified name */
+	static public R_Node lookup(String name) {
+		return (R_Node) namespace.lookupObject(R_Node.SONAR_TYPE,
+			name);
+	}
+
 	/** Get an r_node iterator */
 	static public Iterator<R_Node> iterator() {
 		return new IteratorWrapper<R_Node>(namespace.iterator(
@@ -2,6 +2,7 @@
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2008-2016  Minnesota Department of Transportation
  * Copyright (C) 2010  AHMCT, University of California
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -61,22 +62,36 @@ public class SignMessageHelper extends BaseHelper {
 		DMSMessagePriority ap, DMSMessagePriority rp, SignMsgSource src,
 		Integer d)
 	{
-		int api = ap.ordinal();
-		int rpi = rp.ordinal();
 		Iterator<SignMessage> it = iterator();
 		while (it.hasNext()) {
 			SignMessage sm = it.next();
-			if (multi.equals(sm.getMulti()) &&
-			    bitmaps.equals(sm.getBitmaps()) &&
-			    api == sm.getActivationPriority() &&
-			    rpi == sm.getRunTimePriority() &&
-			    checkSource(src, sm) &&
-			    integerEquals(d, sm.getDuration()))
+			if (isMatching(sm, multi, bitmaps, ap, rp, src, d))
 				return sm;
 		}
 		return null;
 	}
 
+	/** Check if a sign message has matching attributes.
+	 * @param sm Sign message to check.
+	 * @param multi MULTI string.
+	 * @param bitmaps Bitmaps for all pages.
+	 * @param ap Activation priority.
+	 * @param rp Run-time priority.
+	 * @param src Message source.
+	 * @param d Duration (null for indefinite).
+	 * @return true if all attributes match. */
+	static public boolean isMatching(SignMessage sm, String multi,
+		String bitmaps, DMSMessagePriority ap, DMSMessagePriority rp,
+		SignMsgSource src, Integer d)
+	{
+		return multi.equals(sm.getMulti()) &&
+		       bitmaps.equals(sm.getBitmaps()) &&
+		       ap.ordinal() == sm.getActivationPriority() &&
+		       rp.ordinal() == sm.getRunTimePriority() &&
+		       checkSource(src, sm) &&
+		       integerEquals(d, sm.getDuration());
+	}
+
 	/** Check sign message source.
 	 * @param src Message source.
 	 * @param sm Sign message to check.
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2009-2015  Minnesota Department of Transportation
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -23,6 +24,20 @@ import java.util.Iterator;
  */
 public class StationHelper extends BaseHelper {
 
+	/** Index of stations by r_node station ID */
+	static private final Index<String, Station> BY_STATION_ID =
+		new Index<String, Station>();
+
+	/** Update the station ID of a station in the index */
+	static public void updateIndex(Station s, String sid) {
+		BY_STATION_ID.update(s, sid);
+	}
+
+	/** Remove a station from the index */
+	static public void removeIndex(Station s) {
+		BY_STATION_ID.remove(s);
+	}
+
 	/** Don't allow instances to be created */
 	private StationHelper() {
 		assert false;
@@ -55,6 +70,8 @@ public class StationHelper extends BaseHelper {
 	 * @param sid Station id, which may not be null.
 	 * @return The corresponding station or null if not found. */
 	static public Station lookupWithStationId(final String sid) {
+		if (BY_STATION_ID.isMaintained())
+			return BY_STATION_ID.lookupFirst(sid);
 		Iterator<Station> it = iterator();
 		while(it.hasNext()) {
 			Station s = it.next();
@@ -59,6 +59,8 @@ public enum SystemAttrEnum {
 	CAMERA_WIPER_PRECIP_MM_HR(8, 1, 100),
 	CLIENT_UNITS_SI(true),
 	COMM_EVENT_PURGE_DAYS(14, 0, 1000),
+	COMM_POOL_PROTOCOLS("", Change.RESTART_SERVER),
+	COMM_POOL_THREADS(16, 1, Change.RESTART_SERVER),
 	DATABASE_VERSION(String.class, Change.RESTART_SERVER),
 	DETECTOR_AUTO_FAIL_ENABLE(true),
 	DETECTOR_REDUCE_MALF_LOGGING(false, Change.RESTART_SERVER),
@@ -114,6 +116,9 @@ public enum SystemAttrEnum {
 	EMAIL_RECIPIENT_AWS(String.class),
 	EMAIL_RECIPIENT_DMSXML_REINIT(String.class),
 	EMAIL_RECIPIENT_GATE_ARM(String.class),
+	EVENT_JOURNAL_ENABLE(true, Change.RESTART_SERVER),
+	EVENT_QUEUE_MAX(10000, 100, Change.RESTART_SERVER),
+	FLUSH_QUEUE_MAX(1000, 0, Change.RESTART_SERVER),
 	GATE_ARM_ALERT_TIMEOUT_SECS(90, 10),
 	HELP_TROUBLE_TICKET_ENABLE(false),
 	HELP_TROUBLE_TICKET_URL(String.class),
@@ -128,6 +133,7 @@ public enum SystemAttrEnum {
 	METER_MAX_RED_SECS(13f, 5f, 30f),
 	METER_MIN_RED_SECS(0.1f, 0.1f, 10f),
 	METER_YELLOW_SECS(0.7f, 0.1f, 10f),
+	METERING_THREADS(0, 0, 64, Change.RESTART_SERVER),
 	MSG_FEED_VERIFY(true),
 	OPERATION_RETRY_THRESHOLD(3, 1, 20),
 	ROUTE_MAX_LEGS(8, 1, 20),
@@ -149,7 +155,12 @@ public enum SystemAttrEnum {
 	RWIS_OPACITY_PERCENTAGE(30, 10, 100, Change.RESTART_CLIENT),
 	RWIS_MEASUREMENT_RADIUS(16093.44f, 10.0f, 100000.0f, Change.RESTART_CLIENT),
 	RWIS_SORT(0, 0, 2, Change.RESTART_CLIENT),
+	SAMPLE_ARCHIVE_COLUMNAR(false),
 	SAMPLE_ARCHIVE_ENABLE(true),
+	SAMPLE_ARCHIVE_OPEN_FILES(0, 0, Change.RESTART_SERVER),
+	SAMPLE_XML_DELTA_ENABLE(false),
+	SNMP_PIPELINE_WINDOW(1, 1, 16),
+	SONAR_NOTIFY_WINDOW_MS(250, 0, 5000),
 	SPEED_LIMIT_MIN_MPH(45, 0, 100),
 	SPEED_LIMIT_DEFAULT_MPH(55, 0, 100),
 	SPEED_LIMIT_MAX_MPH(75, 0, 100),
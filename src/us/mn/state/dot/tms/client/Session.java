@@ -16,6 +16,7 @@
  */
 package us.mn.state.dot.tms.client;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -185,17 +186,38 @@ public class Session {
 		managers.add(new IncidentManager(this, loc_manager));
 		managers.add(new PlanManager(this, loc_manager));
 		heatmapLayer = weather_manager.getHeatmapLayer();
-		tile_layer = createTileLayer(props.getProperty("map.tile.url"));
+		tile_layer = createTileLayer(props);
 	}
 
+	/** Default tile cache size (MB) */
+	static private final int TILE_CACHE_MB = 64;
+
 	/** Create the tile layer */
-	private TileLayer createTileLayer(String url) {
-		if (url != null)
-			return new TileLayer("Base map", url, 1000);
-		else
+	private TileLayer createTileLayer(Properties p) {
+		String url = p.getProperty("map.tile.url");
+		if (url != null) {
+			String d = p.getProperty("map.tile.cache.dir");
+			File dir = (d != null) ? new File(d) : null;
+			long mb = getTileCacheMB(p) * 1024L * 1024L;
+			return new TileLayer("Base map", url, mb, dir);
+		} else
 			return null;
 	}
 
+	/** Get the tile cache size (MB) */
+	private int getTileCacheMB(Properties p) {
+		try {
+			int mb = Integer.parseInt(p.getProperty(
+				"map.tile.cache.mb"));
+			if (mb > 0)
+				return mb;
+		}
+		catch (NumberFormatException e) {
+			// NOP: use default
+		}
+		return TILE_CACHE_MB;
+	}
+
 	/** Initialize the session */
 	public void initialize() throws Exception {
 		initializeManagers();
@@ -440,6 +462,8 @@ public class Session {
 		for (MapTab tab: all_tabs.values())
 			tab.dispose();
 		all_tabs.clear();
+		if (tile_layer != null)
+			tile_layer.dispose();
 		for (ProxyManager<? extends SonarObject> man: managers)
 			man.dispose();
 		managers.clear();
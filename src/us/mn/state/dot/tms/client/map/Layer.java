@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2000-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -82,6 +83,15 @@ abstract public class Layer {
 		fireLayerChanged(new LayerChangeEvent(Layer.this, reason));
 	}
 
+	/** Notify all listeners of a layer change within a region.
+	 * @param reason Reason for layer change.
+	 * @param region Changed region in world coordinates. */
+	protected void fireLayerChanged(LayerChange reason, Rectangle2D region)
+	{
+		fireLayerChanged(new LayerChangeEvent(Layer.this, reason,
+			region));
+	}
+
 	/** Create a new layer state */
 	abstract public LayerState createState(MapBean mb);
 
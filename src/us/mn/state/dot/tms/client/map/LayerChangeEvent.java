@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2000-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -14,6 +15,7 @@
  */
 package us.mn.state.dot.tms.client.map;
 
+import java.awt.geom.Rectangle2D;
 import java.util.EventObject;
 
 /**
@@ -27,14 +29,31 @@ public class LayerChangeEvent extends EventObject {
 	/** Reason code for layer change */
 	private LayerChange reason;
 
+	/** Changed region in world coordinates (null for whole layer) */
+	private final Rectangle2D region;
+
 	/** Create a new LayerChangeEvent */
 	public LayerChangeEvent(Object source, LayerChange why) {
+		this(source, why, null);
+	}
+
+	/** Create a new LayerChangeEvent.
+	 * @param source Source of event.
+	 * @param why Reason for change.
+	 * @param r Changed region (null for whole layer). */
+	public LayerChangeEvent(Object source, LayerChange why, Rectangle2D r) {
 		super(source);
 		reason = why;
+		region = r;
 	}
 
 	/** Get the reason the layer changed */
 	public LayerChange getReason() {
 		return reason;
 	}
+
+	/** Get the changed region (null for whole layer) */
+	public Rectangle2D getRegion() {
+		return region;
+	}
 }
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2000-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -39,6 +40,10 @@ abstract public class LayerState {
 	/** Empty selection special case (for equality comparisons) */
 	static private final MapObject[] NO_SELECTION = new MapObject[0];
 
+	/** Margin around painted or searched bounds (pixels).  Any map
+	 * object within this distance may overlap the bounds. */
+	static final int MARGIN_PIXELS = 64;
+
 	/** Map bean for rendering */
 	protected final MapBean map;
 
@@ -80,13 +85,26 @@ abstract public class LayerState {
 		fireLayerChanged(new LayerChangeEvent(LayerState.this, reason));
 	}
 
+	/** Notify all listeners of a layer state change within a region.
+	 * @param reason Reason for layer change.
+	 * @param region Changed region in world coordinates. */
+	protected void fireLayerChanged(LayerChange reason, Rectangle2D region)
+	{
+		fireLayerChanged(new LayerChangeEvent(LayerState.this, reason,
+			region));
+	}
+
 	/** Listener for layer changed events from layer */
 	private final LayerChangeListener listener =
 		new LayerChangeListener()
 	{
 		public void layerChanged(LayerChangeEvent e) {
-			if (isVisible())
+			if (isVisible()) {
+				if (e.getRegion() != null && !isRegionPainted())
+					e = new LayerChangeEvent(e.getSource(),
+						e.getReason());
 				fireLayerChanged(e);
+			}
 		}
 	};
 
@@ -187,10 +205,38 @@ abstract public class LayerState {
 	/** Call the specified callback for each map object in the layer */
 	abstract public MapObject forEach(MapSearcher s);
 
-	/** Paint the layer */
+	/** Call the specified callback for each map object which may be
+	 * within some bounds.  Layer states with a spatial index should
+	 * override this to skip objects outside the bounds.
+	 * @param s Map searcher callback.
+	 * @param b Bounds in world coordinates (null for all objects).
+	 * @return Map object found, if any. */
+	public MapObject forEach(MapSearcher s, Rectangle2D b) {
+		return forEach(s);
+	}
+
+	/** Check if status changes of single objects are painted within a
+	 * region.  Layer states which draw one symbol per map object should
+	 * override this; otherwise the whole map is repainted. */
+	protected boolean isRegionPainted() {
+		return false;
+	}
+
+	/** Get the bounds to paint or search around a rectangle.
+	 * @param r Rectangle in world coordinates.
+	 * @return Rectangle expanded by margin. */
+	private Rectangle2D expandBounds(Rectangle2D r) {
+		double m = MARGIN_PIXELS * map.getScale();
+		return new Rectangle2D.Double(r.getX() - m, r.getY() - m,
+			r.getWidth() + 2 * m, r.getHeight() + 2 * m);
+	}
+
+	/** Paint the layer.  Only map objects near the clip bounds of the
+	 * graphics are painted. */
 	public void paint(final Graphics2D g) {
 		if (isVisible()) {
 			final AffineTransform t = g.getTransform();
+			Rectangle2D clip = g.getClipBounds();
 			theme.setScale(getScale());
 			forEach(new MapSearcher() {
 				public boolean next(MapObject mo) {
@@ -198,7 +244,7 @@ abstract public class LayerState {
 					g.setTransform(t);
 					return false;
 				}
-			});
+			}, (clip != null) ? expandBounds(clip) : null);
 		}
 	}
 
@@ -258,7 +304,8 @@ abstract public class LayerState {
 			public boolean next(MapObject mo) {
 				return theme.hit(p, mo);
 			}
-		});
+		}, expandBounds(new Rectangle2D.Double(p.getX(), p.getY(), 0,
+			0)));
 	}
 
 	/** Process a mouse click for the layer */
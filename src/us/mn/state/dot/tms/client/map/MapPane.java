@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2000-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -17,6 +18,7 @@ package us.mn.state.dot.tms.client.map;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.NoninvertibleTransformException;
@@ -42,6 +44,9 @@ class MapPane implements LayerChangeListener {
 	/** Dirty flag */
 	private boolean dirty = true;
 
+	/** Dirty region in screen coordinates (null for none) */
+	private Rectangle dirty_region = null;
+
 	/** Transform from world to screen coordinates */
 	protected final AffineTransform transform = new AffineTransform();
 
@@ -118,18 +123,28 @@ class MapPane implements LayerChangeListener {
 	/** Get the current image for the map panel */
 	public BufferedImage getImage() {
 		BufferedImage bi = screenBuffer;
+		Rectangle all = new Rectangle(0, 0, bi.getWidth(),
+			bi.getHeight());
 		if(dirty) {
-			drawImage(bi);
+			drawImage(bi, all);
 			dirty = false;
+		} else if(dirty_region != null) {
+			Rectangle r = dirty_region.intersection(all);
+			if(!r.isEmpty())
+				drawImage(bi, r);
 		}
+		dirty_region = null;
 		return bi;
 	}
 
-	/** Draw the map image */
-	private void drawImage(BufferedImage bi) {
+	/** Draw part of the map image.
+	 * @param bi Image to draw.
+	 * @param r Region to draw, in screen coordinates. */
+	private void drawImage(BufferedImage bi, Rectangle r) {
 		Graphics2D g = bi.createGraphics();
+		g.setClip(r);
 		g.setBackground(background);
-		g.clearRect(0, 0, bi.getWidth(), bi.getHeight());
+		g.clearRect(r.x, r.y, r.width, r.height);
 		g.transform(transform);
 		if(antialiased) {
 			g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,
@@ -151,6 +166,13 @@ class MapPane implements LayerChangeListener {
 		switch(ev.getReason()) {
 		case selection:
 			return;
+		case status:
+		case geometry:
+			if(ev.getRegion() != null)
+				addDirtyRegion(ev.getRegion());
+			else
+				dirty = true;
+			return;
 		case model:
 		case extent:
 			rescale();
@@ -159,6 +181,17 @@ class MapPane implements LayerChangeListener {
 		}
 	}
 
+	/** Add a region to repaint.
+	 * @param r Region in world coordinates. */
+	private void addDirtyRegion(Rectangle2D r) {
+		Rectangle s = transform.createTransformedShape(r).getBounds();
+		s.grow(LayerState.MARGIN_PIXELS, LayerState.MARGIN_PIXELS);
+		if(dirty_region != null)
+			dirty_region.add(s);
+		else
+			dirty_region = s;
+	}
+
 	/** Get the transform from world to screen coordinates */
 	public AffineTransform getTransform() {
 		return transform;
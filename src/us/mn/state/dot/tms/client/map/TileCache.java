@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2011-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -15,98 +16,318 @@
 package us.mn.state.dot.tms.client.map;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.io.InputStream;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingDeque;
+import javax.imageio.ImageIO;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 
 /**
- * A cache of image tiles.
+ * A cache of image tiles.  Tiles are fetched asynchronously by a small pool
+ * of threads, and kept decoded in memory up to a limit on total image size.
+ * The least recently used tiles are evicted first.  Fetched tiles can also
+ * be stored in a disk cache, which persists across client restarts.
  *
  * @author Douglas Lau
+ * @author Jacob Barde
  */
 public class TileCache {
 
-	/** FIFO of tile names in cache */
-	protected final LinkedList<String> tiles = new LinkedList<String>();
+	/** Listener for loaded tiles */
+	static public interface Listener {
 
-	/** Hash of tile names to image files */
-	protected final HashMap<String, TempImageFile> tile_hash =
-		new HashMap<String, TempImageFile>();
+		/** Called on a fetch thread when a tile has been loaded.
+		 * @param n Tile name. */
+		void tileLoaded(String n);
+	}
 
-	/** Image fetcher */
-	protected final ImageFetcher fetcher;
+	/** Number of fetch threads */
+	static private final int N_THREADS = 4;
+
+	/** Maximum number of queued tile requests */
+	static private final int MAX_QUEUE = 64;
 
-	/** Size of cache (number of tiles) */
-	protected final int size;
+	/** Size of block buffer */
+	static private final int BLOCK_SZ = 4096;
 
-	/** Get the size of cache */
-	public int getSize() {
-		return size;
+	/** Get the size of a decoded image (bytes) */
+	static private long imageBytes(BufferedImage img) {
+		DataBuffer db = img.getRaster().getDataBuffer();
+		return (long) db.getSize() * db.getNumBanks() *
+			DataBuffer.getDataTypeSize(db.getDataType()) / 8;
 	}
 
-	/** Create a new tile cache */
-	public TileCache(ImageFetcher f, int sz) {
-		fetcher = f;
-		size = sz;
+	/** Read the entire contents of an input stream */
+	static private byte[] readStream(InputStream is) throws IOException {
+		try {
+			byte[] buf = new byte[BLOCK_SZ];
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			while (true) {
+				int n_bytes = is.read(buf, 0, BLOCK_SZ);
+				if (n_bytes < 0)
+					return bos.toByteArray();
+				bos.write(buf, 0, n_bytes);
+			}
+		}
+		finally {
+			is.close();
+		}
 	}
 
-	/** Purge the oldest image from the cache */
-	protected void purgeOldestImage() {
-		removeFirst();
+	/** Decode an image, without a file cache */
+	static private BufferedImage decodeImage(byte[] data)
+		throws IOException
+	{
+		BufferedImage img = ImageIO.read(
+			new MemoryCacheImageInputStream(
+			new ByteArrayInputStream(data)));
+		if (img != null)
+			return img;
+		else
+			throw new IOException("Invalid image");
 	}
 
-	/** Remove a tile from the cache */
-	protected TempImageFile removeFirst() {
-		synchronized(tile_hash) {
-			String name = tiles.removeFirst();
-			return tile_hash.remove(name);
+	/** Image fetcher */
+	private final ImageFetcher fetcher;
+
+	/** Maximum size of decoded tiles (bytes) */
+	private final long max_bytes;
+
+	/** Disk cache directory (null for none) */
+	private final File dir;
+
+	/** Decoded tiles, in access order (least recent first) */
+	private final LinkedHashMap<String, BufferedImage> tiles =
+		new LinkedHashMap<String, BufferedImage>(16, 0.75f, true);
+
+	/** Total size of decoded tiles (bytes) */
+	private long n_bytes = 0;
+
+	/** Names of tiles queued or being fetched */
+	private final HashSet<String> pending = new HashSet<String>();
+
+	/** Names of missing tiles */
+	private final HashSet<String> missing = new HashSet<String>();
+
+	/** Queue of tile requests.  Visible tiles are added to the front,
+	 * and prefetched tiles to the back. */
+	private final LinkedBlockingDeque<String> queue =
+		new LinkedBlockingDeque<String>();
+
+	/** Fetch threads */
+	private final Thread[] threads = new Thread[N_THREADS];
+
+	/** Listeners for loaded tiles */
+	private final CopyOnWriteArrayList<Listener> listeners =
+		new CopyOnWriteArrayList<Listener>();
+
+	/** Create a new tile cache.
+	 * @param f Image fetcher.
+	 * @param mb Maximum size of decoded tiles (bytes).
+	 * @param d Disk cache directory (null for none). */
+	public TileCache(ImageFetcher f, long mb, File d) {
+		fetcher = f;
+		max_bytes = mb;
+		dir = d;
+		for (int i = 0; i < threads.length; i++) {
+			threads[i] = new Thread("TileCache-" + i) {
+				@Override
+				public void run() {
+					runFetcher();
+				}
+			};
+			threads[i].setDaemon(true);
+			threads[i].start();
 		}
 	}
 
-	/** Get the named tile from the cache */
-	public BufferedImage getTile(String n) throws IOException {
-		TempImageFile tif = getTempImageFile(n);
-		if(tif != null)
-			return tif.getImage();
+	/** Add a listener for loaded tiles */
+	public void addListener(Listener l) {
+		listeners.add(l);
+	}
+
+	/** Remove a listener for loaded tiles */
+	public void removeListener(Listener l) {
+		listeners.remove(l);
+	}
+
+	/** Get the number of tiles in memory */
+	public synchronized int size() {
+		return tiles.size();
+	}
+
+	/** Get the total size of decoded tiles (bytes) */
+	public synchronized long getBytes() {
+		return n_bytes;
+	}
+
+	/** Get the named tile from the cache.
+	 * @param n Tile name.
+	 * @return Tile image, or null if not loaded. */
+	public synchronized BufferedImage getTile(String n) {
+		return tiles.get(n);
+	}
+
+	/** Check if a tile is missing from the tile server */
+	public synchronized boolean isMissing(String n) {
+		return missing.contains(n);
+	}
+
+	/** Request a visible tile, ahead of any prefetched tiles.
+	 * @param n Tile name. */
+	public void requestTile(String n) {
+		request(n, true);
+	}
+
+	/** Request a tile which may soon be visible.  If too many tiles are
+	 * already queued, the request is dropped.
+	 * @param n Tile name. */
+	public void prefetchTile(String n) {
+		request(n, false);
+	}
+
+	/** Request a tile to be fetched */
+	private synchronized void request(String n, boolean visible) {
+		if (tiles.containsKey(n) || missing.contains(n))
+			return;
+		if (pending.contains(n)) {
+			// Move a queued request ahead of prefetched tiles
+			if (visible && queue.remove(n))
+				queue.offerFirst(n);
+			return;
+		}
+		if (visible) {
+			queue.offerFirst(n);
+			if (queue.size() > MAX_QUEUE) {
+				String d = queue.pollLast();
+				if (d != null)
+					pending.remove(d);
+			}
+		} else if (queue.size() < MAX_QUEUE)
+			queue.offerLast(n);
 		else
-			return null;
+			return;
+		pending.add(n);
 	}
 
-	/** Get the named temp image file from the cache */
-	protected TempImageFile getTempImageFile(String n) {
-		synchronized(tile_hash) {
-			if(tile_hash.containsKey(n))
-				return tile_hash.get(n);
-			else
-				return null;
+	/** Fetch tiles from the queue until destroyed */
+	private void runFetcher() {
+		try {
+			while (true)
+				fetchTile(queue.takeFirst());
 		}
+		catch (InterruptedException e) {
+			// destroyed
+		}
+	}
+
+	/** Fetch one tile and put it in the cache */
+	private void fetchTile(String n) {
+		BufferedImage img = null;
+		boolean found = true;
+		try {
+			img = loadTile(n);
+		}
+		catch (FileNotFoundException e) {
+			found = false;
+		}
+		catch (IOException e) {
+			System.err.print("I/O Error ");
+			System.err.print(e.getMessage());
+			System.err.println(" loading tile: " + n);
+		}
+		synchronized (this) {
+			pending.remove(n);
+			if (!found)
+				missing.add(n);
+			if (img != null)
+				putTile(n, img);
+		}
+		if (img != null) {
+			for (Listener l: listeners)
+				l.tileLoaded(n);
+		}
+	}
+
+	/** Load a tile from the disk cache or the tile server */
+	private BufferedImage loadTile(String n) throws IOException {
+		File f = (dir != null) ? new File(dir, n + ".png") : null;
+		if (f != null && f.isFile()) {
+			try {
+				return decodeImage(readStream(
+					new FileInputStream(f)));
+			}
+			catch (IOException e) {
+				// Corrupt file; fetch it again
+				f.delete();
+			}
+		}
+		byte[] data = readStream(fetcher.fetchImage(n));
+		BufferedImage img = decodeImage(data);
+		if (f != null)
+			writeFile(f, data);
+		return img;
 	}
 
-	/** Lookup a tile and put it in the cache */
-	public void lookupTile(String n) throws IOException {
-		while(isFull())
-			purgeOldestImage();
-		TempImageFile tif = new TempImageFile(fetcher.fetchImage(n));
-		// Update the FIFO and hash map last so that exceptions cannot
-		// leave us in an inconsistent state
-		synchronized(tile_hash) {
-			tiles.addLast(n);
-			tile_hash.put(n, tif);
+	/** Write a tile to the disk cache */
+	private void writeFile(File f, byte[] data) {
+		File tmp = new File(f.getPath() + ".tmp");
+		try {
+			f.getParentFile().mkdirs();
+			FileOutputStream fos = new FileOutputStream(tmp);
+			try {
+				fos.write(data);
+			}
+			finally {
+				fos.close();
+			}
+			if (!tmp.renameTo(f))
+				tmp.delete();
+		}
+		catch (IOException e) {
+			System.err.println("Tile cache write: " +
+				e.getMessage());
+			tmp.delete();
 		}
 	}
 
-	/** Check if the cache is full */
-	protected boolean isFull() {
-		synchronized(tile_hash) {
-			return tile_hash.size() >= size;
+	/** Put a tile in memory, evicting least recently used tiles */
+	private void putTile(String n, BufferedImage img) {
+		BufferedImage old = tiles.put(n, img);
+		if (old != null)
+			n_bytes -= imageBytes(old);
+		n_bytes += imageBytes(img);
+		Iterator<Map.Entry<String, BufferedImage>> it =
+			tiles.entrySet().iterator();
+		while (n_bytes > max_bytes && tiles.size() > 1) {
+			Map.Entry<String, BufferedImage> e = it.next();
+			n_bytes -= imageBytes(e.getValue());
+			it.remove();
 		}
 	}
 
 	/** Destroy the tile cache */
-	public void destroy() throws IOException {
-		synchronized(tile_hash) {
+	public void destroy() {
+		for (Thread t: threads)
+			t.interrupt();
+		listeners.clear();
+		synchronized (this) {
+			queue.clear();
+			pending.clear();
 			tiles.clear();
-			tile_hash.clear();
+			n_bytes = 0;
 		}
 	}
 }
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2011-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -14,35 +15,41 @@
  */
 package us.mn.state.dot.tms.client.map;
 
+import java.io.File;
 import java.io.IOException;
 
 /**
  * A tile layer for drawing a Google-style tile map.
  *
  * @author Douglas Lau
+ * @author Jacob Barde
  */
 public class TileLayer extends Layer {
 
 	/** URL where tiles are hosted */
 	private final String url;
 
-	/** Number of tiles to cache */
-	private final int n_cached;
+	/** Maximum size of decoded tiles (bytes) */
+	private final long max_bytes;
+
+	/** Disk cache directory (null for none) */
+	private final File dir;
 
 	/** Tile cache */
 	private TileCache cache;
 
 	/** Create a new tile layer */
-	public TileLayer(String n, String url, int n_cached) {
+	public TileLayer(String n, String url, long max_bytes, File dir) {
 		super(n);
 		this.url = url;
-		this.n_cached = n_cached;
+		this.max_bytes = max_bytes;
+		this.dir = dir;
 	}
 
 	/** Initialize the tile layer */
 	public void initialize() throws IOException {
 		ImageFetcher f = new ImageFetcher(url);
-		cache = new TileCache(f, n_cached);
+		cache = new TileCache(f, max_bytes, dir);
 	}
 
 	/** Create a new layer state */
@@ -51,6 +58,14 @@ public class TileLayer extends Layer {
 		return new TileLayerState(this, mb, cache);
 	}
 
+	/** Dispose of the tile layer, stopping the fetch threads */
+	public void dispose() {
+		TileCache c = cache;
+		cache = null;
+		if (c != null)
+			c.destroy();
+	}
+
 	/** Check if the layer is searchable */
 	@Override
 	public boolean isSearchable() {
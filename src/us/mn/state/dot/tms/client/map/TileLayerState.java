@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2011-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -17,30 +18,66 @@ package us.mn.state.dot.tms.client.map;
 import java.awt.Dimension;
 import java.awt.Image;
 import java.awt.geom.Point2D;
-import java.io.FileNotFoundException;
-import java.io.IOException;
-import java.util.HashSet;
-import javax.swing.SwingWorker;
+import java.awt.geom.Rectangle2D;
+import javax.swing.SwingUtilities;
 import us.mn.state.dot.tms.geo.ZoomLevel;
 
 /**
  * A tile layer state for drawing a Google-style tile map.
  *
  * @author Douglas Lau
+ * @author Jacob Barde
  */
 public class TileLayerState extends LayerState {
 
+	/** Size of a tile (pixels) */
+	static private final int TILE_SZ = 256;
+
+	/** Number of extra tiles to prefetch in the pan direction */
+	static private final int PAN_AHEAD = 2;
+
 	/** Cache of tiles */
 	private final TileCache cache;
 
-	/** Set of missing tiles */
-	private final HashSet<String> no_tile = new HashSet<String>();
+	/** Zoom level of last paint */
+	private ZoomLevel last_zoom;
+
+	/** Center pixel X of last paint */
+	private int last_px;
+
+	/** Center pixel Y of last paint */
+	private int last_py;
+
+	/** Listener for loaded tiles */
+	private final TileCache.Listener listener = new TileCache.Listener() {
+		public void tileLoaded(final String n) {
+			SwingUtilities.invokeLater(new Runnable() {
+				public void run() {
+					repaintTile(n);
+				}
+			});
+		}
+	};
 
 	/** Create a new tile layer state */
 	public TileLayerState(TileLayer layer, MapBean mb, TileCache c) {
 		super(layer, mb, new Theme("Tile", new TileSymbol(),
 			new Style("Tile")));
 		cache = c;
+		cache.addListener(listener);
+	}
+
+	/** Dispose of the layer state */
+	@Override
+	public void dispose() {
+		cache.removeListener(listener);
+		super.dispose();
+	}
+
+	/** Tiles are repainted by region when loaded */
+	@Override
+	protected boolean isRegionPainted() {
+		return true;
 	}
 
 	/** Call the specified callback for each map object in the layer */
@@ -54,100 +91,110 @@ public class TileLayerState extends LayerState {
 		int hy = (int) sz.getHeight() / 2;
 		int px = (int) zoom.getPixelX(center.getX());
 		int py = (int) zoom.getPixelY(center.getY());
-		int x0 = zoomLimit(zoom, (px - hx) / 256);
-		int x1 = zoomLimit(zoom, ((px + hx) / 256) + 1);
-		int ox = (px - hx) % 256;
-		int y0 = zoomLimit(zoom, (py - hy) / 256);
-		int y1 = zoomLimit(zoom, ((py + hy) / 256) + 1);
-		int oy = (py + hy) % 256 - 512;
+		int x0 = zoomLimit(zoom, (px - hx) / TILE_SZ);
+		int x1 = zoomLimit(zoom, ((px + hx) / TILE_SZ) + 1);
+		int ox = (px - hx) % TILE_SZ;
+		int y0 = zoomLimit(zoom, (py - hy) / TILE_SZ);
+		int y1 = zoomLimit(zoom, ((py + hy) / TILE_SZ) + 1);
+		int oy = (py + hy) % TILE_SZ - 2 * TILE_SZ;
 		for (int x = x0; x <= x1; x++) {
-			int xp = (x - x0) * 256 - ox;
+			int xp = (x - x0) * TILE_SZ - ox;
 			for (int y = y0; y <= y1; y++) {
-				int yp = (y1 - y) * 256 + oy;
+				int yp = (y1 - y) * TILE_SZ + oy;
 				String tile = getTileName(zoom, x, y);
-				Image img = getTile(tile);
+				Image img = cache.getTile(tile);
 				if (img != null)
 					s.next(new TileMapObject(img, xp, yp));
-				else {
-					if (!isTileMissing(tile))
-						createTileWorker(tile);
-				}
+				else
+					cache.requestTile(tile);
 			}
 		}
+		if (zoom != last_zoom || px != last_px || py != last_py) {
+			int dx = (zoom == last_zoom) ? px - last_px : 0;
+			int dy = (zoom == last_zoom) ? py - last_py : 0;
+			prefetchNeighbors(zoom, x0, x1, y0, y1, dx, dy);
+			prefetchZoomIn(zoom, px + dx, py + dy, hx, hy);
+			last_zoom = zoom;
+			last_px = px;
+			last_py = py;
+		}
 		return null;
 	}
 
-	/** Limit X or Y tile based on zoom level */
-	private int zoomLimit(ZoomLevel zoom, int xory) {
-		return Math.max(0, Math.min(zoom.n_tiles - 1, xory));
+	/** Prefetch tiles surrounding the visible tiles, with extra tiles
+	 * in the direction of panning.
+	 * @param dx Change in center pixel X since last paint.
+	 * @param dy Change in center pixel Y since last paint. */
+	private void prefetchNeighbors(ZoomLevel zoom, int x0, int x1, int y0,
+		int y1, int dx, int dy)
+	{
+		int nx0 = zoomLimit(zoom, x0 - 1 - (dx < 0 ? PAN_AHEAD : 0));
+		int nx1 = zoomLimit(zoom, x1 + 1 + (dx > 0 ? PAN_AHEAD : 0));
+		int ny0 = zoomLimit(zoom, y0 - 1 - (dy < 0 ? PAN_AHEAD : 0));
+		int ny1 = zoomLimit(zoom, y1 + 1 + (dy > 0 ? PAN_AHEAD : 0));
+		for (int x = nx0; x <= nx1; x++) {
+			for (int y = ny0; y <= ny1; y++) {
+				if (x < x0 || x > x1 || y < y0 || y > y1) {
+					cache.prefetchTile(getTileName(zoom,
+						x, y));
+				}
+			}
+		}
 	}
 
-	/** Get a tile name */
-	private String getTileName(ZoomLevel zoom, int tx, int ty) {
-		int gy = zoom.n_tiles - 1 - ty;
-		return "" + zoom.ordinal() + '/' + tx + '/' + gy;
+	/** Prefetch tiles at the next zoom level, around the center of the
+	 * map (ahead in the direction of panning).
+	 * @param px Center pixel X at current zoom level.
+	 * @param py Center pixel Y at current zoom level. */
+	private void prefetchZoomIn(ZoomLevel zoom, int px, int py, int hx,
+		int hy)
+	{
+		ZoomLevel zin = ZoomLevel.fromOrdinal(zoom.ordinal() + 1);
+		if (zin != null) {
+			int x0 = zoomLimit(zin, (2 * px - hx) / TILE_SZ);
+			int x1 = zoomLimit(zin, (2 * px + hx) / TILE_SZ);
+			int y0 = zoomLimit(zin, (2 * py - hy) / TILE_SZ);
+			int y1 = zoomLimit(zin, (2 * py + hy) / TILE_SZ);
+			for (int x = x0; x <= x1; x++) {
+				for (int y = y0; y <= y1; y++) {
+					cache.prefetchTile(getTileName(zin,
+						x, y));
+				}
+			}
+		}
 	}
 
-	/** Is the given tile missing? */
-	private boolean isTileMissing(String tile) {
-		synchronized (no_tile) {
-			return no_tile.contains(tile);
+	/** Repaint a loaded tile, if it is at the current zoom level */
+	private void repaintTile(String n) {
+		ZoomLevel zoom = map.getModel().getZoomLevel();
+		String[] zxy = n.split("/");
+		if (zxy.length == 3 &&
+		    Integer.parseInt(zxy[0]) == zoom.ordinal())
+		{
+			int tx = Integer.parseInt(zxy[1]);
+			int ty = zoom.n_tiles - 1 - Integer.parseInt(zxy[2]);
+			fireLayerChanged(LayerChange.geometry,
+				getTileBounds(zoom, tx, ty));
 		}
 	}
 
-	/** Get a tile from the tile cache */
-	private Image getTile(String tile) {
-		try {
-			return cache.getTile(tile);
-		}
-		catch (IOException e) {
-			System.err.print("I/O Error ");
-			System.err.print(e.getMessage());
-			System.err.println(" reading tile: " + tile);
-			return null;
-		}
+	/** Get the bounds of a tile in world coordinates */
+	private Rectangle2D getTileBounds(ZoomLevel zoom, int tx, int ty) {
+		double x0 = zoom.getMeterX(tx * TILE_SZ);
+		double x1 = zoom.getMeterX((tx + 1) * TILE_SZ);
+		double y0 = zoom.getMeterY(ty * TILE_SZ);
+		double y1 = zoom.getMeterY((ty + 1) * TILE_SZ);
+		return new Rectangle2D.Double(x0, y0, x1 - x0, y1 - y0);
 	}
 
-	/** Create a worker to lookup one tile */
-	private void createTileWorker(final String tile) {
-		SwingWorker worker = new SwingWorker<String, Void>() {
-			@Override
-			public String doInBackground() {
-				return lookupTile(tile);
-			}
-			@Override
-			public void done() {
-				try {
-					String tile = get();
-					if (tile != null) {
-						fireLayerChanged(
-							LayerChange.geometry);
-					}
-				}
-				catch (Exception e) {
-					// ignore
-				}
-			}
-		};
-		worker.execute();
+	/** Limit X or Y tile based on zoom level */
+	private int zoomLimit(ZoomLevel zoom, int xory) {
+		return Math.max(0, Math.min(zoom.n_tiles - 1, xory));
 	}
 
-	/** Lookup one tile */
-	private String lookupTile(String tile) {
-		try {
-			cache.lookupTile(tile);
-			return tile;
-		}
-		catch (FileNotFoundException e) {
-			synchronized (no_tile) {
-				no_tile.add(tile);
-			}
-		}
-		catch (IOException e) {
-			System.err.print("I/O Error ");
-			System.err.print(e.getMessage());
-			System.err.println(" loading tile: " + tile);
-		}
-		return null;
+	/** Get a tile name */
+	private String getTileName(ZoomLevel zoom, int tx, int ty) {
+		int gy = zoom.n_tiles - 1 - ty;
+		return "" + zoom.ordinal() + '/' + tx + '/' + gy;
 	}
 }
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2008-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -60,6 +61,11 @@ public class MapGeoLoc implements MapObject {
 		return loc;
 	}
 
+	/** Get the spherical mercator position (null if not set) */
+	public SphericalMercatorPosition getPosition() {
+		return pos;
+	}
+
 	/** Create a new location transform */
 	public MapGeoLoc(GeoLoc l) {
 		loc = l;
@@ -80,7 +86,7 @@ public class MapGeoLoc implements MapObject {
 	/** Update the layer geometry */
 	public void updateGeometry() {
 		if (manager != null)
-			manager.updateGeometry();
+			manager.updateGeometry(this);
 	}
 
 	/** Get the default angle (radians) */
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2008-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -24,6 +25,7 @@ import us.mn.state.dot.tms.client.map.MapBean;
 import us.mn.state.dot.tms.client.map.MapObject;
 import us.mn.state.dot.tms.client.map.MapSearcher;
 import us.mn.state.dot.tms.client.widget.IWorker;
+import us.mn.state.dot.tms.geo.SphericalMercatorPosition;
 import us.mn.state.dot.tms.utils.I18N;
 
 /**
@@ -61,6 +63,17 @@ public class ProxyLayer<T extends SonarObject> extends Layer {
 		fireLayerChanged(LayerChange.status);
 	}
 
+	/** Update the status of one map object */
+	public void updateStatus(MapGeoLoc loc) {
+		SphericalMercatorPosition pos = loc.getPosition();
+		if (pos != null) {
+			fireLayerChanged(LayerChange.status,
+				new Rectangle2D.Double(pos.getX(), pos.getY(),
+				0, 0));
+		} else
+			updateStatus();
+	}
+
 	/** Update the layer theme */
 	public void updateTheme() {fireLayerChanged(LayerChange.theme);}
 
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2008-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -16,6 +17,7 @@ package us.mn.state.dot.tms.client.proxy;
 
 import java.awt.event.InputEvent;
 import java.awt.event.MouseEvent;
+import java.awt.geom.Rectangle2D;
 import java.util.LinkedList;
 import java.util.Set;
 import us.mn.state.dot.sonar.SonarObject;
@@ -132,6 +134,18 @@ public class ProxyLayerState<T extends SonarObject> extends LayerState {
 		return manager.forEach(s);
 	}
 
+	/** Iterate through shapes in the layer within some bounds */
+	@Override
+	public MapObject forEach(MapSearcher s, Rectangle2D b) {
+		return manager.forEach(s, b);
+	}
+
+	/** Status changes are painted within a region around the symbol */
+	@Override
+	protected boolean isRegionPainted() {
+		return true;
+	}
+
 	/** Do mouse click event processing */
 	private void doClick(MouseEvent e, T proxy) {
 		if (proxy != null) {
@@ -2,6 +2,7 @@
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2008-2016  Minnesota Department of Transportation
  * Copyright (C) 2010-2015  AHMCT, University of California
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -16,6 +17,7 @@
 package us.mn.state.dot.tms.client.proxy;
 
 import java.awt.event.MouseEvent;
+import java.awt.geom.Rectangle2D;
 import java.util.Collection;
 import javax.swing.Box;
 import javax.swing.JLabel;
@@ -184,6 +186,12 @@ abstract public class ProxyManager<T extends SonarObject> {
 		updateGeometry();
 	}
 
+	/** Update layer geometry after a location has changed */
+	public final void updateGeometry(MapGeoLoc loc) {
+		map_cache.update(loc);
+		updateGeometry();
+	}
+
 	/** Update layer geometry */
 	public final void updateGeometry() {
 		if (layer != null) {
@@ -224,8 +232,13 @@ abstract public class ProxyManager<T extends SonarObject> {
 
 	/** Called when a proxy has been changed */
 	protected void proxyChangedSwing(T proxy, String attr) {
-		if (layer != null && isStyleAttrib(attr))
-			layer.updateStatus();
+		if (layer != null && isStyleAttrib(attr)) {
+			MapGeoLoc loc = findGeoLoc(proxy);
+			if (loc != null)
+				layer.updateStatus(loc);
+			else
+				layer.updateStatus();
+		}
 	}
 
 	/** Get the tangent angle for the given location */
@@ -408,6 +421,21 @@ abstract public class ProxyManager<T extends SonarObject> {
 		return null;
 	}
 
+	/** Iterate through proxy objects which may be within some bounds.
+	 * Only the spatial index cells covering the bounds are visited.
+	 * @param s Map searcher callback.
+	 * @param b Bounds in world coordinates (null for all objects).
+	 * @return Map object found, if any. */
+	public MapObject forEach(MapSearcher s, Rectangle2D b) {
+		if (b == null)
+			return forEach(s);
+		for (MapGeoLoc loc: map_cache.findWithin(b)) {
+			if (isVisible(loc) && s.next(loc))
+				return loc;
+		}
+		return null;
+	}
+
 	/** Check if a MapGeoLoc is visible */
 	private boolean isVisible(MapGeoLoc loc) {
 		return isLocationSet(loc) && isStyleVisible(loc);
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2008-2013  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -14,16 +15,23 @@
  */
 package us.mn.state.dot.tms.client.proxy;
 
+import java.awt.geom.Rectangle2D;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import us.mn.state.dot.sonar.SonarObject;
+import us.mn.state.dot.tms.geo.SpatialIndex;
+import us.mn.state.dot.tms.geo.SphericalMercatorPosition;
 
 /**
  * A cache mapping from MapGeoLoc to proxy objects.  This cache
- * is an optimization to help ProxyManager.findProxy run fast.
+ * is an optimization to help ProxyManager.findProxy run fast.  It also
+ * keeps a spatial index of the MapGeoLocs, so only objects within the
+ * visible part of the map need to be painted or searched.
  *
  * @author Douglas Lau
+ * @author Jacob Barde
  */
 public final class ProxyMapCache<T extends SonarObject>
 	implements Iterable<MapGeoLoc>
@@ -33,9 +41,17 @@ public final class ProxyMapCache<T extends SonarObject>
 	private final HashMap<MapGeoLoc, T> map_proxies =
 		new HashMap<MapGeoLoc, T>();
 
+	/** Size of spatial index cells (meters) */
+	static private final double CELL_SIZE_M = 2000;
+
+	/** Spatial index of MapGeoLoc positions */
+	private final SpatialIndex<MapGeoLoc> index =
+		new SpatialIndex<MapGeoLoc>(CELL_SIZE_M);
+
 	/** Dispose of the proxy map cache */
 	public synchronized void dispose() {
 		map_proxies.clear();
+		index.clear();
 	}
 
 	/** Put an entry into cache.
@@ -43,6 +59,14 @@ public final class ProxyMapCache<T extends SonarObject>
 	 * @param proxy Proxy to associate with map object. */
 	public synchronized void put(MapGeoLoc loc, T proxy) {
 		map_proxies.put(loc, proxy);
+		index.put(loc, loc.getPosition());
+	}
+
+	/** Update the indexed position of an entry.
+	 * @param loc Map object which may have moved. */
+	public synchronized void update(MapGeoLoc loc) {
+		if (map_proxies.containsKey(loc))
+			index.put(loc, loc.getPosition());
 	}
 
 	/** Remove an entry from cache.
@@ -53,6 +77,7 @@ public final class ProxyMapCache<T extends SonarObject>
 		while(it.hasNext()) {
 			Map.Entry<MapGeoLoc, T> ent = it.next();
 			if(ent.getValue() == proxy) {
+				index.remove(ent.getKey());
 				it.remove();
 				break;
 			}
@@ -66,6 +91,18 @@ public final class ProxyMapCache<T extends SonarObject>
 		return map_proxies.get(loc);
 	}
 
+	/** Find all MapGeoLocs within a rectangle.  Some locations just
+	 * outside the rectangle may also be returned.
+	 * @param r Rectangle in spherical mercator coordinates.
+	 * @return List of MapGeoLocs with a position. */
+	public synchronized List<MapGeoLoc> findWithin(Rectangle2D r) {
+		SphericalMercatorPosition p0 = new SphericalMercatorPosition(
+			r.getMinX(), r.getMinY());
+		SphericalMercatorPosition p1 = new SphericalMercatorPosition(
+			r.getMaxX(), r.getMaxY());
+		return index.findWithin(p0, p1);
+	}
+
 	/** Get an iterator over the MapGeoLoc keys */
 	public Iterator<MapGeoLoc> iterator() {
 		return map_proxies.keySet().iterator();
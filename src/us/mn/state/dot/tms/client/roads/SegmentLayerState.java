@@ -15,6 +15,7 @@
 package us.mn.state.dot.tms.client.roads;
 
 import java.awt.event.MouseEvent;
+import java.awt.geom.Rectangle2D;
 import us.mn.state.dot.tms.R_Node;
 import us.mn.state.dot.tms.client.map.MapBean;
 import us.mn.state.dot.tms.client.map.MapObject;
@@ -58,6 +59,20 @@ public class SegmentLayerState extends ProxyLayerState<R_Node> {
 			return forEachStation(s);
 	}
 
+	/** Iterate through the segments in the layer.  Segments are not in
+	 * the r_node spatial index, so the bounds are ignored. */
+	@Override
+	public MapObject forEach(MapSearcher s, Rectangle2D b) {
+		return forEach(s);
+	}
+
+	/** Segments are drawn between r_nodes, so the whole map is repainted
+	 * for status changes */
+	@Override
+	protected boolean isRegionPainted() {
+		return false;
+	}
+
 	/** Is the zoom level past the "individual lane" threshold? */
 	private boolean isPastLaneZoomThreshold() {
 		return map.getModel().getZoomLevel().ordinal() >= 14;
@@ -0,0 +1,344 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.geo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A spatial index is a uniform grid of square cells in spherical mercator
+ * coordinates.  Each item is stored in every cell covered by its bounds,
+ * so points and line segments can both be indexed.
+ *
+ * @author Jacob Barde
+ */
+public class SpatialIndex<T> {
+
+	/** Ratio of mean earth radius to spherical mercator radius, rounded
+	 * down.  Haversine distances use the mean radius. */
+	static private final double RADIUS_RATIO = 0.99;
+
+	/** Callback to measure the distance to an item */
+	static public interface Measure<T> {
+
+		/** Get the distance to an item.
+		 * @param item Indexed item.
+		 * @return Distance (meters), or null to skip the item. */
+		Double distance(T item);
+	}
+
+	/** Get the key of a cell */
+	static private long cellKey(int cx, int cy) {
+		return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+	}
+
+	/** Size of each cell (meters) */
+	private final double cell_size;
+
+	/** Items in each cell */
+	private final HashMap<Long, ArrayList<T>> cells =
+		new HashMap<Long, ArrayList<T>>();
+
+	/** Keys of cells containing each item */
+	private final IdentityHashMap<T, ArrayList<Long>> items =
+		new IdentityHashMap<T, ArrayList<Long>>();
+
+	/** Lowest cell X index */
+	private int min_cx = Integer.MAX_VALUE;
+
+	/** Highest cell X index */
+	private int max_cx = Integer.MIN_VALUE;
+
+	/** Lowest cell Y index */
+	private int min_cy = Integer.MAX_VALUE;
+
+	/** Highest cell Y index */
+	private int max_cy = Integer.MIN_VALUE;
+
+	/** Highest absolute latitude of any indexed position */
+	private double max_lat = 0;
+
+	/** Create a new spatial index.
+	 * @param cs Size of each cell (meters). */
+	public SpatialIndex(double cs) {
+		cell_size = cs;
+	}
+
+	/** Get the cell index of a coordinate */
+	private int cell(double v) {
+		return (int) Math.floor(v / cell_size);
+	}
+
+	/** Get the number of indexed items */
+	public synchronized int size() {
+		return items.size();
+	}
+
+	/** Remove all items */
+	public synchronized void clear() {
+		cells.clear();
+		items.clear();
+		min_cx = Integer.MAX_VALUE;
+		max_cx = Integer.MIN_VALUE;
+		min_cy = Integer.MAX_VALUE;
+		max_cy = Integer.MIN_VALUE;
+		max_lat = 0;
+	}
+
+	/** Put an item at a position, replacing any previous bounds.
+	 * @param item Item to index.
+	 * @param pos Position of item (null to remove). */
+	public synchronized void put(T item, SphericalMercatorPosition pos) {
+		remove(item);
+		if (pos != null)
+			add(item, pos, pos);
+	}
+
+	/** Add bounds to an item.  An item may be added more than once, for
+	 * example once for each segment of a line.
+	 * @param item Item to index.
+	 * @param p0 One corner of bounds.
+	 * @param p1 Opposite corner of bounds. */
+	public synchronized void add(T item, SphericalMercatorPosition p0,
+		SphericalMercatorPosition p1)
+	{
+		int cx0 = cell(Math.min(p0.getX(), p1.getX()));
+		int cx1 = cell(Math.max(p0.getX(), p1.getX()));
+		int cy0 = cell(Math.min(p0.getY(), p1.getY()));
+		int cy1 = cell(Math.max(p0.getY(), p1.getY()));
+		ArrayList<Long> keys = items.get(item);
+		if (keys == null) {
+			keys = new ArrayList<Long>(1);
+			items.put(item, keys);
+		}
+		for (int cx = cx0; cx <= cx1; cx++) {
+			for (int cy = cy0; cy <= cy1; cy++) {
+				Long k = cellKey(cx, cy);
+				if (keys.contains(k))
+					continue;
+				ArrayList<T> c = cells.get(k);
+				if (c == null) {
+					c = new ArrayList<T>(2);
+					cells.put(k, c);
+				}
+				c.add(item);
+				keys.add(k);
+			}
+		}
+		min_cx = Math.min(min_cx, cx0);
+		max_cx = Math.max(max_cx, cx1);
+		min_cy = Math.min(min_cy, cy0);
+		max_cy = Math.max(max_cy, cy1);
+		max_lat = Math.max(max_lat, maxLatitude(p0, p1));
+	}
+
+	/** Get the highest absolute latitude of two positions */
+	static private double maxLatitude(SphericalMercatorPosition p0,
+		SphericalMercatorPosition p1)
+	{
+		return Math.max(Math.abs(p0.getPosition().getLatitude()),
+			Math.abs(p1.getPosition().getLatitude()));
+	}
+
+	/** Remove an item.
+	 * @param item Item to remove. */
+	public synchronized void remove(T item) {
+		ArrayList<Long> keys = items.remove(item);
+		if (keys != null) {
+			for (Long k: keys) {
+				ArrayList<T> c = cells.get(k);
+				if (c != null) {
+					c.remove(item);
+					if (c.isEmpty())
+						cells.remove(k);
+				}
+			}
+		}
+	}
+
+	/** Find all items with bounds near a position.  Every item within
+	 * the distance is returned, along with some which are farther away.
+	 * @param pos Position to search.
+	 * @param dist Search distance (meters in spherical mercator).
+	 * @return List of items, each appearing once. */
+	public synchronized List<T> findNear(SphericalMercatorPosition pos,
+		double dist)
+	{
+		return findCells(cell(pos.getX() - dist),
+			cell(pos.getX() + dist), cell(pos.getY() - dist),
+			cell(pos.getY() + dist));
+	}
+
+	/** Find all items with bounds intersecting a rectangle.  Every item
+	 * within the rectangle is returned, along with some which are just
+	 * outside it.
+	 * @param p0 One corner of rectangle.
+	 * @param p1 Opposite corner of rectangle.
+	 * @return List of items, each appearing once. */
+	public synchronized List<T> findWithin(SphericalMercatorPosition p0,
+		SphericalMercatorPosition p1)
+	{
+		return findCells(cell(Math.min(p0.getX(), p1.getX())),
+			cell(Math.max(p0.getX(), p1.getX())),
+			cell(Math.min(p0.getY(), p1.getY())),
+			cell(Math.max(p0.getY(), p1.getY())));
+	}
+
+	/** Find all items in a range of cells.
+	 * @return List of items, each appearing once. */
+	private List<T> findCells(int cx0, int cx1, int cy0, int cy1) {
+		Set<T> found = Collections.newSetFromMap(
+			new IdentityHashMap<T, Boolean>());
+		ArrayList<T> res = new ArrayList<T>();
+		cx0 = Math.max(cx0, min_cx);
+		cx1 = Math.min(cx1, max_cx);
+		cy0 = Math.max(cy0, min_cy);
+		cy1 = Math.min(cy1, max_cy);
+		if (cx0 > cx1 || cy0 > cy1)
+			return res;
+		long n_range = (long) (cx1 - cx0 + 1) * (cy1 - cy0 + 1);
+		// Scanning all cells is cheaper than a large range
+		if (n_range > cells.size()) {
+			for (Map.Entry<Long, ArrayList<T>> e: cells.entrySet())
+			{
+				long k = e.getKey();
+				int cx = (int) (k >> 32);
+				int cy = (int) k;
+				if (cx >= cx0 && cx <= cx1 &&
+				    cy >= cy0 && cy <= cy1)
+					addItems(e.getValue(), found, res);
+			}
+			return res;
+		}
+		for (int cx = cx0; cx <= cx1; cx++) {
+			for (int cy = cy0; cy <= cy1; cy++) {
+				ArrayList<T> c = cells.get(cellKey(cx, cy));
+				if (c != null)
+					addItems(c, found, res);
+			}
+		}
+		return res;
+	}
+
+	/** Add items which have not been found yet to a list */
+	static private <T> void addItems(ArrayList<T> c, Set<T> found,
+		ArrayList<T> res)
+	{
+		for (T item: c) {
+			if (found.add(item))
+				res.add(item);
+		}
+	}
+
+	/** Find the nearest items to a position.  Cells are searched in rings
+	 * around the position, until no unsearched cell could contain an item
+	 * nearer than the items found.
+	 * @param pos Position to search.
+	 * @param n_count Maximum number of items to find.
+	 * @param m Measure for distance to items (meters on the ground).
+	 * @return List of nearest items, sorted by distance. */
+	public synchronized List<T> findNearest(SphericalMercatorPosition pos,
+		int n_count, Measure<T> m)
+	{
+		ArrayList<T> near = new ArrayList<T>();
+		ArrayList<Double> dists = new ArrayList<Double>();
+		if (n_count < 1 || items.isEmpty())
+			return near;
+		Set<T> checked = Collections.newSetFromMap(
+			new IdentityHashMap<T, Boolean>());
+		double lat = Math.max(max_lat, Math.abs(
+			pos.getPosition().getLatitude()));
+		double scale = Math.cos(Math.toRadians(lat)) * RADIUS_RATIO;
+		int cx = cell(pos.getX());
+		int cy = cell(pos.getY());
+		int last = Math.max(Math.max(cx - min_cx, max_cx - cx),
+			Math.max(cy - min_cy, max_cy - cy));
+		for (int r = 0; r <= last; r++) {
+			if (dists.size() >= n_count) {
+				double low = (r - 1) * cell_size * scale;
+				if (low > dists.get(dists.size() - 1))
+					break;
+			}
+			if (checked.size() == items.size())
+				break;
+			// Scanning all cells is cheaper than a large ring
+			if (8 * r > cells.size()) {
+				for (ArrayList<T> c: cells.values()) {
+					checkItems(c, n_count, m, checked,
+						near, dists);
+				}
+				break;
+			}
+			checkRing(cx, cy, r, n_count, m, checked, near, dists);
+		}
+		return near;
+	}
+
+	/** Check all items in a ring of cells for nearest items */
+	private void checkRing(int cx, int cy, int r, int n_count,
+		Measure<T> m, Set<T> checked, ArrayList<T> near,
+		ArrayList<Double> dists)
+	{
+		for (int x = cx - r; x <= cx + r; x++) {
+			checkCell(x, cy - r, n_count, m, checked, near, dists);
+			if (r > 0) {
+				checkCell(x, cy + r, n_count, m, checked, near,
+					dists);
+			}
+		}
+		for (int y = cy - r + 1; y < cy + r; y++) {
+			checkCell(cx - r, y, n_count, m, checked, near, dists);
+			checkCell(cx + r, y, n_count, m, checked, near, dists);
+		}
+	}
+
+	/** Check all items in one cell for nearest items */
+	private void checkCell(int x, int y, int n_count, Measure<T> m,
+		Set<T> checked, ArrayList<T> near, ArrayList<Double> dists)
+	{
+		ArrayList<T> c = cells.get(cellKey(x, y));
+		if (c != null)
+			checkItems(c, n_count, m, checked, near, dists);
+	}
+
+	/** Check a list of items for nearest items */
+	private void checkItems(ArrayList<T> c, int n_count, Measure<T> m,
+		Set<T> checked, ArrayList<T> near, ArrayList<Double> dists)
+	{
+		for (T item: c) {
+			if (!checked.add(item))
+				continue;
+			Double d = m.distance(item);
+			if (d == null)
+				continue;
+			int i = dists.size();
+			while (i > 0 && dists.get(i - 1) > d)
+				i--;
+			if (i < n_count) {
+				near.add(i, item);
+				dists.add(i, d);
+				if (near.size() > n_count) {
+					near.remove(n_count);
+					dists.remove(n_count);
+				}
+			}
+		}
+	}
+}
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2011-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -74,4 +75,14 @@ public enum ZoomLevel {
 	public double getPixelY(double my) {
 		return (my + origin()) / scale;
 	}
+
+	/** Get the X coordinate (meters) of a pixel */
+	public double getMeterX(double px) {
+		return px * scale - origin();
+	}
+
+	/** Get the Y coordinate (meters) of a pixel */
+	public double getMeterY(double py) {
+		return py * scale - origin();
+	}
 }
@@ -14,11 +14,8 @@
  */
 package us.mn.state.dot.tms.server;
 
-import us.mn.state.dot.sched.Job;
-import us.mn.state.dot.sched.Scheduler;
 import us.mn.state.dot.sonar.server.AccessMonitor;
 import us.mn.state.dot.tms.EventType;
-import us.mn.state.dot.tms.TMSException;
 import us.mn.state.dot.tms.server.event.ClientEvent;
 
 /**
@@ -28,14 +25,6 @@ import us.mn.state.dot.tms.server.event.ClientEvent;
  */
 public class AccessLogger implements AccessMonitor {
 
-	/** FLUSH Scheduler for I/O jobs */
-	private final Scheduler flush;
-
-	/** Create a new access logger */
-	public AccessLogger(Scheduler f) {
-		flush = f;
-	}
-
 	/** Log a connect event */
 	public void connect(String hostport) {
 		log_event(EventType.CLIENT_CONNECT, hostport, null);
@@ -58,11 +47,7 @@ public class AccessLogger implements AccessMonitor {
 
 	/** Log an event */
 	private void log_event(EventType event, String hostport, String user) {
-		final ClientEvent ev = new ClientEvent(event, hostport, user);
-		flush.addJob(new Job() {
-			public void perform() throws TMSException {
-				ev.doStore();
-			}
-		});
+		BaseObjectImpl.logEvent(new ClientEvent(event, hostport,
+			user));
 	}
 }
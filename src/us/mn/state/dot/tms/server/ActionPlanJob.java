@@ -18,7 +18,6 @@ import java.util.Calendar;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.sched.TimeSteward;
 import us.mn.state.dot.tms.ActionPlan;
 import us.mn.state.dot.tms.ActionPlanHelper;
@@ -48,7 +47,7 @@ import us.mn.state.dot.tms.TMSException;
  *
  * @author Douglas Lau
  */
-public class ActionPlanJob extends Job {
+public class ActionPlanJob extends MonitoredJob {
 
 	/** Seconds to offset each poll from start of interval */
 	static protected final int OFFSET_SECS = 29;
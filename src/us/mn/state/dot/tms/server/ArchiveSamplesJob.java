@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2010-2013  Minnesota Department of Transportation
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -28,15 +29,16 @@ import java.util.Enumeration;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipOutputStream;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.sched.TimeSteward;
+import us.mn.state.dot.tms.SystemAttrEnum;
 
 /**
- * Job to create sample data archive files.
+ * Job to create sample data archive files.  Each day directory is archived
+ * into either a zip file (.traffic) or a columnar archive (.tcol).
  *
  * @author Douglas Lau
  */
-public class ArchiveSamplesJob extends Job {
+public class ArchiveSamplesJob extends MonitoredJob {
 
 	/** Buffer for reading sample data files */
 	protected final byte[] buffer = new byte[8192];
@@ -95,10 +97,51 @@ public class ArchiveSamplesJob extends Job {
 	/** Create a sample archive file for the given day */
 	protected void createSampleArchive(File day) throws IOException {
 		File traf = new File(day.toString() + ".traffic");
-		if(!traf.exists())
+		File tcol = new File(day.toString() +
+			ColumnarArchive.EXTENSION);
+		if(traf.exists() || tcol.exists())
+			return;
+		if(SystemAttrEnum.SAMPLE_ARCHIVE_COLUMNAR.getBoolean())
+			createColumnarArchive(tcol, day);
+		else
 			createSampleArchive(traf, day);
 	}
 
+	/** Create a columnar archive file and delete the original sample
+	 * files */
+	protected void createColumnarArchive(File tcol, File day)
+		throws IOException
+	{
+		File temp = new File(tcol.toString() + "~");
+		new ColumnarArchiveWriter(day).write(listSampleFiles(day),
+			temp);
+		if(!temp.renameTo(tcol))
+			throw new IOException("Rename failed: " + tcol);
+		ColumnarArchiveReader r = new ColumnarArchiveReader(tcol);
+		try {
+			for(String name: r.listFiles()) {
+				File file = new File(day, name);
+				if(file.isFile())
+					file.delete();
+			}
+		}
+		finally {
+			r.close();
+		}
+		day.delete();
+	}
+
+	/** List all valid sample files in a day directory */
+	protected String[] listSampleFiles(File day) {
+		String[] entries = day.list(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return a_factory.hasKnownExtension(name);
+			}
+		});
+		Arrays.sort(entries);
+		return entries;
+	}
+
 	/** Create a sample archive file and delete the original sample files */
 	protected void createSampleArchive(File traf, File day)
 		throws IOException
@@ -128,13 +171,7 @@ public class ArchiveSamplesJob extends Job {
 	protected void addSampleEntries(ZipOutputStream zos, File day)
 		throws IOException
 	{
-		String[] entries = day.list(new FilenameFilter() {
-			public boolean accept(File dir, String name) {
-				return a_factory.hasKnownExtension(name);
-			}
-		});
-		Arrays.sort(entries);
-		for(String entry: entries)
+		for(String entry: listSampleFiles(day))
 			addSampleEntry(zos, day, entry);
 	}
 
@@ -0,0 +1,174 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import us.mn.state.dot.sched.DebugLog;
+import us.mn.state.dot.sonar.server.Server;
+import us.mn.state.dot.tms.SystemAttrEnum;
+
+/**
+ * Attribute notifier coalesces SONAR attribute change notifications.
+ * Notifications are held for a short window, and repeated changes to the
+ * same object attribute within the window are merged.  SONAR reads the
+ * attribute value when the notification is sent, so clients always get the
+ * last value.  All pending notifications are sent together by one job, so
+ * they are queued to each client connection as a batch.
+ *
+ * @author Jacob Barde
+ */
+public class AttributeNotifier {
+
+	/** Get the coalescing window (ms) */
+	static private int windowMs() {
+		return SystemAttrEnum.SONAR_NOTIFY_WINDOW_MS.getInt();
+	}
+
+	/** Notification counters for one SONAR type */
+	static private class Counter {
+
+		/** Count of notifications sent */
+		private final AtomicLong n_sent = new AtomicLong();
+
+		/** Count of notifications suppressed (merged) */
+		private final AtomicLong n_suppressed = new AtomicLong();
+	}
+
+	/** Scheduler for flush jobs */
+	private final MonitoredScheduler scheduler;
+
+	/** Pending attribute names, by object (guarded by this) */
+	private LinkedHashMap<BaseObjectImpl, LinkedHashSet<String>> pending =
+		new LinkedHashMap<BaseObjectImpl, LinkedHashSet<String>>();
+
+	/** Flag indicating a flush job is scheduled (guarded by this) */
+	private boolean scheduled = false;
+
+	/** Notification counters, by SONAR type */
+	private final ConcurrentHashMap<String, Counter> counters =
+		new ConcurrentHashMap<String, Counter>();
+
+	/** Create a new attribute notifier.
+	 * @param s Scheduler for flush jobs. */
+	public AttributeNotifier(MonitoredScheduler s) {
+		scheduler = s;
+	}
+
+	/** Notify clients of a change to an attribute.
+	 * @param obj Object which changed.
+	 * @param aname Attribute name. */
+	public void notifyAttribute(BaseObjectImpl obj, String aname) {
+		int w = windowMs();
+		if (w > 0)
+			enqueue(obj, aname, w);
+		else
+			send(obj, aname);
+	}
+
+	/** Add a pending notification.
+	 * @param obj Object which changed.
+	 * @param aname Attribute name.
+	 * @param w Coalescing window (ms). */
+	private synchronized void enqueue(BaseObjectImpl obj, String aname,
+		int w)
+	{
+		LinkedHashSet<String> attrs = pending.get(obj);
+		if (attrs == null) {
+			attrs = new LinkedHashSet<String>();
+			pending.put(obj, attrs);
+		}
+		if (!attrs.add(aname))
+			lookupCounter(obj).n_suppressed.incrementAndGet();
+		if (!scheduled) {
+			scheduled = true;
+			scheduler.addJob(new MonitoredJob(w) {
+				public void perform() {
+					flush();
+				}
+			});
+		}
+	}
+
+	/** Take all pending notifications */
+	private synchronized Map<BaseObjectImpl, LinkedHashSet<String>>
+		takePending()
+	{
+		Map<BaseObjectImpl, LinkedHashSet<String>> p = pending;
+		pending = new LinkedHashMap<BaseObjectImpl,
+			LinkedHashSet<String>>();
+		scheduled = false;
+		return p;
+	}
+
+	/** Send all pending notifications */
+	public void flush() {
+		Map<BaseObjectImpl, LinkedHashSet<String>> p = takePending();
+		for (Map.Entry<BaseObjectImpl, LinkedHashSet<String>> e:
+		     p.entrySet())
+		{
+			BaseObjectImpl obj = e.getKey();
+			// Skip objects destroyed since the change
+			if (isRegistered(obj)) {
+				for (String aname: e.getValue())
+					send(obj, aname);
+			}
+		}
+	}
+
+	/** Check if an object is still in the namespace */
+	static private boolean isRegistered(BaseObjectImpl obj) {
+		return BaseObjectImpl.namespace.lookupObject(obj.getTypeName(),
+			obj.getName()) == obj;
+	}
+
+	/** Send one notification to clients */
+	private void send(BaseObjectImpl obj, String aname) {
+		Server s = MainServer.server;
+		if (s != null) {
+			s.setAttribute(obj, aname);
+			lookupCounter(obj).n_sent.incrementAndGet();
+		}
+	}
+
+	/** Lookup the counter for an object's type */
+	private Counter lookupCounter(BaseObjectImpl obj) {
+		String t = obj.getTypeName();
+		Counter c = counters.get(t);
+		if (c == null) {
+			c = new Counter();
+			Counter pc = counters.putIfAbsent(t, c);
+			if (pc != null)
+				c = pc;
+		}
+		return c;
+	}
+
+	/** Log notification statistics */
+	public void logStats(DebugLog log) {
+		TreeMap<String, Counter> cs =
+			new TreeMap<String, Counter>(counters);
+		for (Map.Entry<String, Counter> e: cs.entrySet()) {
+			Counter c = e.getValue();
+			log.log("Notify " + e.getKey() + ": sent=" +
+				c.n_sent.get() + ", suppressed=" +
+				c.n_suppressed.get());
+		}
+	}
+}
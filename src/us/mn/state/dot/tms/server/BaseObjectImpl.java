@@ -2,6 +2,7 @@
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2007-2016  Minnesota Department of Transportation
  * Copyright (C) 2014-2015  AHMCT, University of California
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -17,7 +18,6 @@ package us.mn.state.dot.tms.server;
 
 import java.text.NumberFormat;
 import java.util.Date;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.sonar.SonarException;
 import us.mn.state.dot.sonar.SonarObject;
 import us.mn.state.dot.sonar.server.Server;
@@ -25,6 +25,7 @@ import us.mn.state.dot.sonar.server.ServerNamespace;
 import us.mn.state.dot.tms.TMSException;
 import static us.mn.state.dot.tms.server.MainServer.FLUSH;
 import us.mn.state.dot.tms.server.event.BaseEvent;
+import us.mn.state.dot.tms.server.event.EventWriter;
 
 /**
  * Base object class for storable SONAR objects.
@@ -43,6 +44,9 @@ abstract public class BaseObjectImpl implements Storable, SonarObject {
 	/** Corridor manager */
 	static public final CorridorManager corridors = new CorridorManager();
 
+	/** Attribute change notifier (null to notify immediately) */
+	static public AttributeNotifier notifier;
+
 	/** Load all objects from the database into the SONAR Namespace */
 	static void loadAll(SQLConnection s, ServerNamespace ns)
 		throws TMSException
@@ -294,9 +298,14 @@ abstract public class BaseObjectImpl implements Storable, SonarObject {
 
 	/** Notify SONAR clients of a change to an attribute */
 	protected void notifyAttribute(String aname) {
-		Server s = MainServer.server;
-		if(s != null)
-			s.setAttribute(this, aname);
+		AttributeNotifier n = notifier;
+		if(n != null)
+			n.notifyAttribute(this, aname);
+		else {
+			Server s = MainServer.server;
+			if(s != null)
+				s.setAttribute(this, aname);
+		}
 	}
 
 	/** Format a float value */
@@ -313,12 +322,23 @@ abstract public class BaseObjectImpl implements Storable, SonarObject {
 		return nf.format(value);
 	}
 
-	/** Log an event */
+	/** Log an event.  The event is queued to be stored by the
+	 * write-behind event writer, or stored by a job on the FLUSH thread
+	 * if the writer has not been created yet. */
 	static public void logEvent(final BaseEvent ev) {
-		FLUSH.addJob(new Job() {
-			public void perform() throws TMSException {
-				ev.doStore();
-			}
-		});
+		EventWriter w = BaseEvent.writer;
+		if (w != null)
+			w.add(ev);
+		else {
+			FLUSH.addJob(new MonitoredJob() {
+				public void perform() throws TMSException {
+					ev.doStore();
+				}
+				@Override
+				public boolean isRejectable() {
+					return false;
+				}
+			});
+		}
 	}
 }
@@ -16,18 +16,37 @@
 package us.mn.state.dot.tms.server;
 
 /**
- * Bounded Sample History container.
+ * Bounded Sample History container.  Samples are stored in a ring of
+ * primitive doubles, with NaN for missing data.  Running sums of the
+ * samples and valid sample counts are kept for each push, so the average
+ * of any window can be found in constant time.
  *
  * @author Chongmyung Park (chongmyung.park@gmail.com)
  * @author Douglas Lau
  */
 public class BoundedSampleHistory {
 
-	/** Sample data history */
-	private final Double[] samples;
+	/** Value for missing data */
+	static private final double MISSING = Double.NaN;
 
-	/** Sample cursor (most recent) */
-	private int cursor = -1;
+	/** Maximum number of samples */
+	private final int max_samples;
+
+	/** Sample data history.  This has one extra slot, so the running sum
+	 * from before the oldest sample is retained. */
+	private final double[] samples;
+
+	/** Running sum of samples (up to and including each sample) */
+	private final double[] sums;
+
+	/** Running count of valid samples (up to and including each) */
+	private final int[] counts;
+
+	/** Count of samples pushed since creation */
+	private long n_pushed = 0;
+
+	/** Push count where running sums start (oldest sample or later) */
+	private long base = 0;
 
 	/** Count of samples */
 	private int n_samples = 0;
@@ -37,7 +56,10 @@ public class BoundedSampleHistory {
 	 * @param max_samples Maximum number of samples to retain.
 	 */
 	public BoundedSampleHistory(int max_samples) {
-		samples = new Double[max_samples];
+		this.max_samples = max_samples;
+		samples = new double[max_samples + 1];
+		sums = new double[max_samples + 1];
+		counts = new int[max_samples + 1];
 	}
 
 	/**
@@ -45,32 +67,73 @@ public class BoundedSampleHistory {
 	 * @param sam Current sample data, or null for missing data.
 	 */
 	public void push(Double sam) {
-		cursor = nextIndex(cursor);
-		samples[cursor] = filterSample(sam);
-		if(n_samples < samples.length)
+		push((sam != null) ? sam : MISSING);
+	}
+
+	/**
+	 * Add one data sample to the history.
+	 * @param sam Current sample data, or NaN for missing data.
+	 */
+	public void push(double sam) {
+		double v = filterSample(sam);
+		long p = n_pushed;
+		int idx = index(p);
+		if(p > base) {
+			int prev = index(p - 1);
+			sums[idx] = sums[prev];
+			counts[idx] = counts[prev];
+		} else {
+			sums[idx] = 0;
+			counts[idx] = 0;
+		}
+		samples[idx] = v;
+		if(!Double.isNaN(v)) {
+			sums[idx] += v;
+			counts[idx]++;
+		}
+		n_pushed++;
+		if(n_samples < max_samples)
 			n_samples++;
+		if(n_pushed - base >= 2 * samples.length)
+			rebase();
+	}
+
+	/**
+	 * Get the array index for a push count.
+	 * @param p Push count of a sample.
+	 * @return Index into samples array.
+	 */
+	private int index(long p) {
+		return (int)(p % samples.length);
 	}
 
 	/**
-	 * Get the next sample array index.
-	 * @param idx Index into samples array.
-	 * @return Next index, rolling over if necessary.
+	 * Restart running sums at the oldest sample, so that they do not
+	 * grow (and lose precision) without bound.
 	 */
-	private int nextIndex(int idx) {
-		idx++;
-		return idx < samples.length ? idx : 0;
+	private void rebase() {
+		base = n_pushed - n_samples;
+		double sum = 0;
+		int count = 0;
+		for(long p = base; p < n_pushed; p++) {
+			int idx = index(p);
+			double v = samples[idx];
+			if(!Double.isNaN(v)) {
+				sum += v;
+				count++;
+			}
+			sums[idx] = sum;
+			counts[idx] = count;
+		}
 	}
 
 	/**
 	 * Filter out negative data samples.
 	 * @param sam Sample data.
-	 * @return Sample data, with negative values replaced with null.
+	 * @return Sample data, with negative values replaced with NaN.
 	 */
-	private Double filterSample(Double sam) {
-		if(sam != null && sam >= 0)
-			return sam;
-		else
-			return null;
+	private double filterSample(double sam) {
+		return (sam >= 0) ? sam : MISSING;
 	}
 
 	/**
@@ -79,21 +142,28 @@ public class BoundedSampleHistory {
 	 * @return Sample data, or null for missing data.
 	 */
 	public Double get(int t) {
-		if(t < n_samples) {
-			int idx = cursor - t;
-			if(idx < 0)
-				idx += samples.length;
-			return samples[idx];
-		} else
-			return null;
+		double v = getValue(t);
+		return Double.isNaN(v) ? null : v;
+	}
+
+	/**
+	 * Return sample at given time step index (in reversed direction).
+	 * @param t Time-step index (0 for most recent).
+	 * @return Sample data, or NaN for missing data.
+	 */
+	public double getValue(int t) {
+		if(t >= 0 && t < n_samples)
+			return samples[index(n_pushed - 1 - t)];
+		else
+			return MISSING;
 	}
 
 	/**
 	 * Clear sample history.
 	 */
 	public void clear() {
-		cursor = -1;
 		n_samples = 0;
+		base = n_pushed;
 	}
 
 	/**
@@ -109,7 +179,7 @@ public class BoundedSampleHistory {
 	 * @return true if the history is full.
 	 */
 	public boolean isFull() {
-		return n_samples == samples.length;
+		return n_samples == max_samples;
 	}
 
 	/**
@@ -119,19 +189,33 @@ public class BoundedSampleHistory {
 	 * @return Average of the specified samples, or null for missing data.
 	 */
 	public Double average(int t, int n_sam) {
-		double sum = 0;
-		int count = 0;
-		for(int i = t; i < t + n_sam; i++) {
-			Double d = get(i);
-			if(d != null) {
-				sum += d;
-				count++;
-			}
+		double avg = averageValue(t, n_sam);
+		return Double.isNaN(avg) ? null : avg;
+	}
+
+	/**
+	 * Return the average of the specified number of samples.
+	 * @param t Starting time-step index (0 for most recent).
+	 * @param n_sam Number of samples to calculate average.
+	 * @return Average of the specified samples, or NaN for missing data.
+	 */
+	public double averageValue(int t, int n_sam) {
+		int last = Math.min(t + n_sam, n_samples);
+		if(t < 0 || t >= last)
+			return MISSING;
+		// Push counts of newest and (one before) oldest samples
+		long newest = n_pushed - 1 - t;
+		long before = n_pushed - 1 - last;
+		double sum = sums[index(newest)];
+		int count = counts[index(newest)];
+		if(before >= base) {
+			sum -= sums[index(before)];
+			count -= counts[index(before)];
 		}
 		if(count > 0)
 			return sum / count;
 		else
-			return null;
+			return MISSING;
 	}
 
 	/**
@@ -25,6 +25,7 @@ import java.util.Map;
 import us.mn.state.dot.sonar.Namespace;
 import us.mn.state.dot.sonar.SonarException;
 import us.mn.state.dot.tms.Camera;
+import us.mn.state.dot.tms.CameraHelper;
 import us.mn.state.dot.tms.Controller;
 import us.mn.state.dot.tms.DeviceRequest;
 import us.mn.state.dot.tms.EncoderType;
@@ -118,6 +119,7 @@ public class CameraImpl extends DeviceImpl implements Camera {
 		publish = pb;
 		shift_schedule = ss;
 		initTransients();
+		CameraHelper.updateIndex(this);
 	}
 
 	/** Create a camera */
@@ -129,9 +131,17 @@ public class CameraImpl extends DeviceImpl implements Camera {
 			c), p, nt, e, ec, et, pb, ss);
 	}
 
+	/** Store an object */
+	@Override
+	public void doStore() throws TMSException {
+		super.doStore();
+		CameraHelper.updateIndex(this);
+	}
+
 	/** Destroy an object */
 	public void doDestroy() throws TMSException {
 		super.doDestroy();
+		CameraHelper.removeIndex(this);
 		geo_loc.notifyRemove();
 	}
 
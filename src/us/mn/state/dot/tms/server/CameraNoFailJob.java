@@ -16,7 +16,6 @@ package us.mn.state.dot.tms.server;
 
 import java.util.Calendar;
 import java.util.Iterator;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.tms.Camera;
 import us.mn.state.dot.tms.CameraHelper;
 
@@ -25,7 +24,7 @@ import us.mn.state.dot.tms.CameraHelper;
  *
  * @author Douglas Lau
  */
-public class CameraNoFailJob extends Job {
+public class CameraNoFailJob extends MonitoredJob {
 
 	/** Seconds to offset each poll from start of interval */
 	static private final int OFFSET_SECS = 10;
@@ -24,8 +24,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import us.mn.state.dot.sched.DebugLog;
-import us.mn.state.dot.sched.Job;
-import us.mn.state.dot.sched.Scheduler;
 import us.mn.state.dot.sched.TimeSteward;
 import us.mn.state.dot.tms.Camera;
 import us.mn.state.dot.tms.CameraHelper;
@@ -55,7 +53,7 @@ import static us.mn.state.dot.tms.SystemAttrEnum.CAMERA_SHIFT_SUNSET_OFFSET;
  * Used to move cameras to positions according to desired preset name
  * @author Jacob Barde
  */
-public class CameraShiftJob extends Job {
+public class CameraShiftJob extends MonitoredJob {
 
 	/** log for messages relating to this job */
 	static final public DebugLog log = new DebugLog("camerashiftjob");
@@ -100,7 +98,7 @@ public class CameraShiftJob extends Job {
 	static final private String WARN_TERMINATING = new StringBuilder("WARNING: Terminating job, as it has taken more than ").append(MAX_RUNTIME).append(" hours.").toString();
 
 	/** instance of the scheduler controlling this job */
-	private final Scheduler scheduler;
+	private final MonitoredScheduler scheduler;
 
 	/** a map to track what cameras were moved (or attempted to do so) */
 	private Map<Camera, Boolean> camMoved;
@@ -130,7 +128,7 @@ public class CameraShiftJob extends Job {
 	 * @param pan    preset to move cameras to. if null, will move to the last shift's preset
 	 * @param offset offset in millis
 	 */
-	public CameraShiftJob(Scheduler s, VideoServerCoupler vsc, PresetAliasName pan, int offset) {
+	public CameraShiftJob(MonitoredScheduler s, VideoServerCoupler vsc, PresetAliasName pan, int offset) {
 		this(s, vsc, pan, offset, null);
 	}
 
@@ -143,7 +141,7 @@ public class CameraShiftJob extends Job {
 	 * @param ctm    camera to move - this should only be used internally by this class. Specifically for cameras
 	 *               with shift_schedule's defined.
 	 */
-	private CameraShiftJob(Scheduler s, VideoServerCoupler vsc, PresetAliasName pan, int offset, Camera ctm) {
+	private CameraShiftJob(MonitoredScheduler s, VideoServerCoupler vsc, PresetAliasName pan, int offset, Camera ctm) {
 		super(convertToSubMinuteOffset((offset)));
 
 		scheduler = s;
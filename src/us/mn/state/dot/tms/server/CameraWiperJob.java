@@ -18,7 +18,6 @@ import java.util.Calendar;
 import java.util.Iterator;
 import java.util.HashSet;
 import java.util.Set;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.tms.Camera;
 import us.mn.state.dot.tms.CameraHelper;
 import us.mn.state.dot.tms.DeviceRequest;
@@ -34,7 +33,7 @@ import us.mn.state.dot.tms.units.Distance;
  *
  * @author Douglas Lau
  */
-public class CameraWiperJob extends Job {
+public class CameraWiperJob extends MonitoredJob {
 
 	/** Seconds to offset each poll from start of interval */
 	static private final int OFFSET_SECS = 22;
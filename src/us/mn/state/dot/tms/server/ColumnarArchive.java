@@ -0,0 +1,338 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import us.mn.state.dot.tms.units.Interval;
+import static us.mn.state.dot.tms.server.Constants.MISSING_DATA;
+
+/**
+ * Columnar daily traffic archive format.  All sample files for one day are
+ * stored in a single file, grouped into columns by file extension (sample
+ * type and period).  Within a column, each sensor has one compressed block.
+ *
+ * File layout:
+ *	magic ("IRISCOL1")
+ *	blocks (deflated)
+ *	index: column count, then for each column: extension, sample bytes
+ *	       (0 for raw files), then sensor count and for each sensor: id,
+ *	       block offset, block length
+ *	trailer: index offset, magic
+ *
+ * Each periodic sample block is encoded as byte planes of the samples, byte
+ * planes of deltas between samples, or runs of equal samples (with the
+ * value of each run stored as a zig-zag varint delta from the previous
+ * run), whichever compresses smallest.  Other files (such as vehicle logs)
+ * are stored as raw deflated blocks.
+ *
+ * @author Jacob Barde
+ */
+public class ColumnarArchive {
+
+	/** File extension of columnar archives */
+	static public final String EXTENSION = ".tcol";
+
+	/** Magic bytes at start and end of file */
+	static final byte[] MAGIC = "IRISCOL1".getBytes(
+		Charset.forName("US-ASCII"));
+
+	/** Size of trailer (index offset and magic) */
+	static final int TRAILER_BYTES = 8 + 8;
+
+	/** Get the sample type for a file extension.
+	 * @param ext File extension (without period), such as "v30".
+	 * @return Sample type, or null if not a periodic sample file. */
+	static PeriodicSampleType sampleType(String ext) {
+		int p = 0;
+		while (p < ext.length() && !Character.isDigit(ext.charAt(p)))
+			p++;
+		if (p == 0 || p == ext.length())
+			return null;
+		String base = ext.substring(0, p);
+		for (PeriodicSampleType t: PeriodicSampleType.values()) {
+			if (t.extension.equals(base))
+				return t;
+		}
+		return null;
+	}
+
+	/** Get the sample period for a file extension.
+	 * @param ext File extension (without period), such as "v30".
+	 * @return Sample period (seconds), or 0 if not valid. */
+	static int samplePeriod(String ext) {
+		int p = 0;
+		while (p < ext.length() && !Character.isDigit(ext.charAt(p)))
+			p++;
+		try {
+			int period = Integer.parseInt(ext.substring(p));
+			return (period > 0 && 86400 % period == 0) ? period : 0;
+		}
+		catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/** Get the number of samples per day for a file extension.
+	 * @param ext File extension (without period).
+	 * @return Samples per day, or 0 if not a periodic sample file. */
+	static int samplesPerDay(String ext) {
+		int period = samplePeriod(ext);
+		return (sampleType(ext) != null && period > 0)
+		      ? PeriodicSampleWriter.samplesPerDay(new Interval(period))
+		      : 0;
+	}
+
+	/** Get the sample bytes of a periodic sample file.
+	 * @param ext File extension (without period).
+	 * @param len Length of file (bytes).
+	 * @return Bytes per sample, or 0 if not a full day of samples. */
+	static int sampleBytes(String ext, int len) {
+		PeriodicSampleType t = sampleType(ext);
+		int n = samplesPerDay(ext);
+		return (n > 0 && len == n * t.sample_bytes)
+		      ? t.sample_bytes
+		      : 0;
+	}
+
+	/** Decode the samples in a periodic sample file */
+	static int[] decodeFile(byte[] data, int s_bytes) {
+		ByteBuffer buf = ByteBuffer.wrap(data);
+		int[] vals = new int[data.length / s_bytes];
+		for (int i = 0; i < vals.length; i++)
+			vals[i] = (s_bytes == 1) ? buf.get() : buf.getShort();
+		return vals;
+	}
+
+	/** Encode samples into the contents of a periodic sample file */
+	static byte[] encodeFile(int[] vals, int s_bytes) {
+		ByteBuffer buf = ByteBuffer.allocate(vals.length * s_bytes);
+		for (int v: vals) {
+			if (s_bytes == 1)
+				buf.put((byte) v);
+			else
+				buf.putShort((short) v);
+		}
+		return buf.array();
+	}
+
+	/** Write a zig-zag encoded varint */
+	static private void putVarint(ByteArrayOutputStream os, int v) {
+		int z = (v << 1) ^ (v >> 31);
+		while ((z & ~0x7F) != 0) {
+			os.write((z & 0x7F) | 0x80);
+			z >>>= 7;
+		}
+		os.write(z);
+	}
+
+	/** Read a zig-zag encoded varint */
+	static private int getVarint(ByteBuffer buf) {
+		int z = 0;
+		for (int shift = 0; ; shift += 7) {
+			int b = buf.get();
+			z |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				break;
+		}
+		return (z >>> 1) ^ -(z & 1);
+	}
+
+	/** Block encoding: samples in byte planes */
+	static private final int PLANES = 0;
+
+	/** Block encoding: deltas between samples in byte planes */
+	static private final int DELTA_PLANES = 1;
+
+	/** Block encoding: runs of samples, with delta varint values */
+	static private final int RUNS = 2;
+
+	/** Encode samples into a compressed block.  Each encoding is tried,
+	 * and the smallest result is kept.
+	 * @param vals Sample values.
+	 * @param s_bytes Bytes per sample.
+	 * @return Compressed block. */
+	static byte[] encodeBlock(int[] vals, int s_bytes) {
+		byte[] best = deflate(encodePlanes(vals, s_bytes, PLANES));
+		byte[] b = deflate(encodePlanes(vals, s_bytes, DELTA_PLANES));
+		if (b.length < best.length)
+			best = b;
+		b = deflate(encodeRuns(vals));
+		return (b.length < best.length) ? b : best;
+	}
+
+	/** Decode samples from a compressed block.
+	 * @param block Compressed block.
+	 * @param n_samples Number of samples.
+	 * @return Sample values. */
+	static int[] decodeBlock(byte[] block, int n_samples)
+		throws IOException
+	{
+		byte[] data = inflate(block);
+		if (data.length < 1)
+			throw new IOException("Empty block");
+		switch (data[0]) {
+		case PLANES:
+		case DELTA_PLANES:
+			return decodePlanes(data, n_samples);
+		case RUNS:
+			return decodeRuns(data, n_samples);
+		default:
+			throw new IOException("Invalid block encoding");
+		}
+	}
+
+	/** Encode samples (or deltas) into byte planes, most significant
+	 * plane first */
+	static private byte[] encodePlanes(int[] vals, int s_bytes, int enc) {
+		int n = vals.length;
+		byte[] data = new byte[2 + n * s_bytes];
+		data[0] = (byte) enc;
+		data[1] = (byte) s_bytes;
+		int prev = MISSING_DATA;
+		for (int i = 0; i < n; i++) {
+			int v = (enc == DELTA_PLANES)
+			      ? vals[i] - prev
+			      : vals[i];
+			prev = vals[i];
+			for (int p = 0; p < s_bytes; p++) {
+				int shift = 8 * (s_bytes - 1 - p);
+				data[2 + p * n + i] = (byte) (v >> shift);
+			}
+		}
+		return data;
+	}
+
+	/** Decode samples from byte planes */
+	static private int[] decodePlanes(byte[] data, int n)
+		throws IOException
+	{
+		int s_bytes = (data.length > 1) ? data[1] : 0;
+		if (s_bytes < 1 || data.length != 2 + n * s_bytes)
+			throw new IOException("Invalid block length");
+		int[] vals = new int[n];
+		int prev = MISSING_DATA;
+		for (int i = 0; i < n; i++) {
+			int v = data[2 + i];
+			for (int p = 1; p < s_bytes; p++)
+				v = (v << 8) | (data[2 + p * n + i] & 0xFF);
+			if (data[0] == DELTA_PLANES) {
+				v = signExtend(prev + v, s_bytes);
+				prev = v;
+			}
+			vals[i] = v;
+		}
+		return vals;
+	}
+
+	/** Sign extend a value to the width of a sample */
+	static private int signExtend(int v, int s_bytes) {
+		int shift = 32 - 8 * s_bytes;
+		return (v << shift) >> shift;
+	}
+
+	/** Encode runs of samples */
+	static private byte[] encodeRuns(int[] vals) {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		os.write(RUNS);
+		int prev = MISSING_DATA;
+		int i = 0;
+		while (i < vals.length) {
+			int v = vals[i];
+			int j = i + 1;
+			while (j < vals.length && vals[j] == v)
+				j++;
+			putVarint(os, j - i);
+			putVarint(os, v - prev);
+			prev = v;
+			i = j;
+		}
+		return os.toByteArray();
+	}
+
+	/** Decode runs of samples */
+	static private int[] decodeRuns(byte[] data, int n_samples)
+		throws IOException
+	{
+		ByteBuffer buf = ByteBuffer.wrap(data, 1, data.length - 1);
+		int[] vals = new int[n_samples];
+		int prev = MISSING_DATA;
+		int i = 0;
+		while (buf.hasRemaining()) {
+			int run = getVarint(buf);
+			prev += getVarint(buf);
+			if (run < 1 || run > n_samples - i)
+				throw new IOException("Invalid run length");
+			Arrays.fill(vals, i, i + run, prev);
+			i += run;
+		}
+		if (i < n_samples)
+			Arrays.fill(vals, i, n_samples, MISSING_DATA);
+		return vals;
+	}
+
+	/** Compress a block */
+	static byte[] deflate(byte[] data) {
+		Deflater d = new Deflater();
+		try {
+			d.setInput(data);
+			d.finish();
+			ByteArrayOutputStream os = new ByteArrayOutputStream(
+				data.length / 4 + 64);
+			byte[] buf = new byte[8192];
+			while (!d.finished()) {
+				int n = d.deflate(buf);
+				os.write(buf, 0, n);
+			}
+			return os.toByteArray();
+		}
+		finally {
+			d.end();
+		}
+	}
+
+	/** Decompress a block */
+	static byte[] inflate(byte[] data) throws IOException {
+		Inflater inf = new Inflater();
+		try {
+			inf.setInput(data);
+			ByteArrayOutputStream os = new ByteArrayOutputStream(
+				data.length * 4);
+			byte[] buf = new byte[8192];
+			while (!inf.finished()) {
+				int n = inf.inflate(buf);
+				if (n == 0 && inf.needsInput())
+					throw new IOException("Truncated");
+				os.write(buf, 0, n);
+			}
+			return os.toByteArray();
+		}
+		catch (DataFormatException e) {
+			throw new IOException(e);
+		}
+		finally {
+			inf.end();
+		}
+	}
+
+	/** Don't allow instantiation */
+	private ColumnarArchive() { }
+}
@@ -0,0 +1,248 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import us.mn.state.dot.sched.TimeSteward;
+import static us.mn.state.dot.tms.server.Constants.MISSING_DATA;
+
+/**
+ * Random-access reader for columnar daily traffic archives.  Only the index
+ * is read when an archive is opened; each block is read and decoded when
+ * requested.
+ *
+ * @author Jacob Barde
+ */
+public class ColumnarArchiveReader {
+
+	/** Location of one block in an archive */
+	static private class Block {
+		private final long offset;
+		private final int length;
+		private Block(long o, int l) {
+			offset = o;
+			length = l;
+		}
+	}
+
+	/** Get the archive file for a date stamp.
+	 * @param arc Sample archive directory.
+	 * @param stamp Time stamp.
+	 * @return Columnar archive file for the day. */
+	static public File archiveFile(File arc, long stamp) {
+		String d = TimeSteward.dateShortString(stamp);
+		return new File(new File(arc, d.substring(0, 4)),
+			d + ColumnarArchive.EXTENSION);
+	}
+
+	/** Read periodic samples for a sensor over a time range, which may
+	 * span several days.  Samples from days without an archive (or
+	 * without data for the sensor) are MISSING_DATA.
+	 * @param arc Sample archive directory.
+	 * @param sensor_id Sensor ID.
+	 * @param ext File extension (without period), such as "v30".
+	 * @param start Start time stamp (inclusive).
+	 * @param end End time stamp (exclusive).
+	 * @return Array of sample values. */
+	static public int[] readRange(File arc, String sensor_id, String ext,
+		long start, long end) throws IOException
+	{
+		int period = ColumnarArchive.samplePeriod(ext);
+		if (period <= 0 || end <= start)
+			return new int[0];
+		int per_ms = period * 1000;
+		int[] vals = new int[(int) ((end - start + per_ms - 1) /
+			per_ms)];
+		int i = 0;
+		while (i < vals.length) {
+			long stamp = start + (long) i * per_ms;
+			int first = TimeSteward.secondOfDayInt(stamp) / period;
+			int n = Math.min(vals.length - i,
+				ColumnarArchive.samplesPerDay(ext) - first);
+			int[] day = readDay(archiveFile(arc, stamp),
+				sensor_id, ext, first, n);
+			System.arraycopy(day, 0, vals, i, n);
+			i += n;
+		}
+		return vals;
+	}
+
+	/** Read samples from one day archive, if it exists */
+	static private int[] readDay(File f, String sensor_id, String ext,
+		int first, int n) throws IOException
+	{
+		if (f.isFile()) {
+			ColumnarArchiveReader r = new ColumnarArchiveReader(f);
+			try {
+				int[] vals = r.readSamples(sensor_id, ext,
+					first, n);
+				if (vals != null)
+					return vals;
+			}
+			finally {
+				r.close();
+			}
+		}
+		int[] vals = new int[n];
+		Arrays.fill(vals, MISSING_DATA);
+		return vals;
+	}
+
+	/** Archive file */
+	private final RandomAccessFile file;
+
+	/** Periodic sample blocks, by file name */
+	private final HashMap<String, Block> periodic =
+		new HashMap<String, Block>();
+
+	/** Sample bytes of periodic columns, by extension */
+	private final HashMap<String, Integer> sample_bytes =
+		new HashMap<String, Integer>();
+
+	/** Raw file blocks, by file name */
+	private final HashMap<String, Block> raw = new HashMap<String, Block>();
+
+	/** All file names, in archive order */
+	private final ArrayList<String> names = new ArrayList<String>();
+
+	/** Open a columnar archive.
+	 * @param f Archive file. */
+	public ColumnarArchiveReader(File f) throws IOException {
+		file = new RandomAccessFile(f, "r");
+		try {
+			readIndex();
+		}
+		catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/** Read the archive index */
+	private void readIndex() throws IOException {
+		long len = file.length();
+		byte[] magic = new byte[ColumnarArchive.MAGIC.length];
+		if (len < magic.length + ColumnarArchive.TRAILER_BYTES)
+			throw new IOException("Invalid archive");
+		file.seek(len - ColumnarArchive.TRAILER_BYTES);
+		long index = file.readLong();
+		file.readFully(magic);
+		if (!Arrays.equals(magic, ColumnarArchive.MAGIC) ||
+		    index < ColumnarArchive.MAGIC.length ||
+		    index > len - ColumnarArchive.TRAILER_BYTES)
+			throw new IOException("Invalid archive");
+		byte[] idx = new byte[(int) (len - ColumnarArchive
+			.TRAILER_BYTES - index)];
+		file.seek(index);
+		file.readFully(idx);
+		DataInputStream is = new DataInputStream(
+			new ByteArrayInputStream(idx));
+		int n_cols = is.readInt();
+		for (int c = 0; c < n_cols; c++) {
+			String ext = is.readUTF();
+			int s_bytes = is.readByte();
+			if (s_bytes > 0)
+				sample_bytes.put(ext, s_bytes);
+			HashMap<String, Block> blocks = (s_bytes > 0)
+			                               ? periodic
+			                               : raw;
+			int n_blocks = is.readInt();
+			for (int b = 0; b < n_blocks; b++) {
+				String name = is.readUTF() + '.' + ext;
+				long off = is.readLong();
+				int length = is.readInt();
+				blocks.put(name, new Block(off, length));
+				names.add(name);
+			}
+		}
+	}
+
+	/** Close the archive */
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/** Get a list of all sample file names in the archive */
+	public List<String> listFiles() {
+		return new ArrayList<String>(names);
+	}
+
+	/** Read a compressed block from the archive */
+	private byte[] readBlock(Block b) throws IOException {
+		byte[] data = new byte[b.length];
+		synchronized (file) {
+			file.seek(b.offset);
+			file.readFully(data);
+		}
+		return data;
+	}
+
+	/** Read all samples for one sensor.
+	 * @param sensor_id Sensor ID.
+	 * @param ext File extension (without period), such as "v30".
+	 * @return Sample values for the day, or null if not archived. */
+	public int[] readSamples(String sensor_id, String ext)
+		throws IOException
+	{
+		Block b = periodic.get(sensor_id + '.' + ext);
+		if (b != null) {
+			return ColumnarArchive.decodeBlock(readBlock(b),
+				ColumnarArchive.samplesPerDay(ext));
+		} else
+			return null;
+	}
+
+	/** Read a range of samples for one sensor.
+	 * @param sensor_id Sensor ID.
+	 * @param ext File extension (without period), such as "v30".
+	 * @param first Index of first sample (0 is midnight).
+	 * @param n Number of samples.
+	 * @return Sample values, or null if not archived. */
+	public int[] readSamples(String sensor_id, String ext, int first,
+		int n) throws IOException
+	{
+		int[] vals = readSamples(sensor_id, ext);
+		return (vals != null)
+		      ? Arrays.copyOfRange(vals, first, first + n)
+		      : null;
+	}
+
+	/** Read the original contents of a sample file.
+	 * @param name Sample file name, such as "100.v30".
+	 * @return File contents, or null if not archived. */
+	public byte[] readFile(String name) throws IOException {
+		Block b = raw.get(name);
+		if (b != null)
+			return ColumnarArchive.inflate(readBlock(b));
+		int p = name.lastIndexOf('.');
+		if (p > 0) {
+			String ext = name.substring(p + 1);
+			int[] vals = readSamples(name.substring(0, p), ext);
+			if (vals != null) {
+				return ColumnarArchive.encodeFile(vals,
+					sample_bytes.get(ext));
+			}
+		}
+		return null;
+	}
+}
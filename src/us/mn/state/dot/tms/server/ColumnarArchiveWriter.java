@@ -0,0 +1,166 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.TreeMap;
+
+/**
+ * Writer for columnar daily traffic archives.
+ *
+ * @author Jacob Barde
+ */
+public class ColumnarArchiveWriter {
+
+	/** One block of an archive column */
+	static private class Block {
+		private final String sensor_id;
+		private final long offset;
+		private final int length;
+		private Block(String s, long o, int l) {
+			sensor_id = s;
+			offset = o;
+			length = l;
+		}
+	}
+
+	/** One column of an archive */
+	static private class Column {
+		private final String ext;
+		private final int sample_bytes;
+		private final ArrayList<String> sensors =
+			new ArrayList<String>();
+		private final ArrayList<Block> blocks = new ArrayList<Block>();
+		private Column(String e, int sb) {
+			ext = e;
+			sample_bytes = sb;
+		}
+	}
+
+	/** Get the sensor ID of a sample file name */
+	static private String sensorId(String name) {
+		int p = name.lastIndexOf('.');
+		return (p > 0) ? name.substring(0, p) : name;
+	}
+
+	/** Get the extension of a sample file name (without period) */
+	static private String extension(String name) {
+		int p = name.lastIndexOf('.');
+		return (p > 0) ? name.substring(p + 1) : "";
+	}
+
+	/** Get the column key for an extension */
+	static private String columnKey(String ext, int s_bytes) {
+		return (s_bytes > 0) ? ext : ext + "/raw";
+	}
+
+	/** Columns of archive, by key */
+	private final TreeMap<String, Column> columns =
+		new TreeMap<String, Column>();
+
+	/** Day directory containing sample files */
+	private final File day;
+
+	/** Create a new columnar archive writer.
+	 * @param d Day directory containing sample files. */
+	public ColumnarArchiveWriter(File d) {
+		day = d;
+	}
+
+	/** Write an archive file.
+	 * @param names Sample file names (in day directory).
+	 * @param arc Archive file to create. */
+	public void write(String[] names, File arc) throws IOException {
+		String[] sorted = names.clone();
+		Arrays.sort(sorted);
+		for (String name: sorted)
+			addFile(name);
+		DataOutputStream os = new DataOutputStream(
+			new BufferedOutputStream(new FileOutputStream(arc),
+			65536));
+		try {
+			os.write(ColumnarArchive.MAGIC);
+			for (Column c: columns.values())
+				writeBlocks(os, c);
+			long index = os.size();
+			writeIndex(os);
+			os.writeLong(index);
+			os.write(ColumnarArchive.MAGIC);
+		}
+		finally {
+			os.close();
+		}
+	}
+
+	/** Add one sample file to a column */
+	private void addFile(String name) {
+		String ext = extension(name);
+		int s_bytes = ColumnarArchive.sampleBytes(ext,
+			(int) new File(day, name).length());
+		String key = columnKey(ext, s_bytes);
+		Column c = columns.get(key);
+		if (c == null) {
+			c = new Column(ext, s_bytes);
+			columns.put(key, c);
+		}
+		c.sensors.add(sensorId(name));
+	}
+
+	/** Write all blocks of one column */
+	private void writeBlocks(DataOutputStream os, Column c)
+		throws IOException
+	{
+		for (String sensor_id: c.sensors) {
+			File f = new File(day, sensor_id + '.' + c.ext);
+			byte[] data = Files.readAllBytes(f.toPath());
+			byte[] block;
+			if (c.sample_bytes > 0) {
+				if (ColumnarArchive.sampleBytes(c.ext,
+				    data.length) != c.sample_bytes)
+					throw new IOException("Changed: " + f);
+				int[] vals = ColumnarArchive.decodeFile(data,
+					c.sample_bytes);
+				block = ColumnarArchive.encodeBlock(vals,
+					c.sample_bytes);
+			} else
+				block = ColumnarArchive.deflate(data);
+			c.blocks.add(new Block(sensor_id, os.size(),
+				block.length));
+			os.write(block);
+		}
+	}
+
+	/** Write the column index */
+	private void writeIndex(DataOutputStream os) throws IOException {
+		os.writeInt(columns.size());
+		for (Column c: columns.values()) {
+			os.writeUTF(c.ext);
+			os.writeByte(c.sample_bytes);
+			os.writeInt(c.blocks.size());
+			for (Block b: c.blocks) {
+				os.writeUTF(b.sensor_id);
+				os.writeLong(b.offset);
+				os.writeInt(b.length);
+			}
+		}
+	}
+}
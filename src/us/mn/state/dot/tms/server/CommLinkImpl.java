@@ -23,8 +23,6 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.TreeMap;
-import us.mn.state.dot.sched.Job;
-import us.mn.state.dot.sched.Scheduler;
 import us.mn.state.dot.tms.ChangeVetoException;
 import us.mn.state.dot.tms.CommLink;
 import us.mn.state.dot.tms.CommProtocol;
@@ -49,7 +47,8 @@ import us.mn.state.dot.tms.units.Interval;
 public class CommLinkImpl extends BaseObjectImpl implements CommLink {
 
 	/** Poller scheduler for repeating jobs */
-	static private final Scheduler POLLER = new Scheduler("poller");
+	static private final MonitoredScheduler POLLER =
+		new MonitoredScheduler("poller");
 
 	/** Test if a comm protocol supports gate arm control */
 	static private boolean isGateArm(CommProtocol cp) {
@@ -147,7 +146,7 @@ public class CommLinkImpl extends BaseObjectImpl implements CommLink {
 	}
 
 	/** Job for polling a comm link */
-	private class PollJob extends Job {
+	private class PollJob extends MonitoredJob {
 		private PollJob(int s) {
 			super(Calendar.SECOND, s);
 		}
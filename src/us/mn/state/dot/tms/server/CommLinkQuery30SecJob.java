@@ -16,7 +16,6 @@ package us.mn.state.dot.tms.server;
 
 import java.util.Calendar;
 import java.util.Iterator;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.sched.Scheduler;
 import us.mn.state.dot.tms.CommLink;
 import us.mn.state.dot.tms.CommLinkHelper;
@@ -30,7 +29,7 @@ import us.mn.state.dot.tms.server.comm.SamplePoller;
  * @author Michael Darter
  * @author Travis Swanston
  */
-public class CommLinkQuery30SecJob extends Job {
+public class CommLinkQuery30SecJob extends MonitoredJob {
 
 	/** Seconds to offset each poll from start of interval */
 	static protected final int OFFSET_SECS = 20;
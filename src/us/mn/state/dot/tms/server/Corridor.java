@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2007-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -25,6 +26,8 @@ import us.mn.state.dot.tms.Direction;
 import us.mn.state.dot.tms.GeoLoc;
 import us.mn.state.dot.tms.GeoLocHelper;
 import us.mn.state.dot.tms.R_NodeHelper;
+import us.mn.state.dot.tms.geo.SpatialIndex;
+import us.mn.state.dot.tms.geo.SphericalMercatorPosition;
 
 /**
  * A corridor is a collection of all R_Node objects for one roadway corridor.
@@ -33,6 +36,9 @@ import us.mn.state.dot.tms.R_NodeHelper;
  */
 public class Corridor extends CorridorBase<R_NodeImpl> {
 
+	/** Segment travel time table */
+	private CorridorTravelTimes travel_times;
+
 	/** Create a new corridor */
 	public Corridor(GeoLoc loc) {
 		super(loc);
@@ -60,6 +66,19 @@ public class Corridor extends CorridorBase<R_NodeImpl> {
 		}
 	}
 
+	/** Add all node segments of the corridor to a spatial index */
+	public void indexSegments(SpatialIndex<Corridor> idx) {
+		SphericalMercatorPosition pp = null;
+		for (R_NodeImpl n: this) {
+			SphericalMercatorPosition p = GeoLocHelper.getPosition(
+				n.getGeoLoc());
+			if (p != null) {
+				idx.add(this, (pp != null) ? pp : p, p);
+				pp = p;
+			}
+		}
+	}
+
 	/** Interface to find a node on the corridor */
 	static public interface NodeFinder {
 		public boolean check(R_NodeImpl r_node);
@@ -93,6 +112,25 @@ public class Corridor extends CorridorBase<R_NodeImpl> {
 		return null;
 	}
 
+	/** Get the segment travel time table for the current sample
+	 * period.  The table is created once per period, and shared by all
+	 * trips on the corridor. */
+	public synchronized CorridorTravelTimes getTravelTimes() {
+		int p = StationManager.getPeriod();
+		CorridorTravelTimes tt = travel_times;
+		if (tt == null || tt.period != p) {
+			tt = CorridorTravelTimes.create(this, p);
+			travel_times = tt;
+		}
+		return tt;
+	}
+
+	/** Put the mile points of all nodes into a map */
+	public void putMilePoints(Map<R_NodeImpl, Float> miles) {
+		for (Map.Entry<Float, R_NodeImpl> e: n_points.entrySet())
+			miles.put(e.getValue(), e.getKey());
+	}
+
 	/** Create a mapping from mile points to stations */
 	public TreeMap<Float, StationImpl> createStationMap() {
 		final TreeMap<Float, StationImpl> stations =
@@ -0,0 +1,236 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import us.mn.state.dot.tms.GeoLoc;
+import us.mn.state.dot.tms.GeoLocHelper;
+import us.mn.state.dot.tms.units.Distance;
+
+/**
+ * A corridor graph connects corridors at interchanges.  Each vertex is a
+ * location where a route may enter a corridor (an origin or an entrance
+ * linked from another corridor).  Each branch from a vertex leads to an
+ * exit node downstream on the same corridor, and then to the linked
+ * entrance on the next corridor.  A new graph is created whenever corridors
+ * change, reusing vertices on corridors which did not change.
+ *
+ * @author Jacob Barde
+ */
+public class CorridorGraph {
+
+	/** Maximum distance from origin to a corridor node (in meters) */
+	static private final float MAX_ORIGIN_M = 1000;
+
+	/** Maximum number of R_Nodes to follow on a corridor */
+	static private final int MAX_R_NODE_LIMIT = 100;
+
+	/** A branch from one corridor to another */
+	static public class Branch {
+
+		/** Node to leave the corridor */
+		public final R_NodeImpl exit;
+
+		/** Location to enter the next corridor */
+		public final GeoLoc entrance;
+
+		/** Distance from vertex location to exit node (miles) */
+		public final float miles;
+
+		/** Turn penalty flag */
+		public final boolean turn;
+
+		/** Create a new branch */
+		private Branch(R_NodeImpl x, GeoLoc e, float m, boolean t) {
+			exit = x;
+			entrance = e;
+			miles = m;
+			turn = t;
+		}
+	}
+
+	/** A vertex where a route may enter a corridor */
+	static public class Vertex {
+
+		/** Location of vertex */
+		public final GeoLoc loc;
+
+		/** Corridor of vertex (null if not found) */
+		public final Corridor corridor;
+
+		/** Branches to other corridors, in downstream order */
+		public final List<Branch> branches;
+
+		/** Reason branches could not be found (null if none) */
+		public final String error;
+
+		/** Create a new vertex */
+		private Vertex(GeoLoc l, Corridor c, List<Branch> b, String e) {
+			loc = l;
+			corridor = c;
+			branches = b;
+			error = e;
+		}
+	}
+
+	/** Corridors by name */
+	private final Map<String, Corridor> corridors;
+
+	/** Mile points of all corridor nodes */
+	private final IdentityHashMap<R_NodeImpl, Float> miles =
+		new IdentityHashMap<R_NodeImpl, Float>();
+
+	/** Vertices for all linked entrances */
+	private final HashMap<GeoLoc, Vertex> vertices =
+		new HashMap<GeoLoc, Vertex>();
+
+	/** Create a corridor graph.
+	 * @param cors All corridors by name (with nodes arranged). */
+	public CorridorGraph(Map<String, Corridor> cors) {
+		this(cors, null, null);
+	}
+
+	/** Create a corridor graph from a previous graph.
+	 * @param cors All corridors by name (with nodes arranged).
+	 * @param prev Previous graph (null to create all vertices).
+	 * @param changed Names of corridors changed since previous graph. */
+	public CorridorGraph(Map<String, Corridor> cors, CorridorGraph prev,
+		Set<String> changed)
+	{
+		corridors = cors;
+		for (Corridor c: cors.values())
+			c.putMilePoints(miles);
+		for (R_NodeImpl r_node: miles.keySet()) {
+			if (!r_node.isCorridorType())
+				continue;
+			for (R_NodeImpl n: r_node.getDownstream()) {
+				GeoLoc loc = n.getGeoLoc();
+				if (!GeoLocHelper.isSameCorridor(loc,
+				    r_node.getGeoLoc()) &&
+				    !vertices.containsKey(loc))
+				{
+					Vertex v = (prev != null)
+					     ? prev.reuseVertex(loc, changed)
+					     : null;
+					vertices.put(loc, (v != null)
+						? v : createVertex(loc));
+				}
+			}
+		}
+	}
+
+	/** Get a vertex which can be reused in a new graph.
+	 * @param loc Location of vertex.
+	 * @param changed Names of changed corridors.
+	 * @return Vertex, or null if it must be created again. */
+	private Vertex reuseVertex(GeoLoc loc, Set<String> changed) {
+		Vertex v = vertices.get(loc);
+		if (v != null && v.corridor != null &&
+		    !changed.contains(v.corridor.getName()))
+			return v;
+		else
+			return null;
+	}
+
+	/** Get the number of entrance vertices */
+	public int size() {
+		return vertices.size();
+	}
+
+	/** Get the vertex for a location.
+	 * @param loc Location to enter a corridor.
+	 * @return Vertex at location. */
+	public Vertex getVertex(GeoLoc loc) {
+		Vertex v = vertices.get(loc);
+		return (v != null) ? v : createVertex(loc);
+	}
+
+	/** Create a vertex for a location */
+	private Vertex createVertex(GeoLoc loc) {
+		String cid = GeoLocHelper.getCorridorName(loc);
+		Corridor c = (cid != null) ? corridors.get(cid) : null;
+		if (c == null) {
+			return new Vertex(loc, null,
+				Collections.<Branch>emptyList(), null);
+		}
+		ArrayList<Branch> branches = new ArrayList<Branch>();
+		String error = null;
+		try {
+			findBranches(c, loc, branches);
+		}
+		catch (BadRouteException e) {
+			error = e.getMessage();
+		}
+		return new Vertex(loc, c, branches, error);
+	}
+
+	/** Find all branches downstream of a location on a corridor.
+	 * @param c Corridor.
+	 * @param origin Location on corridor.
+	 * @param branches List to add branches.
+	 * @throws BadRouteException if corridor cannot be searched. */
+	private void findBranches(Corridor c, GeoLoc origin,
+		List<Branch> branches) throws BadRouteException
+	{
+		R_NodeImpl r_node = c.findDownstreamNode(origin);
+		Distance m = Corridor.nodeDistance(r_node, origin);
+		if (m == null || m.m() > MAX_ORIGIN_M) {
+			throw new BadRouteException("ORIGIN OFF MAINLINE: " +
+				GeoLocHelper.getDescription(origin));
+		}
+		Float mo = c.calculateMilePoint(origin);
+		if (mo == null)
+			throw new BadRouteException("No nodes on corridor");
+		for (int i = 0; r_node != null && i < MAX_R_NODE_LIMIT; i++) {
+			Float mn = miles.get(r_node);
+			if (mn == null)
+				break;
+			r_node = findNextNode(r_node, mn - mo, origin,
+				branches);
+		}
+	}
+
+	/** Find the next node on the corridor, adding branches.
+	 * @param r_node Roadway node.
+	 * @param dist Distance from origin to node (miles).
+	 * @param origin Location on corridor.
+	 * @param branches List to add branches.
+	 * @return Next roadway node on corridor. */
+	private R_NodeImpl findNextNode(R_NodeImpl r_node, float dist,
+		GeoLoc origin, List<Branch> branches)
+	{
+		R_NodeImpl next = null;
+		if (!r_node.isCorridorType())
+			return next;
+		for (R_NodeImpl n: r_node.getDownstream()) {
+			GeoLoc down = n.getGeoLoc();
+			if (GeoLocHelper.isSameCorridor(down, origin))
+				next = n;
+			else {
+				boolean turn = r_node.hasTurnPenalty()
+					&& n.hasTurnPenalty();
+				branches.add(new Branch(r_node, down, dist,
+					turn));
+			}
+		}
+		return next;
+	}
+}
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2007-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -16,22 +17,29 @@ package us.mn.state.dot.tms.server;
 
 import java.io.IOException;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import us.mn.state.dot.tms.GeoLoc;
 import us.mn.state.dot.tms.GeoLocHelper;
 import us.mn.state.dot.tms.LaneType;
 import us.mn.state.dot.tms.R_Node;
 import us.mn.state.dot.tms.R_NodeHelper;
+import us.mn.state.dot.tms.geo.SpatialIndex;
 import us.mn.state.dot.tms.geo.SphericalMercatorPosition;
 import us.mn.state.dot.tms.units.Distance;
+import static us.mn.state.dot.tms.server.MainServer.FLUSH;
 import static us.mn.state.dot.tms.units.Distance.Units.MILES;
 
 /**
- * This is a class to manage roadway network corridors.
+ * This is a class to manage roadway network corridors.  Corridors are
+ * published as immutable snapshots, so lookups never wait for a rebuild.
  *
  * @author Douglas Lau
  */
@@ -40,39 +48,282 @@ public class CorridorManager {
 	/** Maximum distance to snap */
 	static private final Distance MAX_DIST = new Distance(1, MILES);
 
-	/** Map to hold all corridors */
-	protected final Map<String, Corridor> corridors =
-		new TreeMap<String, Corridor>();
+	/** Size of spatial index cells (meters) */
+	static private final double CELL_M = 2000;
+
+	/** Delay before updating corridors after an r_node change (ms).
+	 * One edit changes several attributes, so the changes are merged
+	 * into one update. */
+	static private final int UPDATE_DELAY_MS = 500;
+
+	/** Snapshot of all corridors.  A snapshot is never modified after it
+	 * is published, so readers do not need to lock the manager. */
+	static private class Snapshot {
+
+		/** Corridors by name */
+		private final Map<String, Corridor> corridors;
+
+		/** Spatial index of corridors, by node segments */
+		private final SpatialIndex<Corridor> segments =
+			new SpatialIndex<Corridor>(CELL_M);
+
+		/** Graph of corridor interchanges */
+		private final CorridorGraph graph;
+
+		/** Create a new snapshot.
+		 * @param cors Corridors by name (with nodes arranged).
+		 * @param prev Previous snapshot (null for full build).
+		 * @param changed Names of corridors changed since the
+		 *                previous snapshot. */
+		private Snapshot(Map<String, Corridor> cors, Snapshot prev,
+			Set<String> changed)
+		{
+			corridors = cors;
+			for (Corridor c: cors.values())
+				c.indexSegments(segments);
+			graph = (prev != null)
+			      ? new CorridorGraph(cors, prev.graph, changed)
+			      : new CorridorGraph(cors);
+		}
+	}
+
+	/** Current corridor snapshot */
+	private volatile Snapshot snapshot = new Snapshot(
+		new TreeMap<String, Corridor>(), null, null);
+
+	/** Corridor name of each r_node (guarded by manager lock) */
+	private final IdentityHashMap<R_NodeImpl, String> node_corridors =
+		new IdentityHashMap<R_NodeImpl, String>();
+
+	/** Serial number of routes, incremented whenever corridors or
+	 * detectors change.  Cached routes are stale if it differs. */
+	private final AtomicInteger route_serial = new AtomicInteger();
+
+	/** Get the current route serial number */
+	public int getRouteSerial() {
+		return route_serial.get();
+	}
+
+	/** Invalidate all cached routes */
+	public void invalidateRoutes() {
+		route_serial.incrementAndGet();
+	}
+
+	/** Spatial index of entrance and access nodes */
+	private final SpatialIndex<R_NodeImpl> ramps =
+		new SpatialIndex<R_NodeImpl>(CELL_M);
+
+	/** R_nodes changed since corridors were updated, mapped to a flag
+	 * indicating the r_node was destroyed (guarded by manager lock) */
+	private final IdentityHashMap<R_NodeImpl, Boolean> changed_nodes =
+		new IdentityHashMap<R_NodeImpl, Boolean>();
+
+	/** Flag indicating an update job is scheduled (guarded by manager
+	 * lock) */
+	private boolean update_scheduled = false;
 
 	/** Create all corridors from the existing r_nodes */
 	public synchronized void createCorridors() {
-		corridors.clear();
+		TreeMap<String, Corridor> cors =
+			new TreeMap<String, Corridor>();
+		ArrayList<R_NodeImpl> nodes = new ArrayList<R_NodeImpl>();
+		changed_nodes.clear();
+		node_corridors.clear();
+		indexRamps();
 		Iterator<R_Node> it = R_NodeHelper.iterator();
 		while (it.hasNext()) {
 			R_Node r_node = it.next();
 			if (r_node instanceof R_NodeImpl) {
 				R_NodeImpl n = (R_NodeImpl) r_node;
 				findDownstreamLinks(n);
-				addCorridorNode(n);
+				addCorridorNode(cors, n);
+				nodes.add(n);
 			}
 		}
-		for (Corridor c: corridors.values())
+		for (Corridor c: cors.values())
 			c.arrangeNodes();
+		for (R_NodeImpl n: nodes)
+			n.publishDownstream();
+		snapshot = new Snapshot(cors, null, null);
+		invalidateRoutes();
+	}
+
+	/** Update corridors after an r_node is created or changed.  The
+	 * update is done by a job on the FLUSH thread, so that several
+	 * changes to an r_node cause only one update.
+	 * @param n Roadway node which was created or changed. */
+	public synchronized void updateNode(R_NodeImpl n) {
+		scheduleUpdate(n, false);
+	}
+
+	/** Update corridors after an r_node is destroyed.
+	 * @param n Roadway node which was destroyed. */
+	public synchronized void removeNode(R_NodeImpl n) {
+		scheduleUpdate(n, true);
+	}
+
+	/** Schedule an update for a changed r_node.
+	 * @param n Roadway node which changed.
+	 * @param removed True if the r_node was destroyed. */
+	private void scheduleUpdate(R_NodeImpl n, boolean removed) {
+		changed_nodes.put(n, removed);
+		if (!update_scheduled) {
+			update_scheduled = true;
+			MonitoredJob job = new MonitoredJob(UPDATE_DELAY_MS) {
+				public void perform() {
+					updateCorridors();
+				}
+				@Override
+				public boolean isRejectable() {
+					return false;
+				}
+			};
+			FLUSH.addJob(job);
+		}
+	}
+
+	/** Update corridors for all r_nodes changed since the last update.
+	 * Only the corridors containing the r_nodes (before and after the
+	 * changes) are rebuilt, along with corridors with ramps linked to
+	 * them. */
+	public synchronized void updateCorridors() {
+		update_scheduled = false;
+		if (changed_nodes.isEmpty())
+			return;
+		IdentityHashMap<R_NodeImpl, Boolean> cn =
+			new IdentityHashMap<R_NodeImpl, Boolean>(changed_nodes);
+		changed_nodes.clear();
+		for (Map.Entry<R_NodeImpl, Boolean> e: cn.entrySet()) {
+			R_NodeImpl n = e.getKey();
+			if (e.getValue())
+				ramps.remove(n);
+			else
+				updateRamp(n);
+		}
+		rebuildCorridors(cn);
+	}
+
+	/** Update the ramp index entry for one r_node */
+	private void updateRamp(R_NodeImpl n) {
+		if (isRamp(n)) {
+			ramps.put(n, GeoLocHelper.getPosition(
+				n.getGeoLoc()));
+		} else
+			ramps.remove(n);
+	}
+
+	/** Rebuild all corridors affected by changes to r_nodes.  Downstream
+	 * links are built for all r_nodes in those corridors, then published
+	 * for each r_node in one step.
+	 * @param cn Changed r_nodes, mapped to destroyed flag. */
+	private void rebuildCorridors(Map<R_NodeImpl, Boolean> cn) {
+		Snapshot snap = snapshot;
+		HashSet<String> changed = new HashSet<String>();
+		for (Map.Entry<R_NodeImpl, Boolean> e: cn.entrySet()) {
+			R_NodeImpl n = e.getKey();
+			String ocid = node_corridors.remove(n);
+			if (ocid != null)
+				changed.add(ocid);
+			String cid = e.getValue() ? null
+			           : R_NodeHelper.getCorridorName(n);
+			if (cid != null) {
+				changed.add(cid);
+				node_corridors.put(n, cid);
+			}
+		}
+		// Ramps elsewhere which link (or should link) to the r_nodes
+		Iterator<R_Node> it = R_NodeHelper.iterator();
+		while (it.hasNext()) {
+			R_Node r_node = it.next();
+			if (r_node instanceof R_NodeImpl &&
+			    !cn.containsKey(r_node))
+			{
+				R_NodeImpl x = (R_NodeImpl) r_node;
+				String xid = node_corridors.get(x);
+				if (xid != null && !changed.contains(xid) &&
+				    isRampLink(x, cn.keySet()))
+					changed.add(xid);
+			}
+		}
+		TreeMap<String, Corridor> cors =
+			new TreeMap<String, Corridor>(snap.corridors);
+		ArrayList<R_NodeImpl> nodes = new ArrayList<R_NodeImpl>();
+		for (String c: changed) {
+			Corridor oc = cors.remove(c);
+			if (oc != null) {
+				for (R_NodeImpl r: oc) {
+					if (!cn.containsKey(r))
+						nodes.add(r);
+				}
+			}
+		}
+		for (Map.Entry<R_NodeImpl, Boolean> e: cn.entrySet()) {
+			if (!e.getValue())
+				nodes.add(e.getKey());
+		}
+		for (R_NodeImpl r: nodes) {
+			findDownstreamLinks(r);
+			String cid = node_corridors.get(r);
+			if (cid != null)
+				addCorridorNode(cors, cid, r);
+		}
+		for (String c: changed) {
+			Corridor nc = cors.get(c);
+			if (nc != null)
+				nc.arrangeNodes();
+		}
+		for (R_NodeImpl r: nodes)
+			r.publishDownstream();
+		snapshot = new Snapshot(cors, snap, changed);
+		invalidateRoutes();
+	}
+
+	/** Check if a ramp node is (or could be) linked to any changed
+	 * r_node */
+	static private boolean isRampLink(R_NodeImpl x, Set<R_NodeImpl> cn) {
+		for (R_NodeImpl n: cn) {
+			if (isRampLink(x, n))
+				return true;
+		}
+		return false;
+	}
+
+	/** Check if a ramp node is (or could be) linked to another node */
+	static private boolean isRampLink(R_NodeImpl x, R_NodeImpl n) {
+		if (x.isExit()) {
+			return R_NodeHelper.isExitLink(x, n) ||
+			       x.getDownstream().contains(n);
+		} else if (x.isAccess()) {
+			return R_NodeHelper.isAccessLink(x, n) ||
+			       x.getDownstream().contains(n);
+		} else
+			return false;
+	}
+
+	/** Get the graph of corridor interchanges */
+	public CorridorGraph getGraph() {
+		return snapshot.graph;
 	}
 
 	/** Add an r_node to the proper corridor */
-	private void addCorridorNode(R_NodeImpl r_node) {
+	private void addCorridorNode(Map<String, Corridor> cors,
+		R_NodeImpl r_node)
+	{
 		String cid = R_NodeHelper.getCorridorName(r_node);
-		if (cid != null)
-			addCorridorNode(cid, r_node);
+		if (cid != null) {
+			node_corridors.put(r_node, cid);
+			addCorridorNode(cors, cid, r_node);
+		}
 	}
 
 	/** Add an r_node to the specified corridor */
-	private void addCorridorNode(String cid, R_NodeImpl r_node) {
-		Corridor c = corridors.get(cid);
+	private void addCorridorNode(Map<String, Corridor> cors, String cid,
+		R_NodeImpl r_node)
+	{
+		Corridor c = cors.get(cid);
 		if (c == null) {
 			c = new Corridor(r_node.getGeoLoc());
-			corridors.put(cid, c);
+			cors.put(cid, c);
 		}
 		c.addNode(r_node);
 	}
@@ -87,34 +338,44 @@ public class CorridorManager {
 		// FIXME: link intersections together
 	}
 
-	/** Link an exit node with a corresponding entrance node */
-	private void linkExitToEntrance(R_NodeImpl r_node) {
-		LinkedList<R_NodeImpl> links = new LinkedList<R_NodeImpl>();
+	/** Index all entrance and access nodes by location */
+	private void indexRamps() {
+		ramps.clear();
 		Iterator<R_Node> it = R_NodeHelper.iterator();
-		while(it.hasNext()) {
-			R_Node other = it.next();
-			if(R_NodeHelper.isExitLink(r_node, other))
-				links.add((R_NodeImpl)other);
+		while (it.hasNext()) {
+			R_Node n = it.next();
+			if (n instanceof R_NodeImpl && isRamp(n)) {
+				GeoLoc loc = n.getGeoLoc();
+				ramps.put((R_NodeImpl) n,
+					GeoLocHelper.getPosition(loc));
+			}
 		}
-		R_NodeImpl link = findNearest(r_node, links);
-		if(link != null)
-			r_node.addDownstream(link);
 	}
 
-	/** Find the nearest r_node in a list */
-	static protected R_NodeImpl findNearest(R_NodeImpl r_node,
-		List<R_NodeImpl> others)
-	{
-		R_NodeImpl nearest = null;
-		Distance d = new Distance(0);
-		for(R_NodeImpl other: others) {
-			Distance m = Corridor.nodeDistance(r_node, other);
-			if(m != null && (nearest == null || m.m() < d.m())) {
-				nearest = other;
-				d = m;
+	/** Check if a node is an entrance or access node */
+	static private boolean isRamp(R_Node n) {
+		return R_NodeHelper.isEntrance(n) || R_NodeHelper.isAccess(n);
+	}
+
+	/** Link an exit node with a corresponding entrance node */
+	private void linkExitToEntrance(final R_NodeImpl r_node) {
+		SphericalMercatorPosition pos = GeoLocHelper.getPosition(
+			r_node.getGeoLoc());
+		if (pos == null)
+			return;
+		List<R_NodeImpl> links = ramps.findNearest(pos, 1,
+			new SpatialIndex.Measure<R_NodeImpl>()
+		{
+			public Double distance(R_NodeImpl other) {
+				if (!R_NodeHelper.isExitLink(r_node, other))
+					return null;
+				Distance m = Corridor.nodeDistance(r_node,
+					other);
+				return (m != null) ? m.m() : null;
 			}
-		}
-		return nearest;
+		});
+		if (links.size() > 0)
+			r_node.addDownstream(links.get(0));
 	}
 
 	/** Link an access node with all corresponding entrance nodes */
@@ -128,9 +389,9 @@ public class CorridorManager {
 	}
 
 	/** Lookup the named corridor */
-	public synchronized Corridor getCorridor(String c) {
+	public Corridor getCorridor(String c) {
 		if(c != null)
-			return corridors.get(c);
+			return snapshot.corridors.get(c);
 		else
 			return null;
 	}
@@ -141,17 +402,23 @@ public class CorridorManager {
 	}
 
 	/** Write the body of the r_node configuration XML file */
-	public synchronized void writeXmlBody(Writer w,
+	public void writeXmlBody(Writer w,
 		Map<String, RampMeterImpl> m_nodes) throws IOException
 	{
-		for(Corridor c: corridors.values())
+		for(Corridor c: snapshot.corridors.values())
 			c.writeXml(w, m_nodes);
 	}
 
 	/** Find the current bottlenecks for all corridors */
-	public synchronized void findBottlenecks() {
-		for(Corridor c: corridors.values())
-			c.findBottlenecks();
+	public void findBottlenecks(CycleExecutor ex) {
+		ex.forEach(new ArrayList<Corridor>(
+			snapshot.corridors.values()),
+			new CycleExecutor.Work<Corridor>()
+		{
+			public void perform(Corridor c) {
+				c.findBottlenecks();
+			}
+		});
 	}
 
 	/** Lookup the corridor for a location */
@@ -162,12 +429,15 @@ public class CorridorManager {
 
 	/** Create a GeoLoc snapped to nearest r_node segment.
 	 * NOTE: copied from client/roads/R_NodeManager. */
-	public synchronized GeoLoc snapGeoLoc(SphericalMercatorPosition smp,
-		LaneType lt)
-	{
+	public GeoLoc snapGeoLoc(SphericalMercatorPosition smp, LaneType lt) {
+		Snapshot snap = snapshot;
 		GeoLoc loc = null;
 		Distance dist = MAX_DIST;
-		for (Corridor c: corridors.values()) {
+		List<Corridor> near = snap.segments.findNear(smp,
+			MAX_DIST.m());
+		for (Corridor c: snap.corridors.values()) {
+			if (!near.contains(c))
+				continue;
 			Corridor.GeoLocDist ld = c.snapGeoLoc(smp, lt, dist);
 			if (ld != null && ld.dist.m() < dist.m()) {
 				loc = ld.loc;
@@ -0,0 +1,319 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.util.ArrayList;
+
+/**
+ * Segment travel time table for one corridor and one sample period.  All
+ * stations with valid speeds are collected once, along with cumulative
+ * travel times (at average and low speeds) from the first station.  A trip
+ * time is then found by subtracting cumulative times, with partial segments
+ * at each end of the trip.  Results match the station-by-station method
+ * formerly used by TripTimer.
+ *
+ * @author Jacob Barde
+ */
+public class CorridorTravelTimes {
+
+	/** Maximum allowed length of a travel time link (miles) */
+	static private final float MAX_LINK_LENGTH = 0.6f;
+
+	/** Check if a segment is too long.
+	 * @param m0 Milepoint at start of segment.
+	 * @param m1 Milepoint at end of segment.
+	 * @return true if segment is too long. */
+	static private boolean isSegmentTooLong(float m0, float m1) {
+		return (m1 - m0) > (3 * MAX_LINK_LENGTH);
+	}
+
+	/** Calculate the travel time for one segment.
+	 * @param o Milepoint at start of segment.
+	 * @param d Milepoint at end of segment.
+	 * @param m0 Milepoint at first station.
+	 * @param m1 Milepoint at second station.
+	 * @param s0 Speed at first station.
+	 * @param s1 Speed at second station.
+	 * @return Travel time (hours). */
+	static private float time_segment(float o, float d, float m0, float m1,
+		float s0, float s1)
+	{
+		assert m1 > m0;
+		float t = (m1 - m0) / 3;
+		float ma = m0 + t;
+		float mb = m1 - t;
+		return time_link(o, d, m0, ma, s0)
+		     + time_link(o, d, ma, mb, (s0 + s1) / 2)
+		     + time_link(o, d, mb, m1, s1);
+	}
+
+	/** Calculate the travel time for one link.
+	 * @param o Milepoint at start of segment.
+	 * @param d Milepoint at end of segment.
+	 * @param l0 Milepoint at start of link.
+	 * @param l1 Milepoint at end of link.
+	 * @param sp Speed of link.
+	 * @return Travel time (hours). */
+	static private float time_link(float o, float d, float l0, float l1,
+		float sp)
+	{
+		float link = Math.min(l1, d) - Math.max(l0, o);
+		return (link > 0) ? (link / sp) : 0;
+	}
+
+	/** Count the distinct milepoints in an ascending array */
+	static private int countDistinct(float[] m) {
+		int n = 0;
+		for (int i = 0; i < m.length; i++) {
+			if (i == 0 || m[i] != m[i - 1])
+				n++;
+		}
+		return n;
+	}
+
+	/** Create a travel time table for a corridor.
+	 * @param c Corridor.
+	 * @param p Sample period. */
+	static public CorridorTravelTimes create(Corridor c, int p) {
+		final ArrayList<Float> miles = new ArrayList<Float>();
+		final ArrayList<Float> avgs = new ArrayList<Float>();
+		final ArrayList<Float> lows = new ArrayList<Float>();
+		final ArrayList<String> names = new ArrayList<String>();
+		c.findStation(new Corridor.StationFinder() {
+			public boolean check(Float m, StationImpl s) {
+				float a = s.getSmoothedAverageSpeed();
+				float l = s.getSmoothedLowSpeed();
+				if (a > 0 && l > 0) {
+					miles.add(m);
+					avgs.add(a);
+					lows.add(l);
+					names.add(s.toString());
+				}
+				return false;
+			}
+		});
+		int n = miles.size();
+		float[] m = new float[n];
+		float[] a = new float[n];
+		float[] l = new float[n];
+		for (int i = 0; i < n; i++) {
+			m[i] = miles.get(i);
+			a[i] = avgs.get(i);
+			l[i] = lows.get(i);
+		}
+		return new CorridorTravelTimes(p, m, a, l,
+			names.toArray(new String[n]));
+	}
+
+	/** Sample period of table */
+	public final int period;
+
+	/** Milepoints of stations with valid speeds (ascending) */
+	private final float[] mile;
+
+	/** Smoothed average speed at each station */
+	private final float[] avg;
+
+	/** Smoothed low speed at each station */
+	private final float[] low;
+
+	/** Station names */
+	private final String[] station;
+
+	/** Cumulative time from first station at average speeds (hours) */
+	private final double[] cum_avg;
+
+	/** Cumulative time from first station at low speeds (hours) */
+	private final double[] cum_low;
+
+	/** Cumulative count of segments which are too long */
+	private final int[] cum_long;
+
+	/** Create a travel time table.  Stations at the same milepoint are
+	 * merged, with the last one used (as with the station map formerly
+	 * used by TripTimer).
+	 * @param p Sample period.
+	 * @param m Station milepoints (ascending).
+	 * @param a Smoothed average speeds.
+	 * @param l Smoothed low speeds.
+	 * @param s Station names. */
+	public CorridorTravelTimes(int p, float[] m, float[] a, float[] l,
+		String[] s)
+	{
+		period = p;
+		int n = countDistinct(m);
+		mile = new float[n];
+		avg = new float[n];
+		low = new float[n];
+		station = new String[n];
+		int j = -1;
+		for (int i = 0; i < m.length; i++) {
+			if (j < 0 || m[i] != mile[j])
+				j++;
+			mile[j] = m[i];
+			avg[j] = a[i];
+			low[j] = l[i];
+			station[j] = s[i];
+		}
+		cum_avg = new double[n];
+		cum_low = new double[n];
+		cum_long = new int[n];
+		for (int i = 1; i < n; i++) {
+			cum_avg[i] = cum_avg[i - 1] + segment(avg, i - 1,
+				mile[i - 1], mile[i]);
+			cum_low[i] = cum_low[i - 1] + segment(low, i - 1,
+				mile[i - 1], mile[i]);
+			boolean lng = isSegmentTooLong(mile[i - 1], mile[i]);
+			cum_long[i] = cum_long[i - 1] + (lng ? 1 : 0);
+		}
+	}
+
+	/** Get the number of stations with valid speeds */
+	public int size() {
+		return mile.length;
+	}
+
+	/** Calculate the time for part of one segment.
+	 * @param sp Station speeds.
+	 * @param i Index of station at start of segment.
+	 * @param o Milepoint at start of part.
+	 * @param d Milepoint at end of part.
+	 * @return Travel time (hours). */
+	private float segment(float[] sp, int i, float o, float d) {
+		return time_segment(o, d, mile[i], mile[i + 1], sp[i],
+			sp[i + 1]);
+	}
+
+	/** Find the index of the first station within trip bounds */
+	private int firstWithin(float o) {
+		int lo = 0;
+		int hi = mile.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (isSegmentTooLong(mile[mid], o))
+				lo = mid + 1;
+			else
+				hi = mid;
+		}
+		return lo;
+	}
+
+	/** Find the index of the last station within trip bounds */
+	private int lastWithin(float d) {
+		int lo = 0;
+		int hi = mile.length;
+		while (lo < hi) {
+			int mid = (lo + hi) >>> 1;
+			if (isSegmentTooLong(d, mile[mid]))
+				hi = mid;
+			else
+				lo = mid + 1;
+		}
+		return lo - 1;
+	}
+
+	/** Find the index of the segment containing a milepoint.
+	 * @param m Milepoint.
+	 * @param i0 Index of first station.
+	 * @param i1 Index of last station.
+	 * @return Index of station at start of segment. */
+	private int findSegment(float m, int i0, int i1) {
+		int lo = i0;
+		int hi = i1 - 1;
+		while (lo < hi) {
+			int mid = (lo + hi + 1) >>> 1;
+			if (mile[mid] <= m)
+				lo = mid;
+			else
+				hi = mid - 1;
+		}
+		return lo;
+	}
+
+	/** Calculate the time between two milepoints.
+	 * @param sp Station speeds.
+	 * @param cum Cumulative times.
+	 * @param o Milepoint at start.
+	 * @param d Milepoint at end.
+	 * @param i0 Index of first station.
+	 * @param i1 Index of last station.
+	 * @return Travel time (hours). */
+	private double timeBetween(float[] sp, double[] cum, float o, float d,
+		int i0, int i1)
+	{
+		o = Math.max(o, mile[i0]);
+		d = Math.min(d, mile[i1]);
+		if (o >= d)
+			return 0;
+		int s0 = findSegment(o, i0, i1);
+		int s1 = findSegment(d, i0, i1);
+		if (s0 == s1)
+			return segment(sp, s0, o, d);
+		else {
+			return segment(sp, s0, o, mile[s0 + 1])
+			     + (cum[s1] - cum[s0 + 1])
+			     + segment(sp, s1, mile[s1], d);
+		}
+	}
+
+	/** Calculate the travel time for a trip.
+	 * @param o Milepoint of trip origin.
+	 * @param d Milepoint of trip destination.
+	 * @param low_mile Milepoint after which to use low station speed.
+	 * @return Travel time (hours). */
+	public float calculate(float o, float d, float low_mile)
+		throws BadRouteException
+	{
+		int i0 = firstWithin(o);
+		int i1 = lastWithin(d);
+		if (i0 > i1)
+			throw new BadRouteException("No speed data");
+		float m0 = mile[i0];
+		float m1 = mile[i1];
+		float mm0 = m0;
+		if (m0 > o) {
+			mm0 = m0 - MAX_LINK_LENGTH;
+			if (mm0 > o)
+				throw new BadRouteException("Start > origin");
+		}
+		float mm1 = m1;
+		if (m1 < d) {
+			mm1 = m1 + MAX_LINK_LENGTH;
+			if (mm1 < d)
+				throw new BadRouteException("End < destin");
+		}
+		if (cum_long[i1] - cum_long[i0] > 0) {
+			for (int i = i0 + 1; i <= i1; i++) {
+				if (isSegmentTooLong(mile[i - 1], mile[i])) {
+					float llen = mile[i] - mile[i - 1];
+					throw new BadRouteException(
+						"Link too long (" + llen +
+						") " + station[i]);
+				}
+			}
+		}
+		double hours = timeBetween(avg, cum_avg, o, low_mile, i0, i1)
+		             + timeBetween(low, cum_low, low_mile, d, i0, i1);
+		if (mm0 < m0) {
+			hours += time_link(o, low_mile, mm0, m0, avg[i0])
+			       + time_link(low_mile, d, mm0, m0, low[i0]);
+		}
+		if (mm1 > m1) {
+			hours += time_link(o, low_mile, m1, mm1, avg[i1])
+			       + time_link(low_mile, d, m1, mm1, low[i1]);
+		}
+		return (float) hours;
+	}
+}
@@ -0,0 +1,88 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Executor for one phase of a calculation cycle.  Work is performed on each
+ * item of a list, either serially on the calling thread, or split into
+ * shards on a fork-join pool.  The items of a phase must be independent of
+ * each other, so that the results do not depend on the order of execution.
+ * A phase is complete when forEach returns.
+ *
+ * @author Jacob Barde
+ */
+public class CycleExecutor {
+
+	/** Maximum number of items processed by one fork-join task */
+	static private final int SHARD_SIZE = 8;
+
+	/** Work to perform on one item */
+	static public interface Work<T> {
+		void perform(T item);
+	}
+
+	/** Fork-join task for a shard of items */
+	static private class Shard<T> extends RecursiveAction {
+		private final List<T> items;
+		private final int lo;
+		private final int hi;
+		private final Work<T> work;
+		private Shard(List<T> it, int l, int h, Work<T> w) {
+			items = it;
+			lo = l;
+			hi = h;
+			work = w;
+		}
+		@Override
+		protected void compute() {
+			if (hi - lo <= SHARD_SIZE) {
+				for (int i = lo; i < hi; i++)
+					work.perform(items.get(i));
+			} else {
+				int mid = (lo + hi) >>> 1;
+				invokeAll(new Shard<T>(items, lo, mid, work),
+				          new Shard<T>(items, mid, hi, work));
+			}
+		}
+	}
+
+	/** Fork-join pool (null for serial execution) */
+	private final ForkJoinPool pool;
+
+	/** Create a new cycle executor.
+	 * @param n_threads Number of threads, or 0 for serial execution. */
+	public CycleExecutor(int n_threads) {
+		pool = (n_threads > 0) ? new ForkJoinPool(n_threads) : null;
+	}
+
+	/** Check if work is performed in parallel */
+	public boolean isParallel() {
+		return pool != null;
+	}
+
+	/** Perform work on each item of a list, and wait for completion */
+	public <T> void forEach(List<T> items, Work<T> work) {
+		if (pool != null && items.size() > SHARD_SIZE)
+			pool.invoke(new Shard<T>(items, 0, items.size(), work));
+		else {
+			for (T item: items)
+				work.perform(item);
+		}
+	}
+}
@@ -3,6 +3,7 @@
  * Copyright (C) 2000-2016  Minnesota Department of Transportation
  * Copyright (C) 2010-2015 AHMCT, University of California
  * Copyright (C) 2012  Iteris Inc.
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -24,7 +25,6 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import us.mn.state.dot.sched.DebugLog;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.sched.TimeSteward;
 import us.mn.state.dot.sonar.SonarException;
 import us.mn.state.dot.sonar.User;
@@ -1370,11 +1370,15 @@ public class DMSImpl extends DeviceImpl implements DMS, Comparable<DMSImpl> {
 
 	/** Log a brightness sample */
 	private void logBrightnessSample(final BrightnessSample bs) {
-		FLUSH.addJob(new Job() {
+		FLUSH.addJob(new MonitoredJob() {
 			public void perform() throws TMSException {
 				bs.purgeConflicting();
 				bs.doStore();
 			}
+			@Override
+			public boolean isRejectable() {
+				return false;
+			}
 		});
 	}
 
@@ -1431,10 +1435,34 @@ public class DMSImpl extends DeviceImpl implements DMS, Comparable<DMSImpl> {
 			return null;
 	}
 
-	/** Render bitmaps for all pages of a message.
+	/** Render bitmaps for all pages of a message.  Signs with the same
+	 * raster geometry and default font share cached bitmaps.
 	 * @param m MULTI string for message.
 	 * @return Base64-encoded bitmaps, or null on error. */
 	private String renderBitmaps(String m) {
+		Integer w = getWidthPixels();
+		Integer h = getHeightPixels();
+		Integer cw = getCharWidthPixels();
+		Integer ch = getCharHeightPixels();
+		if (m == null || w == null || h == null || cw == null ||
+		    ch == null)
+			return renderBitmapsUncached(m);
+		int df = DMSHelper.getDefaultFontNumber(this);
+		RenderedBitmapCache rc = RenderedBitmapCache.getShared();
+		long v = rc.getVersion();
+		String b = rc.lookup(m, w, h, cw, ch, df, v);
+		if (b == null) {
+			b = renderBitmapsUncached(m);
+			if (b != null)
+				rc.store(m, w, h, cw, ch, df, v, b);
+		}
+		return b;
+	}
+
+	/** Render bitmaps for all pages of a message (without cache).
+	 * @param m MULTI string for message.
+	 * @return Base64-encoded bitmaps, or null on error. */
+	private String renderBitmapsUncached(String m) {
 		try {
 			BitmapGraphic[] pages = DMSHelper.createBitmaps(this,m);
 			if (pages != null)
@@ -1498,7 +1526,7 @@ public class DMSImpl extends DeviceImpl implements DMS, Comparable<DMSImpl> {
 		DMSMessagePriority ap, DMSMessagePriority rp, SignMsgSource src,
 		Integer d)
 	{
-		SignMessage esm = SignMessageHelper.find(m, bmaps, ap,rp,src,d);
+		SignMessage esm = SignMessageImpl.find(m, bmaps, ap, rp, src, d);
 		if (esm != null)
 			return esm;
 		else
@@ -210,6 +210,7 @@ public class DetectorImpl extends DeviceImpl implements Detector,VehicleSampler{
 	@Override
 	public void initTransients() {
 		super.initTransients();
+		DetectorHelper.updateIndex(this);
 		if (r_node != null)
 			r_node.addDetector(this);
 		try {
@@ -225,8 +226,17 @@ public class DetectorImpl extends DeviceImpl implements Detector,VehicleSampler{
 	@Override
 	public void doDestroy() throws TMSException {
 		super.doDestroy();
+		DetectorHelper.removeIndex(this);
 		if (r_node != null)
 			r_node.removeDetector(this);
+		corridors.invalidateRoutes();
+	}
+
+	/** Set the controller of the detector */
+	@Override
+	public void setController(Controller c) {
+		super.setController(c);
+		DetectorHelper.updateIndex(this);
 	}
 
 	/** R_Node (roadway network node) */
@@ -244,6 +254,7 @@ public class DetectorImpl extends DeviceImpl implements Detector,VehicleSampler{
 			r_node = rn;
 		} else
 			r_node = null;
+		corridors.invalidateRoutes();
 	}
 
 	/** Set the r_node (roadway network node) */
@@ -273,6 +284,7 @@ public class DetectorImpl extends DeviceImpl implements Detector,VehicleSampler{
 	@Override
 	public void setLaneType(short t) {
 		lane_type = LaneType.fromOrdinal(t);
+		corridors.invalidateRoutes();
 	}
 
 	/** Set the lane type */
@@ -370,6 +382,7 @@ public class DetectorImpl extends DeviceImpl implements Detector,VehicleSampler{
 	@Override
 	public void setAbandoned(boolean a) {
 		abandoned = a;
+		corridors.invalidateRoutes();
 	}
 
 	/** Set the abandoned status */
@@ -937,21 +950,12 @@ public class DetectorImpl extends DeviceImpl implements Detector,VehicleSampler{
 		w.write("/>\n");
 	}
 
-	/** Print the current sample as an XML element */
-	public void writeSampleXml(Writer w) throws IOException {
+	/** Write the current sample to an XML feed */
+	public void writeSampleXml(SampleXmlFeed feed) {
 		if (abandoned || !isSampling())
 			return;
 		int flow = getFlowRaw();
-		int speed = Math.round(getSpeed());
-		float occ = getOccupancy();
-		w.write("\t<sample");
-		w.write(createAttribute("sensor", name));
-		if (flow != MISSING_DATA)
-			w.write(createAttribute("flow", flow));
-		if (isMainline() && speed > 0)
-			w.write(createAttribute("speed", speed));
-		if (occ >= 0)
-			w.write(createAttribute("occ", formatFloat(occ, 2)));
-		w.write("/>\n");
+		int speed = isMainline() ? Math.round(getSpeed()) : 0;
+		feed.sample(name, flow, speed, getOccupancy());
 	}
 }
@@ -17,7 +17,6 @@ package us.mn.state.dot.tms.server;
 import java.util.Calendar;
 import java.util.Iterator;
 import java.util.LinkedList;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.sched.TimeSteward;
 import us.mn.state.dot.tms.DeviceRequest;
 import us.mn.state.dot.tms.DMS;
@@ -32,7 +31,7 @@ import us.mn.state.dot.tms.SystemAttrEnum;
  *
  * @author Douglas Lau
  */
-public class DmsQueryDialupJob extends Job {
+public class DmsQueryDialupJob extends MonitoredJob {
 
 	/** Seconds to offset each poll from start of interval */
 	static protected final int OFFSET_SECS = 10;
@@ -16,7 +16,6 @@ package us.mn.state.dot.tms.server;
 
 import java.util.Calendar;
 import java.util.Iterator;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.tms.DeviceRequest;
 import us.mn.state.dot.tms.DMS;
 import us.mn.state.dot.tms.DMSHelper;
@@ -26,7 +25,7 @@ import us.mn.state.dot.tms.DMSHelper;
  *
  * @author Douglas Lau
  */
-public class DmsQueryStatusJob extends Job {
+public class DmsQueryStatusJob extends MonitoredJob {
 
 	/** Seconds to offset each poll from start of interval */
 	static private final int OFFSET_SECS = 2;
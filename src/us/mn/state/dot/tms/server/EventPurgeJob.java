@@ -15,7 +15,6 @@
 package us.mn.state.dot.tms.server;
 
 import java.util.Calendar;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.tms.TMSException;
 import us.mn.state.dot.tms.server.event.CommEvent;
 import us.mn.state.dot.tms.server.event.MeterEvent;
@@ -25,7 +24,7 @@ import us.mn.state.dot.tms.server.event.MeterEvent;
  *
  * @author Douglas Lau
  */
-public class EventPurgeJob extends Job {
+public class EventPurgeJob extends MonitoredJob {
 
 	/** Create a new job to purge database events */
 	public EventPurgeJob() {
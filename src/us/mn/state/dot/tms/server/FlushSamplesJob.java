@@ -17,7 +17,6 @@ package us.mn.state.dot.tms.server;
 import java.io.IOException;
 import java.util.Calendar;
 import java.util.Iterator;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.sched.TimeSteward;
 import us.mn.state.dot.tms.Detector;
 import us.mn.state.dot.tms.DetectorHelper;
@@ -31,7 +30,7 @@ import us.mn.state.dot.tms.units.Interval;
  *
  * @author Douglas Lau
  */
-public class FlushSamplesJob extends Job {
+public class FlushSamplesJob extends MonitoredJob {
 
 	/** Is archiving enabled? */
 	static private boolean isArchiveEnabled() {
@@ -47,20 +46,41 @@ public class FlushSamplesJob extends Job {
 		return TimeSteward.currentTimeMillis() - SAMPLE_CACHE_MS;
 	}
 
+	/** Create a periodic sample writer.  If open files are allowed, a
+	 * positional writer is used, which only writes the cached samples
+	 * instead of rewriting whole day files. */
+	static private PeriodicSampleWriter createWriter(
+		SampleArchiveFactory saf)
+	{
+		int max_open = SystemAttrEnum.SAMPLE_ARCHIVE_OPEN_FILES
+			.getInt();
+		if(max_open > 0)
+			return new PositionalSampleWriter(saf, max_open);
+		else
+			return new PeriodicSampleWriter(saf);
+	}
+
 	/** Periodic sample writer */
 	private final PeriodicSampleWriter writer;
 
 	/** Create a new flush samples job */
 	public FlushSamplesJob(SampleArchiveFactory saf) {
 		super(Calendar.MINUTE, 2);
-		writer = new PeriodicSampleWriter(saf);
+		writer = createWriter(saf);
 	}
 
 	/** Perform the flush samples job */
-	public void perform() throws IOException {
+	public synchronized void perform() throws IOException {
 		long before = calculatePurgeStamp();
 		flushDetectorSamples(before);
 		flushWeatherSamples(before);
+		// Samples before the purge stamp will not be written again
+		writer.closeBefore(before);
+	}
+
+	/** Close all open sample files */
+	public synchronized void close() {
+		writer.close();
 	}
 
 	/** Flush detector sample data to disk */
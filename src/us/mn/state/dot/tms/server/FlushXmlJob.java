@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2009-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -15,22 +16,25 @@
 package us.mn.state.dot.tms.server;
 
 import java.io.IOException;
-import java.io.Writer;
 import java.util.Iterator;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.sched.TimeSteward;
 import us.mn.state.dot.tms.Detector;
 import us.mn.state.dot.tms.DetectorHelper;
+import us.mn.state.dot.tms.SystemAttrEnum;
 
 /**
- * Job to flush XML sample data
+ * Job to flush XML sample data.  The detector feed is compressed while the
+ * station feed is being encoded.
  *
  * @author Douglas Lau
  */
-public class FlushXmlJob extends Job {
+public class FlushXmlJob extends MonitoredJob {
 
 	/** Detector sample file */
-	static private final String SAMPLE_XML = "det_sample.xml";
+	static private final String SAMPLE_XML = "det_sample";
+
+	/** Detector sample XML feed */
+	private final SampleXmlFeed feed = new SampleXmlFeed(SAMPLE_XML);
 
 	/** Station manager */
 	private final StationManager station_manager;
@@ -43,60 +47,26 @@ public class FlushXmlJob extends Job {
 	/** Perform flush XML data to disk */
 	public void perform() throws IOException {
 		writeSampleXml();
-		station_manager.writeSampleXml();
+		try {
+			station_manager.writeSampleXml();
+		}
+		finally {
+			feed.await();
+		}
 	}
 
 	/** Write the sample data out as XML */
-	private void writeSampleXml() throws IOException {
-		XmlWriter w = new XmlWriter(SAMPLE_XML, true) {
-			@Override protected void write(Writer w)
-				throws IOException
-			{
-				writeSampleXmlHead(w);
-				writeSampleXmlBody(w);
-				writeSampleXmlTail(w);
-			}
-		};
-		w.write();
-	}
-
-	/** Write the header of the detector sample XML file */
-	private void writeSampleXmlHead(Writer w) throws IOException {
-		w.write(XmlWriter.XML_DECLARATION);
-		writeDtd(w);
-		w.write("<traffic_sample time_stamp='" +
-			TimeSteward.getDateInstance() + "' period='30'>\n");
-	}
-
-	/** Write the DTD */
-	private void writeDtd(Writer w) throws IOException {
-		w.write("<!DOCTYPE traffic_sample [\n");
-		w.write("<!ELEMENT traffic_sample (sample)*>\n");
-		w.write("<!ATTLIST traffic_sample time_stamp " +
-			"CDATA #REQUIRED>\n");
-		w.write("<!ATTLIST traffic_sample period CDATA #REQUIRED>\n");
-		w.write("<!ELEMENT sample EMPTY>\n");
-		w.write("<!ATTLIST sample sensor CDATA #REQUIRED>\n");
-		w.write("<!ATTLIST sample flow CDATA 'UNKNOWN'>\n");
-		w.write("<!ATTLIST sample speed CDATA 'UNKNOWN'>\n");
-		w.write("<!ATTLIST sample occ CDATA 'UNKNOWN'>\n");
-		w.write("]>\n");
-	}
-
-	/** Write the body of the detector sample XML file */
-	private void writeSampleXmlBody(Writer w) throws IOException {
+	private void writeSampleXml() {
+		feed.begin(TimeSteward.getDateInstance().toString(),
+			SystemAttrEnum.SAMPLE_XML_DELTA_ENABLE.getBoolean());
 		Iterator<Detector> it = DetectorHelper.iterator();
 		while (it.hasNext()) {
 			Detector d = it.next();
 			if (d instanceof DetectorImpl) {
 				DetectorImpl det = (DetectorImpl) d;
-				det.writeSampleXml(w);
+				det.writeSampleXml(feed);
 			}
 		}
-	}
-
-	/** Write the tail of the detector sample XML file */
-	private void writeSampleXmlTail(Writer w) throws IOException {
-		w.write("</traffic_sample>\n");
+		feed.finish();
 	}
 }
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2000-2012  Minnesota Department of Transportation
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -76,6 +77,18 @@ public class FontImpl extends BaseObjectImpl implements Font {
 		return SONAR_TYPE;
 	}
 
+	/** Store a font */
+	public void doStore() throws TMSException {
+		super.doStore();
+		RenderedBitmapCache.invalidate();
+	}
+
+	/** Destroy a font */
+	public void doDestroy() throws TMSException {
+		super.doDestroy();
+		RenderedBitmapCache.invalidate();
+	}
+
 	/** Create a new font */
 	public FontImpl(String n) {
 		super(n);
@@ -101,6 +114,7 @@ public class FontImpl extends BaseObjectImpl implements Font {
 	/** Set the font number */
 	public void setNumber(int n) {
 		f_number = n;
+		RenderedBitmapCache.invalidate();
 	}
 
 	/** Set the font number */
@@ -124,6 +138,7 @@ public class FontImpl extends BaseObjectImpl implements Font {
 	/** Set the font height (pixels) */
 	public void setHeight(int h) {
 		height = h;
+		RenderedBitmapCache.invalidate();
 	}
 
 	/** Set the font height (pixels) */
@@ -147,6 +162,7 @@ public class FontImpl extends BaseObjectImpl implements Font {
 	/** Set the font width (pixels) */
 	public void setWidth(int w) {
 		width = w;
+		RenderedBitmapCache.invalidate();
 	}
 
 	/** Set the font width (pixels) */
@@ -170,6 +186,7 @@ public class FontImpl extends BaseObjectImpl implements Font {
 	/** Set the default horizontal spacing between characters (pixels) */
 	public void setCharSpacing(int s) {
 		charSpacing = s;
+		RenderedBitmapCache.invalidate();
 	}
 
 	/** Set the default horizontal spacing between characters (pixels) */
@@ -193,6 +210,7 @@ public class FontImpl extends BaseObjectImpl implements Font {
 	/** Set the default vertical spacing between lines (pixels) */
 	public void setLineSpacing(int s) {
 		lineSpacing = s;
+		RenderedBitmapCache.invalidate();
 	}
 
 	/** Set the default vertical spacing between lines (pixels) */
@@ -216,6 +234,7 @@ public class FontImpl extends BaseObjectImpl implements Font {
 	/** Set the font version ID */
 	public void setVersionID(int v) {
 		versionID = v;
+		RenderedBitmapCache.invalidate();
 	}
 
 	/** Set the font version ID */
@@ -2,6 +2,7 @@
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2005-2013  Minnesota Department of Transportation
  * Copyright (C) 2014  AHMCT, University of California
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -19,10 +20,14 @@ import java.sql.ResultSet;
 import java.util.HashMap;
 import java.util.Map;
 import us.mn.state.dot.sonar.Namespace;
+import us.mn.state.dot.tms.Camera;
+import us.mn.state.dot.tms.CameraHelper;
 import us.mn.state.dot.tms.ChangeVetoException;
 import us.mn.state.dot.tms.Direction;
 import us.mn.state.dot.tms.GeoLoc;
 import us.mn.state.dot.tms.LocModifier;
+import us.mn.state.dot.tms.R_Node;
+import us.mn.state.dot.tms.R_NodeHelper;
 import us.mn.state.dot.tms.Road;
 import us.mn.state.dot.tms.TMSException;
 
@@ -119,6 +124,7 @@ public class GeoLocImpl extends BaseObjectImpl implements GeoLoc {
 	public void setRoadway(Road r) {
 		GateArmSystem.checkDisable(this, "roadway");
 		roadway = r;
+		updateCorridor();
 	}
 
 	/** Set the roadway road */
@@ -141,6 +147,7 @@ public class GeoLocImpl extends BaseObjectImpl implements GeoLoc {
 	public void setRoadDir(short d) {
 		GateArmSystem.checkDisable(this, "road_dir");
 		road_dir = d;
+		updateCorridor();
 	}
 
 	/** Set the roadway direction */
@@ -164,6 +171,7 @@ public class GeoLocImpl extends BaseObjectImpl implements GeoLoc {
 	/** Set the cross-street road */
 	public void setCrossStreet(Road x) {
 		cross_street = x;
+		updateCorridor();
 	}
 
 	/** Set the cross-street road */
@@ -185,6 +193,7 @@ public class GeoLocImpl extends BaseObjectImpl implements GeoLoc {
 	/** Set the cross street direction */
 	public void setCrossDir(short d) {
 		cross_dir = d;
+		updateCorridor();
 	}
 
 	/** Set the cross street direction */
@@ -208,6 +217,7 @@ public class GeoLocImpl extends BaseObjectImpl implements GeoLoc {
 	/** Set the cross street modifier */
 	public void setCrossMod(short m) {
 		cross_mod = m;
+		updateCorridor();
 	}
 
 	/** Set the cross street modifier */
@@ -231,6 +241,8 @@ public class GeoLocImpl extends BaseObjectImpl implements GeoLoc {
 	/** Set the latitude */
 	public void setLat(Double lt) {
 		lat = lt;
+		updateIndex();
+		updateCorridor();
 	}
 
 	/** Set the latitude */
@@ -254,6 +266,8 @@ public class GeoLocImpl extends BaseObjectImpl implements GeoLoc {
 	/** Set the longitude */
 	public void setLon(Double ln) {
 		lon = ln;
+		updateIndex();
+		updateCorridor();
 	}
 
 	/** Set the longitude */
@@ -271,6 +285,22 @@ public class GeoLocImpl extends BaseObjectImpl implements GeoLoc {
 		return lon;
 	}
 
+	/** Update spatial index of device with this location */
+	private void updateIndex() {
+		Camera cam = CameraHelper.lookup(name);
+		if (cam != null && cam.getGeoLoc() == this)
+			CameraHelper.updateIndex(cam);
+	}
+
+	/** Update corridors if this is the location of an r_node */
+	private void updateCorridor() {
+		R_Node n = R_NodeHelper.lookup(name);
+		if (n instanceof R_NodeImpl && n.getGeoLoc() == this)
+			corridors.updateNode((R_NodeImpl) n);
+		else
+			corridors.invalidateRoutes();
+	}
+
 	/** Milepoint */
 	private String milepoint;
 
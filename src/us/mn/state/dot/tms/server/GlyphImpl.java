@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2007-2014  Minnesota Department of Transportation
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -69,6 +70,18 @@ public class GlyphImpl extends BaseObjectImpl implements Glyph {
 		return SONAR_TYPE;
 	}
 
+	/** Store a glyph */
+	public void doStore() throws TMSException {
+		super.doStore();
+		RenderedBitmapCache.invalidate();
+	}
+
+	/** Destroy a glyph */
+	public void doDestroy() throws TMSException {
+		super.doDestroy();
+		RenderedBitmapCache.invalidate();
+	}
+
 	/** Create a new glyph */
 	public GlyphImpl(String n) {
 		super(n);
@@ -111,6 +124,7 @@ public class GlyphImpl extends BaseObjectImpl implements Glyph {
 	/** Set the graphic */
 	public void setGraphic(Graphic g) {
 		graphic = g;
+		RenderedBitmapCache.invalidate();
 	}
 
 	/** Set the graphic */
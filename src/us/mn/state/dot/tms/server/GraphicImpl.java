@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2007-2015  Minnesota Department of Transportation
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -74,6 +75,20 @@ public class GraphicImpl extends BaseObjectImpl implements Graphic {
 		return SONAR_TYPE;
 	}
 
+	/** Store a graphic */
+	@Override
+	public void doStore() throws TMSException {
+		super.doStore();
+		RenderedBitmapCache.invalidate();
+	}
+
+	/** Destroy a graphic */
+	@Override
+	public void doDestroy() throws TMSException {
+		super.doDestroy();
+		RenderedBitmapCache.invalidate();
+	}
+
 	/** Create a new graphic */
 	public GraphicImpl(String n) {
 		super(n);
@@ -103,6 +118,7 @@ public class GraphicImpl extends BaseObjectImpl implements Graphic {
 	@Override
 	public void setGNumber(Integer g) {
 		g_number = g;
+		RenderedBitmapCache.invalidate();
 	}
 
 	/** Set the graphic number */
@@ -128,6 +144,7 @@ public class GraphicImpl extends BaseObjectImpl implements Graphic {
 	@Override
 	public void setBpp(int b) {
 		bpp = b;
+		RenderedBitmapCache.invalidate();
 	}
 
 	/** Set the bits-per-pixel (1, 8, 24) */
@@ -153,6 +170,7 @@ public class GraphicImpl extends BaseObjectImpl implements Graphic {
 	@Override
 	public void setHeight(int h) {
 		height = h;
+		RenderedBitmapCache.invalidate();
 	}
 
 	/** Set the height (pixels) */
@@ -176,6 +194,7 @@ public class GraphicImpl extends BaseObjectImpl implements Graphic {
 	@Override
 	public void setWidth(int w) {
 		width = w;
+		RenderedBitmapCache.invalidate();
 	}
 
 	/** Set the width (pixels) */
@@ -199,6 +218,7 @@ public class GraphicImpl extends BaseObjectImpl implements Graphic {
 	@Override
 	public void setPixels(String p) {
 		pixels = p;
+		RenderedBitmapCache.invalidate();
 	}
 
 	/** Set the pixel data (base64 encoded) */
@@ -16,14 +16,13 @@ package us.mn.state.dot.tms.server;
 
 import java.io.IOException;
 import java.util.Calendar;
-import us.mn.state.dot.sched.Job;
 
 /**
  * Job to write out incident XML file.
  *
  * @author Douglas Lau
  */
-public class IncidentXmlJob extends Job {
+public class IncidentXmlJob extends MonitoredJob {
 
 	/** Seconds to offset each poll from start of interval */
 	static protected final int OFFSET_SECS = 7;
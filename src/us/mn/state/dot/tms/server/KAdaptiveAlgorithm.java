@@ -2,6 +2,7 @@
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2001-2016  Minnesota Department of Transportation
  * Copyright (C) 2011-2012  University of Minnesota Duluth (NATSRL)
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -15,6 +16,7 @@
  */
 package us.mn.state.dot.tms.server;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import us.mn.state.dot.sched.DebugLog;
@@ -207,13 +209,21 @@ public class KAdaptiveAlgorithm implements MeterAlgorithmState {
 		return alg;
 	}
 
-	/** Process one interval for all K adaptive algorithm states */
-	static public void processAllStates() {
+	/** Process one interval for all K adaptive algorithm states.
+	 * Each corridor is processed independently.
+	 * @param ex Executor for processing corridors. */
+	static public void processAllStates(CycleExecutor ex) {
+		ex.forEach(new ArrayList<KAdaptiveAlgorithm>(ALL_ALGS.values()),
+			new CycleExecutor.Work<KAdaptiveAlgorithm>()
+		{
+			public void perform(KAdaptiveAlgorithm alg) {
+				alg.processInterval();
+			}
+		});
 		Iterator<KAdaptiveAlgorithm> it =
 			ALL_ALGS.values().iterator();
 		while (it.hasNext()) {
 			KAdaptiveAlgorithm alg = it.next();
-			alg.processInterval();
 			if (alg.isDone()) {
 				alg.log("isDone: removing");
 				it.remove();
@@ -16,7 +16,6 @@ package us.mn.state.dot.tms.server;
 
 import java.util.Calendar;
 import java.util.Iterator;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.tms.DeviceRequest;
 import us.mn.state.dot.tms.LCSArray;
 import us.mn.state.dot.tms.LCSArrayHelper;
@@ -26,7 +25,7 @@ import us.mn.state.dot.tms.LCSArrayHelper;
  *
  * @author Douglas Lau
  */
-public class LcsQueryMsgJob extends Job {
+public class LcsQueryMsgJob extends MonitoredJob {
 
 	/** Seconds to offset each poll from start of interval */
 	static private final int OFFSET_SECS = 19;
@@ -25,7 +25,6 @@ import java.net.ProxySelector;
 import java.net.UnknownHostException;
 import java.util.Properties;
 import us.mn.state.dot.sched.DebugLog;
-import us.mn.state.dot.sched.Scheduler;
 import us.mn.state.dot.sched.TimeSteward;
 import us.mn.state.dot.sonar.server.Server;
 import us.mn.state.dot.tms.BaseHelper;
@@ -35,6 +34,8 @@ import us.mn.state.dot.tms.TMSException;
 import us.mn.state.dot.tms.VideoServerCoupler;
 import us.mn.state.dot.tms.server.aws.AwsJob;
 import us.mn.state.dot.tms.server.event.BaseEvent;
+import us.mn.state.dot.tms.server.event.EventJournal;
+import us.mn.state.dot.tms.server.event.EventWriter;
 import us.mn.state.dot.tms.utils.HTTPProxySelector;
 import us.mn.state.dot.tms.utils.I18N;
 import us.mn.state.dot.tms.utils.PropertyLoader;
@@ -63,22 +64,44 @@ public class MainServer {
 	static private final String STD_ERR = LOG_FILE_DIR + "iris.stderr";
 
 	/** Timer thread for repeating jobs */
-	static private final Scheduler TIMER = new Scheduler("timer");
+	static private final MonitoredScheduler TIMER =
+		new MonitoredScheduler("timer");
 
 	/** Flush thread for disk writing jobs */
-	static public final Scheduler FLUSH = new Scheduler("flush");
+	static public final MonitoredScheduler FLUSH =
+		new MonitoredScheduler("flush");
 
 	/** AWS thread for AWS jobs */
-	static private final Scheduler aws_scheduler =
-		new Scheduler("aws");
+	static private final MonitoredScheduler aws_scheduler =
+		new MonitoredScheduler("aws");
 
 	/** Camera shift job */
-	static private final Scheduler shift_scheduler = new Scheduler("shift");
+	static private final MonitoredScheduler shift_scheduler =
+		new MonitoredScheduler("shift");
+
+	/** Notify thread for coalesced attribute notifications */
+	static private final MonitoredScheduler NOTIFY =
+		new MonitoredScheduler("notify");
+
+	/** Event thread for write-behind event storage */
+	static private final MonitoredScheduler EVENT =
+		new MonitoredScheduler("event");
+
+	/** Event journal file */
+	static private final File EVENT_JOURNAL =
+		new File("/var/lib/iris/event.journal");
 
 	/** Sample archive factory */
 	static public final SampleArchiveFactoryImpl a_factory =
 		new SampleArchiveFactoryImpl();
 
+	/** Vehicle event log writer */
+	static public final VehicleEventWriter v_writer =
+		new VehicleEventWriter();
+
+	/** Flush samples job */
+	static private FlushSamplesJob flush_samples;
+
 	/** SONAR server */
 	static public Server server;
 
@@ -112,12 +135,18 @@ public class MainServer {
 			IrisRoleImpl.lookup(store, ns);
 			IrisUserImpl.lookup(store, ns);
 			BaseObjectImpl.loadAll(store, ns);
+			FLUSH.setMaxQueue(
+				SystemAttrEnum.FLUSH_QUEUE_MAX.getInt());
+			BaseEvent.writer = createEventWriter();
+			EVENT.addJob(BaseEvent.writer);
+			addShutdownHook();
 			scheduleTimerJobs();
 			scheduleFlushJobs();
 			aws_scheduler.addJob(new AwsJob());
 			shift_scheduler.addJob(
 				new CameraShiftJob(shift_scheduler, new VideoServerCoupler(props), null, 600000));
-			server = new Server(ns, props, new AccessLogger(FLUSH));
+			BaseObjectImpl.notifier = new AttributeNotifier(NOTIFY);
+			server = new Server(ns, props, new AccessLogger());
 			auth_provider = new IrisProvider();
 			server.addProvider(auth_provider);
 			System.err.println("IRIS Server active");
@@ -182,6 +211,42 @@ public class MainServer {
 		);
 	}
 
+	/** Create the write-behind event writer */
+	static private EventWriter createEventWriter() {
+		int c = SystemAttrEnum.EVENT_QUEUE_MAX.getInt();
+		EventJournal j = SystemAttrEnum.EVENT_JOURNAL_ENABLE
+			.getBoolean() ? new EventJournal(EVENT_JOURNAL) : null;
+		return new EventWriter(store, c, j);
+	}
+
+	/** Add a hook to store queued events and close sample files at
+	 * shutdown */
+	static private void addShutdownHook() {
+		Runtime.getRuntime().addShutdownHook(new Thread("shutdown") {
+			@Override
+			public void run() {
+				EventWriter w = BaseEvent.writer;
+				if (w != null)
+					w.drain();
+				closeVehicleEventWriter();
+				FlushSamplesJob fs = flush_samples;
+				if (fs != null)
+					fs.close();
+			}
+		});
+	}
+
+	/** Write buffered vehicle events and close the .vlog files */
+	static private void closeVehicleEventWriter() {
+		try {
+			v_writer.close();
+		}
+		catch (IOException e) {
+			System.err.println("Vehicle event log: " +
+				e.getMessage());
+		}
+	}
+
 	/** Create the server namespace */
 	static private WhitelistNamespace createNamespace(Properties props)
 		throws UnknownHostException, NumberFormatException
@@ -216,7 +281,9 @@ public class MainServer {
 
 	/** Schedule jobs on FLUSH thread */
 	static private void scheduleFlushJobs() {
-		FLUSH.addJob(new FlushSamplesJob(a_factory));
+		flush_samples = new FlushSamplesJob(a_factory);
+		FLUSH.addJob(flush_samples);
+		FLUSH.addJob(v_writer);
 		FLUSH.addJob(new ArchiveSamplesJob(a_factory));
 		FLUSH.addJob(new ProfilingJob());
 		FLUSH.addJob(new XmlConfigJob());
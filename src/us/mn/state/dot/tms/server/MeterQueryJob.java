@@ -16,7 +16,6 @@ package us.mn.state.dot.tms.server;
 
 import java.util.Calendar;
 import java.util.Iterator;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.tms.DeviceRequest;
 import us.mn.state.dot.tms.RampMeter;
 import us.mn.state.dot.tms.RampMeterHelper;
@@ -27,7 +26,7 @@ import static us.mn.state.dot.tms.server.SampleQuery30SecJob.OFFSET_SECS;
  *
  * @author Douglas Lau
  */
-public class MeterQueryJob extends Job {
+public class MeterQueryJob extends MonitoredJob {
 
 	/** Create a new ramp meter status query job */
 	public MeterQueryJob() {
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2009-2014  Minnesota Department of Transportation
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -16,23 +17,28 @@ package us.mn.state.dot.tms.server;
 
 import java.util.Calendar;
 import java.util.Iterator;
-import us.mn.state.dot.sched.Job;
-import us.mn.state.dot.sched.Scheduler;
+import us.mn.state.dot.sched.DebugLog;
 import us.mn.state.dot.tms.RampMeter;
 import us.mn.state.dot.tms.RampMeterHelper;
+import us.mn.state.dot.tms.SystemAttrEnum;
 
 /**
- * Job to calculate station data and ramp metering.
+ * Job to calculate station data and ramp metering.  Stations and corridors
+ * are independent within each phase of the cycle, so a phase may be split
+ * into shards and calculated in parallel.
  *
  * @author Douglas Lau
  */
-public class MeteringJob extends Job {
+public class MeteringJob extends MonitoredJob {
 
 	/** Seconds to offset each poll from start of interval */
 	static private final int OFFSET_SECS = 29;
 
+	/** Metering cycle debug log */
+	static private final DebugLog CYCLE_LOG = new DebugLog("metering");
+
 	/** FLUSH Scheduler for writing XML (I/O to disk) */
-	private final Scheduler flush;
+	private final MonitoredScheduler flush;
 
 	/** Station manager */
 	private final StationManager station_manager;
@@ -40,8 +46,18 @@ public class MeteringJob extends Job {
 	/** Job to be performed after data has been processed */
 	private final FlushXmlJob flush_job;
 
+	/** Executor for each phase of the cycle */
+	private final CycleExecutor cycle = new CycleExecutor(
+		SystemAttrEnum.METERING_THREADS.getInt());
+
+	/** Time stamp of previous phase (ns) */
+	private long stamp;
+
+	/** Phase timing for debug log */
+	private final StringBuilder timing = new StringBuilder();
+
 	/** Create a new metering job */
-	public MeteringJob(Scheduler f) {
+	public MeteringJob(MonitoredScheduler f) {
 		super(Calendar.SECOND, 30, Calendar.SECOND, OFFSET_SECS);
 		flush = f;
 		station_manager = new StationManager();
@@ -50,20 +66,25 @@ public class MeteringJob extends Job {
 
 	/** Perform the metering job */
 	public void perform() {
+		startTiming();
 		try {
-			station_manager.calculateData();
+			station_manager.calculateData(cycle);
+			logPhase("stations");
 			// Perform flush job after station data calculated
 			flush.addJob(flush_job);
-			BaseObjectImpl.corridors.findBottlenecks();
+			BaseObjectImpl.corridors.findBottlenecks(cycle);
+			logPhase("bottlenecks");
 		}
 		finally {
 			validateMetering();
+			logTiming();
 		}
 	}
 
 	/** Validate all metering algorithms */
 	private void validateMetering() {
-		KAdaptiveAlgorithm.processAllStates();
+		KAdaptiveAlgorithm.processAllStates(cycle);
+		logPhase("k_adaptive");
 		Iterator<RampMeter> it = RampMeterHelper.iterator();
 		while(it.hasNext()) {
 			RampMeter rm = it.next();
@@ -72,7 +93,9 @@ public class MeteringJob extends Job {
 				meter.validateAlgorithm();
 			}
 		}
-		StratifiedAlgorithm.processAllStates();
+		logPhase("validate");
+		StratifiedAlgorithm.processAllStates(cycle);
+		logPhase("stratified");
 		it = RampMeterHelper.iterator();
 		while(it.hasNext()) {
 			RampMeter rm = it.next();
@@ -82,5 +105,28 @@ public class MeteringJob extends Job {
 				meter.updateRatePlanned();
 			}
 		}
+		logPhase("meters");
+	}
+
+	/** Start timing the phases of a cycle */
+	private void startTiming() {
+		timing.setLength(0);
+		stamp = System.nanoTime();
+	}
+
+	/** Record the time taken by one phase */
+	private void logPhase(String phase) {
+		long now = System.nanoTime();
+		timing.append(' ').append(phase).append('=')
+		      .append((now - stamp) / 1000000).append("ms");
+		stamp = now;
+	}
+
+	/** Log the timing of all phases */
+	private void logTiming() {
+		if(CYCLE_LOG.isOpen()) {
+			CYCLE_LOG.log((cycle.isParallel() ? "parallel" :
+				"serial") + timing);
+		}
 	}
 }
@@ -0,0 +1,217 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicBoolean;
+import us.mn.state.dot.sched.Job;
+import us.mn.state.dot.sched.TimeSteward;
+
+/**
+ * A monitored job records its wait and run times when performed by a
+ * MonitoredScheduler.  The scheduler runs a delegate job created with the
+ * same timing, which calls perform on this job.
+ *
+ * @author Jacob Barde
+ */
+abstract public class MonitoredJob extends Job {
+
+	/** Get the number of milliseconds in a calendar field */
+	static private long fieldMs(int f) {
+		switch (f) {
+		case Calendar.MILLISECOND:
+			return 1;
+		case Calendar.SECOND:
+			return 1000;
+		case Calendar.MINUTE:
+			return 60 * 1000;
+		case Calendar.HOUR:
+		case Calendar.HOUR_OF_DAY:
+			return 60 * 60 * 1000;
+		case Calendar.DATE:
+			return 24 * 60 * 60 * 1000;
+		default:
+			throw new IllegalArgumentException("Bad field: " + f);
+		}
+	}
+
+	/** Delegate job which is scheduled in place of a monitored job */
+	private class Delegate extends Job {
+		private Delegate(int f, int i, int of, int o) {
+			super(f, i, of, o);
+		}
+		private Delegate(int f, int i) {
+			super(f, i);
+		}
+		private Delegate(int ms) {
+			super(ms);
+		}
+		private Delegate() {
+			super();
+		}
+		@Override
+		public void perform() throws Exception {
+			performMonitored();
+		}
+		@Override
+		public void complete() {
+			MonitoredJob.this.complete();
+		}
+	}
+
+	/** Repeat interval (ms), or 0 for one-shot jobs */
+	private final long interval_ms;
+
+	/** Offset from start of interval (ms) */
+	private final long offset_ms;
+
+	/** Delay before performing a one-shot job (ms) */
+	private final long delay_ms;
+
+	/** Delegate job to add to a scheduler */
+	final Job delegate;
+
+	/** Scheduler which the job was added to */
+	private volatile MonitoredScheduler scheduler;
+
+	/** Time a one-shot job is due to be performed */
+	private volatile long due;
+
+	/** Flag indicating a one-shot job is waiting to be performed */
+	private final AtomicBoolean pending = new AtomicBoolean();
+
+	/** Start of interval for previous run */
+	private long prev_slot = 0;
+
+	/** Create a new repeating monitored job.
+	 * @param f Calendar field for interval.
+	 * @param i Interval between runs.
+	 * @param of Calendar field for offset.
+	 * @param o Offset from start of interval. */
+	public MonitoredJob(int f, int i, int of, int o) {
+		super(f, i, of, o);
+		interval_ms = i * fieldMs(f);
+		offset_ms = o * fieldMs(of);
+		delay_ms = 0;
+		delegate = new Delegate(f, i, of, o);
+	}
+
+	/** Create a new repeating monitored job.
+	 * @param f Calendar field for interval.
+	 * @param i Interval between runs. */
+	public MonitoredJob(int f, int i) {
+		super(f, i);
+		interval_ms = i * fieldMs(f);
+		offset_ms = 0;
+		delay_ms = 0;
+		delegate = new Delegate(f, i);
+	}
+
+	/** Create a new one-shot monitored job.
+	 * @param ms Delay before performing job (ms). */
+	public MonitoredJob(int ms) {
+		super(ms);
+		interval_ms = 0;
+		offset_ms = 0;
+		delay_ms = ms;
+		delegate = new Delegate(ms);
+	}
+
+	/** Create a new one-shot monitored job, to perform immediately */
+	public MonitoredJob() {
+		super();
+		interval_ms = 0;
+		offset_ms = 0;
+		delay_ms = 0;
+		delegate = new Delegate();
+	}
+
+	/** Check if the job repeats at an interval */
+	private boolean hasInterval() {
+		return interval_ms > 0;
+	}
+
+	/** Get the job name for statistics */
+	public String getJobName() {
+		String n = getClass().getName();
+		return n.substring(n.lastIndexOf('.') + 1);
+	}
+
+	/** Check if a one-shot job may be rejected when too many jobs are
+	 * waiting on the scheduler.  Jobs which must not be lost, such as
+	 * storing data, override this to return false. */
+	public boolean isRejectable() {
+		return true;
+	}
+
+	/** Called when the job is added to a scheduler.
+	 * @param s Scheduler.
+	 * @return true if a one-shot job is now pending. */
+	boolean submit(MonitoredScheduler s) {
+		scheduler = s;
+		if (hasInterval())
+			return false;
+		due = TimeSteward.currentTimeMillis() + delay_ms;
+		return pending.compareAndSet(false, true);
+	}
+
+	/** Called when the job is removed from a scheduler.
+	 * @return true if a one-shot job was pending. */
+	boolean cancel() {
+		return pending.compareAndSet(true, false);
+	}
+
+	/** Perform the job, recording statistics */
+	private void performMonitored() throws Exception {
+		MonitoredScheduler s = scheduler;
+		long start = TimeSteward.currentTimeMillis();
+		long wait;
+		long missed = 0;
+		if (hasInterval()) {
+			long slot = intervalStart(start);
+			if (prev_slot > 0 && slot > prev_slot + interval_ms)
+				missed = (slot - prev_slot) / interval_ms - 1;
+			prev_slot = slot;
+			wait = start - slot;
+		} else {
+			wait = start - due;
+			if (s != null && pending.compareAndSet(true, false))
+				s.started();
+		}
+		try {
+			perform();
+		}
+		finally {
+			if (s != null) {
+				long run = TimeSteward.currentTimeMillis() -
+					start;
+				s.record(this, wait, run, missed);
+			}
+		}
+	}
+
+	/** Get the start of the most recent interval (in local time).
+	 * @param now Current time stamp.
+	 * @return Time stamp of interval start. */
+	private long intervalStart(long now) {
+		long tz = TimeZone.getDefault().getOffset(now);
+		long t = now + tz - offset_ms;
+		long m = t % interval_ms;
+		if (m < 0)
+			m += interval_ms;
+		return t - m + offset_ms - tz;
+	}
+}
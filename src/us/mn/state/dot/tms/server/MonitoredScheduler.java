@@ -0,0 +1,353 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import us.mn.state.dot.sched.DebugLog;
+import us.mn.state.dot.sched.Job;
+import us.mn.state.dot.sched.Scheduler;
+import static us.mn.state.dot.tms.server.XmlWriter.createAttribute;
+
+/**
+ * A monitored scheduler runs jobs on one or more scheduler threads, and
+ * records statistics for each class of MonitoredJob.  Each job class is
+ * always run on the same worker thread, so jobs of one class never run
+ * concurrently.  Other jobs are run without monitoring.
+ *
+ * The number of waiting one-shot monitored jobs can be bounded.  When the
+ * bound is reached, new one-shot monitored jobs are rejected: they are not
+ * scheduled, and addJob returns false so the caller can decide how to
+ * handle them.  Repeating jobs, and jobs which must not be lost (see
+ * MonitoredJob.isRejectable), are never rejected.  One-shot jobs should be
+ * MonitoredJobs, since plain jobs are not counted in the depth.
+ *
+ * @author Jacob Barde
+ */
+public class MonitoredScheduler {
+
+	/** Scheduler debug log */
+	static private final DebugLog SCHEDULER_LOG =
+		new DebugLog("scheduler");
+
+	/** All monitored schedulers */
+	static private final List<MonitoredScheduler> ALL =
+		new CopyOnWriteArrayList<MonitoredScheduler>();
+
+	/** Get all monitored schedulers */
+	static public List<MonitoredScheduler> getAll() {
+		return ALL;
+	}
+
+	/** Number of histogram buckets */
+	static private final int N_BUCKETS = 20;
+
+	/** Histogram of latencies, with power-of-two millisecond buckets.
+	 * Bucket 0 counts zero values; bucket b counts values from 2^(b-1)
+	 * to 2^b - 1; the last bucket also counts all larger values. */
+	static public class Histogram {
+
+		/** Get the bucket for a value */
+		static private int bucket(long ms) {
+			if (ms <= 0)
+				return 0;
+			int b = 64 - Long.numberOfLeadingZeros(ms);
+			return Math.min(b, N_BUCKETS - 1);
+		}
+
+		/** Counts for each bucket */
+		private final AtomicLongArray counts =
+			new AtomicLongArray(N_BUCKETS);
+
+		/** Maximum recorded value */
+		private final AtomicLong max = new AtomicLong();
+
+		/** Record a value (ms) */
+		public void record(long ms) {
+			counts.incrementAndGet(bucket(ms));
+			long m = max.get();
+			while (ms > m && !max.compareAndSet(m, ms))
+				m = max.get();
+		}
+
+		/** Get the total count of values */
+		public long getCount() {
+			long n = 0;
+			for (int b = 0; b < N_BUCKETS; b++)
+				n += counts.get(b);
+			return n;
+		}
+
+		/** Get the maximum value (ms) */
+		public long getMax() {
+			return max.get();
+		}
+
+		/** Get an upper bound for a percentile.
+		 * @param p Percentile (0 to 100).
+		 * @return Upper bound of bucket containing percentile (ms). */
+		public long getPercentile(int p) {
+			long n = getCount();
+			long rank = (n * p + 99) / 100;
+			long c = 0;
+			for (int b = 0; b < N_BUCKETS; b++) {
+				c += counts.get(b);
+				if (c >= rank && c > 0) {
+					if (b == N_BUCKETS - 1)
+						return getMax();
+					long ub = (b > 0) ? (1L << b) - 1 : 0;
+					return Math.min(ub, getMax());
+				}
+			}
+			return getMax();
+		}
+
+		/** Get a string representation of the histogram */
+		@Override
+		public String toString() {
+			return "p50=" + getPercentile(50) + " p95=" +
+				getPercentile(95) + " max=" + getMax();
+		}
+	}
+
+	/** Statistics for one class of jobs */
+	static public class JobStats {
+
+		/** Wait time from due time to start (ms) */
+		public final Histogram wait = new Histogram();
+
+		/** Run time (ms) */
+		public final Histogram run = new Histogram();
+
+		/** Count of missed intervals */
+		private final AtomicLong n_missed = new AtomicLong();
+
+		/** Get the count of runs */
+		public long getRuns() {
+			return run.getCount();
+		}
+
+		/** Get the count of missed intervals */
+		public long getMissed() {
+			return n_missed.get();
+		}
+	}
+
+	/** Scheduler name */
+	private final String name;
+
+	/** Worker schedulers */
+	private final Scheduler[] workers;
+
+	/** Job statistics, by job name */
+	private final ConcurrentHashMap<String, JobStats> stats =
+		new ConcurrentHashMap<String, JobStats>();
+
+	/** Number of one-shot jobs waiting to be performed */
+	private final AtomicInteger depth = new AtomicInteger();
+
+	/** Maximum depth since last reported */
+	private final AtomicInteger max_depth = new AtomicInteger();
+
+	/** Maximum number of waiting one-shot jobs (0 for no limit) */
+	private volatile int max_queue = 0;
+
+	/** Count of rejected one-shot jobs */
+	private final AtomicLong n_rejected = new AtomicLong();
+
+	/** Create a new monitored scheduler with one worker thread.
+	 * @param n Scheduler name. */
+	public MonitoredScheduler(String n) {
+		this(n, 1);
+	}
+
+	/** Create a new monitored scheduler.
+	 * @param n Scheduler name.
+	 * @param n_workers Number of worker threads. */
+	public MonitoredScheduler(String n, int n_workers) {
+		name = n;
+		workers = new Scheduler[Math.max(n_workers, 1)];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Scheduler((workers.length > 1)
+				? n + "_" + i : n);
+		}
+		ALL.add(this);
+	}
+
+	/** Get the scheduler name */
+	public String getName() {
+		return name;
+	}
+
+	/** Get the worker for a job */
+	private Scheduler worker(Job job) {
+		int h = job.getClass().getName().hashCode() & 0x7FFFFFFF;
+		return workers[h % workers.length];
+	}
+
+	/** Set the maximum number of waiting one-shot jobs.
+	 * @param m Maximum number of jobs, or 0 for no limit. */
+	public void setMaxQueue(int m) {
+		max_queue = Math.max(m, 0);
+	}
+
+	/** Add a job to the scheduler.
+	 * @param job Job to add.
+	 * @return true if the job was added, or false if it was rejected
+	 *         because too many one-shot jobs are waiting. */
+	public boolean addJob(Job job) {
+		if (job instanceof MonitoredJob) {
+			MonitoredJob mj = (MonitoredJob) job;
+			if (mj.submit(this) && !reserve(mj.isRejectable())) {
+				mj.cancel();
+				n_rejected.incrementAndGet();
+				if (SCHEDULER_LOG.isOpen()) {
+					SCHEDULER_LOG.log(name + ": rejected " +
+						mj.getJobName());
+				}
+				return false;
+			}
+			worker(job).addJob(mj.delegate);
+		} else
+			worker(job).addJob(job);
+		return true;
+	}
+
+	/** Reserve a place for a one-shot job.
+	 * @param rejectable True if the job may be rejected.
+	 * @return true if the job can be added, false if the queue is full. */
+	private boolean reserve(boolean rejectable) {
+		int mq = rejectable ? max_queue : 0;
+		while (true) {
+			int d = depth.get();
+			if (mq > 0 && d >= mq)
+				return false;
+			int n = d + 1;
+			if (depth.compareAndSet(d, n)) {
+				int m = max_depth.get();
+				while (n > m && !max_depth.compareAndSet(m, n))
+					m = max_depth.get();
+				return true;
+			}
+		}
+	}
+
+	/** Remove a job from the scheduler */
+	public void removeJob(Job job) {
+		if (job instanceof MonitoredJob) {
+			MonitoredJob mj = (MonitoredJob) job;
+			worker(job).removeJob(mj.delegate);
+			if (mj.cancel())
+				depth.decrementAndGet();
+		} else
+			worker(job).removeJob(job);
+	}
+
+	/** Called when a pending one-shot job is started */
+	void started() {
+		depth.decrementAndGet();
+	}
+
+	/** Record statistics for one run of a job.
+	 * @param job Job which was performed.
+	 * @param wait Time from due to start (ms).
+	 * @param run Time to perform job (ms).
+	 * @param missed Number of missed intervals. */
+	void record(MonitoredJob job, long wait, long run, long missed) {
+		JobStats js = lookupStats(job.getJobName());
+		js.wait.record(wait);
+		js.run.record(run);
+		if (missed > 0)
+			js.n_missed.addAndGet(missed);
+	}
+
+	/** Lookup statistics for a job name */
+	private JobStats lookupStats(String jn) {
+		JobStats js = stats.get(jn);
+		if (js == null) {
+			js = new JobStats();
+			JobStats pjs = stats.putIfAbsent(jn, js);
+			if (pjs != null)
+				js = pjs;
+		}
+		return js;
+	}
+
+	/** Get the number of one-shot jobs waiting to be performed */
+	public int getDepth() {
+		return depth.get();
+	}
+
+	/** Get the count of rejected one-shot jobs */
+	public long getRejected() {
+		return n_rejected.get();
+	}
+
+	/** Get a sorted copy of the job statistics */
+	private Map<String, JobStats> getStats() {
+		return new TreeMap<String, JobStats>(stats);
+	}
+
+	/** Log scheduler statistics.  The maximum depth is reset. */
+	public void logStats(DebugLog log) {
+		log.log("Scheduler " + name + ": depth=" + depth.get() +
+			", max_depth=" + max_depth.getAndSet(depth.get()) +
+			", rejected=" + n_rejected.get());
+		for (Map.Entry<String, JobStats> e: getStats().entrySet()) {
+			JobStats js = e.getValue();
+			log.log("  " + e.getKey() + ": runs=" + js.getRuns() +
+				", missed=" + js.getMissed() + ", wait " +
+				js.wait + ", run " + js.run);
+		}
+	}
+
+	/** Write scheduler statistics as an XML element */
+	public void writeXml(Writer w) throws IOException {
+		w.write("<scheduler");
+		w.write(createAttribute("name", name));
+		w.write(createAttribute("workers", workers.length));
+		w.write(createAttribute("depth", depth.get()));
+		w.write(createAttribute("rejected", n_rejected.get()));
+		w.write(">\n");
+		for (Map.Entry<String, JobStats> e: getStats().entrySet()) {
+			JobStats js = e.getValue();
+			w.write("<job");
+			w.write(createAttribute("name", e.getKey()));
+			w.write(createAttribute("runs", js.getRuns()));
+			w.write(createAttribute("missed", js.getMissed()));
+			writeHistogram(w, "wait", js.wait);
+			writeHistogram(w, "run", js.run);
+			w.write("/>\n");
+		}
+		w.write("</scheduler>\n");
+	}
+
+	/** Write histogram attributes */
+	static private void writeHistogram(Writer w, String pre, Histogram h)
+		throws IOException
+	{
+		w.write(createAttribute(pre + "_p50", h.getPercentile(50)));
+		w.write(createAttribute(pre + "_p95", h.getPercentile(95)));
+		w.write(createAttribute(pre + "_max", h.getMax()));
+	}
+}
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2010-2012  Minnesota Department of Transportation
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -14,17 +15,28 @@
  */
 package us.mn.state.dot.tms.server;
 
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 import static us.mn.state.dot.tms.server.Constants.MISSING_DATA;
 
 /**
- * A cache for periodic sample data.  
+ * A cache for periodic sample data.  Samples are stored in a ring of values
+ * indexed by sample number (start time divided by period), so adding and
+ * looking up a sample takes constant time.  Readers do not lock the cache.
  *
  * @author Douglas Lau
  */
 public class PeriodicSampleCache {
 
+	/** Maximum time span of cached samples (seconds).  FlushSamplesJob
+	 * normally purges samples after about 12 minutes. */
+	static private final int MAX_SPAN_SEC = 30 * 60;
+
+	/** Minimum number of samples in a ring */
+	static private final int MIN_CAPACITY = 4;
+
 	/** Interpolate summed sample data into an array of values.
 	 * @param values Array of existing sample values.
 	 * @param total Total of all sample values.
@@ -107,13 +119,112 @@ public class PeriodicSampleCache {
 		return vals;
 	}
 
+	/** Ring of sample values with one sampling period.  The slot for a
+	 * sample number is the number modulo the capacity.  Only sample
+	 * numbers in the window from first to last are valid; all other slots
+	 * contain MISSING_DATA.  Writers must lock the cache.  When moving the
+	 * window forward, first is updated before any slot is reused, so a
+	 * reader can check first after reading a slot to validate it. */
+	static private class Ring {
+
+		/** Sampling period (seconds) */
+		private final int period;
+
+		/** Sampling period (milliseconds) */
+		private final long period_ms;
+
+		/** Sample values */
+		private final AtomicIntegerArray values;
+
+		/** First sample number in window */
+		private volatile long first;
+
+		/** Last sample number in window */
+		private volatile long last;
+
+		/** Count of samples in window (guarded by cache lock) */
+		private int count = 0;
+
+		/** Create a new ring.
+		 * @param p Sampling period (seconds).
+		 * @param num Initial sample number. */
+		private Ring(int p, long num) {
+			period = p;
+			period_ms = p * 1000L;
+			int cap = Math.max(MAX_SPAN_SEC / p, MIN_CAPACITY);
+			values = new AtomicIntegerArray(cap);
+			for(int i = 0; i < cap; i++)
+				values.set(i, MISSING_DATA);
+			first = num;
+			last = num;
+		}
+
+		/** Get the sample number for a start time stamp */
+		private long sampleNum(long start) {
+			return start / period_ms;
+		}
+
+		/** Get the slot for a sample number */
+		private int slot(long num) {
+			return (int) (num % values.length());
+		}
+
+		/** Get the value of a sample (does not require lock).
+		 * @param num Sample number.
+		 * @return Sample value, or MISSING_DATA. */
+		private int get(long num) {
+			if(num > last)
+				return MISSING_DATA;
+			int v = values.get(slot(num));
+			return (num >= first) ? v : MISSING_DATA;
+		}
+
+		/** Put the value of a sample.
+		 * @param num Sample number.
+		 * @param v Sample value. */
+		private void put(long num, int v) {
+			if(num > last) {
+				long f = num - values.length() + 1;
+				if(f > first)
+					moveFirst(f);
+				store(num, v);
+				last = num;
+			} else if(num >= first) {
+				assert values.get(slot(num)) < 0 :
+					"Duplicate start time";
+				store(num, v);
+			} else if(num > last - values.length()) {
+				store(num, v);
+				first = num;
+			}
+			// else: too old for the ring
+		}
+
+		/** Store a value in the slot for a sample number */
+		private void store(long num, int v) {
+			if(values.getAndSet(slot(num), v) < 0)
+				count++;
+		}
+
+		/** Move the first sample number forward, clearing old slots.
+		 * @param f New first sample number. */
+		private void moveFirst(long f) {
+			long f0 = first;
+			first = f;
+			long end = Math.min(f, last + 1);
+			for(long n = f0; n < end; n++) {
+				int v = values.getAndSet(slot(n), MISSING_DATA);
+				if(v >= 0)
+					count--;
+			}
+		}
+	}
+
 	/** Sample type */
 	public final PeriodicSampleType sample_type;
 
-	/** Collection of periodic samples.  Every sample is guaranteed to
-	 * have the same sampling period. */
-	private final ConcurrentSkipListSet<PeriodicSample> samples =
-		new ConcurrentSkipListSet<PeriodicSample>();
+	/** Ring of cached samples (null if none added yet) */
+	private volatile Ring ring;
 
 	/** Create a new periodic sample cache.
 	 * @param tp Sample type. */
@@ -125,10 +236,10 @@ public class PeriodicSampleCache {
 	 * If the sampling period is incompatable with existing samples, the
 	 * cache is cleared first.
 	 * @param ps Sample to add to the cache. */
-	public void add(PeriodicSample ps) {
+	public synchronized void add(PeriodicSample ps) {
 		if(sample_type.isValid(ps)) {
 			if(!isPeriodOk(ps.period))
-				samples.clear();
+				ring = null;
 			if(isPeriodSame(ps.period))
 				addSample(ps);
 			else
@@ -152,26 +263,23 @@ public class PeriodicSampleCache {
 	 * @param period Default sample period.
 	 * @return Sample period (seconds). */
 	private int getPeriod(int period) {
-		if(samples.isEmpty())
+		Ring r = ring;
+		if(r == null || r.count == 0)
 			return period;
 		else
-			return samples.first().period;
+			return r.period;
 	}
 
 	/** Add a sample */
 	private void addSample(PeriodicSample ps) {
 		assert ps.period == getPeriod(ps.period) : "Invalid period";
-		assert !exists(ps.start()) : "Duplicate start time";
-		samples.add(ps);
-	}
-
-	/** Check if a sample exists with the given time stamp (start) */
-	private boolean exists(long stamp) {
-		for(PeriodicSample ps: samples) {
-			if(ps.start() == stamp)
-				return true;
+		Ring r = ring;
+		if(r == null || r.count == 0) {
+			long num = ps.start() / (ps.period * 1000L);
+			r = new Ring(ps.period, num);
+			ring = r;
 		}
-		return false;
+		r.put(r.sampleNum(ps.start()), ps.value);
 	}
 
 	/** Interpolate sample data from a sample with a larger period.
@@ -182,7 +290,7 @@ public class PeriodicSampleCache {
 		int period = getPeriod(ps.period);
 		int n_samples = ps.period / period;
 		assert n_samples > 1;
-		int[] values = getValues(start, ps.end(), n_samples, period);
+		int[] values = getValues(start, n_samples);
 		switch(sample_type.aggregation) {
 		case SUM:
 			addSamples(start, period, interpolateSum(values,
@@ -199,24 +307,14 @@ public class PeriodicSampleCache {
 
 	/** Get an array of sample values from the cache.
 	 * @param start Time stamp at start of samples.
-	 * @param end Time stamp at end of samples.
 	 * @param n_samples Number of sample values.
-	 * @param period Period used for samples.
 	 * @return Array of samples values. */
-	private int[] getValues(long start, long end, int n_samples,
-		int period)
-	{
-		int period_ms = period * 1000;
+	private int[] getValues(long start, int n_samples) {
+		Ring r = ring;
+		long num = r.sampleNum(start);
 		int[] values = new int[n_samples];
 		for(int i = 0; i < values.length; i++)
-			values[i] = MISSING_DATA;
-		for(PeriodicSample ps: samples) {
-			long stamp = ps.start();
-			if(stamp >= start && stamp < end) {
-				int i = (int)((stamp - start) / period_ms);
-				values[i] = ps.value;
-			}
-		}
+			values[i] = r.get(num + i);
 		return values;
 	}
 
@@ -235,21 +333,52 @@ public class PeriodicSampleCache {
 		}
 	}
 
-	/** Get a sample iterator. */
+	/** Get a sample iterator.  The iterator reads samples directly from
+	 * the cache, in time order, without locking.  It does not support
+	 * removing samples. */
 	public Iterator<PeriodicSample> iterator() {
-		return samples.iterator();
+		final Ring r = ring;
+		if(r == null)
+			return Collections.<PeriodicSample>emptyIterator();
+		return new Iterator<PeriodicSample>() {
+			private long num = r.first;
+			private int value = MISSING_DATA;
+			public boolean hasNext() {
+				while(value < 0) {
+					num = Math.max(num, r.first);
+					if(num > r.last)
+						return false;
+					value = r.get(num);
+					if(value < 0)
+						num++;
+				}
+				return true;
+			}
+			public PeriodicSample next() {
+				if(!hasNext())
+					throw new NoSuchElementException();
+				PeriodicSample ps = new PeriodicSample(
+					(num + 1) * r.period_ms, r.period,
+					value);
+				num++;
+				value = MISSING_DATA;
+				return ps;
+			}
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
 	}
 
 	/** Purge all samples before a specified time stamp.
 	 * @param before Time stamp to purge before. */
-	public void purge(long before) {
-		Iterator<PeriodicSample> it = iterator();
-		while(it.hasNext()) {
-			PeriodicSample ps = it.next();
-			if(ps.end() < before)
-				it.remove();
-			else
-				break;
+	public synchronized void purge(long before) {
+		Ring r = ring;
+		if(r != null) {
+			// First sample number with end time not before stamp
+			long f = (before + r.period_ms - 1) / r.period_ms - 1;
+			if(f > r.first)
+				r.moveFirst(f);
 		}
 	}
 }
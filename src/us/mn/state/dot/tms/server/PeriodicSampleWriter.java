@@ -42,12 +42,12 @@ public class PeriodicSampleWriter {
 	static private final Interval MIN_PERIOD = new Interval(5);
 
 	/** Get the number of samples per day */
-	static private int samplesPerDay(Interval period) {
+	static int samplesPerDay(Interval period) {
 		return (int)period.per(Interval.DAY);
 	}
 
 	/** Sample archive factory */
-	private final SampleArchiveFactory factory;
+	protected final SampleArchiveFactory factory;
 
 	/** Byte buffer for flushing samples to file */
 	private final ByteBuffer buffer = ByteBuffer.allocate(
@@ -67,6 +67,14 @@ public class PeriodicSampleWriter {
 		factory = f;
 	}
 
+	/** Close files for days before the day of a time stamp.  Files are
+	 * closed after each flush, so there is nothing to do here.
+	 * @param stamp Time stamp; no samples before it will be written. */
+	public void closeBefore(long stamp) { }
+
+	/** Close all open files */
+	public void close() { }
+
 	/** Flush samples from a cache to files */
 	public void flush(PeriodicSampleCache cache, String sensor_id)
 		throws IOException
@@ -170,7 +178,7 @@ public class PeriodicSampleWriter {
 	/** Compute the position of a sample in the file.
 	 * @param ps Periodic sample.
 	 * @return File position of sample (0 is first sample). */
-	private int samplePosition(PeriodicSample ps, int s_bytes) {
+	static int samplePosition(PeriodicSample ps, int s_bytes) {
 		return TimeSteward.secondOfDayInt(ps.start()) *
 		       s_bytes / ps.period;
 	}
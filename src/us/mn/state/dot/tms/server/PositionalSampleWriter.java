@@ -0,0 +1,248 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import us.mn.state.dot.sched.TimeSteward;
+import us.mn.state.dot.tms.units.Interval;
+import static us.mn.state.dot.tms.server.Constants.MISSING_DATA;
+
+/**
+ * A periodic sample writer which keeps day files open and writes samples
+ * in place.  Unlike PeriodicSampleWriter, a flush does not read and rewrite
+ * the whole day file -- each file is padded to a full day once, when it is
+ * opened, and only the slots for cached samples are written after that.
+ *
+ * Open file channels are kept in a bounded cache, with the least recently
+ * used channel closed when the limit is reached.  Channels for previous
+ * days are closed once no more samples can be written to them, so archived
+ * files are not held open.  Channels are written
+ * positionally instead of memory-mapped, since mapped buffers cannot be
+ * released until they are garbage collected.
+ *
+ * @author Jacob Barde
+ */
+public class PositionalSampleWriter extends PeriodicSampleWriter {
+
+	/** Close a file channel, ignoring any errors */
+	static private void closeChannel(FileChannel chan) {
+		try {
+			chan.close();
+		}
+		catch (IOException e) {
+			// nothing else to do
+		}
+	}
+
+	/** Open file channels, in access order */
+	private final LinkedHashMap<File, FileChannel> channels;
+
+	/** Day (yyyyMMdd) of samples in each open file */
+	private final HashMap<File, String> days = new HashMap<File, String>();
+
+	/** Buffer for one run of consecutive samples */
+	private final ByteBuffer run = ByteBuffer.allocate(
+		samplesPerDay(new Interval(5)) * PeriodicSampleType.MAX_BYTES);
+
+	/** Padding buffer for new files */
+	private final ByteBuffer pad = ByteBuffer.allocate(run.capacity());
+
+	/** File position of current run */
+	private transient long run_pos;
+
+	/** Current file */
+	private transient File file;
+
+	/** Current file channel */
+	private transient FileChannel channel;
+
+	/** Create a new positional sample writer.
+	 * @param f Sample archive factory.
+	 * @param max_open Maximum number of open files. */
+	public PositionalSampleWriter(SampleArchiveFactory f,
+		final int max_open)
+	{
+		super(f);
+		channels = new LinkedHashMap<File, FileChannel>(16, 0.75f,
+			true)
+		{
+			protected boolean removeEldestEntry(
+				Map.Entry<File, FileChannel> e)
+			{
+				if (size() > max_open) {
+					closeChannel(e.getValue());
+					days.remove(e.getKey());
+					return true;
+				} else
+					return false;
+			}
+		};
+	}
+
+	/** Flush samples from a cache to files */
+	@Override
+	public void flush(PeriodicSampleCache cache, String sensor_id)
+		throws IOException
+	{
+		file = null;
+		channel = null;
+		run.clear();
+		try {
+			flush(cache.iterator(), sensor_id, cache.sample_type);
+		}
+		catch (IOException e) {
+			if (file != null)
+				closeFile(file);
+			throw e;
+		}
+	}
+
+	/** Flush an iterator of samples to files */
+	private void flush(Iterator<PeriodicSample> it, String sensor_id,
+		PeriodicSampleType s_type) throws IOException
+	{
+		int s_bytes = s_type.sample_bytes;
+		while (it.hasNext()) {
+			PeriodicSample ps = it.next();
+			File f = factory.createFile(sensor_id, s_type, ps);
+			if (!f.equals(file)) {
+				writeRun();
+				file = f;
+				channel = lookupChannel(s_type, ps.period);
+				days.put(f, TimeSteward.dateShortString(
+					ps.start()));
+			}
+			long pos = samplePosition(ps, s_bytes);
+			if (pos != run_pos + run.position()) {
+				writeRun();
+				run_pos = pos;
+			}
+			s_type.putValue(run, ps.value);
+		}
+		writeRun();
+	}
+
+	/** Lookup an open channel for the current file.
+	 * @param s_type Sample type.
+	 * @param period Sample period (seconds). */
+	private FileChannel lookupChannel(PeriodicSampleType s_type,
+		int period) throws IOException
+	{
+		FileChannel chan = channels.get(file);
+		if (chan == null || !chan.isOpen()) {
+			chan = openChannel(s_type, period);
+			channels.put(file, chan);
+		}
+		return chan;
+	}
+
+	/** Open a channel for the current file, sized for one full day.
+	 * @param s_type Sample type.
+	 * @param period Sample period (seconds). */
+	private FileChannel openChannel(PeriodicSampleType s_type, int period)
+		throws IOException
+	{
+		int s_bytes = s_type.sample_bytes;
+		int n_size = samplesPerDay(new Interval(period)) * s_bytes;
+		FileChannel chan = new RandomAccessFile(file, "rw")
+			.getChannel();
+		try {
+			long size = chan.size();
+			if (size > n_size)
+				chan.truncate(n_size);
+			else if (size < n_size)
+				padChannel(chan, size - size % s_bytes, n_size,
+					s_type);
+			return chan;
+		}
+		catch (IOException e) {
+			chan.close();
+			throw e;
+		}
+	}
+
+	/** Pad a channel with MISSING_DATA for a full day.
+	 * @param chan File channel.
+	 * @param pos Position to start padding.
+	 * @param n_size Size of full day (bytes).
+	 * @param s_type Sample type. */
+	private void padChannel(FileChannel chan, long pos, int n_size,
+		PeriodicSampleType s_type) throws IOException
+	{
+		pad.clear();
+		int n_sam = (int)(n_size - pos) / s_type.sample_bytes;
+		for (int i = 0; i < n_sam; i++)
+			s_type.putValue(pad, MISSING_DATA);
+		pad.flip();
+		while (pad.hasRemaining())
+			pos += chan.write(pad, pos);
+	}
+
+	/** Write the current run of samples to the file channel */
+	private void writeRun() throws IOException {
+		run.flip();
+		long pos = run_pos;
+		while (run.hasRemaining())
+			pos += channel.write(run, pos);
+		run.clear();
+	}
+
+	/** Close one file, if it is open */
+	private void closeFile(File f) {
+		days.remove(f);
+		FileChannel chan = channels.remove(f);
+		if (chan != null)
+			closeChannel(chan);
+	}
+
+	/** Close files for days before the day of a time stamp */
+	@Override
+	public void closeBefore(long stamp) {
+		String day = TimeSteward.dateShortString(stamp);
+		Iterator<Map.Entry<File, FileChannel>> it =
+			channels.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<File, FileChannel> e = it.next();
+			String d = days.get(e.getKey());
+			if (d == null || d.compareTo(day) < 0) {
+				closeChannel(e.getValue());
+				days.remove(e.getKey());
+				it.remove();
+			}
+		}
+	}
+
+	/** Get the number of open files */
+	int getOpenFiles() {
+		return channels.size();
+	}
+
+	/** Close all open files */
+	@Override
+	public void close() {
+		for (FileChannel chan: channels.values())
+			closeChannel(chan);
+		channels.clear();
+		days.clear();
+	}
+}
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2000-2014  Minnesota Department of Transportation
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -25,6 +26,8 @@ import us.mn.state.dot.sched.TimeSteward;
 import us.mn.state.dot.sonar.Connection;
 import us.mn.state.dot.sonar.Namespace;
 import us.mn.state.dot.tms.BaseHelper;
+import us.mn.state.dot.tms.server.event.BaseEvent;
+import us.mn.state.dot.tms.server.event.EventWriter;
 
 /**
  * The server profiler is used to periodically write interesting server 
@@ -131,6 +134,46 @@ public class Profiler {
 		PROFILE_LOG.log(sb.toString());
 	}
 
+	/** Debug vehicle event log writer information */
+	public void debugVehicleEvents() {
+		if(PROFILE_LOG.isOpen()) {
+			VehicleEventWriter w = MainServer.v_writer;
+			PROFILE_LOG.log("Vehicle events buffered: " +
+				w.getBufferedCount());
+			PROFILE_LOG.log("Vehicle events dropped: " +
+				w.getDroppedCount());
+		}
+	}
+
+	/** Debug SQL statement statistics */
+	public void debugSQL() {
+		SQLConnection store = BaseEvent.store;
+		if(PROFILE_LOG.isOpen() && store != null)
+			store.logStats(PROFILE_LOG);
+	}
+
+	/** Debug event writer statistics */
+	public void debugEvents() {
+		EventWriter writer = BaseEvent.writer;
+		if(PROFILE_LOG.isOpen() && writer != null)
+			writer.logStats(PROFILE_LOG);
+	}
+
+	/** Debug attribute notification statistics */
+	public void debugNotify() {
+		AttributeNotifier notifier = BaseObjectImpl.notifier;
+		if(PROFILE_LOG.isOpen() && notifier != null)
+			notifier.logStats(PROFILE_LOG);
+	}
+
+	/** Debug scheduler statistics */
+	public void debugSchedulers() {
+		if(PROFILE_LOG.isOpen()) {
+			for(MonitoredScheduler s: MonitoredScheduler.getAll())
+				s.logStats(PROFILE_LOG);
+		}
+	}
+
 	/** Append to uptime log file */
 	public void appendUptimeLog() throws IOException {
 		FileWriter fw = new FileWriter(UPTIME_LOG_FILE, true);
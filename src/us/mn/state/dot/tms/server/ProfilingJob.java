@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2009  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -16,7 +17,6 @@ package us.mn.state.dot.tms.server;
 
 import java.io.IOException;
 import java.util.Calendar;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.tms.SystemAttrEnum;
 
 /**
@@ -24,7 +24,7 @@ import us.mn.state.dot.tms.SystemAttrEnum;
  *
  * @author Douglas Lau
  */
-public class ProfilingJob extends Job {
+public class ProfilingJob extends MonitoredJob {
 
 	/** Seconds to offset each poll from start of interval */
 	static protected final int OFFSET_SECS = 1;
@@ -41,6 +41,12 @@ public class ProfilingJob extends Job {
 	public void perform() throws IOException {
 		profiler.debugMemory();
 		profiler.debugThreads();
+		profiler.debugVehicleEvents();
+		profiler.debugSQL();
+		profiler.debugEvents();
+		profiler.debugNotify();
+		profiler.debugSchedulers();
+		new SchedulerXmlWriter().write();
 		if(SystemAttrEnum.UPTIME_LOG_ENABLE.getBoolean())
 			profiler.appendUptimeLog();
 	}
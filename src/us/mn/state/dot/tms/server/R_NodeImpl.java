@@ -2,6 +2,7 @@
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2007-2016  Minnesota Department of Transportation
  * Copyright (C) 2015  Iteris Inc.
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -18,6 +19,8 @@ package us.mn.state.dot.tms.server;
 import java.io.IOException;
 import java.io.Writer;
 import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -32,6 +35,7 @@ import static us.mn.state.dot.tms.GeoLocHelper.isSameCorridor;
 import us.mn.state.dot.tms.R_Node;
 import us.mn.state.dot.tms.R_NodeTransition;
 import us.mn.state.dot.tms.R_NodeType;
+import us.mn.state.dot.tms.StationHelper;
 import us.mn.state.dot.tms.SystemAttrEnum; 
 import us.mn.state.dot.tms.TMSException;
 import us.mn.state.dot.tms.geo.Position;
@@ -167,6 +171,7 @@ public class R_NodeImpl extends BaseObjectImpl implements R_Node {
 		if (station != null) {
 			try {
 				namespace.addObject(station);
+				StationHelper.updateIndex(station, station_id);
 			}
 			catch (NamespaceError e) {
 				e.printStackTrace();
@@ -174,6 +179,20 @@ public class R_NodeImpl extends BaseObjectImpl implements R_Node {
 		}
 	}
 
+	/** Store a new r_node */
+	@Override
+	public void doStore() throws TMSException {
+		super.doStore();
+		corridors.updateNode(this);
+	}
+
+	/** Destroy an r_node */
+	@Override
+	public void doDestroy() throws TMSException {
+		super.doDestroy();
+		corridors.removeNode(this);
+	}
+
 	/** Node location */
 	private GeoLocImpl geo_loc;
 
@@ -216,6 +235,7 @@ public class R_NodeImpl extends BaseObjectImpl implements R_Node {
 			return;
 		store.update(this, "node_type", t);
 		setNodeType(t);
+		corridors.updateNode(this);
 	}
 
 	/** Check if the r_node is an entrance */
@@ -310,6 +330,7 @@ public class R_NodeImpl extends BaseObjectImpl implements R_Node {
 			return;
 		store.update(this, "transition", t);
 		setTransition(t);
+		corridors.updateNode(this);
 	}
 
 	/** Get the transition type */
@@ -446,6 +467,7 @@ public class R_NodeImpl extends BaseObjectImpl implements R_Node {
 		if (a != abandoned) {
 			store.update(this, "abandoned", a);
 			setAbandoned(a);
+			corridors.updateNode(this);
 		}
 	}
 
@@ -492,8 +514,12 @@ public class R_NodeImpl extends BaseObjectImpl implements R_Node {
 
 	/** Update the station */
 	private void updateStation(StationImpl os, StationImpl s) {
-		if (s != null)
+		if (os != null)
+			StationHelper.removeIndex(os);
+		if (s != null) {
 			MainServer.server.addObject(s);
+			StationHelper.updateIndex(s, s.getName());
+		}
 		if (os != null)
 			os.notifyRemove();
 		station = s;
@@ -601,29 +627,35 @@ public class R_NodeImpl extends BaseObjectImpl implements R_Node {
 		return new SamplerSet(detectors.getAll());
 	}
 
-	/** Downstream roadway nodes */
-	private transient final List<R_NodeImpl> downstream =
-		new LinkedList<R_NodeImpl>();
+	/** Downstream roadway nodes.  The list is replaced when corridors
+	 * are rebuilt, and never modified after it is published. */
+	private transient volatile List<R_NodeImpl> downstream =
+		Collections.emptyList();
+
+	/** Downstream roadway nodes being built (guarded by corridor
+	 * manager lock) */
+	private transient final ArrayList<R_NodeImpl> next_downstream =
+		new ArrayList<R_NodeImpl>();
 
-	/** Clear the downstream roadway nodes */
+	/** Clear the downstream roadway nodes being built */
 	public void clearDownstream() {
-		synchronized (downstream) {
-			downstream.clear();
-		}
+		next_downstream.clear();
 	}
 
-	/** Add a downstream roadway node */
+	/** Add a downstream roadway node to the list being built */
 	public void addDownstream(R_NodeImpl d) {
-		synchronized (downstream) {
-			downstream.add(d);
-		}
+		next_downstream.add(d);
+	}
+
+	/** Publish the downstream roadway nodes which have been built */
+	public void publishDownstream() {
+		downstream = Collections.unmodifiableList(
+			new ArrayList<R_NodeImpl>(next_downstream));
 	}
 
 	/** Get a list of the downstream nodes */
 	public List<R_NodeImpl> getDownstream() {
-		synchronized (downstream) {
-			return new LinkedList<R_NodeImpl>(downstream);
-		}
+		return downstream;
 	}
 
 	/** Get a list of nodes forked from here */
@@ -17,7 +17,6 @@ package us.mn.state.dot.tms.server;
 import java.util.Calendar;
 import java.util.Iterator;
 import java.util.LinkedList;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.sched.TimeSteward;
 import us.mn.state.dot.tms.DMS;
 import us.mn.state.dot.tms.DMSHelper;
@@ -32,7 +31,7 @@ import us.mn.state.dot.tms.SystemAttrEnum;
  *
  * @author Douglas Lau
  */
-public class ReaperJob extends Job {
+public class ReaperJob extends MonitoredJob {
 
 	/** Get the incident clear time threshold (ms) */
 	static private long getIncidentClearThreshold() {
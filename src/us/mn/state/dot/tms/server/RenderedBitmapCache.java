@@ -0,0 +1,181 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of rendered message bitmaps (Base64-encoded), keyed by MULTI string
+ * and sign raster geometry.  The cache is cleared whenever a font, glyph,
+ * graphic or rendering system attribute (maximum lines or default
+ * justification) changes.  Each key also includes a version number, so a bitmap
+ * rendered while fonts were changing is never returned afterward.
+ *
+ * @author Jacob Barde
+ */
+public class RenderedBitmapCache {
+
+	/** Maximum number of cached messages */
+	static private final int MAX_ENTRIES = 512;
+
+	/** Cache key */
+	static private final class Key {
+		private final String multi;
+		private final int width;
+		private final int height;
+		private final int char_width;
+		private final int char_height;
+		private final int font_num;
+		private final long version;
+		private Key(String m, int w, int h, int cw, int ch, int df,
+			long v)
+		{
+			multi = m;
+			width = w;
+			height = h;
+			char_width = cw;
+			char_height = ch;
+			font_num = df;
+			version = v;
+		}
+		@Override
+		public boolean equals(Object o) {
+			if (o instanceof Key) {
+				Key k = (Key) o;
+				return multi.equals(k.multi) &&
+				       width == k.width &&
+				       height == k.height &&
+				       char_width == k.char_width &&
+				       char_height == k.char_height &&
+				       font_num == k.font_num &&
+				       version == k.version;
+			} else
+				return false;
+		}
+		@Override
+		public int hashCode() {
+			int h = multi.hashCode();
+			h = 31 * h + width;
+			h = 31 * h + height;
+			h = 31 * h + char_width;
+			h = 31 * h + char_height;
+			h = 31 * h + font_num;
+			return 31 * h + (int) version;
+		}
+	}
+
+	/** Shared render cache */
+	static private final RenderedBitmapCache CACHE =
+		new RenderedBitmapCache(MAX_ENTRIES);
+
+	/** Get the shared render cache */
+	static public RenderedBitmapCache getShared() {
+		return CACHE;
+	}
+
+	/** Invalidate the shared render cache (font, glyph, graphic or
+	 * rendering system attribute changed) */
+	static public void invalidate() {
+		CACHE.clear();
+	}
+
+	/** Cached bitmaps, in access order */
+	private final LinkedHashMap<Key, String> bitmaps;
+
+	/** Font set version */
+	private long version = 0;
+
+	/** Count of cache hits */
+	private long n_hits = 0;
+
+	/** Count of cache misses */
+	private long n_misses = 0;
+
+	/** Create a new render cache.
+	 * @param max_entries Maximum number of cached messages. */
+	public RenderedBitmapCache(final int max_entries) {
+		bitmaps = new LinkedHashMap<Key, String>(16, 0.75f, true) {
+			protected boolean removeEldestEntry(
+				Map.Entry<Key, String> e)
+			{
+				return size() > max_entries;
+			}
+		};
+	}
+
+	/** Get the current font set version */
+	public synchronized long getVersion() {
+		return version;
+	}
+
+	/** Clear the cache and advance the font set version */
+	public synchronized void clear() {
+		version++;
+		bitmaps.clear();
+	}
+
+	/** Lookup rendered bitmaps.
+	 * @param m MULTI string.
+	 * @param w Sign width (pixels).
+	 * @param h Sign height (pixels).
+	 * @param cw Character width (pixels).
+	 * @param ch Character height (pixels).
+	 * @param df Default font number.
+	 * @param v Font set version (from getVersion).
+	 * @return Base64-encoded bitmaps, or null if not cached. */
+	public synchronized String lookup(String m, int w, int h, int cw,
+		int ch, int df, long v)
+	{
+		String b = bitmaps.get(new Key(m, w, h, cw, ch, df, v));
+		if (b != null)
+			n_hits++;
+		else
+			n_misses++;
+		return b;
+	}
+
+	/** Store rendered bitmaps.  If fonts changed since the version was
+	 * read, the bitmaps are not stored.
+	 * @param m MULTI string.
+	 * @param w Sign width (pixels).
+	 * @param h Sign height (pixels).
+	 * @param cw Character width (pixels).
+	 * @param ch Character height (pixels).
+	 * @param df Default font number.
+	 * @param v Font set version (read before rendering).
+	 * @param b Base64-encoded bitmaps. */
+	public synchronized void store(String m, int w, int h, int cw,
+		int ch, int df, long v, String b)
+	{
+		if (v == version)
+			bitmaps.put(new Key(m, w, h, cw, ch, df, v), b);
+	}
+
+	/** Get the number of cached messages */
+	public synchronized int size() {
+		return bitmaps.size();
+	}
+
+	/** Get the count of cache hits */
+	public synchronized long getHits() {
+		return n_hits;
+	}
+
+	/** Get the count of cache misses */
+	public synchronized long getMisses() {
+		return n_misses;
+	}
+}
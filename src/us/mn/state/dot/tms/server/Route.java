@@ -30,7 +30,7 @@ import us.mn.state.dot.tms.units.Interval;
 public class Route implements Comparable<Route> {
 
 	/** Penalty (in goodness) for each trip in a route */
-	static private final float TRIP_PENALTY = 0.25f;
+	static protected final float TRIP_PENALTY = 0.25f;
 
 	/** Debug log */
 	private final DebugLog dlog;
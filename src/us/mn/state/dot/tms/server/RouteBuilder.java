@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2007-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -14,27 +15,23 @@
  */
 package us.mn.state.dot.tms.server;
 
+import java.util.HashMap;
 import java.util.LinkedList;
-import java.util.TreeSet;
+import java.util.PriorityQueue;
 import us.mn.state.dot.sched.DebugLog;
 import us.mn.state.dot.tms.GeoLoc;
 import us.mn.state.dot.tms.GeoLocHelper;
 import us.mn.state.dot.tms.SystemAttrEnum;
-import us.mn.state.dot.tms.units.Distance;
 
 /**
- * A route builder builds a route from an origin to a destination.
+ * A route builder builds a route from an origin to a destination.  Routes
+ * are searched in order of goodness (shortest first) on the corridor graph,
+ * so the search stops as soon as no better route can be found.
  *
  * @author Douglas Lau
  */
 public class RouteBuilder {
 
-	/** Maximum distance from origin to a corridor node (in meters) */
-	static private final float MAX_ORIGIN_M = 1000;
-
-	/** Maximum number of R_Nodes to follow on a corridor */
-	static private final int MAX_R_NODE_LIMIT = 100;
-
 	/** Debug log */
 	private final DebugLog dlog;
 
@@ -58,13 +55,53 @@ public class RouteBuilder {
 	private final int legs = SystemAttrEnum.ROUTE_MAX_LEGS.getInt();
 
 	/** Maximum route distance (miles) */
-	private float max_mi = SystemAttrEnum.ROUTE_MAX_MILES.getInt();
+	private final float max_mi = SystemAttrEnum.ROUTE_MAX_MILES.getInt();
+
+	/** A partial route, ending at a corridor graph vertex */
+	static private class Path implements Comparable<Path> {
+
+		/** Vertex at end of path */
+		private final CorridorGraph.Vertex vertex;
+
+		/** Previous path (null for origin) */
+		private final Path prev;
 
-	/** Working path */
-	private final LinkedList<ODPair> path = new LinkedList<ODPair>();
+		/** Branch from previous path to vertex */
+		private final CorridorGraph.Branch branch;
 
-	/** Set of all routes built */
-	private final TreeSet<Route> routes = new TreeSet<Route>();
+		/** Distance to vertex (miles) */
+		private final float distance;
+
+		/** Number of legs in path */
+		private final int n_legs;
+
+		/** Sequence number (for sorting equal paths) */
+		private final int seq;
+
+		/** Create a new path */
+		private Path(CorridorGraph.Vertex v, Path p,
+			CorridorGraph.Branch b, float d, int n, int s)
+		{
+			vertex = v;
+			prev = p;
+			branch = b;
+			distance = d;
+			n_legs = n;
+			seq = s;
+		}
+
+		/** Get the lowest goodness of any route using this path */
+		private float getBound() {
+			return distance + Route.TRIP_PENALTY * (n_legs + 1);
+		}
+
+		/** Compare to another path (for sorting) */
+		@Override
+		public int compareTo(Path o) {
+			int c = Float.compare(getBound(), o.getBound());
+			return (c != 0) ? c : seq - o.seq;
+		}
+	}
 
 	/** Create a new route builder.
 	 * @param dl Debug log.
@@ -76,35 +113,64 @@ public class RouteBuilder {
 		corridors = c;
 	}
 
-	/** Search a corridor for branching paths to a destination.
-	 * @param distance Distance.
-	 * @param origin Route origin.
-	 * @param destination Route destination.
-	 * @throws BadRouteException if route cannot be found. */
-	private void searchCorridor(float distance, GeoLoc origin,
-		GeoLoc destination) throws BadRouteException
-	{
-		Corridor c = corridors.getCorridor(origin);
-		if (c == null) {
-			log("BAD ORIGIN: " + origin.getName());
-			return;
+	/** Debug a route exception.
+	 * @param e Bad route exception. */
+	private void debugRouteException(BadRouteException e) {
+		if (isLogging())
+			log("BAD ROUTE: " + e.getMessage());
+	}
+
+	/** Find the best route from an origin to a destination.
+	 * @param o Route origin.
+	 * @param d Route destination.
+	 * @return Best route found. */
+	public Route findBestRoute(GeoLoc o, GeoLoc d) {
+		CorridorGraph graph = corridors.getGraph();
+		PriorityQueue<Path> queue = new PriorityQueue<Path>();
+		HashMap<GeoLoc, Integer> searched =
+			new HashMap<GeoLoc, Integer>();
+		int seq = 0;
+		queue.add(new Path(graph.getVertex(o), null, null, 0, 0,
+			seq++));
+		Route best = null;
+		while (!queue.isEmpty()) {
+			Path p = queue.poll();
+			if (best != null && p.getBound() > best.getGoodness())
+				break;
+			// A path with fewer legs to the same vertex was shorter
+			Integer n = searched.get(p.vertex.loc);
+			if (n != null && n <= p.n_legs)
+				continue;
+			searched.put(p.vertex.loc, p.n_legs);
+			Route r = buildRoute(p, d);
+			if (r != null && (best == null ||
+			    r.compareTo(best) < 0))
+				best = r;
+			if (p.n_legs < legs)
+				seq = searchBranches(graph, queue, p, d, seq);
 		}
-		R_NodeImpl r_node = c.findDownstreamNode(origin);
-		Distance m = Corridor.nodeDistance(r_node, origin);
-		if (m == null || m.m() > MAX_ORIGIN_M) {
-			throw new BadRouteException("ORIGIN OFF MAINLINE: " +
-				GeoLocHelper.getDescription(origin));
+		return best;
+	}
+
+	/** Search the branches from the end of a path.
+	 * @param graph Corridor graph.
+	 * @param queue Queue of paths to search.
+	 * @param p Path to search.
+	 * @param d Route destination.
+	 * @param seq Next path sequence number.
+	 * @return Next path sequence number. */
+	private int searchBranches(CorridorGraph graph,
+		PriorityQueue<Path> queue, Path p, GeoLoc d, int seq)
+	{
+		CorridorGraph.Vertex v = p.vertex;
+		if (v.corridor == null) {
+			log("BAD ORIGIN: " + v.loc.getName());
+			return seq;
 		}
-		int i = 0;
-		while (r_node != null) {
-			GeoLoc dest = r_node.getGeoLoc();
-			ODPair od = new ODPair(origin, dest, false);
-			float dist = distance + c.calculateDistance(od);
-			if (isLogging()) {
-				log("SEARCH FOR " + GeoLocHelper.getDescription(
-				    destination) + " (" + i + ", " + dist +
-				    " miles) " + od);
-			}
+		if (v.error != null && isLogging())
+			log("BAD ROUTE: " + v.error);
+		for (CorridorGraph.Branch b: v.branches) {
+			float dist = p.distance + b.miles;
 			if (dist > max_mi) {
 				if (isLogging()) {
 					log("MAX DISTANCE (" + max_mi +
@@ -112,91 +178,49 @@ public class RouteBuilder {
 				}
 				break;
 			}
-			i++;
-			if (i > MAX_R_NODE_LIMIT) {
-				if (isLogging()) {
-					log("BREAKING R_NODE LOOP AT " +
-					    r_node.getName());
-				}
-				break;
-			}
-			r_node = findNextNode(c, r_node, dist, origin,
-				destination);
-		}
-	}
-
-	/** Find the next node on the corridor.
-	 * @param c Corridor.
-	 * @param r_node Roadway node.
-	 * @param distance Distance.
-	 * @param origin Route origin.
-	 * @param destination Route destination.
-	 * @return Next roadway node.
-	 * @throws BadRouteException on route error. */
-	private R_NodeImpl findNextNode(Corridor c, R_NodeImpl r_node,
-		float distance, GeoLoc origin, GeoLoc destination)
-		throws BadRouteException
-	{
-		GeoLoc dest = r_node.getGeoLoc();
-		R_NodeImpl next = null;
-		for (R_NodeImpl n: r_node.getDownstream()) {
-			if (!r_node.isCorridorType())
-				continue;
-			GeoLoc down = n.getGeoLoc();
-			if (GeoLocHelper.isSameCorridor(down, origin))
-				next = n;
-			else {
-				boolean turn = r_node.hasTurnPenalty()
-					&& n.hasTurnPenalty();
-				path.add(new ODPair(origin, dest, turn));
-				findPaths(distance, down, destination);
-				path.removeLast();
+			if (isLogging()) {
+				log("SEARCH FOR " + GeoLocHelper.getDescription(
+				    d) + " (" + dist + " miles) " +
+				    GeoLocHelper.getDescription(b.entrance));
 			}
+			queue.add(new Path(graph.getVertex(b.entrance), p, b,
+				dist, p.n_legs + 1, seq++));
 		}
-		return next;
-	}
-
-	/** Debug a route exception.
-	 * @param e Bad route exception. */
-	private void debugRouteException(BadRouteException e) {
-		if (isLogging())
-			log("BAD ROUTE: " + e.getMessage());
+		return seq;
 	}
 
-	/** Find all paths from an origin to a destination.
-	 * @param distance Distance.
-	 * @param origin Route origin.
-	 * @param destination Route destination. */
-	private void findPaths(float distance, final GeoLoc origin,
-		final GeoLoc destination)
-	{
-		ODPair od = new ODPair(origin, destination, false);
-		Corridor c = corridors.getCorridor(od);
-		if (c != null) {
-			try {
-				float d = c.calculateDistance(od);
-				if (distance + d < max_mi)
-					buildRoute(od);
-			}
-			catch (BadRouteException e) {
-				debugRouteException(e);
-			}
+	/** Build a route from a path to the destination.
+	 * @param p Path to end of route.
+	 * @param d Route destination.
+	 * @return Route, or null if the destination is not on the corridor of
+	 *         the path vertex. */
+	private Route buildRoute(Path p, GeoLoc d) {
+		ODPair odf = new ODPair(p.vertex.loc, d, false);
+		Corridor c = corridors.getCorridor(odf);
+		if (c == null)
+			return null;
+		try {
+			if (p.distance + c.calculateDistance(odf) < max_mi)
+				return buildRoute(p, odf);
 		}
-		if (path.size() < legs) {
-			try {
-				searchCorridor(distance, origin, destination);
-			}
-			catch (BadRouteException e) {
-				debugRouteException(e);
-			}
+		catch (BadRouteException e) {
+			debugRouteException(e);
 		}
+		return null;
 	}
 
-	/** Build a route from the current path.
+	/** Build a route from a path.
+	 * @param p Path to end of route.
 	 * @param odf Origin / destination pair.
 	 * @throws BadRouteException on route error. */
-	private void buildRoute(ODPair odf) throws BadRouteException {
+	private Route buildRoute(Path p, ODPair odf) throws BadRouteException {
 		Route r = new Route(dlog, name);
+		LinkedList<ODPair> path = new LinkedList<ODPair>();
+		for (Path pp = p; pp.prev != null; pp = pp.prev) {
+			CorridorGraph.Branch b = pp.branch;
+			path.addFirst(new ODPair(pp.prev.vertex.loc,
+				b.exit.getGeoLoc(), b.turn));
+		}
 		int turns = 0;
 		for (ODPair od: path) {
 			r.addTrip(createTrip(od));
@@ -205,17 +229,12 @@ public class RouteBuilder {
 		}
 		r.setTurns(turns);
 		r.addTrip(createTrip(odf));
-		routes.add(r);
-		// NOTE: this optimisation will prevent us from finding some
-		// secondary routes; we're only interested in the best route.
-		max_mi = Math.min(max_mi, r.getGoodness());
 		if (isLogging()) {
 			GeoLoc dest = odf.getDestination();
 			log("FOUND ROUTE TO " + GeoLocHelper.getDescription(
 			    dest) + ", " + r);
-			if (max_mi == r.getGoodness())
-				log("LOWERED MAX DIST TO " + max_mi);
 		}
+		return r;
 	}
 
 	/** Create one corridor trip */
@@ -226,18 +245,4 @@ public class RouteBuilder {
 		else
 			throw new BadRouteException("MISSING CORRIDOR");
 	}
-
-	/** Find the best route from an origin to a destination.
-	 * @param o Route origin.
-	 * @param d Route destination.
-	 * @return Best route found. */
-	public Route findBestRoute(GeoLoc o, GeoLoc d) {
-		routes.clear();
-		path.clear();
-		findPaths(0, o, d);
-		if (routes.size() > 0)
-			return routes.first();
-		else
-			return null;
-	}
 }
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2005-2012  Minnesota Department of Transportation
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -16,11 +17,19 @@ package us.mn.state.dot.tms.server;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.Statement;
 import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.regex.Pattern;
 import java.util.regex.Matcher;
 import us.mn.state.dot.sched.DebugLog;
@@ -28,7 +37,12 @@ import us.mn.state.dot.tms.ChangeVetoException;
 import us.mn.state.dot.tms.TMSException;
 
 /**
- * Simple SQL database abstraction stuff
+ * Simple SQL database abstraction stuff.
+ *
+ * Storable updates, creates and destroys use prepared statements, cached
+ * by SQL text (which is determined by table and column set).  Values are
+ * bound with an unspecified type, so the server converts them just as it
+ * did for string literals.
  *
  * @author Douglas Lau
  */
@@ -63,9 +77,34 @@ public class SQLConnection {
 			throw new ChangeVetoException("Invalid SQL value: " +v);
 	}
 
-	/** Escape a string constant value for SQL */
-	static private String escapeValue(Object value) {   
-		return value.toString().replace("'", "''").replace("\\","\\\\");
+	/** Get a validated string value for a parameter */
+	static private String paramValue(Object value)
+		throws ChangeVetoException
+	{
+		if(value != null) {
+			String v = value.toString();
+			validateValue(v);
+			return v;
+		} else
+			return null;
+	}
+
+	/** Set a parameter value for a prepared statement */
+	static private void setParam(PreparedStatement ps, int i, String v)
+		throws SQLException
+	{
+		if(v != null)
+			ps.setObject(i, v, Types.OTHER);
+		else
+			ps.setNull(i, Types.OTHER);
+	}
+
+	/** Per-table statement statistics */
+	static private class TableStats {
+		int n_exec;
+		int n_rows;
+		long total_ns;
+		long max_ns;
 	}
 
 	/** Location of database server */
@@ -84,6 +123,14 @@ public class SQLConnection {
 	protected final LinkedList<Statement> statements =
 		new LinkedList<Statement>();
 
+	/** Available prepared statements, by SQL text */
+	protected final HashMap<String, LinkedList<PreparedStatement>> prepared
+		= new HashMap<String, LinkedList<PreparedStatement>>();
+
+	/** Statement statistics, by table name */
+	private final TreeMap<String, TableStats> stats =
+		new TreeMap<String, TableStats>();
+
 	/** Create a new SQL connection */
 	public SQLConnection(String url, String usr, String pswd)
 		throws TMSException
@@ -101,7 +148,10 @@ public class SQLConnection {
 
 	/** Close the current database connection */
 	protected void close() throws SQLException {
-		statements.clear();
+		synchronized(this) {
+			statements.clear();
+			prepared.clear();
+		}
 		if(connection != null) {
 			try {
 				connection.close();
@@ -157,6 +207,132 @@ public class SQLConnection {
 		statements.add(s);
 	}
 
+	/** Prepare a database statement */
+	protected PreparedStatement _prepareStatement(String sql)
+		throws SQLException
+	{
+		if(connection == null)
+			open();
+		return connection.prepareStatement(sql);
+	}
+
+	/** Prepare a database statement */
+	protected PreparedStatement prepareStatement(String sql)
+		throws TMSException
+	{
+		try {
+			return _prepareStatement(sql);
+		}
+		catch(SQLException e) {
+			SQL_LOG.log("prepareStatement -> " + e);
+			try {
+				close();
+				return _prepareStatement(sql);
+			}
+			catch(SQLException e2) {
+				SQL_LOG.log("prepareStatement.2 -> " + e2);
+				throw new TMSException(e2);
+			}
+		}
+	}
+
+	/** Get an available prepared statement */
+	protected synchronized PreparedStatement getPrepared(String sql)
+		throws TMSException
+	{
+		LinkedList<PreparedStatement> avail = prepared.get(sql);
+		if(avail == null || avail.isEmpty())
+			return prepareStatement(sql);
+		else
+			return avail.removeLast();
+	}
+
+	/** Put a prepared statement back after using it */
+	protected synchronized void putPrepared(String sql,
+		PreparedStatement ps)
+	{
+		LinkedList<PreparedStatement> avail = prepared.get(sql);
+		if(avail == null) {
+			avail = new LinkedList<PreparedStatement>();
+			prepared.put(sql, avail);
+		}
+		avail.add(ps);
+	}
+
+	/** Execute a prepared statement with one row of parameters.
+	 * @param table Table name (for statistics).
+	 * @param sql SQL text.
+	 * @param params Parameter values. */
+	private void execute(String table, String sql, String... params)
+		throws TMSException
+	{
+		execute(table, 1, sql, params);
+	}
+
+	/** Execute a prepared statement.
+	 * @param table Table name (for statistics).
+	 * @param n_rows Number of rows (for statistics).
+	 * @param sql SQL text.
+	 * @param params Parameter values. */
+	private void execute(String table, int n_rows, String sql,
+		String[] params) throws TMSException
+	{
+		long start = System.nanoTime();
+		PreparedStatement ps = getPrepared(sql);
+		try {
+			for(int i = 0; i < params.length; i++)
+				setParam(ps, i + 1, params[i]);
+			ps.executeUpdate();
+			putPrepared(sql, ps);
+		}
+		catch(SQLException e) {
+			SQL_LOG.log(sql + " -> " + e);
+			if(isInvalidData(e))
+				throw new ChangeVetoException(e.getMessage());
+			throw new TMSException(e);
+		}
+		finally {
+			addStats(table, n_rows, System.nanoTime() - start);
+		}
+	}
+
+	/** Check if an SQL exception was caused by invalid data, rather than
+	 * a problem with the connection.
+	 * @param e SQL exception.
+	 * @return true for data exceptions (class 22) and integrity
+	 *         constraint violations (class 23). */
+	static private boolean isInvalidData(SQLException e) {
+		String state = e.getSQLState();
+		return state != null &&
+		      (state.startsWith("22") || state.startsWith("23"));
+	}
+
+	/** Add statement statistics for a table */
+	private synchronized void addStats(String table, int n_rows,
+		long ns)
+	{
+		TableStats ts = stats.get(table);
+		if(ts == null) {
+			ts = new TableStats();
+			stats.put(table, ts);
+		}
+		ts.n_exec++;
+		ts.n_rows += n_rows;
+		ts.total_ns += ns;
+		ts.max_ns = Math.max(ts.max_ns, ns);
+	}
+
+	/** Log statement statistics for all tables */
+	public synchronized void logStats(DebugLog log) {
+		for(Map.Entry<String, TableStats> e: stats.entrySet()) {
+			TableStats ts = e.getValue();
+			long avg_us = ts.total_ns / ts.n_exec / 1000;
+			log.log(e.getKey() + ": " + ts.n_exec + " exec, " +
+				ts.n_rows + " rows, avg " + avg_us +
+				" us, max " + ts.max_ns / 1000 + " us");
+		}
+	}
+
 	/** Query the database and call a factory for each result */
 	public void query(String sql, ResultFactory factory)
 		throws TMSException
@@ -196,60 +372,195 @@ public class SQLConnection {
 		throws TMSException
 	{
 		validateIdentifier(field);
-		String key = escapeValue(s.getKey());
-		validateValue(key);
-		if(value == null) {
-			updateNull(s, field, key);
-			return;
+		String key = paramValue(s.getKey());
+		String v = paramValue(value);
+		execute(s.getTable(), "UPDATE " + s.getTable() + " SET " +
+			field + " = ? WHERE " + s.getKeyName() + " = ?;",
+			v, key);
+	}
+
+	/** Create the SQL to insert rows with a set of columns.
+	 * @param table Table name.
+	 * @param cols Column names, sorted.
+	 * @param n_rows Number of rows to insert.
+	 * @return SQL text with one parameter per column per row. */
+	static private String insertSQL(String table, Set<String> cols,
+		int n_rows) throws ChangeVetoException
+	{
+		StringBuilder keys = new StringBuilder();
+		StringBuilder values = new StringBuilder();
+		for(String field: cols) {
+			validateIdentifier(field);
+			keys.append(field);
+			keys.append(",");
+			values.append("?,");
 		}
-		String v = escapeValue(value);
-		validateValue(v);
-		update("UPDATE " + s.getTable() + " SET " + field +
-			" = '" + v + "' WHERE " + s.getKeyName() +
-			" = '" + key + "';");
+		keys.setLength(keys.length() - 1);
+		values.setLength(values.length() - 1);
+		StringBuilder sb = new StringBuilder();
+		sb.append("INSERT INTO ");
+		sb.append(table);
+		sb.append(" (");
+		sb.append(keys);
+		sb.append(") VALUES ");
+		for(int r = 0; r < n_rows; r++) {
+			if(r > 0)
+				sb.append(',');
+			sb.append('(');
+			sb.append(values);
+			sb.append(')');
+		}
+		sb.append(';');
+		return sb.toString();
 	}
 
-	/** Update one field with a NULL value */
-	private void updateNull(Storable s, String field, String key)
-		throws TMSException
+	/** Get the non-null columns of a storable, sorted by name */
+	static private TreeMap<String, String> insertColumns(Storable s)
+		throws ChangeVetoException
 	{
-		update("UPDATE " + s.getTable() + " SET " + field +
-			" = NULL WHERE " + s.getKeyName() + " = '" +
-			key + "';");
+		TreeMap<String, String> cols = new TreeMap<String, String>();
+		for(Map.Entry<String, Object> e: s.getColumns().entrySet()) {
+			String v = paramValue(e.getValue());
+			if(v != null)
+				cols.put(e.getKey(), v);
+		}
+		return cols;
 	}
 
 	/** Create one storable record */
 	public void create(Storable s) throws TMSException {
-		Map<String, Object> columns = s.getColumns();
-		StringBuilder keys = new StringBuilder();
-		StringBuilder values = new StringBuilder();
-		for(Map.Entry<String, Object> e: columns.entrySet()) {
-			Object value = e.getValue();
-			if(value != null) {
-				String field = e.getKey();
-				validateIdentifier(field);
-				keys.append(field);
-				keys.append(",");
-				String val = escapeValue(value);
-				validateValue(val);
-				values.append("'");
-				values.append(val);
-				values.append("',");
+		TreeMap<String, String> cols = insertColumns(s);
+		String sql = insertSQL(s.getTable(), cols.keySet(), 1);
+		execute(s.getTable(), sql, cols.values().toArray(
+			new String[cols.size()]));
+	}
+
+	/** Row counts for multi-row inserts.  Only a few sizes are used, so
+	 * that few distinct statements need to be prepared. */
+	static private final int[] INSERT_ROWS = { 64, 16, 4, 1 };
+
+	/** Create a list of storable records.  Records with the same table
+	 * and column set are inserted with multi-row INSERT statements.  If
+	 * a multi-row insert is vetoed because of invalid data, its rows are
+	 * retried one at a time.  Records which are vetoed alone are logged
+	 * and rejected, so they cannot block the records after them.
+	 * @param rows Records to create.  Records are removed from the list
+	 *             as they are written or rejected, so if an exception is
+	 *             thrown, the list contains only records which were not
+	 *             created.
+	 * @param rejected List to add rejected records. */
+	public void createAll(List<? extends Storable> rows,
+		List<Storable> rejected) throws TMSException
+	{
+		ArrayList<TreeMap<String, String>> cols =
+			new ArrayList<TreeMap<String, String>>(rows.size());
+		for(Iterator<? extends Storable> it = rows.iterator();
+		    it.hasNext();)
+		{
+			Storable r = it.next();
+			try {
+				cols.add(insertColumns(r));
+			}
+			catch(ChangeVetoException e) {
+				reject(r, e, rejected);
+				it.remove();
 			}
 		}
-		keys.setLength(keys.length() - 1);
-		values.setLength(values.length() - 1);
-		String sql = "INSERT INTO " + s.getTable() + " (" + keys +
-			") VALUES (" + values + ");";
-		update(sql);
+		while(!rows.isEmpty()) {
+			String table = rows.get(0).getTable();
+			Set<String> keys = cols.get(0).keySet();
+			ArrayList<Integer> group = new ArrayList<Integer>();
+			for(int i = 0; i < rows.size(); i++) {
+				if(group.size() >= INSERT_ROWS[0])
+					break;
+				if(table.equals(rows.get(i).getTable()) &&
+				   keys.equals(cols.get(i).keySet()))
+					group.add(i);
+			}
+			int n = insertRows(group.size());
+			ArrayList<String> params = new ArrayList<String>();
+			for(int g = 0; g < n; g++)
+				params.addAll(cols.get(group.get(g)).values());
+			String sql = insertSQL(table, keys, n);
+			try {
+				execute(table, n, sql, params.toArray(
+					new String[params.size()]));
+			}
+			catch(ChangeVetoException e) {
+				if(n > 1) {
+					insertEach(rows, cols, group, n,
+						rejected);
+				} else {
+					reject(rows.get(group.get(0)), e,
+						rejected);
+				}
+			}
+			removeGroup(rows, cols, group, n);
+		}
+	}
+
+	/** Insert the rows of a group one at a time.
+	 * @param rows Records to create.
+	 * @param cols Insert columns of each record.
+	 * @param group Indices of grouped records.
+	 * @param n Number of grouped records to insert.
+	 * @param rejected List to add rejected records. */
+	private void insertEach(List<? extends Storable> rows,
+		List<TreeMap<String, String>> cols, List<Integer> group, int n,
+		List<Storable> rejected) throws TMSException
+	{
+		for(int g = 0; g < n; g++) {
+			Storable r = rows.get(group.get(g));
+			TreeMap<String, String> c = cols.get(group.get(g));
+			try {
+				execute(r.getTable(), insertSQL(r.getTable(),
+					c.keySet(), 1), c.values().toArray(
+					new String[c.size()]));
+			}
+			catch(ChangeVetoException e) {
+				reject(r, e, rejected);
+			}
+			catch(TMSException e) {
+				removeGroup(rows, cols, group, g);
+				throw e;
+			}
+		}
+	}
+
+	/** Remove the first records of a group */
+	static private void removeGroup(List<? extends Storable> rows,
+		List<TreeMap<String, String>> cols, List<Integer> group, int n)
+	{
+		for(int g = n - 1; g >= 0; g--) {
+			int i = group.get(g);
+			rows.remove(i);
+			cols.remove(i);
+		}
+	}
+
+	/** Reject a record which cannot be created */
+	static private void reject(Storable r, ChangeVetoException e,
+		List<Storable> rejected)
+	{
+		SQL_LOG.log("Rejected " + r.getTable() + " " + r.getColumns() +
+			" -> " + e.getMessage());
+		rejected.add(r);
+	}
+
+	/** Get the number of rows for one multi-row insert */
+	static private int insertRows(int n_rows) {
+		for(int n: INSERT_ROWS) {
+			if(n <= n_rows)
+				return n;
+		}
+		return 1;
 	}
 
 	/** Destroy one storable record */
 	public void destroy(Storable s) throws TMSException {
-		String val = escapeValue(s.getKey());
-		validateValue(val);
-		update("DELETE FROM " + s.getTable() + " WHERE " +
-			s.getKeyName() + " = '" + val + "';");
+		String key = paramValue(s.getKey());
+		execute(s.getTable(), "DELETE FROM " + s.getTable() +
+			" WHERE " + s.getKeyName() + " = ?;", key);
 	}
 
 	/** Update the database with a batch of SQL commands */
@@ -16,7 +16,6 @@ package us.mn.state.dot.tms.server;
 
 import java.util.Calendar;
 import java.util.Iterator;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.tms.Controller;
 import us.mn.state.dot.tms.ControllerHelper;
 import us.mn.state.dot.tms.server.comm.DevicePoller;
@@ -27,7 +26,7 @@ import us.mn.state.dot.tms.server.comm.SamplePoller;
  *
  * @author Douglas Lau
  */
-public class SampleQuery30SecJob extends Job {
+public class SampleQuery30SecJob extends MonitoredJob {
 
 	/** Seconds to offset each poll from start of interval */
 	static public final int OFFSET_SECS = 8;
@@ -0,0 +1,393 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A traffic sample XML feed (det_sample or stat_sample).  Samples are
+ * encoded directly into a reusable byte buffer, without building strings
+ * for each attribute.  Once all samples are encoded, the buffer is
+ * compressed to a file by a separate thread, so the caller can encode
+ * another feed in the meantime.
+ *
+ * An optional delta feed contains only samples which changed since the
+ * previous period.  A sensor which stopped reporting is listed with no
+ * data attributes.
+ *
+ * @author Jacob Barde
+ */
+public class SampleXmlFeed {
+
+	/** Charset for XML files */
+	static private final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** Decimal separator for occupancy values */
+	static private final byte DECIMAL = (byte) DecimalFormatSymbols
+		.getInstance().getDecimalSeparator();
+
+	/** Document type definition */
+	static private final String DTD =
+		"<!DOCTYPE traffic_sample [\n" +
+		"<!ELEMENT traffic_sample (sample)*>\n" +
+		"<!ATTLIST traffic_sample time_stamp CDATA #REQUIRED>\n" +
+		"<!ATTLIST traffic_sample period CDATA #REQUIRED>\n" +
+		"<!ELEMENT sample EMPTY>\n" +
+		"<!ATTLIST sample sensor CDATA #REQUIRED>\n" +
+		"<!ATTLIST sample flow CDATA 'UNKNOWN'>\n" +
+		"<!ATTLIST sample speed CDATA 'UNKNOWN'>\n" +
+		"<!ATTLIST sample occ CDATA 'UNKNOWN'>\n" +
+		"]>\n";
+
+	/** Sample element start */
+	static private final byte[] SAMPLE = "\t<sample sensor='"
+		.getBytes(UTF8);
+
+	/** Flow attribute start */
+	static private final byte[] FLOW = "' flow='".getBytes(UTF8);
+
+	/** Speed attribute start */
+	static private final byte[] SPEED = "' speed='".getBytes(UTF8);
+
+	/** Occupancy attribute start */
+	static private final byte[] OCC = "' occ='".getBytes(UTF8);
+
+	/** Sample element end */
+	static private final byte[] SAMPLE_END = "'/>\n".getBytes(UTF8);
+
+	/** Document end */
+	static private final byte[] TAIL = "</traffic_sample>\n"
+		.getBytes(UTF8);
+
+	/** Missing value */
+	static private final int MISSING = -1;
+
+	/** Compression thread pool */
+	static private final ExecutorService COMPRESSOR =
+		Executors.newFixedThreadPool(2, new ThreadFactory()
+	{
+		public Thread newThread(Runnable r) {
+			Thread t = new Thread(r, "XML compressor");
+			t.setDaemon(true);
+			return t;
+		}
+	});
+
+	/** Round occupancy to hundredths (half-even, like NumberFormat).
+	 * A float times 100 is exact as a double, so this never rounds
+	 * twice. */
+	static private int roundOcc(float occ) {
+		return (int) Math.rint((double) occ * 100);
+	}
+
+	/** A growable byte buffer for one XML document */
+	static final class XmlBuffer {
+		private byte[] buf = new byte[4096];
+		private int len = 0;
+
+		/** Make room for more bytes */
+		private void ensure(int n) {
+			if (len + n > buf.length) {
+				byte[] b = new byte[Math.max(buf.length * 2,
+					len + n)];
+				System.arraycopy(buf, 0, b, 0, len);
+				buf = b;
+			}
+		}
+
+		/** Append one byte */
+		private void put(byte b) {
+			ensure(1);
+			buf[len++] = b;
+		}
+
+		/** Append an array of bytes */
+		private void put(byte[] b) {
+			ensure(b.length);
+			System.arraycopy(b, 0, buf, len, b.length);
+			len += b.length;
+		}
+
+		/** Append a non-negative integer */
+		private void putInt(int v) {
+			if (v >= 10)
+				putInt(v / 10);
+			put((byte) ('0' + v % 10));
+		}
+
+		/** Append an occupancy value, in hundredths */
+		private void putOcc(int h) {
+			putInt(h / 100);
+			int f = h % 100;
+			if (f != 0) {
+				put(DECIMAL);
+				put((byte) ('0' + f / 10));
+				if (f % 10 != 0)
+					put((byte) ('0' + f % 10));
+			}
+		}
+
+		/** Append an escaped attribute value */
+		private void putEscaped(String v) {
+			for (int i = 0; i < v.length(); i++) {
+				char c = v.charAt(i);
+				switch (c) {
+				case '&':
+					putAscii("&amp;");
+					break;
+				case '<':
+					putAscii("&lt;");
+					break;
+				case '>':
+					putAscii("&gt;");
+					break;
+				case '"':
+					putAscii("&quot;");
+					break;
+				case '\'':
+					putAscii("&apos;");
+					break;
+				default:
+					if (c < 0x80)
+						put((byte) c);
+					else {
+						int cp = v.codePointAt(i);
+						i += Character.charCount(cp) - 1;
+						put(new String(Character
+							.toChars(cp))
+							.getBytes(UTF8));
+					}
+				}
+			}
+		}
+
+		/** Append an ASCII string */
+		private void putAscii(String s) {
+			for (int i = 0; i < s.length(); i++)
+				put((byte) s.charAt(i));
+		}
+
+		/** Append one sample element */
+		private void putSample(String sensor, int flow, int speed,
+			int occ)
+		{
+			put(SAMPLE);
+			putEscaped(sensor);
+			if (flow != MISSING) {
+				put(FLOW);
+				putInt(flow);
+			}
+			if (speed != MISSING) {
+				put(SPEED);
+				putInt(speed);
+			}
+			if (occ != MISSING) {
+				put(OCC);
+				putOcc(occ);
+			}
+			put(SAMPLE_END);
+		}
+
+		/** Get the document as a string */
+		@Override
+		public String toString() {
+			return new String(buf, 0, len, UTF8);
+		}
+	}
+
+	/** Previous sample for one sensor */
+	static private final class LastSample {
+		private int flow;
+		private int speed;
+		private int occ;
+		private long period;
+	}
+
+	/** Feed name */
+	private final String name;
+
+	/** Full XML document */
+	final XmlBuffer full = new XmlBuffer();
+
+	/** Delta XML document */
+	final XmlBuffer delta = new XmlBuffer();
+
+	/** Previous samples, by sensor name */
+	private final HashMap<String, LastSample> last =
+		new HashMap<String, LastSample>();
+
+	/** Count of periods encoded */
+	private long period = 0;
+
+	/** Flag indicating the delta feed is being encoded */
+	private boolean do_delta = false;
+
+	/** Pending compression tasks */
+	private final ArrayList<Future<Void>> pending =
+		new ArrayList<Future<Void>>();
+
+	/** Create a new sample XML feed.
+	 * @param n Feed name (file name without extension). */
+	public SampleXmlFeed(String n) {
+		name = n;
+	}
+
+	/** Begin encoding a period.
+	 * @param stamp Time stamp of period.
+	 * @param dlt Flag to encode delta feed. */
+	public void begin(String stamp, boolean dlt) {
+		period++;
+		do_delta = dlt;
+		byte[] head = (XmlWriter.XML_DECLARATION + DTD +
+			"<traffic_sample time_stamp='" + stamp +
+			"' period='30'>\n").getBytes(UTF8);
+		full.len = 0;
+		full.put(head);
+		delta.len = 0;
+		if (dlt)
+			delta.put(head);
+		else
+			last.clear();
+	}
+
+	/** Encode one sample.
+	 * @param sensor Sensor ID.
+	 * @param flow Flow rate, or negative if missing.
+	 * @param speed Speed, or zero / negative if missing.
+	 * @param occ Occupancy, or negative if missing. */
+	public void sample(String sensor, int flow, int speed, float occ) {
+		int f = (flow >= 0) ? flow : MISSING;
+		int s = (speed > 0) ? speed : MISSING;
+		int o = (occ >= 0) ? roundOcc(occ) : MISSING;
+		full.putSample(sensor, f, s, o);
+		if (do_delta && isChanged(sensor, f, s, o))
+			delta.putSample(sensor, f, s, o);
+	}
+
+	/** Check if a sample changed since the previous period */
+	private boolean isChanged(String sensor, int f, int s, int o) {
+		LastSample ls = last.get(sensor);
+		boolean changed = ls == null || ls.flow != f ||
+			ls.speed != s || ls.occ != o;
+		if (ls == null) {
+			ls = new LastSample();
+			last.put(sensor, ls);
+		}
+		ls.flow = f;
+		ls.speed = s;
+		ls.occ = o;
+		ls.period = period;
+		return changed;
+	}
+
+	/** End encoding a period */
+	void end() {
+		full.put(TAIL);
+		if (do_delta) {
+			Iterator<String> it = last.keySet().iterator();
+			while (it.hasNext()) {
+				String sensor = it.next();
+				if (last.get(sensor).period != period) {
+					delta.putSample(sensor, MISSING,
+						MISSING, MISSING);
+					it.remove();
+				}
+			}
+			delta.put(TAIL);
+		}
+	}
+
+	/** Finish encoding a period, and start compressing to files.
+	 * The buffers must not be touched until await has returned. */
+	public void finish() {
+		end();
+		pending.add(compress(full, name + ".xml.gz"));
+		if (do_delta)
+			pending.add(compress(delta, name + "_delta.xml.gz"));
+	}
+
+	/** Compress a buffer to a file */
+	private Future<Void> compress(final XmlBuffer b, String f) {
+		final File file = new File(XmlWriter.XML_OUTPUT_DIRECTORY, f);
+		final File temp = new File(file.getAbsolutePath() + "~");
+		return COMPRESSOR.submit(new Callable<Void>() {
+			public Void call() throws IOException {
+				GZIPOutputStream os = new GZIPOutputStream(
+					new FileOutputStream(temp), 65536);
+				try {
+					os.write(b.buf, 0, b.len);
+				}
+				finally {
+					os.close();
+				}
+				if (!temp.renameTo(file)) {
+					throw new IOException("Rename failed: " +
+						file);
+				}
+				return null;
+			}
+		});
+	}
+
+	/** Wait for all files to be written */
+	public void await() throws IOException {
+		IOException ex = null;
+		for (Future<Void> f: pending) {
+			try {
+				awaitTask(f);
+			}
+			catch (IOException e) {
+				ex = e;
+			}
+		}
+		pending.clear();
+		if (ex != null)
+			throw ex;
+	}
+
+	/** Wait for one compression task */
+	private void awaitTask(Future<Void> f) throws IOException {
+		while (true) {
+			try {
+				f.get();
+				return;
+			}
+			catch (InterruptedException e) {
+				// keep waiting; buffer is still in use
+			}
+			catch (ExecutionException e) {
+				Throwable c = e.getCause();
+				if (c instanceof IOException)
+					throw (IOException) c;
+				else
+					throw new IOException(c);
+			}
+		}
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.io.IOException;
+import java.io.Writer;
+import us.mn.state.dot.sched.TimeSteward;
+
+/**
+ * This class writes out scheduler statistics to an XML file.
+ *
+ * @author Jacob Barde
+ */
+public class SchedulerXmlWriter extends XmlWriter {
+
+	/** XML file */
+	static private final String SCHEDULER_XML = "scheduler_status.xml";
+
+	/** Create a new scheduler XML writer */
+	public SchedulerXmlWriter() {
+		super(SCHEDULER_XML, false);
+	}
+
+	/** Write the scheduler XML file */
+	@Override protected void write(Writer w) throws IOException {
+		w.write(XML_DECLARATION);
+		writeDtd(w);
+		w.write("<schedulers time_stamp='" +
+			TimeSteward.getDateInstance() + "'>\n");
+		for (MonitoredScheduler s: MonitoredScheduler.getAll())
+			s.writeXml(w);
+		w.write("</schedulers>\n");
+	}
+
+	/** Write the DTD */
+	private void writeDtd(Writer w) throws IOException {
+		w.write("<!DOCTYPE schedulers [\n");
+		w.write("<!ELEMENT schedulers (scheduler)*>\n");
+		w.write("<!ATTLIST schedulers time_stamp CDATA #REQUIRED>\n");
+		w.write("<!ELEMENT scheduler (job)*>\n");
+		w.write("<!ATTLIST scheduler name CDATA #REQUIRED>\n");
+		w.write("<!ATTLIST scheduler workers CDATA #REQUIRED>\n");
+		w.write("<!ATTLIST scheduler depth CDATA #REQUIRED>\n");
+		w.write("<!ATTLIST scheduler rejected CDATA #REQUIRED>\n");
+		w.write("<!ELEMENT job EMPTY>\n");
+		w.write("<!ATTLIST job name CDATA #REQUIRED>\n");
+		w.write("<!ATTLIST job runs CDATA #REQUIRED>\n");
+		w.write("<!ATTLIST job missed CDATA #REQUIRED>\n");
+		for (String h: new String[] { "wait", "run" }) {
+			for (String a: new String[] { "p50", "p95", "max" }) {
+				w.write("<!ATTLIST job " + h + "_" + a +
+					" CDATA #REQUIRED>\n");
+			}
+		}
+		w.write("]>\n");
+	}
+}
@@ -16,7 +16,6 @@ package us.mn.state.dot.tms.server;
 
 import java.util.Calendar;
 import java.util.Iterator;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.tms.Beacon;
 import us.mn.state.dot.tms.BeaconHelper;
 import us.mn.state.dot.tms.Controller;
@@ -36,7 +35,7 @@ import us.mn.state.dot.tms.TagReaderHelper;
  *
  * @author Douglas Lau
  */
-public class SendSettingsJob extends Job {
+public class SendSettingsJob extends MonitoredJob {
 
 	/** Create a new send settings job */
 	public SendSettingsJob() {
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2000-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -38,6 +39,24 @@ import static us.mn.state.dot.tms.server.XmlWriter.createAttribute;
  */
 public class SignMessageImpl extends BaseObjectImpl implements SignMessage {
 
+	/** Index of all sign messages */
+	static private final SignMessageIndex INDEX = new SignMessageIndex();
+
+	/** Find a sign message with matching attributes.
+	 * @param multi MULTI string.
+	 * @param bitmaps Bitmaps for all pages.
+	 * @param ap Activation priority.
+	 * @param rp Run-time priority.
+	 * @param src Message source.
+	 * @param d Duration (null for indefinite).
+	 * @return Matching sign message, or null if not found. */
+	static public SignMessage find(String multi, String bitmaps,
+		DMSMessagePriority ap, DMSMessagePriority rp, SignMsgSource src,
+		Integer d)
+	{
+		return INDEX.find(multi, bitmaps, ap, rp, src, d);
+	}
+
 	/** Last allocated system message ID */
 	static private int last_id = 0;
 
@@ -66,7 +85,9 @@ public class SignMessageImpl extends BaseObjectImpl implements SignMessage {
 			"FROM iris." + SONAR_TYPE + ";", new ResultFactory()
 		{
 			public void create(ResultSet row) throws Exception {
-				namespace.addObject(new SignMessageImpl(row));
+				SignMessageImpl sm = new SignMessageImpl(row);
+				namespace.addObject(sm);
+				INDEX.add(sm);
 			}
 		});
 	}
@@ -99,6 +120,20 @@ public class SignMessageImpl extends BaseObjectImpl implements SignMessage {
 		return SONAR_TYPE;
 	}
 
+	/** Store a sign message */
+	@Override
+	public void doStore() throws TMSException {
+		super.doStore();
+		INDEX.add(this);
+	}
+
+	/** Destroy a sign message */
+	@Override
+	public void doDestroy() throws TMSException {
+		super.doDestroy();
+		INDEX.remove(this);
+	}
+
 	/** Create a new sign message (by SONAR clients) */
 	public SignMessageImpl(String n) {
 		super(n);
@@ -0,0 +1,119 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import us.mn.state.dot.tms.DMSMessagePriority;
+import us.mn.state.dot.tms.SignMessage;
+import us.mn.state.dot.tms.SignMessageHelper;
+import us.mn.state.dot.tms.SignMsgSource;
+
+/**
+ * Index of sign messages, keyed by a hash of the attributes compared by
+ * SignMessageHelper.find.  Scheduled and tolling messages share a hash,
+ * since a scheduled message may match an existing tolling message.
+ *
+ * @author Jacob Barde
+ */
+public class SignMessageIndex {
+
+	/** Get the source used for hashing a message source */
+	static private int hashSource(int src) {
+		return (src == SignMsgSource.tolling.ordinal())
+		      ? SignMsgSource.schedule.ordinal()
+		      : src;
+	}
+
+	/** Calculate a hash of sign message attributes */
+	static private int hash(String multi, String bitmaps, int ap, int rp,
+		int src, Integer d)
+	{
+		int h = (multi != null) ? multi.hashCode() : 0;
+		h = 31 * h + ((bitmaps != null) ? bitmaps.hashCode() : 0);
+		h = 31 * h + ap;
+		h = 31 * h + rp;
+		h = 31 * h + hashSource(src);
+		return 31 * h + ((d != null) ? d : -1);
+	}
+
+	/** Calculate the hash of a sign message */
+	static private int hash(SignMessage sm) {
+		return hash(sm.getMulti(), sm.getBitmaps(),
+			sm.getActivationPriority(), sm.getRunTimePriority(),
+			sm.getSource(), sm.getDuration());
+	}
+
+	/** Sign messages, by hash */
+	private final HashMap<Integer, ArrayList<SignMessage>> messages =
+		new HashMap<Integer, ArrayList<SignMessage>>();
+
+	/** Count of indexed messages */
+	private int n_messages = 0;
+
+	/** Add a sign message to the index */
+	public synchronized void add(SignMessage sm) {
+		int h = hash(sm);
+		ArrayList<SignMessage> list = messages.get(h);
+		if (list == null) {
+			list = new ArrayList<SignMessage>(1);
+			messages.put(h, list);
+		}
+		if (!list.contains(sm)) {
+			list.add(sm);
+			n_messages++;
+		}
+	}
+
+	/** Remove a sign message from the index */
+	public synchronized void remove(SignMessage sm) {
+		int h = hash(sm);
+		ArrayList<SignMessage> list = messages.get(h);
+		if (list != null && list.remove(sm)) {
+			n_messages--;
+			if (list.isEmpty())
+				messages.remove(h);
+		}
+	}
+
+	/** Get the number of indexed messages */
+	public synchronized int size() {
+		return n_messages;
+	}
+
+	/** Find a sign message with matching attributes.
+	 * @param multi MULTI string.
+	 * @param bitmaps Bitmaps for all pages.
+	 * @param ap Activation priority.
+	 * @param rp Run-time priority.
+	 * @param src Message source.
+	 * @param d Duration (null for indefinite).
+	 * @return Matching sign message, or null if not found. */
+	public synchronized SignMessage find(String multi, String bitmaps,
+		DMSMessagePriority ap, DMSMessagePriority rp, SignMsgSource src,
+		Integer d)
+	{
+		ArrayList<SignMessage> list = messages.get(hash(multi, bitmaps,
+			ap.ordinal(), rp.ordinal(), src.ordinal(), d));
+		if (list != null) {
+			for (SignMessage sm: list) {
+				if (SignMessageHelper.isMatching(sm, multi,
+				    bitmaps, ap, rp, src, d))
+					return sm;
+			}
+		}
+		return null;
+	}
+}
@@ -16,14 +16,13 @@ package us.mn.state.dot.tms.server;
 
 import java.io.IOException;
 import java.util.Calendar;
-import us.mn.state.dot.sched.Job;
 
 /**
  * Job to write out sign message XML file.
  *
  * @author Douglas Lau
  */
-public class SignMessageXmlJob extends Job {
+public class SignMessageXmlJob extends MonitoredJob {
 
 	/** Seconds to offset each poll from start of interval */
 	static protected final int OFFSET_SECS = 20;
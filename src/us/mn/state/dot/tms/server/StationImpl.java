@@ -14,8 +14,6 @@
  */
 package us.mn.state.dot.tms.server;
 
-import java.io.IOException;
-import java.io.Writer;
 import java.util.Map;
 import java.util.NavigableMap;
 import us.mn.state.dot.sched.DebugLog;
@@ -24,7 +22,6 @@ import us.mn.state.dot.tms.R_Node;
 import us.mn.state.dot.tms.Station;
 import us.mn.state.dot.tms.SystemAttrEnum;
 import static us.mn.state.dot.tms.server.Constants.MISSING_DATA;
-import static us.mn.state.dot.tms.server.XmlWriter.createAttribute;
 
 /**
  * A station is a group of related detectors.
@@ -395,24 +392,11 @@ public class StationImpl implements Station, VehicleSampler {
 		updateLowSpeed(low);
 	}
 
-	/** Write the current sample as an XML element */
-	public void writeSampleXml(Writer w) throws IOException {
-		if(!getActive())
-			return;
-		int f = getFlow();
-		int s = Math.round(getSpeed());
-		float o = occupancy;
-		w.write("\t<sample");
-		w.write(createAttribute("sensor", name));
-		if(f > MISSING_DATA)
-			w.write(createAttribute("flow", f));
-		if(s > 0)
-			w.write(createAttribute("speed", s));
-		if(o >= 0) {
-			w.write(createAttribute("occ",
-				BaseObjectImpl.formatFloat(o, 2)));
-		}
-		w.write("/>\n");
+	/** Write the current sample to an XML feed */
+	public void writeSampleXml(SampleXmlFeed feed) {
+		if(getActive())
+			feed.sample(name, getFlow(), Math.round(getSpeed()),
+				occupancy);
 	}
 
 	/** Get the station index */
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2004-2014  Minnesota Department of Transportation
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -15,11 +16,13 @@
 package us.mn.state.dot.tms.server;
 
 import java.io.IOException;
-import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
 import us.mn.state.dot.sched.TimeSteward;
 import us.mn.state.dot.tms.Station;
 import us.mn.state.dot.tms.StationHelper;
+import us.mn.state.dot.tms.SystemAttrEnum;
 
 /**
  * This class writes out station XML files.
@@ -29,71 +32,51 @@ import us.mn.state.dot.tms.StationHelper;
 class StationManager {
 
 	/** Location of station sample XML file */
-	static private final String SAMPLE_XML = "stat_sample.xml";
+	static private final String SAMPLE_XML = "stat_sample";
 
-	/** Calculate the current data for all stations */
-	public void calculateData() {
+	/** Current sample period, advanced after station data is
+	 * calculated */
+	static private final AtomicInteger PERIOD = new AtomicInteger();
+
+	/** Get the current sample period */
+	static public int getPeriod() {
+		return PERIOD.get();
+	}
+
+	/** Station sample XML feed */
+	private final SampleXmlFeed feed = new SampleXmlFeed(SAMPLE_XML);
+
+	/** Calculate the current data for all stations.
+	 * @param ex Executor for calculating stations. */
+	public void calculateData(CycleExecutor ex) {
+		ArrayList<StationImpl> stations = new ArrayList<StationImpl>();
 		Iterator<Station> it = StationHelper.iterator();
 		while(it.hasNext()) {
 			Station s = it.next();
-			if(s instanceof StationImpl) {
-				StationImpl si = (StationImpl)s;
+			if(s instanceof StationImpl)
+				stations.add((StationImpl)s);
+		}
+		ex.forEach(stations, new CycleExecutor.Work<StationImpl>() {
+			public void perform(StationImpl si) {
 				si.calculateData();
 			}
-		}
+		});
+		PERIOD.incrementAndGet();
 	}
 
 	/** Write the station sample data out as XML */
 	public void writeSampleXml() throws IOException {
-		XmlWriter w = new XmlWriter(SAMPLE_XML, true) {
-			@Override protected void write(Writer w)
-				throws IOException
-			{
-				writeSampleXmlHead(w);
-				writeSampleXmlBody(w);
-				writeSampleXmlTail(w);
-			}
-		};
-		w.write();
-	}
-
-	/** Print the header of the station sample XML file */
-	private void writeSampleXmlHead(Writer w) throws IOException {
-		w.write(XmlWriter.XML_DECLARATION);
-		writeDtd(w);
-		w.write("<traffic_sample time_stamp='" +
-			TimeSteward.getDateInstance() + "' period='30'>\n");
-	}
-
-	/** Print the DTD */
-	private void writeDtd(Writer w) throws IOException {
-		w.write("<!DOCTYPE traffic_sample [\n");
-		w.write("<!ELEMENT traffic_sample (sample)*>\n");
-		w.write("<!ATTLIST traffic_sample time_stamp " +
-			"CDATA #REQUIRED>\n");
-		w.write("<!ATTLIST traffic_sample period CDATA #REQUIRED>\n");
-		w.write("<!ELEMENT sample EMPTY>\n");
-		w.write("<!ATTLIST sample sensor CDATA #REQUIRED>\n");
-		w.write("<!ATTLIST sample flow CDATA 'UNKNOWN'>\n");
-		w.write("<!ATTLIST sample speed CDATA 'UNKNOWN'>\n");
-		w.write("<!ATTLIST sample occ CDATA 'UNKNOWN'>\n");
-		w.write("]>\n");
-	}
-
-	/** Print the body of the station sample XML file */
-	private void writeSampleXmlBody(Writer w) throws IOException {
+		feed.begin(TimeSteward.getDateInstance().toString(),
+			SystemAttrEnum.SAMPLE_XML_DELTA_ENABLE.getBoolean());
 		Iterator<Station> it = StationHelper.iterator();
 		while(it.hasNext()) {
 			Station s = it.next();
 			if(s instanceof StationImpl) {
 				StationImpl si = (StationImpl)s;
-				si.writeSampleXml(w);
+				si.writeSampleXml(feed);
 			}
 		}
-	}
-
-	/** Print the tail of the station sample XML file */
-	private void writeSampleXmlTail(Writer w) throws IOException {
-		w.write("</traffic_sample>\n");
+		feed.finish();
+		feed.await();
 	}
 }
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2001-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -19,6 +20,7 @@ import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -114,13 +116,22 @@ public class StratifiedAlgorithm implements MeterAlgorithmState {
 		return state;
 	}
 
-	/** Process one interval for all stratified zone states */
-	static public void processAllStates() {
+	/** Process one interval for all stratified zone states.
+	 * Each corridor is processed independently.
+	 * @param ex Executor for processing corridors. */
+	static public void processAllStates(CycleExecutor ex) {
+		ex.forEach(new ArrayList<StratifiedAlgorithm>(
+			all_states.values()),
+			new CycleExecutor.Work<StratifiedAlgorithm>()
+		{
+			public void perform(StratifiedAlgorithm state) {
+				state.processInterval();
+			}
+		});
 		Iterator<StratifiedAlgorithm> it =
 			all_states.values().iterator();
 		while(it.hasNext()) {
 			StratifiedAlgorithm state = it.next();
-			state.processInterval();
 			if(state.isDone())
 				it.remove();
 		}
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2008-2012  Minnesota Department of Transportation
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -119,6 +120,24 @@ public class SystemAttributeImpl extends BaseObjectImpl
 	public void setValue(String arg_value) {
 		logChange(arg_value);
 		value = arg_value;
+		if(isRenderAttribute())
+			RenderedBitmapCache.invalidate();
+	}
+
+	/** Check if the attribute affects rendered message bitmaps */
+	private boolean isRenderAttribute() {
+		SystemAttrEnum sa = SystemAttrEnum.lookup(name);
+		return sa == SystemAttrEnum.DMS_MAX_LINES ||
+		       sa == SystemAttrEnum.DMS_DEFAULT_JUSTIFICATION_LINE ||
+		       sa == SystemAttrEnum.DMS_DEFAULT_JUSTIFICATION_PAGE;
+	}
+
+	/** Destroy the attribute (revert to default value) */
+	@Override
+	public void doDestroy() throws TMSException {
+		super.doDestroy();
+		if(isRenderAttribute())
+			RenderedBitmapCache.invalidate();
 	}
 
 	/** Log system attribute change. */
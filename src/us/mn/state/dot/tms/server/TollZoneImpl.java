@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2015-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -45,6 +46,9 @@ public class TollZoneImpl extends BaseObjectImpl implements TollZone {
 	/** Magic exponent to convert density to price dollars */
 	static private final double BETA = 1.10;
 
+	/** Number of density cycles before an unused origin is pruned */
+	static private final int ORIGIN_CYCLES = 20;
+
 	/** Load all the toll zones */
 	static protected void loadAll() throws TMSException {
 		namespace.registerType(SONAR_TYPE, TollZoneImpl.class);
@@ -105,6 +109,7 @@ public class TollZoneImpl extends BaseObjectImpl implements TollZone {
 	@Override
 	public void setStartID(String sid) {
 		start_id = sid;
+		invalidateRoutes();
 	}
 
 	/** Set the starting station ID */
@@ -128,6 +133,7 @@ public class TollZoneImpl extends BaseObjectImpl implements TollZone {
 	@Override
 	public void setEndID(String eid) {
 		end_id = eid;
+		invalidateRoutes();
 	}
 
 	/** Set the ending station ID */
@@ -187,10 +193,67 @@ public class TollZoneImpl extends BaseObjectImpl implements TollZone {
 		}
 	}
 
+	/** Detectors on a route from an origin to the end of the zone.
+	 * These are cached until routes are invalidated, along with the
+	 * max density for the current density cycle. */
+	static private class OriginDets {
+
+		/** Route serial number when detectors were found */
+		private final int serial;
+
+		/** Zone serial number when detectors were found */
+		private final int z_serial;
+
+		/** HOT detectors on the route */
+		private final SamplerSet dets;
+
+		/** Density cycle of max density */
+		private int cycle = -1;
+
+		/** Max density for density cycle */
+		private Double k_hot;
+
+		/** Create origin detectors */
+		private OriginDets(int s, int zs, SamplerSet ss) {
+			serial = s;
+			z_serial = zs;
+			dets = ss;
+		}
+
+		/** Check if the detectors are for the current routes */
+		private boolean isCurrent(int s, int zs) {
+			return serial == s && z_serial == zs;
+		}
+	}
+
 	/** Mapping of density history for all vehicle samplers */
 	private transient final HashMap<VehicleSampler, DensityHist> k_hist =
 		new HashMap<VehicleSampler, DensityHist>();
 
+	/** Route serial number of density history mappings */
+	private transient int hist_serial = -1;
+
+	/** Zone serial number of density history mappings */
+	private transient int hist_z_serial = -1;
+
+	/** Zone serial number, incremented when the zone start or end
+	 * changes.  Routes built for a previous serial are not cached. */
+	private transient int z_serial = 0;
+
+	/** Cached detectors for each origin */
+	private transient final HashMap<GeoLoc, OriginDets> origins =
+		new HashMap<GeoLoc, OriginDets>();
+
+	/** Density cycle, incremented each time density is updated */
+	private transient int cycle = 0;
+
+	/** Invalidate cached routes for the toll zone */
+	private synchronized void invalidateRoutes() {
+		z_serial++;
+		hist_serial = -1;
+		origins.clear();
+	}
+
 	/** Lookup all HOT detectors in a route.
 	 * @param r The route.
 	 * @return Set of all HOT detectors in the route. */
@@ -242,12 +305,34 @@ public class TollZoneImpl extends BaseObjectImpl implements TollZone {
 		return builder.findBestRoute(o, d);
 	}
 
-	/** Update density.
+	/** Update density.  This starts a new density cycle, so max
+	 * densities are calculated again when next requested.
 	 * @param np New pricing period (if true). */
-	public synchronized void updateDensity(boolean np) {
-		for (Map.Entry<VehicleSampler,DensityHist> e:k_hist.entrySet()){
-			double k = e.getKey().getDensity();
-			e.getValue().updateDensity(np, k);
+	public void updateDensity(boolean np) {
+		int serial = corridors.getRouteSerial();
+		updateDensityHistory(serial);
+		synchronized (this) {
+			for (Map.Entry<VehicleSampler, DensityHist> e:
+			     k_hist.entrySet())
+			{
+				double k = e.getKey().getDensity();
+				e.getValue().updateDensity(np, k);
+			}
+			cycle++;
+			pruneOrigins(serial);
+		}
+	}
+
+	/** Prune cached origins which are out of date, or have not been
+	 * used recently (for signs which were moved or removed).
+	 * @param serial Current route serial number. */
+	private void pruneOrigins(int serial) {
+		Iterator<OriginDets> it = origins.values().iterator();
+		while (it.hasNext()) {
+			OriginDets od = it.next();
+			if (!od.isCurrent(serial, z_serial) ||
+			    cycle - od.cycle > ORIGIN_CYCLES)
+				it.remove();
 		}
 	}
 
@@ -256,25 +341,59 @@ public class TollZoneImpl extends BaseObjectImpl implements TollZone {
 	 * @param o Origin (location of DMS).
 	 * @return Price (dollars). */
 	public float getPrice(String lbl, GeoLoc o) {
-		updateDensityHistory(lbl);
-		SamplerSet ss = lookupDetectors(buildRoute(o));
-		if (isLogging())
-			log(lbl + " use detectors: " + ss);
-		Double k_hot = findMaxDensity(ss);
+		OriginDets od = lookupOrigin(lbl, o);
+		Double k_hot = findMaxDensity(od);
 		float price = calculatePricing(k_hot);
 		if (isLogging())
 			log(lbl + " k_hot: " + k_hot + ", price: $" + price);
 		return price;
 	}
 
-	/** Update density history for all detectors in the toll zone */
-	private void updateDensityHistory(String lbl) {
+	/** Lookup cached detectors from an origin, finding them again if
+	 * routes have been invalidated.
+	 * @param lbl Sign label for logging.
+	 * @param o Origin (location of DMS).
+	 * @return Detectors from origin to end of zone. */
+	private OriginDets lookupOrigin(String lbl, GeoLoc o) {
+		int serial = corridors.getRouteSerial();
+		int zs;
+		synchronized (this) {
+			zs = z_serial;
+			OriginDets od = origins.get(o);
+			if (od != null && od.isCurrent(serial, zs))
+				return od;
+		}
+		// Build route without holding the zone lock
+		SamplerSet ss = lookupDetectors(buildRoute(o));
+		if (isLogging())
+			log(lbl + " use detectors: " + ss);
+		OriginDets od = new OriginDets(serial, zs, ss);
+		synchronized (this) {
+			// Don't cache a route for a previous start or end
+			if (zs == z_serial)
+				origins.put(o, od);
+		}
+		return od;
+	}
+
+	/** Update density history mappings for all detectors in the toll
+	 * zone, if routes have been invalidated.
+	 * @param serial Current route serial number. */
+	private void updateDensityHistory(int serial) {
+		int zs;
+		synchronized (this) {
+			zs = z_serial;
+			if (serial == hist_serial && zs == hist_z_serial)
+				return;
+		}
 		SamplerSet ss = lookupDetectors(buildRoute());
 		if (isLogging())
-			log(lbl + " all detectors: " + ss);
+			log("all detectors: " + ss);
 		synchronized (this) {
 			removeHistoryMappings(ss);
 			addHistoryMappings(ss);
+			hist_serial = serial;
+			hist_z_serial = zs;
 		}
 	}
 
@@ -295,14 +414,23 @@ public class TollZoneImpl extends BaseObjectImpl implements TollZone {
 		}
 	}
 
+	/** Find the max density for origin detectors.  This is calculated
+	 * once per density cycle, and shared by all signs at the origin. */
+	private synchronized Double findMaxDensity(OriginDets od) {
+		if (od.cycle != cycle) {
+			od.k_hot = findMaxDensity(od.dets);
+			od.cycle = cycle;
+		}
+		return od.k_hot;
+	}
+
 	/** Find the max density within a sampler set */
-	private synchronized Double findMaxDensity(SamplerSet ss) {
+	private Double findMaxDensity(SamplerSet ss) {
 		Double k_hot = null;
-		for (Map.Entry<VehicleSampler, DensityHist> e:
-		     k_hist.entrySet())
-		{
-			if (ss.hasDetector(e.getKey())) {
-				Double k = e.getValue().density;
+		for (VehicleSampler vs: ss.getAll()) {
+			DensityHist dh = k_hist.get(vs);
+			if (dh != null) {
+				Double k = dh.density;
 				if (k_hot == null || (k != null && k > k_hot))
 					k_hot = k;
 			}
@@ -16,7 +16,6 @@ package us.mn.state.dot.tms.server;
 
 import java.util.Calendar;
 import java.util.Iterator;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.sched.TimeSteward;
 import us.mn.state.dot.tms.TollZone;
 import us.mn.state.dot.tms.TollZoneHelper;
@@ -26,7 +25,7 @@ import us.mn.state.dot.tms.TollZoneHelper;
  *
  * @author Douglas Lau
  */
-public class TollZoneJob extends Job {
+public class TollZoneJob extends MonitoredJob {
 
 	/** Period to recalculate toll zone pricing */
 	static private final int PERIOD_MINS = 3;
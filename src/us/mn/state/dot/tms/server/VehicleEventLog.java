@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2006-2014  Minnesota Department of Transportation
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -15,15 +16,12 @@
 package us.mn.state.dot.tms.server;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.Calendar;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.sched.TimeSteward;
 import us.mn.state.dot.tms.SystemAttrEnum;
 import static us.mn.state.dot.tms.server.Constants.MISSING_DATA;
 import static us.mn.state.dot.tms.server.DetectorImpl.SAMPLE_PERIOD_SEC;
-import static us.mn.state.dot.tms.server.MainServer.FLUSH;
 
 /**
  * The vehicle event log records vehicle detection events.
@@ -50,9 +48,31 @@ public class VehicleEventLog {
 		      : TimeSteward.currentTimeMillis();
 	}
 
+	/** Maximum number of buffered events */
+	static private final int MAX_EVENTS = 1024;
+
+	/** Hour value for a gap in vehicle events */
+	static private final int GAP_HOUR = -1;
+
+	/** Get the hour (0-11) for a given timestamp */
+	static private int getStampHour(Calendar stamp) {
+		Calendar cal = (stamp != null)
+		             ? stamp
+		             : TimeSteward.getCalendarInstance();
+		return cal.get(Calendar.HOUR);
+	}
+
+	/** Check if two (possibly null) files are the same */
+	static private boolean isSameFile(File f0, File f1) {
+		return (f0 != null) ? f0.equals(f1) : (f1 == null);
+	}
+
 	/** Sample archive factory */
 	private final SampleArchiveFactory factory;
 
+	/** Vehicle event writer */
+	private final VehicleEventWriter writer;
+
 	/** Sensor ID */
 	private final String sensor_id;
 
@@ -68,15 +88,53 @@ public class VehicleEventLog {
 	/** Sum of all vehicle speeds (mph) in current sampling period */
 	private int ev_speed = 0;
 
+	/** Ring buffer of event time stamps.  The ring buffers are not
+	 * allocated until the first event is logged, since most detectors
+	 * never log vehicle events. */
+	private long[] b_stamp;
+
+	/** Ring buffer of event hours (or GAP_HOUR) */
+	private byte[] b_hour;
+
+	/** Ring buffer of event durations */
+	private int[] b_duration;
+
+	/** Ring buffer of event headways */
+	private int[] b_headway;
+
+	/** Ring buffer of event speeds */
+	private short[] b_speed;
+
+	/** Index of oldest buffered event */
+	private int b_head = 0;
+
+	/** Number of buffered events */
+	private int b_count = 0;
+
+	/** Flag indicating events were dropped since the last buffered
+	 * event, so a gap must be logged */
+	private boolean b_dropped = false;
+
+	/** Flag indicating the log is queued for the writer */
+	private boolean b_queued = false;
+
 	/** Create a new vehicle event log */
 	public VehicleEventLog(String sid) {
+		this(sid, MainServer.a_factory, MainServer.v_writer);
+	}
+
+	/** Create a new vehicle event log */
+	VehicleEventLog(String sid, SampleArchiveFactory f,
+		VehicleEventWriter w)
+	{
 		sensor_id = sid;
-		factory = MainServer.a_factory;
+		factory = f;
+		writer = w;
 	}
 
 	/** Log a vehicle detection event */
-	public void logVehicle(final Calendar stamp, final int duration,
-		final int headway, final int speed)
+	public void logVehicle(Calendar stamp, int duration, int headway,
+		int speed)
 	{
 		ev_vehicles++;
 		ev_duration += duration;
@@ -84,54 +142,135 @@ public class VehicleEventLog {
 			ev_n_speed++;
 			ev_speed += speed;
 		}
-		if (isArchiveEnabled()) {
-			FLUSH.addJob(new Job() {
-				public void perform() throws IOException {
-					appendEvent(stamp, formatEvent(stamp,
-						duration, headway, speed));
-				}
-			});
-		}
+		if (isArchiveEnabled())
+			bufferVehicle(stamp, duration, headway, speed);
 	}
 
-	/** Append an event to the log */
-	private void appendEvent(Calendar stamp, String line)
-		throws IOException
+	/** Buffer a vehicle detection event to be archived */
+	void bufferVehicle(Calendar stamp, int duration, int headway,
+		int speed)
 	{
-		File file = factory.createFile(sensor_id, "vlog",
-			getStampMillis(stamp));
-		if (file != null) {
-			FileWriter fw = new FileWriter(file, true);
-			try {
-				fw.write(line);
-			}
-			finally {
-				fw.close();
-			}
-		}
+		bufferEvent(getStampMillis(stamp), getStampHour(stamp),
+			duration, headway, speed);
 	}
 
 	/** Log a gap in vehicle events */
 	public void logGap() {
-		p_stamp = null;
-		if (isArchiveEnabled()) {
-			FLUSH.addJob(new Job() {
-				public void perform() throws IOException {
-					appendEvent(null, "*\n");
+		if (isArchiveEnabled())
+			bufferGap();
+	}
+
+	/** Buffer a gap in vehicle events to be archived */
+	void bufferGap() {
+		bufferEvent(TimeSteward.currentTimeMillis(), GAP_HOUR, 0, 0, 0);
+	}
+
+	/** Buffer one event to be written.  If the buffer is full, the event
+	 * is dropped and a gap is logged before the next buffered event. */
+	private synchronized void bufferEvent(long st, int hour, int duration,
+		int headway, int speed)
+	{
+		if (b_dropped && b_count + 1 < MAX_EVENTS) {
+			b_dropped = false;
+			if (hour != GAP_HOUR)
+				putEvent(st, GAP_HOUR, 0, 0, 0);
+		}
+		if (b_count < MAX_EVENTS && !b_dropped)
+			putEvent(st, hour, duration, headway, speed);
+		else {
+			b_dropped = true;
+			writer.eventDropped();
+		}
+		if (!b_queued) {
+			b_queued = true;
+			writer.enqueue(this);
+		}
+	}
+
+	/** Put one event into the ring buffer */
+	private void putEvent(long st, int hour, int duration, int headway,
+		int speed)
+	{
+		if (b_stamp == null) {
+			b_stamp = new long[MAX_EVENTS];
+			b_hour = new byte[MAX_EVENTS];
+			b_duration = new int[MAX_EVENTS];
+			b_headway = new int[MAX_EVENTS];
+			b_speed = new short[MAX_EVENTS];
+		}
+		int i = (b_head + b_count) % MAX_EVENTS;
+		b_stamp[i] = st;
+		b_hour[i] = (byte)hour;
+		b_duration[i] = duration;
+		b_headway[i] = headway;
+		b_speed[i] = (short)speed;
+		b_count++;
+		writer.eventBuffered();
+	}
+
+	/** Drain all buffered events to the writer.  This must only be
+	 * called by the writer job. */
+	void drain(VehicleEventWriter w) throws IOException {
+		synchronized (this) {
+			b_queued = false;
+		}
+		StringBuilder b = new StringBuilder();
+		File file = null;
+		int n_events = 0;
+		try {
+			while (true) {
+				long st;
+				int hour, duration, headway, speed;
+				synchronized (this) {
+					if (b_count == 0)
+						break;
+					st = b_stamp[b_head];
+					hour = b_hour[b_head];
+					duration = b_duration[b_head];
+					headway = b_headway[b_head];
+					speed = b_speed[b_head];
+					b_head = (b_head + 1) % MAX_EVENTS;
+					b_count--;
+				}
+				n_events++;
+				File f = factory.createFile(sensor_id, "vlog",
+					st);
+				if (!isSameFile(f, file)) {
+					appendEvents(w, file, b);
+					file = f;
 				}
-			});
+				if (hour != GAP_HOUR) {
+					formatEvent(b, st, hour, duration,
+						headway, speed);
+				} else {
+					p_hour = GAP_HOUR;
+					b.append("*\n");
+				}
+			}
+			appendEvents(w, file, b);
+		}
+		finally {
+			w.eventsWritten(n_events);
 		}
 	}
 
-	/** Time stamp of most recent vehicle event */
-	private transient Calendar p_stamp;
+	/** Append formatted events to a log file */
+	private void appendEvents(VehicleEventWriter w, File file,
+		StringBuilder b) throws IOException
+	{
+		if (file != null && b.length() > 0)
+			w.append(file, b);
+		b.setLength(0);
+	}
+
+	/** Hour of most recent vehicle event */
+	private transient int p_hour = GAP_HOUR;
 
 	/** Format a vehicle detection event */
-	private String formatEvent(Calendar stamp, int duration, int headway,
-		int speed)
+	private void formatEvent(StringBuilder b, long st, int hour,
+		int duration, int headway, int speed)
 	{
 		boolean log_stamp = false;
-		StringBuilder b = new StringBuilder();
 		if (duration > 0)
 			b.append(duration);
 		else
@@ -143,19 +282,15 @@ public class VehicleEventLog {
 			b.append('?');
 			log_stamp = true;
 		}
-		if (p_stamp == null || (stamp.get(Calendar.HOUR) !=
-			p_stamp.get(Calendar.HOUR)))
-		{
+		if (p_hour == GAP_HOUR || hour != p_hour)
 			log_stamp = true;
-		}
 		b.append(',');
-		p_stamp = stamp;
+		p_hour = hour;
 		if (log_stamp) {
-			if (headway > 0 || duration > 0) {
-				long st = stamp.getTimeInMillis();
+			if (headway > 0 || duration > 0)
 				b.append(TimeSteward.timeShortString(st));
-			} else
-				p_stamp = null;
+			else
+				p_hour = GAP_HOUR;
 		}
 		b.append(',');
 		if (speed > 0)
@@ -163,7 +298,6 @@ public class VehicleEventLog {
 		while (b.charAt(b.length() - 1) == ',')
 			b.setLength(b.length() - 1);
 		b.append('\n');
-		return b.toString();
 	}
 
 	/** Bin 30-second sample data */
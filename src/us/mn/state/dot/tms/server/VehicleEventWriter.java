@@ -0,0 +1,171 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Job to write buffered vehicle events to .vlog files.  Each vehicle event
+ * log queues itself when it has buffered events, and this job drains all
+ * queued logs in one batch.  A file channel is kept open for each .vlog
+ * file until a batch completes without writing to it.  The writer must be
+ * closed at shutdown, so buffered events are not lost.
+ *
+ * @author Jacob Barde
+ */
+public class VehicleEventWriter extends MonitoredJob {
+
+	/** Charset for vehicle event log files */
+	static private final Charset ASCII = Charset.forName("US-ASCII");
+
+	/** Queue of logs with buffered events */
+	private final ConcurrentLinkedQueue<VehicleEventLog> queue =
+		new ConcurrentLinkedQueue<VehicleEventLog>();
+
+	/** File channels written in the current batch */
+	private HashMap<File, FileChannel> channels =
+		new HashMap<File, FileChannel>();
+
+	/** File channels written in the previous batch */
+	private HashMap<File, FileChannel> stale =
+		new HashMap<File, FileChannel>();
+
+	/** Number of events buffered, but not yet written */
+	private int n_buffered = 0;
+
+	/** Total number of events dropped because a buffer was full */
+	private long n_dropped = 0;
+
+	/** Create a new vehicle event writer */
+	public VehicleEventWriter() {
+		super(Calendar.SECOND, 10);
+	}
+
+	/** Perform the vehicle event writer job */
+	@Override
+	public synchronized void perform() throws IOException {
+		HashMap<File, FileChannel> prev = stale;
+		stale = channels;
+		channels = prev;
+		try {
+			VehicleEventLog log = queue.poll();
+			while (log != null) {
+				log.drain(this);
+				log = queue.poll();
+			}
+		}
+		finally {
+			closeChannels(stale);
+		}
+	}
+
+	/** Queue a log with buffered events */
+	void enqueue(VehicleEventLog log) {
+		queue.add(log);
+	}
+
+	/** Count one buffered event */
+	synchronized void eventBuffered() {
+		n_buffered++;
+	}
+
+	/** Count some written events */
+	synchronized void eventsWritten(int n_events) {
+		n_buffered -= n_events;
+	}
+
+	/** Count one dropped event */
+	synchronized void eventDropped() {
+		n_dropped++;
+	}
+
+	/** Get the number of events buffered, but not yet written */
+	public synchronized int getBufferedCount() {
+		return n_buffered;
+	}
+
+	/** Get the total number of dropped events */
+	public synchronized long getDroppedCount() {
+		return n_dropped;
+	}
+
+	/** Append text to a log file.
+	 * @param file File to append.
+	 * @param text Text to append. */
+	void append(File file, CharSequence text) throws IOException {
+		FileChannel chan = lookupChannel(file);
+		try {
+			ByteBuffer buf = ASCII.encode(text.toString());
+			while (buf.hasRemaining())
+				chan.write(buf);
+		}
+		catch (IOException e) {
+			channels.remove(file);
+			chan.close();
+			throw e;
+		}
+	}
+
+	/** Lookup an open channel for a file */
+	private FileChannel lookupChannel(File file) throws IOException {
+		FileChannel chan = channels.get(file);
+		if (chan == null) {
+			chan = stale.remove(file);
+			if (chan == null) {
+				chan = new FileOutputStream(file, true)
+					.getChannel();
+			}
+			channels.put(file, chan);
+		}
+		return chan;
+	}
+
+	/** Write all buffered events and close all open file channels */
+	public synchronized void close() throws IOException {
+		try {
+			perform();
+		}
+		finally {
+			closeChannels(stale);
+			closeChannels(channels);
+		}
+	}
+
+	/** Close a map of file channels */
+	private void closeChannels(HashMap<File, FileChannel> chans)
+		throws IOException
+	{
+		IOException ex = null;
+		for (FileChannel chan: chans.values()) {
+			try {
+				chan.close();
+			}
+			catch (IOException e) {
+				ex = e;
+			}
+		}
+		chans.clear();
+		if (ex != null)
+			throw ex;
+	}
+}
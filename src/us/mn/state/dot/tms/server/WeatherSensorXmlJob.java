@@ -16,14 +16,13 @@ package us.mn.state.dot.tms.server;
 
 import java.io.IOException;
 import java.util.Calendar;
-import us.mn.state.dot.sched.Job;
 
 /**
  * Job that writes Weather Sensor XML file.
  *
  * @author Michael Darter
  */
-public class WeatherSensorXmlJob extends Job {
+public class WeatherSensorXmlJob extends MonitoredJob {
 
 	/** Seconds to offset each poll from start of interval */
 	static protected final int OFFSET_SECS = 20;
@@ -16,14 +16,13 @@ package us.mn.state.dot.tms.server;
 
 import java.io.IOException;
 import java.util.Calendar;
-import us.mn.state.dot.sched.Job;
 
 /**
  * Job to write out XML configuration files.
  *
  * @author Douglas Lau
  */
-public class XmlConfigJob extends Job {
+public class XmlConfigJob extends MonitoredJob {
 
 	/** Create a new XML config writer job */
 	public XmlConfigJob() {
@@ -20,7 +20,6 @@ import java.util.Date;
 import java.util.Iterator;
 import java.util.LinkedList;
 import us.mn.state.dot.sched.DebugLog;
-import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.sched.TimeSteward;
 import us.mn.state.dot.tms.server.Constants;
 import us.mn.state.dot.tms.DMS;
@@ -33,6 +32,7 @@ import us.mn.state.dot.tms.WeatherSensor;
 import us.mn.state.dot.tms.WeatherSensorHelper;
 import us.mn.state.dot.tms.server.DetectorImpl;
 import us.mn.state.dot.tms.server.DMSImpl;
+import us.mn.state.dot.tms.server.MonitoredJob;
 import us.mn.state.dot.tms.server.WeatherSensorImpl;
 import us.mn.state.dot.tms.utils.SCsv;
 
@@ -42,7 +42,7 @@ import us.mn.state.dot.tms.utils.SCsv;
  * @author Michael Darter
  * @author Travis Swanston
  */
-public class AwsJob extends Job {
+public class AwsJob extends MonitoredJob {
 
 	// complex logging logic due to extra detail for debugging/testing;
 	// refactor me.
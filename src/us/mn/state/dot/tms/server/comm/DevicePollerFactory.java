@@ -80,7 +80,10 @@ public class DevicePollerFactory {
 	{
 		DevicePollerFactory factory = new DevicePollerFactory(name,
 			protocol, uri);
-		return factory.create();
+		DevicePoller dp = factory.create();
+		if (dp instanceof MessagePoller && PollerPool.isPooled(protocol))
+			((MessagePoller) dp).usePool(PollerPool.getShared());
+		return dp;
 	}
 
 	/** Name of comm link */
@@ -19,6 +19,7 @@ package us.mn.state.dot.tms.server.comm;
 import java.io.IOException;
 import java.net.SocketTimeoutException;
 import java.util.Calendar;
+import java.util.concurrent.atomic.AtomicBoolean;
 import us.mn.state.dot.sched.DebugLog;
 import us.mn.state.dot.sched.Job;
 import us.mn.state.dot.sched.Scheduler;
@@ -71,12 +72,29 @@ abstract public class MessagePoller<T extends ControllerProperty>
 	/** Write a message to the polling log */
 	protected void plog(String msg) {
 		if(POLL_LOG.isOpen())
-			POLL_LOG.log(thread.getName() + " " + msg);
+			POLL_LOG.log(name + " " + msg);
 	}
 
-	/** Thread to poll operations */
+	/** Poller name */
+	private final String name;
+
+	/** Thread to poll operations (dedicated mode only) */
 	private final Thread thread;
 
+	/** Shared poller pool, or null for a dedicated thread */
+	private PollerPool pool = null;
+
+	/** Flag indicating a task is scheduled on the shared pool */
+	private final AtomicBoolean scheduled = new AtomicBoolean();
+
+	/** Task to perform one operation on the shared pool */
+	private final Runnable pool_task = new Runnable() {
+		@Override
+		public void run() {
+			pollShared();
+		}
+	};
+
 	/** Operation queue */
 	protected final OperationQueue<T> queue = new OperationQueue<>();
 
@@ -176,7 +194,8 @@ abstract public class MessagePoller<T extends ControllerProperty>
 	 */
 	protected MessagePoller(String n, Messenger m) {
 		closer_job = new CloserJob();
- 		thread = new Thread(GROUP, "Poller: " + n) {
+		name = "Poller: " + n;
+		thread = new Thread(GROUP, name) {
 			@Override
 			public void run() {
 				operationLoop();
@@ -193,6 +212,12 @@ abstract public class MessagePoller<T extends ControllerProperty>
 		messenger.setTimeout(t);
 	}
 
+	/** Use a shared pool instead of a dedicated thread.  This must be
+	 * called before any operations are added. */
+	void usePool(PollerPool p) {
+		pool = p;
+	}
+
 	/** Set the allowed idle time in secs */
 	public void setIdleSecs(int is) {
 		max_idle = is;
@@ -200,9 +225,11 @@ abstract public class MessagePoller<T extends ControllerProperty>
 
 	/** Add an operation to the message poller */
 	protected void addOperation(Operation<T> op) {
-		if(queue.enqueue(op))
+		if(queue.enqueue(op)) {
 			ensureStarted();
-		else
+			if(pool != null)
+				schedulePoll();
+		} else
 			plog("DROPPING: " + op);
 	}
 
@@ -224,6 +251,10 @@ abstract public class MessagePoller<T extends ControllerProperty>
 
 	/** Start polling */
 	protected void startPolling() {
+		if (pool != null) {
+			schedulePoll();
+			return;
+		}
 		try {
 			thread.start();
 		} catch (IllegalThreadStateException e) {
@@ -248,9 +279,7 @@ abstract public class MessagePoller<T extends ControllerProperty>
 	/** Open messenger and perform operations */
 	private void operationLoop() {
 		try {
-			ensureOpen();
-			CLOSER.addJob(closer_job);
-			setThreadState(ThreadState.RUNNING);
+			startOperations();
 			performOperations();
 			setThreadState(ThreadState.CLOSING);
 		}
@@ -265,13 +294,62 @@ abstract public class MessagePoller<T extends ControllerProperty>
 			e.printStackTrace();
 		}
 		finally {
-			ensureClosed();
-			drainQueue();
-			CLOSER.removeJob(closer_job);
-			setThreadState(ThreadState.STOPPED);
+			stopOperations();
+		}
+	}
+
+	/** Schedule a task on the shared pool, unless one is scheduled */
+	private void schedulePoll() {
+		if (scheduled.compareAndSet(false, true))
+			pool.execute(pool_task);
+	}
+
+	/** Perform one operation on the shared pool */
+	private void pollShared() {
+		boolean stop = true;
+		try {
+			if (state == ThreadState.STARTING)
+				startOperations();
+			stop = !performNext();
+		}
+		catch (HangUpException e) {
+			setStatus(exceptionMessage(e));
+			hung_up = true;
+		}
+		catch (IOException e) {
+			setStatus(exceptionMessage(e));
+		}
+		catch (RuntimeException e) {
+			e.printStackTrace();
+		}
+		finally {
+			if (stop)
+				stopOperations();
+			else {
+				// Check queue after clearing flag, so that an
+				// operation added meanwhile is not missed
+				scheduled.set(false);
+				if (queue.hasNext())
+					schedulePoll();
+			}
 		}
 	}
 
+	/** Open messenger and start performing operations */
+	private void startOperations() throws IOException {
+		ensureOpen();
+		CLOSER.addJob(closer_job);
+		setThreadState(ThreadState.RUNNING);
+	}
+
+	/** Close messenger and drain queue */
+	private void stopOperations() {
+		ensureClosed();
+		drainQueue();
+		CLOSER.removeJob(closer_job);
+		setThreadState(ThreadState.STOPPED);
+	}
+
 	/** Messenger connection state */
 	private boolean messenger_open = false;
 
@@ -353,9 +431,6 @@ abstract public class MessagePoller<T extends ControllerProperty>
 
 	/** Perform operations on the poll queue */
 	private void performOperations() throws IOException {
-
-		Class clazz;
-
 		while(true) {
 			// for 0-sec idle timeout, do not start a second op
 			closeIfIdle();
@@ -365,19 +440,40 @@ abstract public class MessagePoller<T extends ControllerProperty>
 			if(o instanceof KillThread)
 				break;
 
-			// identify what phase is being polled prior to polling
-			clazz = o.phaseClass();
+			performOperation(o);
+		}
+	}
 
-			synchronized (messenger) {
-				ensureOpen();
-				doPoll(o);
-				bump();
-			}
+	/** Perform the next operation on the poll queue, without waiting.
+	 * @return false if the poller should stop. */
+	private boolean performNext() throws IOException {
+		// for 0-sec idle timeout, do not start a second op
+		closeIfIdle();
+
+		Operation<T> o = queue.poll();
+		if (o instanceof KillThread) {
+			setThreadState(ThreadState.CLOSING);
+			return false;
+		}
+		if (o != null)
+			performOperation(o);
+		return true;
+	}
+
+	/** Perform one operation */
+	private void performOperation(Operation<T> o) throws IOException {
+		// identify what phase is being polled prior to polling
+		Class clazz = o.phaseClass();
 
-			// set after performing poll to ensure we never close
-			// before attempting at least one op
-			is_acquiring = (OpDevice.AcquireDevice.class.equals(clazz));
+		synchronized (messenger) {
+			ensureOpen();
+			doPoll(o);
+			bump();
 		}
+
+		// set after performing poll to ensure we never close
+		// before attempting at least one op
+		is_acquiring = (OpDevice.AcquireDevice.class.equals(clazz));
 	}
 
 	/** Perform one poll for an operation */
@@ -113,6 +113,12 @@ abstract public class OpController<T extends ControllerProperty>
 		       ((OpController)o).controller == controller;
 	}
 
+	/** Get a hash code consistent with equals */
+	@Override
+	public int hashCode() {
+		return controller.hashCode();
+	}
+
 	/** Get a string description of the operation */
 	@Override
 	public final String toString() {
@@ -51,6 +51,12 @@ abstract public class OpDevice<T extends ControllerProperty>
 		       ((OpDevice)o).device == device;
 	}
 
+	/** Get a hash code consistent with equals */
+	@Override
+	public int hashCode() {
+		return device.hashCode();
+	}
+
 	/** Phase to acquire exclusive ownership of the device */
 	protected class AcquireDevice extends Phase<T> {
 
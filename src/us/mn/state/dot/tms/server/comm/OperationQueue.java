@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2000-2014  Minnesota Department of Transportation
+ * Copyright (C) 2016       California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -14,17 +15,36 @@
  */
 package us.mn.state.dot.tms.server.comm;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 
 /**
  * A prioritized queue which sorts Operation objects by their priority
  * class. Operations with the same priority are sorted FIFO.
  *
+ * There is one FIFO for each priority level, and pending operations are
+ * indexed by hash code, so that checking for an "equal" operation does not
+ * require walking the whole queue.  Operations which are equal must have
+ * the same hash code.
+ *
  * @author Douglas Lau
+ * @author Jacob Barde
  */
 public final class OperationQueue<T extends ControllerProperty> {
 
-	/** Front node in the queue */
-	private Node<T> front = null;
+	/** Pending nodes, one FIFO for each priority level */
+	private final ArrayList<ArrayDeque<Node<T>>> fifos =
+		new ArrayList<ArrayDeque<Node<T>>>();
+
+	/** Pending nodes, by operation */
+	private final IdentityHashMap<Operation<T>, Node<T>> nodes =
+		new IdentityHashMap<Operation<T>, Node<T>>();
+
+	/** Pending nodes, by operation hash code */
+	private final HashMap<Integer, ArrayList<Node<T>>> index =
+		new HashMap<Integer, ArrayList<Node<T>>>();
 
 	/** Current working operation.  This is needed so that an "equal"
 	 * operation cannot be added while work is in progress. */
@@ -33,6 +53,12 @@ public final class OperationQueue<T extends ControllerProperty> {
 	/** Flag to tell when the poller is closing */
 	private boolean closing = false;
 
+	/** Create a new operation queue */
+	public OperationQueue() {
+		for (int i = 0; i < PriorityLevel.values().length; i++)
+			fifos.add(new ArrayDeque<Node<T>>());
+	}
+
 	/** Close the queue for new operations */
 	public synchronized void close() {
 		closing = true;
@@ -61,12 +87,13 @@ public final class OperationQueue<T extends ControllerProperty> {
 		if (op.equals(work) && !work.isDone())
 			return true;
 
-		Node<T> node = front;
-		while (node != null) {
-			Operation<T> nop = node.operation;
-			if (op.equals(nop) && !nop.isDone())
-				return true;
-			node = node.next;
+		ArrayList<Node<T>> bucket = index.get(op.hashCode());
+		if (bucket != null) {
+			for (Node<T> node: bucket) {
+				Operation<T> nop = node.operation;
+				if (op.equals(nop) && !nop.isDone())
+					return true;
+			}
 		}
 
 		return false;
@@ -75,21 +102,15 @@ public final class OperationQueue<T extends ControllerProperty> {
 	/** Add an operation to the queue */
 	private void add(Operation<T> op) {
 
-		PriorityLevel priority = op.getPriority();
-		Node<T> prev = null;
-		Node<T> node = front;
-		while(node != null) {
-			if(priority.ordinal() < node.priority.ordinal())
-				break;
-			prev = node;
-			node = node.next;
+		Node<T> node = new Node<T>(op);
+		fifos.get(node.priority.ordinal()).addLast(node);
+		nodes.put(op, node);
+		ArrayList<Node<T>> bucket = index.get(node.hash);
+		if (bucket == null) {
+			bucket = new ArrayList<Node<T>>(1);
+			index.put(node.hash, bucket);
 		}
-
-		node = new Node<T>(op, node);
-		if(prev == null)
-			front = node;
-		else
-			prev.next = node;
+		bucket.add(node);
 
 		notify();
 	}
@@ -113,27 +134,42 @@ public final class OperationQueue<T extends ControllerProperty> {
 			return op;
 		}
 
-		Node<T> prev = null;
-		Node<T> node = front;
-		while(node != null) {
-			if(node.operation == op) {
-				if(prev == null)
-					front = node;
-				else
-					prev.next = node;
+		Node<T> node = nodes.get(op);
+		if(node != null) {
+			fifos.get(node.priority.ordinal()).removeFirstOccurrence(
+				node);
+			unindex(node);
+			return op;
+		}
+
+		return null;
+	}
 
-				return op;
+	/** Remove a node from the indexes */
+	private void unindex(Node<T> node) {
+		nodes.remove(node.operation);
+		ArrayList<Node<T>> bucket = index.get(node.hash);
+		bucket.remove(node);
+		if (bucket.isEmpty())
+			index.remove(node.hash);
+	}
+
+	/** Remove the front node from the queue.
+	 * @return Operation at the front, or null if empty. */
+	private Operation<T> removeFront() {
+		for (ArrayDeque<Node<T>> fifo: fifos) {
+			Node<T> node = fifo.pollFirst();
+			if (node != null) {
+				unindex(node);
+				return node.operation;
 			}
-			prev = node;
-			node = node.next;
 		}
-
 		return null;
 	}
 
 	/** Does the queue have any elements? */
 	public synchronized boolean hasNext() {
-		return front != null;
+		return !nodes.isEmpty();
 	}
 
 	/** Get the next operation from the queue (and remove it) */
@@ -141,8 +177,17 @@ public final class OperationQueue<T extends ControllerProperty> {
 
 		work = null;
 		waitOp();
-		work = front.operation;
-		front = front.next;
+		work = removeFront();
+
+		return work;
+	}
+
+	/** Get the next operation from the queue (and remove it), without
+	 * waiting.
+	 * @return Next operation, or null if the queue is empty. */
+	public synchronized Operation<T> poll() {
+
+		work = removeFront();
 
 		return work;
 	}
@@ -164,11 +209,11 @@ public final class OperationQueue<T extends ControllerProperty> {
 
 		final Operation<T> operation;
 		final PriorityLevel priority;
-		Node<T> next;
-		Node(Operation<T> op, Node<T> n) {
+		final int hash;
+		Node(Operation<T> op) {
 			operation = op;
 			priority = op.getPriority();
-			next = n;
+			hash = op.hashCode();
 		}
 	}
 
@@ -179,10 +224,9 @@ public final class OperationQueue<T extends ControllerProperty> {
 		if(w != null)
 			handler.handle(w.getPriority(), w);
 
-		Node<T> node = front;
-		while(node != null) {
-			handler.handle(node.priority, node.operation);
-			node = node.next;
+		for (ArrayDeque<Node<T>> fifo: fifos) {
+			for (Node<T> node: fifo)
+				handler.handle(node.priority, node.operation);
 		}
 	}
 }
@@ -0,0 +1,112 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server.comm;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import us.mn.state.dot.tms.CommProtocol;
+import us.mn.state.dot.tms.SystemAttrEnum;
+
+/**
+ * A pool of threads shared by message pollers.  A pooled poller does not
+ * have a thread of its own -- whenever its operation queue is not empty, it
+ * schedules a task on the pool to perform one operation.  Since a poller
+ * never has more than one task scheduled, operations for each comm link are
+ * still performed one at a time, in queue order.  Idle comm links do not
+ * tie up any threads.
+ *
+ * @author Jacob Barde
+ */
+public class PollerPool {
+
+	/** Thread group for all pool threads */
+	static private final ThreadGroup GROUP = new ThreadGroup("PollerPool");
+
+	/** Shared poller pool */
+	static private PollerPool shared;
+
+	/** Get the shared poller pool */
+	static public synchronized PollerPool getShared() {
+		if (shared == null) {
+			shared = new PollerPool(
+				SystemAttrEnum.COMM_POOL_THREADS.getInt());
+		}
+		return shared;
+	}
+
+	/** Check if a comm protocol should use the shared poller pool */
+	static public boolean isPooled(CommProtocol cp) {
+		String p = SystemAttrEnum.COMM_POOL_PROTOCOLS.getString();
+		for (String n: p.split(",")) {
+			try {
+				if (Integer.parseInt(n.trim()) == cp.ordinal())
+					return true;
+			}
+			catch (NumberFormatException e) {
+				// skip invalid protocol number
+			}
+		}
+		return false;
+	}
+
+	/** Thread pool executor */
+	private final ThreadPoolExecutor executor;
+
+	/** Create a new poller pool.
+	 * @param n_threads Number of threads in pool. */
+	public PollerPool(int n_threads) {
+		final AtomicInteger n_thread = new AtomicInteger();
+		executor = new ThreadPoolExecutor(n_threads, n_threads,
+			0, TimeUnit.MILLISECONDS,
+			new LinkedBlockingQueue<Runnable>(),
+			new ThreadFactory()
+		{
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(GROUP, r, "Poller pool: " +
+					n_thread.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/** Execute a poller task */
+	public void execute(Runnable task) {
+		executor.execute(task);
+	}
+
+	/** Get the number of threads in the pool */
+	public int getPoolSize() {
+		return executor.getPoolSize();
+	}
+
+	/** Get the number of tasks waiting for a thread */
+	public int getQueueSize() {
+		return executor.getQueue().size();
+	}
+
+	/** Get the number of tasks completed */
+	public long getCompletedCount() {
+		return executor.getCompletedTaskCount();
+	}
+
+	/** Shut down the pool */
+	public void shutdown() {
+		executor.shutdown();
+	}
+}
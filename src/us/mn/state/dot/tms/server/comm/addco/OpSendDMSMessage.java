@@ -57,6 +57,12 @@ public class OpSendDMSMessage extends OpAddco {
 			return false;
 	}
 
+	/** Get a hash code consistent with equals */
+	@Override
+	public int hashCode() {
+		return dms.hashCode();
+	}
+
 	/** Create the second phase of the operation */
 	@Override
 	protected Phase<AddcoProperty> phaseTwo() {
@@ -50,6 +50,12 @@ public class OpChangeBeaconState extends OpDevice<CBWProperty> {
 			return false;
 	}
 
+	/** Get a hash code consistent with equals */
+	@Override
+	public int hashCode() {
+		return beacon.hashCode();
+	}
+
 	/** Create the second phase of the operation */
 	@Override
 	protected Phase<CBWProperty> phaseTwo() {
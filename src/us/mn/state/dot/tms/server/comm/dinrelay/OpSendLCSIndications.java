@@ -62,6 +62,12 @@ public class OpSendLCSIndications extends OpLCS {
 			return false;
 	}
 
+	/** Get a hash code consistent with equals */
+	@Override
+	public int hashCode() {
+		return lcs_array.hashCode();
+	}
+
 	/** Create the second phase of the operation */
 	@Override
 	protected Phase<DinRelayProperty> phaseTwo() {
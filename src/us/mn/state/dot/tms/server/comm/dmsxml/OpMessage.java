@@ -71,6 +71,12 @@ class OpMessage extends OpDms {
 			return false;
 	}
 
+	/** Get a hash code consistent with equals */
+	@Override
+	public int hashCode() {
+		return m_dms.hashCode();
+	}
+
 	/** Return the bitmap page as a hex string for all pages. */
 	private String convertToHexString(BitmapGraphic[] bitmaps) {
 		StringBuilder hs = new StringBuilder();
@@ -53,6 +53,12 @@ public class OpDeployLaneMarking extends Op170Device {
 			return false;
 	}
 
+	/** Get a hash code consistent with equals */
+	@Override
+	public int hashCode() {
+		return lane_marking.hashCode();
+	}
+
 	/** Create the second phase of the operation */
 	@Override
 	protected Phase<MndotProperty> phaseTwo() {
@@ -65,6 +65,12 @@ public class OpSendBeaconState extends Op170Device {
 			return false;
 	}
 
+	/** Get a hash code consistent with equals */
+	@Override
+	public int hashCode() {
+		return device.hashCode();
+	}
+
 	/** Create the second phase of the operation */
 	@Override
 	protected Phase<MndotProperty> phaseTwo() {
@@ -60,6 +60,12 @@ public class OpSendMeterRate extends Op170Device {
 			return false;
 	}
 
+	/** Get a hash code consistent with equals */
+	@Override
+	public int hashCode() {
+		return meter.hashCode();
+	}
+
 	/** Create the second phase of the operation */
 	@Override
 	protected Phase<MndotProperty> phaseTwo() {
@@ -20,6 +20,7 @@ import us.mn.state.dot.tms.DeviceRequest;
 import us.mn.state.dot.tms.EventType;
 import us.mn.state.dot.tms.InvalidMessageException;
 import us.mn.state.dot.tms.SignMessage;
+import us.mn.state.dot.tms.SystemAttrEnum;
 import us.mn.state.dot.tms.server.ControllerImpl;
 import us.mn.state.dot.tms.server.DMSImpl;
 import us.mn.state.dot.tms.server.LCSArrayImpl;
@@ -53,7 +54,8 @@ public class NtcipPoller extends MessagePoller implements DMSPoller, LCSPoller {
 	{
 		ControllerImpl c = o.getController();
 		return snmp.new Message(messenger.getOutputStream(c),
-			messenger.getInputStream("", c), c.getPassword());
+			messenger.getInputStream("", c), c.getPassword(),
+			SystemAttrEnum.SNMP_PIPELINE_WINDOW.getInt());
 	}
 
 	/** Check if a drop address is valid */
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2000-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -147,21 +148,34 @@ public class OpQueryDMSStatus extends OpDMS {
 			logQuery(vol_num);
 			logQuery(vol_max);
 			logQuery(vol_mem);
-			return new ControllerTemperature();
+			return new QueryTemperatures();
 		}
 	}
 
-	/** Phase to query the DMS controller temperature status */
-	protected class ControllerTemperature extends Phase {
+	/** Phase to query the DMS temperature status.  The controller,
+	 * ambient and housing temperatures are independent, so they are
+	 * queried without waiting for each response. */
+	protected class QueryTemperatures extends Phase {
 
-		/** Query the DMS controller temperature */
-		@SuppressWarnings("unchecked")
+		/** Query the DMS temperatures */
 		protected Phase poll(CommMessage mess) throws IOException {
+			SNMP.Message sm = (SNMP.Message) mess;
 			ASN1Integer min_cab = tempMinCtrlCabinet.makeInt();
 			ASN1Integer max_cab = tempMaxCtrlCabinet.makeInt();
-			mess.add(min_cab);
-			mess.add(max_cab);
-			mess.queryProps();
+			ASN1Integer min_amb = tempMinAmbient.makeInt();
+			ASN1Integer max_amb = tempMaxAmbient.makeInt();
+			ASN1Integer min_hou = tempMinSignHousing.makeInt();
+			ASN1Integer max_hou = tempMaxSignHousing.makeInt();
+			sm.add(min_cab);
+			sm.add(max_cab);
+			SNMP.Request cab = sm.sendQuery();
+			sm.add(min_amb);
+			sm.add(max_amb);
+			SNMP.Request amb = sm.sendQuery();
+			sm.add(min_hou);
+			sm.add(max_hou);
+			SNMP.Request hou = sm.sendQuery();
+			sm.await(cab);
 			logQuery(min_cab);
 			logQuery(max_cab);
 			int mn = min_cab.getInteger();
@@ -173,26 +187,12 @@ public class OpQueryDMSStatus extends OpDMS {
 				dms.setMinCabinetTemp(null);
 				dms.setMaxCabinetTemp(null);
 			}
-			return new AmbientTemperature();
-		}
-	}
-
-	/** Phase to query the DMS ambient temperature status */
-	protected class AmbientTemperature extends Phase {
-
-		/** Query the DMS ambient temperature */
-		@SuppressWarnings("unchecked")
-		protected Phase poll(CommMessage mess) throws IOException {
-			ASN1Integer min_amb = tempMinAmbient.makeInt();
-			ASN1Integer max_amb = tempMaxAmbient.makeInt();
-			mess.add(min_amb);
-			mess.add(max_amb);
 			try {
-				mess.queryProps();
+				sm.await(amb);
 				logQuery(min_amb);
 				logQuery(max_amb);
-				int mn = min_amb.getInteger();
-				int mx = max_amb.getInteger();
+				mn = min_amb.getInteger();
+				mx = max_amb.getInteger();
 				if (mn <= mx) {
 					dms.setMinAmbientTemp(mn);
 					dms.setMaxAmbientTemp(mx);
@@ -206,25 +206,11 @@ public class OpQueryDMSStatus extends OpDMS {
 				dms.setMinAmbientTemp(null);
 				dms.setMaxAmbientTemp(null);
 			}
-			return new HousingTemperature();
-		}
-	}
-
-	/** Phase to query the DMS housing temperature status */
-	protected class HousingTemperature extends Phase {
-
-		/** Query the DMS housing temperature */
-		@SuppressWarnings("unchecked")
-		protected Phase poll(CommMessage mess) throws IOException {
-			ASN1Integer min_hou = tempMinSignHousing.makeInt();
-			ASN1Integer max_hou = tempMaxSignHousing.makeInt();
-			mess.add(min_hou);
-			mess.add(max_hou);
-			mess.queryProps();
+			sm.await(hou);
 			logQuery(min_hou);
 			logQuery(max_hou);
-			int mn = min_hou.getInteger();
-			int mx = max_hou.getInteger();
+			mn = min_hou.getInteger();
+			mx = max_hou.getInteger();
 			if (mn <= mx) {
 				dms.setMinHousingTemp(mn);
 				dms.setMaxHousingTemp(mx);
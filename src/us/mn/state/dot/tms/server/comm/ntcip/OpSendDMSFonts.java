@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2000-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -440,14 +441,16 @@ public class OpSendDMSFonts extends OpDMS {
 		}
 	}
 
-	/** Add a character to the font table */
+	/** Add characters to the font table.  Independent characters are
+	 * sent without waiting for each response, up to the SNMP window. */
 	protected class AddCharacter extends Phase {
 
 		/** Iterator for remaining glyphs */
 		protected final Iterator<Glyph> chars;
 
-		/** Current glyph */
-		protected Glyph glyph;
+		/** Glyphs being sent in the current poll */
+		protected final LinkedList<Glyph> batch =
+			new LinkedList<Glyph>();
 
 		/** Count of characters added */
 		protected int count = 0;
@@ -455,15 +458,37 @@ public class OpSendDMSFonts extends OpDMS {
 		/** Create a new add character phase */
 		public AddCharacter(Collection<Glyph> c) {
 			chars = c.iterator();
-			if (chars.hasNext())
-				glyph = chars.next();
 		}
 
-		/** Add a character to the font table */
-		@SuppressWarnings("unchecked")
+		/** Add characters to the font table */
 		protected Phase poll(CommMessage mess) throws IOException {
-			int code_point = glyph.getCodePoint();
-			Graphic graphic = glyph.getGraphic();
+			SNMP.Message sm = (SNMP.Message) mess;
+			while (batch.size() < sm.getWindow() && chars.hasNext())
+				batch.add(chars.next());
+			for (Glyph g: batch)
+				sendCharacter(sm, g);
+			sm.awaitAll();
+			int c = count;
+			count += batch.size();
+			batch.clear();
+			if (count / 20 > c / 20 && !controller.isFailed())
+				setSuccess(true);
+			if (chars.hasNext())
+				return this;
+			else {
+				if (version2)
+					return new ValidateFontV2();
+				else
+					return new ValidateFontV1();
+			}
+		}
+
+		/** Send one character, without waiting for the response */
+		private void sendCharacter(SNMP.Message sm, Glyph g)
+			throws IOException
+		{
+			int code_point = g.getCodePoint();
+			Graphic graphic = g.getGraphic();
 			byte[] pixels = Base64.decode(graphic.getPixels());
 			ASN1Integer char_width = characterWidth.makeInt(row,
 				code_point);
@@ -471,23 +496,11 @@ public class OpSendDMSFonts extends OpDMS {
 				characterBitmap.node, row, code_point);
 			char_width.setInteger(graphic.getWidth());
 			char_bitmap.setOctetString(pixels);
-			mess.add(char_width);
-			mess.add(char_bitmap);
+			sm.add(char_width);
+			sm.add(char_bitmap);
 			logStore(char_width);
 			logStore(char_bitmap);
-			mess.storeProps();
-			count++;
-			if (count % 20 == 0 && !controller.isFailed())
-				setSuccess(true);
-			if (chars.hasNext()) {
-				glyph = chars.next();
-				return this;
-			} else {
-				if (version2)
-					return new ValidateFontV2();
-				else
-					return new ValidateFontV1();
-			}
+			sm.sendStore();
 		}
 	}
 
@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2008-2016  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -15,6 +16,7 @@
 package us.mn.state.dot.tms.server.comm.ntcip;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import us.mn.state.dot.sched.TimeSteward;
 import us.mn.state.dot.tms.BitmapGraphic;
 import us.mn.state.dot.tms.DMS;
@@ -214,44 +216,76 @@ public class OpTestDMSPixels extends OpDMS {
 			       PixelFailureDetectionType.pixelTest;
 		}
 
-		/** Query one row in the pixel failure table */
-		@SuppressWarnings("unchecked")
+		/** Query rows in the pixel failure table.  Rows are queried
+		 * without waiting for each response, up to the SNMP window. */
 		protected Phase poll(CommMessage mess) throws IOException {
-			ASN1Integer x_loc = pixelFailureXLocation.makeInt(
-				detectionType.ordinal(), row);
-			ASN1Integer y_loc = pixelFailureYLocation.makeInt(
-				detectionType.ordinal(), row);
-			ASN1Flags<PixelFailureStatus> status = new ASN1Flags<
-				PixelFailureStatus>(PixelFailureStatus.class,
-				pixelFailureStatus.node,detectionType.ordinal(),
-				row);
-			mess.add(x_loc);
-			mess.add(y_loc);
-			mess.add(status);
-			try {
-				mess.queryProps();
+			SNMP.Message sm = (SNMP.Message) mess;
+			int n = Math.min(sm.getWindow(), n_rows - row + 1);
+			ArrayList<PixelRow> rows = new ArrayList<PixelRow>(n);
+			for (int i = 0; i < n; i++) {
+				PixelRow pr = new PixelRow(row + i);
+				pr.send(sm);
+				rows.add(pr);
 			}
-			catch (NoSuchName e) {
-				// We've gone past the end of the table for
-				// this detection type.  Must be a v1 sign.
-				return nextTablePhase();
+			for (PixelRow pr: rows) {
+				try {
+					pr.await(sm);
+				}
+				catch (NoSuchName e) {
+					// We've gone past the end of
+					// the table for this detection
+					// type.  Must be a v1 sign.
+					return nextTablePhase();
+				}
+				row++;
 			}
-			logQuery(x_loc);
-			logQuery(y_loc);
-			logQuery(status);
-			int x = x_loc.getInteger() - 1;
-			int y = y_loc.getInteger() - 1;
-			if (PixelFailureStatus.isStuckOn(status.getInteger()))
-				setStuckOn(x, y);
-			if (PixelFailureStatus.isStuckOff(status.getInteger()))
-				setStuckOff(x, y);
-			row++;
 			if (row <= n_rows)
 				return this;
 			else
 				return nextTablePhase();
 		}
 
+		/** One row in the pixel failure table */
+		private class PixelRow {
+			private final ASN1Integer x_loc;
+			private final ASN1Integer y_loc;
+			private final ASN1Flags<PixelFailureStatus> status;
+			private SNMP.Request req;
+
+			/** Create a pixel failure row */
+			private PixelRow(int r) {
+				int dt = detectionType.ordinal();
+				x_loc = pixelFailureXLocation.makeInt(dt, r);
+				y_loc = pixelFailureYLocation.makeInt(dt, r);
+				status = new ASN1Flags<PixelFailureStatus>(
+					PixelFailureStatus.class,
+					pixelFailureStatus.node, dt, r);
+			}
+
+			/** Send a query for the row */
+			private void send(SNMP.Message sm) throws IOException {
+				sm.add(x_loc);
+				sm.add(y_loc);
+				sm.add(status);
+				req = sm.sendQuery();
+			}
+
+			/** Wait for the row and record a pixel failure */
+			private void await(SNMP.Message sm) throws IOException {
+				sm.await(req);
+				logQuery(x_loc);
+				logQuery(y_loc);
+				logQuery(status);
+				int x = x_loc.getInteger() - 1;
+				int y = y_loc.getInteger() - 1;
+				int st = status.getInteger();
+				if (PixelFailureStatus.isStuckOn(st))
+					setStuckOn(x, y);
+				if (PixelFailureStatus.isStuckOff(st))
+					setStuckOff(x, y);
+			}
+		}
+
 		/** Get the next table phase */
 		private Phase nextTablePhase() {
 			if (isPixelTest() && message_rows.getInteger() > 0) {
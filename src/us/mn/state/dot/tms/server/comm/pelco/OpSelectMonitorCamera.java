@@ -59,6 +59,12 @@ public class OpSelectMonitorCamera extends OpPelco {
 			return false;
 	}
 
+	/** Get a hash code consistent with equals */
+	@Override
+	public int hashCode() {
+		return monitor.hashCode();
+	}
+
 	/** Create the first phase of the operation */
 	@Override
 	protected Phase<PelcoProperty> phaseOne() {
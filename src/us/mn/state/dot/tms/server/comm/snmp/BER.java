@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2002-2015  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -17,11 +18,13 @@ package us.mn.state.dot.tms.server.comm.snmp;
 import java.io.EOFException;
 import java.io.InputStream;
 import java.io.IOException;
-import java.io.ByteArrayOutputStream;
 import us.mn.state.dot.tms.server.comm.ParsingException;
 
 /**
- * Basic Encoding Rules for ASN.1
+ * Basic Encoding Rules for ASN.1.  Values are encoded back-to-front into a
+ * reusable buffer: each encode method prepends one complete element, so
+ * the elements of a constructed value must be encoded in reverse order,
+ * followed by its header.
  *
  * @author Douglas Lau
  */
@@ -44,105 +47,94 @@ abstract public class BER extends ASN1 {
 	 * than one octet */
 	static private final int ONE_OCTET = 0x1F;
 
-	/** Encode a BER identifier to the output stream */
+	/** Encode a BER identifier (prepend to the encoder) */
 	protected void encodeIdentifier(Tag tag) throws IOException {
 		byte first = tag.getClazz();
 		int number = tag.getNumber();
 		if (tag.isConstructed())
 			first |= Tag.CONSTRUCTED;
 		if (number < ONE_OCTET) {
-			encoder.write(first | number);
+			encoder.prepend(first | number);
 			return;
 		}
-		encoder.write(first | ONE_OCTET);
-		byte[] buffer = new byte[5];
-		int start = 4;
-		buffer[start] = (byte)(number & SEVEN_BITS);
-		for (number >>= 7; number > SEVEN_BITS; number >>= 7) {
-			buffer[--start] = (byte)
-				((number & SEVEN_BITS) | HIGH_BIT);
-		}
-		encoder.write(buffer, start, 5 - start);
+		encoder.prepend(number & SEVEN_BITS);
+		for (number >>>= 7; number > 0; number >>>= 7)
+			encoder.prepend((number & SEVEN_BITS) | HIGH_BIT);
+		encoder.prepend(first | ONE_OCTET);
 	}
 
-	/** Encode a BER length */
+	/** Encode a BER length (prepend to the encoder) */
 	protected void encodeLength(int length) throws IOException {
-		if (length < 128)
-			encoder.write(length);
-		else if (length < 256) {
-			encoder.write(HIGH_BIT | 1);
-			encoder.write(length);
-		} else {
-			encoder.write(HIGH_BIT | 2);
-			encoder.write((byte)(length >> 8));
-			encoder.write((byte)(length & 0xFF));
+		if (length < 128) {
+			encoder.prepend(length);
+			return;
+		}
+		int n = 0;
+		for (int len = length; len != 0; len >>>= 8) {
+			encoder.prepend(len & 0xFF);
+			n++;
 		}
+		encoder.prepend(HIGH_BIT | n);
 	}
 
 	/** Encode a boolean value */
 	protected void encodeBoolean(boolean value) throws IOException {
-		encodeIdentifier(ASN1Tag.BOOLEAN);
+		encoder.prepend(value ? 0xFF : 0x00);
 		encodeLength(1);
-		if (value)
-			encoder.write(0xFF);
-		else
-			encoder.write(0x00);
+		encodeIdentifier(ASN1Tag.BOOLEAN);
 	}
 
-	/** Encode an integer value */
+	/** Encode an integer value, with the minimum number of octets */
 	protected void encodeInteger(int value) throws IOException {
-		byte[] buffer = new byte[4];
-		int len = 0;
-		boolean flag = false;
+		int len = 4;
 		for (int shift = 23; shift > 0; shift -= 8) {
 			int test = (value >> shift) & 0x1FF;
 			if (test != 0 && test != 0x1FF)
-				flag = true;
-			if (flag)
-				buffer[len++] = (byte)(test >> 1);
+				break;
+			len--;
 		}
-		buffer[len++] = (byte)(value & 0xFF);
-		encodeIdentifier(ASN1Tag.INTEGER);
+		for (int i = 0; i < len; i++)
+			encoder.prepend(value >> (i * 8));
 		encodeLength(len);
-		encoder.write(buffer, 0, len);
+		encodeIdentifier(ASN1Tag.INTEGER);
 	}
 
 	/** Encode an octet string */
 	protected void encodeOctetString(byte[] string) throws IOException {
-		encodeIdentifier(ASN1Tag.OCTET_STRING);
+		encoder.prepend(string);
 		encodeLength(string.length);
-		encoder.write(string);
+		encodeIdentifier(ASN1Tag.OCTET_STRING);
 	}
 
 	/** Encode a null value */
 	protected void encodeNull() throws IOException {
-		encodeIdentifier(ASN1Tag.NULL);
 		encodeLength(0);
+		encodeIdentifier(ASN1Tag.NULL);
 	}
 
 	/** Encode an object identifier */
 	protected void encodeObjectIdentifier(int[] oid) throws IOException {
-		ByteArrayOutputStream bs = new ByteArrayOutputStream();
-		bs.write(oid[0] * 40 + oid[1]);
-		for (int i = 2; i < oid.length; i++) {
-			int subid = oid[i];
-			if (subid > SEVEN_BITS) {
-				bs.write(HIGH_BIT | (subid >> 7));
-				subid &= SEVEN_BITS;
-			}
-			bs.write(subid);
-		}
-		byte[] buffer = bs.toByteArray();
+		int mark = encoder.length();
+		for (int i = oid.length - 1; i >= 2; i--)
+			encodeSubidentifier(oid[i]);
+		encodeSubidentifier(oid[0] * 40 + oid[1]);
+		encodeLength(encoder.length() - mark);
 		encodeIdentifier(ASN1Tag.OBJECT_IDENTIFIER);
-		encodeLength(buffer.length);
-		encoder.write(buffer);
 	}
 
-	/** Encode a sequence (or sequence-of) */
-	protected void encodeSequence(byte[] seq) throws IOException {
+	/** Encode a BER subidentifier (base 128, high bit continues) */
+	private void encodeSubidentifier(int subid) {
+		encoder.prepend(subid & SEVEN_BITS);
+		for (subid >>>= 7; subid > 0; subid >>>= 7)
+			encoder.prepend((subid & SEVEN_BITS) | HIGH_BIT);
+	}
+
+	/** Encode a sequence (or sequence-of) header.  The contents must
+	 * already be encoded.
+	 * @param length Length of encoded contents. */
+	protected void encodeSequence(int length) throws IOException {
+		encodeLength(length);
 		encodeIdentifier(ASN1Tag.SEQUENCE);
-		encodeLength(seq.length);
-		encoder.write(seq);
 	}
 
 	/** Decode a BER identifier (tag) */
@@ -253,14 +245,8 @@ abstract public class BER extends ASN1 {
 		int length = decodeLength(is);
 		if (length < 1)
 			throw new ParsingException("NEGATIVE OID LENGTH");
-		byte[] buffer = new byte[length];
-		if (length > 0) {
-			int blen = is.read(buffer);
-			if (blen < 0)
-				throw END_OF_STREAM;
-			if (blen != length)
-				throw new ParsingException("READ OID FAIL");
-		}
+		if (is.skip(length) != length)
+			throw new ParsingException("READ OID FAIL");
 		// NOTE: when the length is zero, there is no OID
 		return new int[0];
 	}
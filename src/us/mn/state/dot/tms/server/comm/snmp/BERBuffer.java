@@ -0,0 +1,111 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server.comm.snmp;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * A buffer for encoding BER data back-to-front.  Data is prepended, so the
+ * length of a constructed value is known when its header is encoded, and
+ * no data needs to be copied.  The buffer grows as needed, and can be
+ * reset and reused for each message.
+ *
+ * @author Jacob Barde
+ */
+public class BERBuffer {
+
+	/** Initial buffer capacity */
+	static private final int INITIAL_CAPACITY = 1024;
+
+	/** Byte buffer.  Encoded data is from position to limit. */
+	private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+	/** Create a new BER buffer */
+	public BERBuffer() {
+		reset();
+	}
+
+	/** Remove all encoded data */
+	public void reset() {
+		buffer.clear();
+		buffer.position(buffer.limit());
+	}
+
+	/** Get the length of encoded data */
+	public int length() {
+		return buffer.remaining();
+	}
+
+	/** Make room to prepend a number of bytes.
+	 * @param n Number of bytes. */
+	private void ensureRoom(int n) {
+		int pos = buffer.position();
+		if (pos < n) {
+			int len = length();
+			int cap = Math.max(buffer.capacity() * 2, len + n);
+			ByteBuffer b = ByteBuffer.allocate(cap);
+			System.arraycopy(buffer.array(), pos, b.array(),
+				cap - len, len);
+			b.position(cap - len);
+			buffer = b;
+		}
+	}
+
+	/** Prepend one byte.
+	 * @param b Byte to prepend (low 8 bits). */
+	public void prepend(int b) {
+		ensureRoom(1);
+		int pos = buffer.position() - 1;
+		buffer.put(pos, (byte)b);
+		buffer.position(pos);
+	}
+
+	/** Prepend an array of bytes.
+	 * @param b Bytes to prepend. */
+	public void prepend(byte[] b) {
+		prepend(b, 0, b.length);
+	}
+
+	/** Prepend part of an array of bytes.
+	 * @param b Byte array.
+	 * @param off Offset of first byte.
+	 * @param len Number of bytes. */
+	public void prepend(byte[] b, int off, int len) {
+		ensureRoom(len);
+		int pos = buffer.position() - len;
+		System.arraycopy(b, off, buffer.array(), pos, len);
+		buffer.position(pos);
+	}
+
+	/** Get a read-only view of the encoded data */
+	public ByteBuffer asByteBuffer() {
+		return buffer.slice().asReadOnlyBuffer();
+	}
+
+	/** Write the encoded data to an output stream */
+	public void writeTo(OutputStream os) throws IOException {
+		os.write(buffer.array(), buffer.position(), length());
+	}
+
+	/** Copy the encoded data to a new byte array */
+	public byte[] toByteArray() {
+		byte[] b = new byte[length()];
+		System.arraycopy(buffer.array(), buffer.position(), b, 0,
+			b.length);
+		return b;
+	}
+}
@@ -0,0 +1,74 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server.comm.snmp;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An input stream which reads from a view of a byte buffer.  The view can
+ * be changed, so one stream can be reused to decode many messages from a
+ * receive buffer without copying.
+ *
+ * @author Jacob Barde
+ */
+public class BufferInputStream extends InputStream {
+
+	/** Buffer being read */
+	private ByteBuffer buffer;
+
+	/** Create a new buffer input stream */
+	public BufferInputStream(ByteBuffer b) {
+		buffer = b;
+	}
+
+	/** Set the buffer to read.  Data is read from the buffer's position
+	 * to its limit. */
+	public void setBuffer(ByteBuffer b) {
+		buffer = b;
+	}
+
+	/** Read the next byte */
+	@Override
+	public int read() {
+		return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+	}
+
+	/** Read bytes into an array */
+	@Override
+	public int read(byte[] b, int off, int len) {
+		if (len == 0)
+			return 0;
+		if (!buffer.hasRemaining())
+			return -1;
+		int n = Math.min(len, buffer.remaining());
+		buffer.get(b, off, n);
+		return n;
+	}
+
+	/** Skip over bytes */
+	@Override
+	public long skip(long n) {
+		int s = (int)Math.max(0, Math.min(n, buffer.remaining()));
+		buffer.position(buffer.position() + s);
+		return s;
+	}
+
+	/** Get the number of bytes available */
+	@Override
+	public int available() {
+		return buffer.remaining();
+	}
+}
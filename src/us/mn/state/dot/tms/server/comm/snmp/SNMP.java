@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2000-2015  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -17,10 +18,13 @@ package us.mn.state.dot.tms.server.comm.snmp;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import us.mn.state.dot.sched.DebugLog;
 import us.mn.state.dot.tms.server.comm.CommMessage;
+import us.mn.state.dot.tms.server.comm.ControllerException;
 import us.mn.state.dot.tms.server.comm.ControllerProperty;
 import us.mn.state.dot.tms.server.comm.ParsingException;
 
@@ -62,16 +66,57 @@ public class SNMP extends BER {
 	 * returns -128,-127,-126,... */
 	static private final int REQUEST_ID_MAX_LEDSTAR_BUG = 127;
 
+	/** Maximum number of outstanding requests for one message */
+	static public final int MAX_WINDOW = 16;
+
+	/** Maximum number of stale responses to skip while waiting */
+	static private final int MAX_STALE = 5;
+
 	/** Last SNMP request-id */
 	private int last_request = 0;
 
-	/** Encode an SNMP message */
+	/** Get the next SNMP request-id */
+	private int nextRequestID() {
+		int req = last_request++;
+		if (last_request > REQUEST_ID_MAX_LEDSTAR_BUG)
+			last_request = 0;
+		return req;
+	}
+
+	/** Receive buffer for response PDUs */
+	private ByteBuffer rx_buf = ByteBuffer.allocate(1024);
+
+	/** Input stream to decode response PDUs from receive buffer */
+	private final BufferInputStream rx_pdu = new BufferInputStream(rx_buf);
+
+	/** Read a response PDU into the receive buffer.
+	 * @param is Input stream.
+	 * @param len Length of PDU.
+	 * @return Input stream view of PDU. */
+	private InputStream readPDU(InputStream is, int len)
+		throws IOException
+	{
+		if (len > rx_buf.capacity())
+			rx_buf = ByteBuffer.allocate(len);
+		byte[] buf = rx_buf.array();
+		int n = 0;
+		while (n < len) {
+			int r = is.read(buf, n, len - n);
+			if (r < 0)
+				throw new ParsingException("READ PDU FAIL");
+			n += r;
+		}
+		rx_buf.clear();
+		rx_buf.limit(len);
+		rx_pdu.setBuffer(rx_buf);
+		return rx_pdu;
+	}
+
+	/** Encode an SNMP message header (after the PDU) */
 	private void encodeSNMPMessage(String community) throws IOException {
-		byte[] pdu = getEncodedData();
-		encodeInteger(SNMP_VERSION);
 		encodeOctetString(community.getBytes());
-		encoder.write(pdu);
-		encodeSequence(getEncodedData());
+		encodeInteger(SNMP_VERSION);
+		encodeSequence(encoder.length());
 	}
 
 	/** Decode an SNMP message */
@@ -87,7 +132,9 @@ public class SNMP extends BER {
 			throw new ParsingException("SNMP COMMUNITY MISMATCH");
 	}
 
-	/** SNMP message class */
+	/** SNMP message class.  A message can have a window of outstanding
+	 * requests; responses are matched to requests by request-id.  With
+	 * a window of one, each request waits for the previous response. */
 	public class Message implements CommMessage {
 
 		/** Output stream for this message */
@@ -99,21 +146,40 @@ public class SNMP extends BER {
 		/** Community name */
 		private final String community;
 
-		/** SNMP request-id */
-		public final int request_id;
+		/** Maximum number of outstanding requests */
+		private final int window;
 
-		/** List of objects set or get with this message */
-		private final LinkedList<ASN1Object> mos =
+		/** List of objects to set or get with the next request */
+		private LinkedList<ASN1Object> mos =
 			new LinkedList<ASN1Object>();
 
+		/** Outstanding requests, by request-id */
+		private final LinkedHashMap<Integer, Request> pending =
+			new LinkedHashMap<Integer, Request>();
+
+		/** Count of stale responses since last matched response */
+		private int n_stale = 0;
+
 		/** Create a new SNMP message */
 		public Message(OutputStream o, InputStream i, String c) {
+			this(o, i, c, 1);
+		}
+
+		/** Create a new SNMP message.
+		 * @param o Output stream.
+		 * @param i Input stream.
+		 * @param c Community name.
+		 * @param w Maximum number of outstanding requests. */
+		public Message(OutputStream o, InputStream i, String c, int w) {
 			os = o;
 			is = i;
 			community = (c != null) ? c : PUBLIC;
-			request_id = last_request++;
-			if (last_request > REQUEST_ID_MAX_LEDSTAR_BUG)
-				last_request = 0;
+			window = Math.max(1, Math.min(w, MAX_WINDOW));
+		}
+
+		/** Get the maximum number of outstanding requests */
+		public int getWindow() {
+			return window;
 		}
 
 		/** Add a controller property */
@@ -127,16 +193,8 @@ public class SNMP extends BER {
 		 * @throws IOException On any errors sending a request or
 		 *         receiving response */
 		public void queryProps() throws IOException {
-			if (mos.isEmpty())
-				return;
-			is.skip(is.available());
-			encodeVarBindList(false);
-			encodeRequestPDU(SNMPTag.GET_REQUEST);
-			encodeSNMPMessage(community);
-			encoder.writeTo(os);
-			encoder.reset();
-			os.flush();
-			decodeResponse();
+			if (!mos.isEmpty())
+				await(sendQuery());
 		}
 
 		/** Log a property query */
@@ -156,70 +214,166 @@ public class SNMP extends BER {
 		 * @throws IOException On any errors sending a request or
 		 *         receiving response */
 		public void storeProps() throws IOException {
-			if (mos.isEmpty())
-				return;
-			is.skip(is.available());
-			encodeVarBindList(true);
-			encodeRequestPDU(SNMPTag.SET_REQUEST);
+			if (!mos.isEmpty())
+				await(sendStore());
+		}
+
+		/** Send a get-request for the added properties, without
+		 * waiting for the response.
+		 * @return Outstanding request. */
+		public Request sendQuery() throws IOException {
+			return send(SNMPTag.GET_REQUEST, false);
+		}
+
+		/** Send a set-request for the added properties, without
+		 * waiting for the response.
+		 * @return Outstanding request. */
+		public Request sendStore() throws IOException {
+			return send(SNMPTag.SET_REQUEST, true);
+		}
+
+		/** Send a request, waiting for a free slot in the window */
+		private Request send(Tag tag, boolean set) throws IOException {
+			while (pending.size() >= window)
+				receiveResponse();
+			if (pending.isEmpty())
+				is.skip(is.available());
+			Request r = new Request(nextRequestID(), mos);
+			mos = new LinkedList<ASN1Object>();
+			encoder.reset();
+			r.encodeVarBindList(set);
+			r.encodeRequestPDU(tag);
 			encodeSNMPMessage(community);
 			encoder.writeTo(os);
-			encoder.reset();
 			os.flush();
-			decodeResponse();
+			pending.put(r.request_id, r);
+			return r;
+		}
+
+		/** Wait for the response to a request.  Responses to other
+		 * outstanding requests are decoded as they are received.
+		 * @param r Request to wait for.
+		 * @throws IOException On any errors receiving the response,
+		 *         or an error status for the request. */
+		public void await(Request r) throws IOException {
+			while (!r.done)
+				receiveResponse();
+			if (r.error != null)
+				throw r.error;
 		}
 
-		/** Decode a response to a SET or GET request */
-		private void decodeResponse() throws IOException {
-			for (int i = 0;; i++) {
+		/** Wait for responses to all outstanding requests.
+		 * @throws IOException On any errors receiving responses, or
+		 *         the first error status of any request. */
+		public void awaitAll() throws IOException {
+			IOException err = null;
+			while (!pending.isEmpty()) {
+				Request r = pending.values().iterator().next();
 				try {
-					decodeSNMPMessage(is, community);
-					decodeResponsePDU(is);
-					decodeVarBindList(is);
-					return;
+					await(r);
 				}
-				catch (RequestIDException e) {
-					SNMP_LOG.log(e.getMessage());
-					is.skip(is.available());
-					if (i >= 5)
-						throw e;
+				catch (ControllerException e) {
+					if (err == null)
+						err = e;
 				}
 			}
+			if (err != null)
+				throw err;
+		}
+
+		/** Receive one response and decode it into the matching
+		 * outstanding request */
+		private void receiveResponse() throws IOException {
+			decodeSNMPMessage(is, community);
+			if (decodeIdentifier(is) != SNMPTag.GET_RESPONSE)
+				throw new ParsingException("!GET_RESPONSE TAG");
+			InputStream pdu = readPDU(is, decodeLength(is));
+			int req = decodeInteger(pdu);
+			Request r = pending.remove(req);
+			if (r != null) {
+				n_stale = 0;
+				r.decodeResponse(pdu);
+			} else
+				skipStale(req);
+		}
+
+		/** Skip a stale response */
+		private void skipStale(int req) throws IOException {
+			int rid = pending.isEmpty() ? -1
+			        : pending.keySet().iterator().next();
+			RequestIDException e = new RequestIDException(req, rid);
+			SNMP_LOG.log(e.getMessage());
+			n_stale++;
+			if (n_stale > MAX_STALE)
+				throw e;
+		}
+	}
+
+	/** An SNMP request, with a list of objects to set or get */
+	public class Request {
+
+		/** SNMP request-id */
+		public final int request_id;
+
+		/** List of objects set or get with this request */
+		private final LinkedList<ASN1Object> mos;
+
+		/** Flag indicating the response has been received */
+		private boolean done = false;
+
+		/** Error status of response (null for no error) */
+		private ControllerException error;
+
+		/** Create a new request */
+		private Request(int req, LinkedList<ASN1Object> m) {
+			request_id = req;
+			mos = m;
 		}
 
-		/** Encode a null variable binding */
+		/** Encode a variable binding (null value for get) */
 		private void encodeVarBind(ASN1Object mo, boolean set)
 			throws IOException
 		{
-			encodeObjectIdentifier(mo.oid());
+			int mark = encoder.length();
 			if (set)
 				mo.encode(SNMP.this);
 			else
 				encodeNull();
-			encodeSequence(getEncodedData());
+			encodeObjectIdentifier(mo.oid());
+			encodeSequence(encoder.length() - mark);
 		}
 
-		/** Encode the variable binding list */
+		/** Encode the variable binding list (in reverse order) */
 		private void encodeVarBindList(boolean set) throws IOException {
-			ByteArrayOutputStream vb = new ByteArrayOutputStream();
-			for (ASN1Object mo: mos) {
-				encodeVarBind(mo, set);
-				vb.write(getEncodedData());
-			}
-			encodeSequence(vb.toByteArray());
+			int mark = encoder.length();
+			Iterator<ASN1Object> it = mos.descendingIterator();
+			while (it.hasNext())
+				encodeVarBind(it.next(), set);
+			encodeSequence(encoder.length() - mark);
 		}
 
-		/** Encode an SNMP request PDU
+		/** Encode an SNMP request PDU header (after the variable
+		 * binding list)
 		 * @param tag PDU type identifier */
 		private void encodeRequestPDU(Tag tag) throws IOException {
-			byte[] varBindList = getEncodedData();
-			encodeInteger(request_id);
-			encodeInteger(0);	// error-status
 			encodeInteger(0);	// error-index
-			encoder.write(varBindList);
-			byte[] buffer = getEncodedData();
+			encodeInteger(0);	// error-status
+			encodeInteger(request_id);
+			encodeLength(encoder.length());
 			encodeIdentifier(tag);
-			encodeLength(buffer.length);
-			encoder.write(buffer);
+		}
+
+		/** Decode the response PDU, following the request-id.  An
+		 * error status is kept until the request is awaited. */
+		private void decodeResponse(InputStream is) throws IOException {
+			done = true;
+			try {
+				decodeErrorStatus(is);
+				decodeVarBindList(is);
+			}
+			catch (ControllerException e) {
+				error = e;
+			}
 		}
 
 		/** Decode a variable binding */
@@ -241,17 +395,10 @@ public class SNMP extends BER {
 				decodeVarBind(is, mo);
 		}
 
-		/** Decode an SNMP response PDU */
-		private void decodeResponsePDU(InputStream is)
+		/** Decode the error status of a response PDU */
+		private void decodeErrorStatus(InputStream is)
 			throws IOException
 		{
-			if (decodeIdentifier(is) != SNMPTag.GET_RESPONSE)
-				throw new ParsingException("!GET_RESPONSE TAG");
-			if (decodeLength(is) > is.available())
-				throw new ParsingException("INVALID PDU LEN");
-			int req = decodeInteger(is);
-			if (req != request_id)
-				throw new RequestIDException(req, request_id);
 			int error = decodeInteger(is);
 			int index = decodeInteger(is);
 			switch (error) {
@@ -30,6 +30,9 @@ abstract public class BaseEvent implements Storable {
 	/** SQL connection */
 	static public SQLConnection store;
 
+	/** Write-behind event writer */
+	static public EventWriter writer;
+
 	/** Event type */
 	public final EventType event_type;
 
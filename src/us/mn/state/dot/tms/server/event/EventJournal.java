@@ -0,0 +1,201 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server.event;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import us.mn.state.dot.tms.server.Storable;
+
+/**
+ * An append-only journal of events which could not be stored in the
+ * database.  Each line contains one event: the table name, followed by
+ * column=value pairs, all separated by tabs.
+ *
+ * To replay, the journal file is renamed to a replay file, and new events
+ * are appended to a fresh journal file.  The replay file is read in chunks
+ * and deleted once all of its events have been read.
+ *
+ * @author Jacob Barde
+ */
+public class EventJournal {
+
+	/** Charset for journal files */
+	static private final Charset UTF8 = Charset.forName("UTF-8");
+
+	/** Escape a journal value */
+	static private String escape(String v) {
+		return v.replace("\\", "\\\\").replace("\t", "\\t")
+			.replace("\n", "\\n");
+	}
+
+	/** Unescape a journal value */
+	static private String unescape(String v) {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < v.length(); i++) {
+			char c = v.charAt(i);
+			if (c == '\\' && i + 1 < v.length()) {
+				i++;
+				c = v.charAt(i);
+				if (c == 't')
+					c = '\t';
+				else if (c == 'n')
+					c = '\n';
+			}
+			sb.append(c);
+		}
+		return sb.toString();
+	}
+
+	/** Journal file */
+	private final File file;
+
+	/** Replay file */
+	private final File replay_file;
+
+	/** Writer for journal file */
+	private BufferedWriter writer;
+
+	/** Reader for replay file */
+	private BufferedReader reader;
+
+	/** Create a new event journal */
+	public EventJournal(File f) {
+		file = f;
+		replay_file = new File(f.getPath() + ".replay");
+	}
+
+	/** Append an event to the journal */
+	public synchronized void append(Storable ev) throws IOException {
+		StringBuilder sb = new StringBuilder();
+		sb.append(escape(ev.getTable()));
+		for (Map.Entry<String, Object> e: ev.getColumns().entrySet()) {
+			Object v = e.getValue();
+			if (v != null) {
+				sb.append('\t');
+				sb.append(escape(e.getKey()));
+				sb.append('=');
+				sb.append(escape(v.toString()));
+			}
+		}
+		sb.append('\n');
+		if (writer == null) {
+			writer = new BufferedWriter(new OutputStreamWriter(
+				new FileOutputStream(file, true), UTF8));
+		}
+		writer.write(sb.toString());
+		writer.flush();
+	}
+
+	/** Check if there are any events to replay */
+	public synchronized boolean hasEvents() {
+		return reader != null || replay_file.exists() ||
+		       file.length() > 0;
+	}
+
+	/** Read events to replay.
+	 * @param evs List to add events.
+	 * @param n_max Maximum number of events to read.
+	 * @return Number of events read. */
+	public int read(List<Storable> evs, int n_max) throws IOException {
+		if (reader == null)
+			openReplay();
+		int n = 0;
+		while (n < n_max && reader != null) {
+			String line = reader.readLine();
+			if (line != null) {
+				Storable ev = parse(line);
+				if (ev != null) {
+					evs.add(ev);
+					n++;
+				}
+			} else
+				closeReplay();
+		}
+		return n;
+	}
+
+	/** Open the replay file for reading.  If no replay file exists, the
+	 * journal file is renamed first. */
+	private synchronized void openReplay() throws IOException {
+		if (!replay_file.exists()) {
+			if (writer != null) {
+				writer.close();
+				writer = null;
+			}
+			if (file.exists() && !file.renameTo(replay_file))
+				throw new IOException("rename failed: " + file);
+		}
+		if (replay_file.exists()) {
+			reader = new BufferedReader(new InputStreamReader(
+				new FileInputStream(replay_file), UTF8));
+		}
+	}
+
+	/** Close and delete the replay file */
+	private synchronized void closeReplay() throws IOException {
+		reader.close();
+		reader = null;
+		if (!replay_file.delete())
+			throw new IOException("delete failed: " + replay_file);
+	}
+
+	/** Parse one journal line */
+	private Storable parse(String line) {
+		String[] cols = line.split("\t");
+		if (cols.length < 2)
+			return null;
+		HashMap<String, Object> map = new HashMap<String, Object>();
+		for (int i = 1; i < cols.length; i++) {
+			int eq = cols[i].indexOf('=');
+			if (eq > 0) {
+				map.put(unescape(cols[i].substring(0, eq)),
+					unescape(cols[i].substring(eq + 1)));
+			}
+		}
+		return new JournalEvent(unescape(cols[0]), map);
+	}
+
+	/** An event read from the journal */
+	static private class JournalEvent implements Storable {
+		private final String table;
+		private final Map<String, Object> columns;
+		private JournalEvent(String t, Map<String, Object> c) {
+			table = t;
+			columns = c;
+		}
+		public String getTable() {
+			return table;
+		}
+		public String getKeyName() {
+			return "name";
+		}
+		public String getKey() {
+			return null;
+		}
+		public Map<String, Object> getColumns() {
+			return columns;
+		}
+	}
+}
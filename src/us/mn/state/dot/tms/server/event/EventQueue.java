@@ -0,0 +1,104 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server.event;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import us.mn.state.dot.tms.server.Storable;
+
+/**
+ * A bounded queue of events for one database table.  Any number of threads
+ * may offer events, but only the event writer drains them.  No locks are
+ * taken by either side.
+ *
+ * @author Jacob Barde
+ */
+public class EventQueue {
+
+	/** Database table name */
+	public final String table;
+
+	/** Maximum number of queued events */
+	private final int capacity;
+
+	/** Queued events */
+	private final ConcurrentLinkedQueue<Storable> queue =
+		new ConcurrentLinkedQueue<Storable>();
+
+	/** Number of queued events */
+	private final AtomicInteger size = new AtomicInteger();
+
+	/** Count of events written to the database */
+	final AtomicLong n_written = new AtomicLong();
+
+	/** Count of events spilled to the journal */
+	final AtomicLong n_spilled = new AtomicLong();
+
+	/** Count of events dropped */
+	final AtomicLong n_dropped = new AtomicLong();
+
+	/** Count of events rejected by the database */
+	final AtomicLong n_rejected = new AtomicLong();
+
+	/** Create a new event queue */
+	public EventQueue(String t, int c) {
+		table = t;
+		capacity = c;
+	}
+
+	/** Offer an event to the queue.
+	 * @return true if the event was queued, false if the queue is full. */
+	public boolean offer(Storable ev) {
+		if (size.incrementAndGet() > capacity) {
+			size.decrementAndGet();
+			return false;
+		}
+		queue.add(ev);
+		return true;
+	}
+
+	/** Drain queued events to a list.
+	 * @param evs List to add events.
+	 * @param n_max Maximum number of events to drain.
+	 * @return Number of events drained. */
+	public int drain(List<Storable> evs, int n_max) {
+		int n = 0;
+		while (n < n_max) {
+			Storable ev = queue.poll();
+			if (ev == null)
+				break;
+			size.decrementAndGet();
+			evs.add(ev);
+			n++;
+		}
+		return n;
+	}
+
+	/** Get the number of queued events */
+	public int size() {
+		return size.get();
+	}
+
+	/** Get a string of queue statistics */
+	@Override
+	public String toString() {
+		return table + ": " + size() + " queued, " + n_written.get() +
+			" written, " + n_spilled.get() + " spilled, " +
+			n_dropped.get() + " dropped, " + n_rejected.get() +
+			" rejected";
+	}
+}
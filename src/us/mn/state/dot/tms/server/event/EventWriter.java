@@ -0,0 +1,206 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server.event;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import us.mn.state.dot.sched.DebugLog;
+import us.mn.state.dot.tms.TMSException;
+import us.mn.state.dot.tms.server.MonitoredJob;
+import us.mn.state.dot.tms.server.SQLConnection;
+import us.mn.state.dot.tms.server.Storable;
+
+/**
+ * Write-behind job for logged events.  Events are offered to a bounded queue
+ * for their table, and this job drains the queues, storing events with
+ * multi-row inserts.  If a queue is full, or the database cannot be
+ * written, events are spilled to a journal (or dropped if there is no
+ * journal).  Journaled events are replayed once all queues have been
+ * written successfully.  Events rejected by the database as invalid are
+ * logged and dropped, so they are never journaled.
+ *
+ * @author Jacob Barde
+ */
+public class EventWriter extends MonitoredJob {
+
+	/** Event writer debug log */
+	static private final DebugLog EVENT_LOG = new DebugLog("event_writer");
+
+	/** Maximum number of events to store in one batch */
+	static private final int MAX_BATCH = 256;
+
+	/** Maximum number of journaled events to replay per run */
+	static private final int MAX_REPLAY = 4096;
+
+	/** SQL connection */
+	private final SQLConnection store;
+
+	/** Maximum number of queued events per table */
+	private final int capacity;
+
+	/** Event journal (may be null) */
+	private final EventJournal journal;
+
+	/** Event queues, by table name */
+	private final ConcurrentHashMap<String, EventQueue> queues =
+		new ConcurrentHashMap<String, EventQueue>();
+
+	/** Journaled events which have been read, but not yet stored */
+	private final ArrayList<Storable> replay = new ArrayList<Storable>();
+
+	/** Count of events replayed from the journal */
+	private final AtomicLong n_replayed = new AtomicLong();
+
+	/** Count of replayed events rejected by the database */
+	private final AtomicLong n_replay_rejected = new AtomicLong();
+
+	/** Create a new event writer.
+	 * @param s SQL connection.
+	 * @param c Maximum number of queued events per table.
+	 * @param j Event journal, or null to drop overflow events. */
+	public EventWriter(SQLConnection s, int c, EventJournal j) {
+		super(Calendar.SECOND, 1);
+		store = s;
+		capacity = c;
+		journal = j;
+	}
+
+	/** Add an event to be stored.  If the queue for its table is full,
+	 * the event is spilled to the journal by the calling thread. */
+	public void add(Storable ev) {
+		EventQueue q = lookupQueue(ev.getTable());
+		if (!q.offer(ev))
+			spill(q, ev);
+	}
+
+	/** Lookup the queue for a table */
+	private EventQueue lookupQueue(String table) {
+		EventQueue q = queues.get(table);
+		if (q == null) {
+			q = new EventQueue(table, capacity);
+			EventQueue eq = queues.putIfAbsent(table, q);
+			if (eq != null)
+				q = eq;
+		}
+		return q;
+	}
+
+	/** Spill an event to the journal */
+	private void spill(EventQueue q, Storable ev) {
+		if (journal != null) {
+			try {
+				journal.append(ev);
+				q.n_spilled.incrementAndGet();
+				return;
+			}
+			catch (IOException e) {
+				EVENT_LOG.log("Journal append: " + e);
+			}
+		}
+		q.n_dropped.incrementAndGet();
+	}
+
+	/** Perform the event writer job */
+	@Override
+	public synchronized void perform() {
+		boolean ok = true;
+		for (EventQueue q: queues.values())
+			ok &= writeQueue(q);
+		if (ok && journal != null)
+			replayJournal();
+	}
+
+	/** Drain all queues, at shutdown.  Events which cannot be stored are
+	 * spilled to the journal, to be replayed after restart. */
+	public synchronized void drain() {
+		for (EventQueue q: queues.values()) {
+			if (!writeQueue(q))
+				spillQueue(q);
+		}
+	}
+
+	/** Write all queued events for one table.
+	 * @return true if all events were written. */
+	private boolean writeQueue(EventQueue q) {
+		ArrayList<Storable> evs = new ArrayList<Storable>();
+		ArrayList<Storable> rejected = new ArrayList<Storable>();
+		while (q.drain(evs, MAX_BATCH) > 0) {
+			int n_evs = evs.size();
+			try {
+				store.createAll(evs, rejected);
+			}
+			catch (TMSException e) {
+				for (Storable ev: evs)
+					spill(q, ev);
+				return false;
+			}
+			finally {
+				int n_rej = rejected.size();
+				q.n_written.addAndGet(n_evs - evs.size() -
+					n_rej);
+				q.n_rejected.addAndGet(n_rej);
+				rejected.clear();
+			}
+		}
+		return true;
+	}
+
+	/** Spill all queued events for one table to the journal */
+	private void spillQueue(EventQueue q) {
+		ArrayList<Storable> evs = new ArrayList<Storable>();
+		while (q.drain(evs, MAX_BATCH) > 0) {
+			for (Storable ev: evs)
+				spill(q, ev);
+			evs.clear();
+		}
+	}
+
+	/** Replay events from the journal */
+	private void replayJournal() {
+		ArrayList<Storable> rejected = new ArrayList<Storable>();
+		try {
+			if (replay.isEmpty() && journal.hasEvents())
+				journal.read(replay, MAX_REPLAY);
+			int n_evs = replay.size();
+			try {
+				store.createAll(replay, rejected);
+			}
+			finally {
+				int n_rej = rejected.size();
+				n_replayed.addAndGet(n_evs - replay.size() -
+					n_rej);
+				n_replay_rejected.addAndGet(n_rej);
+			}
+		}
+		catch (IOException e) {
+			EVENT_LOG.log("Journal replay: " + e);
+		}
+		catch (TMSException e) {
+			// Try again on the next run
+		}
+	}
+
+	/** Log event writer statistics */
+	public void logStats(DebugLog log) {
+		for (EventQueue q: queues.values())
+			log.log(q.toString());
+		log.log("Events replayed: " + n_replayed.get() +
+			", rejected: " + n_replay_rejected.get());
+	}
+}
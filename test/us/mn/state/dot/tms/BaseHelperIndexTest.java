@@ -0,0 +1,111 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import us.mn.state.dot.sonar.SonarObject;
+
+/**
+ * Helper index tests
+ *
+ * @author Jacob Barde
+ */
+public class BaseHelperIndexTest extends TestCase {
+
+	/** Number of detectors for lookup test */
+	static private final int N_DETECTORS = 2000;
+
+	/** Detectors on each controller */
+	static private final int N_PER_CONTROLLER = 10;
+
+	/** Simple object with a controller name */
+	static private class TestObject implements SonarObject {
+		private final String name;
+		private String ctrl;
+		private TestObject(String n, String c) {
+			name = n;
+			ctrl = c;
+		}
+		public String getTypeName() {
+			return "test";
+		}
+		public String getName() {
+			return name;
+		}
+		public void destroy() { }
+	}
+
+	public BaseHelperIndexTest(String name) {
+		super(name);
+	}
+
+	public void testIndex() {
+		BaseHelper.Index<String, TestObject> idx =
+			new BaseHelper.Index<String, TestObject>();
+		assertFalse(idx.isMaintained());
+		TestObject b = new TestObject("b", "C1");
+		TestObject a = new TestObject("a", "C1");
+		TestObject c = new TestObject("c", null);
+		idx.update(b, b.ctrl);
+		idx.update(a, a.ctrl);
+		idx.update(c, c.ctrl);
+		assertTrue(idx.isMaintained());
+		assertEquals(3, idx.size());
+		List<TestObject> l = idx.lookup("C1");
+		assertEquals(2, l.size());
+		assertSame(a, l.get(0));
+		assertSame(b, l.get(1));
+		assertSame(a, idx.lookupFirst("C1"));
+		assertNull(idx.lookupFirst("C2"));
+		a.ctrl = "C2";
+		idx.update(a, a.ctrl);
+		assertSame(b, idx.lookupFirst("C1"));
+		assertSame(a, idx.lookupFirst("C2"));
+		idx.remove(b);
+		assertTrue(idx.lookup("C1").isEmpty());
+		assertEquals(2, idx.size());
+	}
+
+	public void testLookupAll() {
+		BaseHelper.Index<String, TestObject> idx =
+			new BaseHelper.Index<String, TestObject>();
+		ArrayList<TestObject> all = new ArrayList<TestObject>();
+		int n_ctrl = N_DETECTORS / N_PER_CONTROLLER;
+		for (int i = 0; i < N_DETECTORS; i++) {
+			TestObject d = new TestObject("D" + i,
+				"ctl_" + (i % n_ctrl));
+			all.add(d);
+			idx.update(d, d.ctrl);
+		}
+		// Lookup detectors for every controller, as XML writers do
+		int n_idx = 0;
+		for (int c = 0; c < n_ctrl; c++) {
+			String cn = "ctl_" + c;
+			List<TestObject> found = idx.lookup(cn);
+			int n_scan = 0;
+			for (TestObject d: all) {
+				if (cn.equals(d.ctrl)) {
+					assertTrue(found.contains(d));
+					n_scan++;
+				}
+			}
+			assertEquals(n_scan, found.size());
+			n_idx += n_scan;
+		}
+		assertEquals(N_DETECTORS, n_idx);
+	}
+}
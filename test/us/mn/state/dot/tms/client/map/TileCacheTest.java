@@ -0,0 +1,212 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.client.map;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.ImageIO;
+import junit.framework.TestCase;
+
+/**
+ * Tile cache tests, using a file URL as a stand-in for a tile server.
+ *
+ * @author Jacob Barde
+ */
+public class TileCacheTest extends TestCase {
+
+	/** Size of one decoded tile (bytes) */
+	static private final long TILE_BYTES = 256 * 256 * 4;
+
+	/** Image fetcher which counts fetches */
+	static private class CountingFetcher extends ImageFetcher {
+		private final AtomicInteger n_fetched = new AtomicInteger();
+		private CountingFetcher(String url) throws IOException {
+			super(url);
+		}
+		@Override
+		public InputStream fetchImage(String n) throws IOException {
+			n_fetched.incrementAndGet();
+			return super.fetchImage(n);
+		}
+	}
+
+	/** Listener which counts down a latch for each loaded tile */
+	static private class Loaded implements TileCache.Listener {
+		private final CountDownLatch latch;
+		private Loaded(int n) {
+			latch = new CountDownLatch(n);
+		}
+		public void tileLoaded(String n) {
+			latch.countDown();
+		}
+		private void await() throws InterruptedException {
+			assertTrue(latch.await(10, TimeUnit.SECONDS));
+		}
+	}
+
+	/** Create a temporary directory */
+	static private File createTempDir(String prefix) throws IOException {
+		File d = File.createTempFile(prefix, "");
+		assertTrue(d.delete());
+		assertTrue(d.mkdir());
+		return d;
+	}
+
+	/** Delete a directory tree */
+	static private void deleteTree(File f) {
+		File[] files = f.listFiles();
+		if (files != null) {
+			for (File c: files)
+				deleteTree(c);
+		}
+		f.delete();
+	}
+
+	/** Tile server directory */
+	private File server;
+
+	/** Disk cache directory */
+	private File disk;
+
+	/** Image fetcher */
+	private CountingFetcher fetcher;
+
+	public TileCacheTest(String name) {
+		super(name);
+	}
+
+	@Override
+	protected void setUp() throws IOException {
+		server = createTempDir("tiles");
+		disk = createTempDir("cache");
+		for (int x = 0; x < 4; x++) {
+			File d = new File(server, "10/" + x);
+			assertTrue(d.mkdirs());
+			for (int y = 0; y < 4; y++) {
+				BufferedImage img = new BufferedImage(256, 256,
+					BufferedImage.TYPE_INT_ARGB);
+				img.setRGB(x, y, 0xFF00FF00);
+				File f = new File(d, y + ".png");
+				ImageIO.write(img, "png", f);
+			}
+		}
+		fetcher = new CountingFetcher(server.toURI().toString());
+	}
+
+	@Override
+	protected void tearDown() {
+		deleteTree(server);
+		deleteTree(disk);
+	}
+
+	/** Load tiles into a cache, waiting until all are loaded */
+	private void load(TileCache cache, String... tiles)
+		throws InterruptedException
+	{
+		Loaded l = new Loaded(tiles.length);
+		cache.addListener(l);
+		for (String t: tiles)
+			cache.requestTile(t);
+		l.await();
+		cache.removeListener(l);
+	}
+
+	public void testFetch() throws InterruptedException {
+		TileCache cache = new TileCache(fetcher, 1 << 24, null);
+		assertNull(cache.getTile("10/1/2"));
+		load(cache, "10/1/2");
+		BufferedImage img = cache.getTile("10/1/2");
+		assertNotNull(img);
+		assertEquals(0xFF00FF00, img.getRGB(1, 2));
+		assertEquals(1, cache.size());
+		assertEquals(TILE_BYTES, cache.getBytes());
+		cache.requestTile("10/1/2");
+		assertEquals(1, fetcher.n_fetched.get());
+		cache.destroy();
+	}
+
+	public void testMissing() throws InterruptedException {
+		TileCache cache = new TileCache(fetcher, 1 << 24, null);
+		cache.requestTile("10/9/9");
+		for (int i = 0; i < 100 && !cache.isMissing("10/9/9"); i++)
+			Thread.sleep(50);
+		assertTrue(cache.isMissing("10/9/9"));
+		assertNull(cache.getTile("10/9/9"));
+		cache.requestTile("10/9/9");
+		cache.prefetchTile("10/9/9");
+		Thread.sleep(100);
+		assertEquals(1, fetcher.n_fetched.get());
+		cache.destroy();
+	}
+
+	public void testEviction() throws InterruptedException {
+		TileCache cache = new TileCache(fetcher, TILE_BYTES * 3, null);
+		load(cache, "10/0/0");
+		load(cache, "10/0/1");
+		load(cache, "10/0/2");
+		// Access the oldest tile, so the next oldest is evicted
+		assertNotNull(cache.getTile("10/0/0"));
+		load(cache, "10/0/3");
+		assertEquals(3, cache.size());
+		assertEquals(TILE_BYTES * 3, cache.getBytes());
+		assertNotNull(cache.getTile("10/0/0"));
+		assertNull(cache.getTile("10/0/1"));
+		assertNotNull(cache.getTile("10/0/2"));
+		assertNotNull(cache.getTile("10/0/3"));
+		cache.destroy();
+	}
+
+	public void testDiskCache() throws IOException,
+		InterruptedException
+	{
+		TileCache c1 = new TileCache(fetcher, 1 << 24, disk);
+		load(c1, "10/3/1", "10/2/0");
+		c1.destroy();
+		assertEquals(2, fetcher.n_fetched.get());
+		assertTrue(new File(disk, "10/3/1.png").isFile());
+		assertTrue(new File(disk, "10/2/0.png").isFile());
+		// A new cache (as after restart) loads tiles from disk
+		CountingFetcher f2 = new CountingFetcher(
+			server.toURI().toString());
+		TileCache c2 = new TileCache(f2, 1 << 24, disk);
+		load(c2, "10/3/1", "10/2/0");
+		assertEquals(0, f2.n_fetched.get());
+		assertEquals(0xFF00FF00, c2.getTile("10/3/1").getRGB(3, 1));
+		c2.destroy();
+	}
+
+	public void testPrefetch() throws InterruptedException {
+		TileCache cache = new TileCache(fetcher, 1 << 24, null);
+		Loaded l = new Loaded(16);
+		cache.addListener(l);
+		for (int x = 0; x < 4; x++) {
+			for (int y = 0; y < 4; y++) {
+				String t = "10/" + x + '/' + y;
+				cache.prefetchTile(t);
+				cache.requestTile(t);
+				cache.prefetchTile(t);
+			}
+		}
+		l.await();
+		assertEquals(16, cache.size());
+		assertEquals(16, fetcher.n_fetched.get());
+		cache.destroy();
+	}
+}
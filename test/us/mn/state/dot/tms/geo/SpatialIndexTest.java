@@ -0,0 +1,130 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.geo;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Spatial index tests
+ *
+ * @author Jacob Barde
+ */
+public class SpatialIndexTest extends TestCase {
+
+	/** Create random positions around a point */
+	static private Position[] randomPositions(Random r, int n) {
+		Position[] pos = new Position[n];
+		for (int i = 0; i < n; i++) {
+			pos[i] = new Position(38 + r.nextDouble() * 4,
+				-122 + r.nextDouble() * 5);
+		}
+		return pos;
+	}
+
+	public SpatialIndexTest(String name) {
+		super(name);
+	}
+
+	public void testNearest() {
+		Random r = new Random(7);
+		final Position[] pos = randomPositions(r, 2000);
+		SpatialIndex<Integer> idx = new SpatialIndex<Integer>(2000);
+		for (int i = 0; i < pos.length; i++)
+			idx.put(i, SphericalMercatorPosition.convert(pos[i]));
+		assertEquals(pos.length, idx.size());
+		for (Position q: randomPositions(r, 200)) {
+			final Position p = q;
+			SpatialIndex.Measure<Integer> m =
+				new SpatialIndex.Measure<Integer>()
+			{
+				public Double distance(Integer i) {
+					// skip odd items
+					return (i % 2 == 0)
+					      ? p.distanceHaversine(pos[i])
+					      : null;
+				}
+			};
+			List<Integer> near = idx.findNearest(
+				SphericalMercatorPosition.convert(p), 5, m);
+			assertEquals(5, near.size());
+			double[] d = new double[pos.length / 2];
+			for (int i = 0; i < d.length; i++)
+				d[i] = p.distanceHaversine(pos[i * 2]);
+			Arrays.sort(d);
+			for (int i = 0; i < 5; i++)
+				assertEquals(d[i], m.distance(near.get(i)));
+		}
+	}
+
+	public void testNear() {
+		SpatialIndex<String> idx = new SpatialIndex<String>(1000);
+		idx.add("seg", new SphericalMercatorPosition(0, 0),
+			new SphericalMercatorPosition(5000, 0));
+		idx.put("pt", new SphericalMercatorPosition(2500, 3000));
+		List<String> n = idx.findNear(
+			new SphericalMercatorPosition(2500, 500), 600);
+		assertEquals(Arrays.asList("seg"), n);
+		n = idx.findNear(new SphericalMercatorPosition(2500, 2500),
+			600);
+		assertEquals(Arrays.asList("pt"), n);
+		idx.put("pt", new SphericalMercatorPosition(9000, 9000));
+		assertTrue(idx.findNear(new SphericalMercatorPosition(2500,
+			2500), 600).isEmpty());
+		idx.remove("seg");
+		assertEquals(1, idx.size());
+		assertTrue(idx.findNear(new SphericalMercatorPosition(2500, 0),
+			600).isEmpty());
+	}
+
+	public void testWithin() {
+		Random r = new Random(11);
+		SpatialIndex<Integer> idx = new SpatialIndex<Integer>(2000);
+		SphericalMercatorPosition[] pos =
+			new SphericalMercatorPosition[5000];
+		for (int i = 0; i < pos.length; i++) {
+			double x = r.nextDouble() * 100000;
+			double y = r.nextDouble() * 100000;
+			pos[i] = new SphericalMercatorPosition(x, y);
+			idx.put(i, pos[i]);
+		}
+		// Small and large (scan all cells) rectangles
+		double[][] rects = { { 20000, 30000, 25000, 34000 },
+			{ -5000, -5000, 200000, 200000 } };
+		for (double[] rc: rects) {
+			List<Integer> w = idx.findWithin(
+				new SphericalMercatorPosition(rc[2], rc[3]),
+				new SphericalMercatorPosition(rc[0], rc[1]));
+			assertEquals(w.size(), new HashSet<Integer>(w).size());
+			for (int i = 0; i < pos.length; i++) {
+				double x = pos[i].getX();
+				double y = pos[i].getY();
+				if (x >= rc[0] && x <= rc[2] && y >= rc[1] &&
+				    y <= rc[3])
+					assertTrue(w.contains(i));
+				if (w.contains(i)) {
+					assertTrue(x > rc[0] - 2000);
+					assertTrue(x < rc[2] + 2000);
+				}
+			}
+		}
+		assertTrue(idx.findWithin(new SphericalMercatorPosition(-9000,
+			-9000), new SphericalMercatorPosition(-5000, -5000))
+			.isEmpty());
+	}
+}
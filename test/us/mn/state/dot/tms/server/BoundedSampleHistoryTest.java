@@ -1,6 +1,7 @@
 /*
  * IRIS -- Intelligent Roadway Information System
  * Copyright (C) 2012  Minnesota Department of Transportation
+ * Copyright (C) 2016  California Department of Transportation
  *
  * This program is free software; you can redistribute it and/or modify
  * it under the terms of the GNU General Public License as published by
@@ -14,6 +15,8 @@
  */
 package us.mn.state.dot.tms.server;
 
+import java.util.ArrayList;
+import java.util.Random;
 import junit.framework.TestCase;
 import us.mn.state.dot.tms.server.BoundedSampleHistory;
 
@@ -82,4 +85,89 @@ public class BoundedSampleHistoryTest extends TestCase {
 		assertTrue(new Double(30).equals(hist.average(2, 1)));
 		assertTrue(new Double(25).equals(hist.average(2, 2)));
 	}
+
+	/** Reference average, summing boxed samples in a loop */
+	static private Double refAverage(ArrayList<Double> ref, int t, int n) {
+		double sum = 0;
+		int count = 0;
+		for(int i = t; i < t + n && i < ref.size(); i++) {
+			Double d = ref.get(ref.size() - 1 - i);
+			if(d != null) {
+				sum += d;
+				count++;
+			}
+		}
+		return (count > 0) ? sum / count : null;
+	}
+
+	/** test missing samples */
+	public void testMissing() {
+		BoundedSampleHistory hist = new BoundedSampleHistory(3);
+		hist.push((Double)null);
+		hist.push(-1D);
+		hist.push(Double.NaN);
+		assertTrue(hist.isFull());
+		assertTrue(null == hist.get(0));
+		assertTrue(Double.isNaN(hist.getValue(0)));
+		assertTrue(null == hist.average());
+		hist.push(6D);
+		assertTrue(new Double(6).equals(hist.average()));
+		assertTrue(null == hist.average(1, 2));
+		hist.push(12D);
+		hist.push((Double)null);
+		assertTrue(new Double(9).equals(hist.average()));
+		assertTrue(new Double(12).equals(hist.average(1, 1)));
+		assertTrue(new Double(9).equals(hist.average(1, 5)));
+		assertTrue(null == hist.average(3, 1));
+		assertTrue(null == hist.get(3));
+	}
+
+	/** test averages against reference over a long random run */
+	public void testRandom() {
+		Random r = new Random(42);
+		BoundedSampleHistory hist = new BoundedSampleHistory(20);
+		ArrayList<Double> ref = new ArrayList<Double>();
+		for(int i = 0; i < 5000; i++) {
+			if(r.nextInt(500) == 0) {
+				hist.clear();
+				ref.clear();
+			}
+			Double d = (r.nextInt(8) == 0)
+			         ? null
+			         : r.nextDouble() * 100;
+			hist.push(d);
+			ref.add(d);
+			if(ref.size() > 20)
+				ref.remove(0);
+			assertEquals(ref.size(), hist.size());
+			for(int t = 0; t < 22; t++) {
+				assertEquals(refAverage(ref, t, 0) == null,
+					hist.average(t, 0) == null);
+				for(int n = 1; n < 24 - t; n++) {
+					Double e = refAverage(ref, t, n);
+					Double a = hist.average(t, n);
+					if(e == null)
+						assertTrue(null == a);
+					else
+						assertEquals(e, a, 1e-9);
+				}
+				Double g = (t < ref.size())
+				         ? ref.get(ref.size() - 1 - t)
+				         : null;
+				assertEquals(g, hist.get(t));
+			}
+		}
+	}
+
+	/** compare averages of a full history with the reference loop */
+	public void testFull() {
+		BoundedSampleHistory hist = new BoundedSampleHistory(120);
+		ArrayList<Double> ref = new ArrayList<Double>();
+		for(int i = 0; i < 120; i++) {
+			hist.push((double)i);
+			ref.add((double)i);
+		}
+		assertEquals(refAverage(ref, 0, 120), hist.averageValue(0, 120),
+			1e-6);
+	}
 }
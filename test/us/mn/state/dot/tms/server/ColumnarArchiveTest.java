@@ -0,0 +1,225 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import junit.framework.TestCase;
+
+/**
+ * Columnar archive tests
+ *
+ * @author Jacob Barde
+ */
+public class ColumnarArchiveTest extends TestCase {
+
+	/** Number of sensors */
+	static private final int N_SENSORS = 50;
+
+	/** Samples per day at 30 seconds */
+	static private final int N_30 = 2880;
+
+	/** Create a temporary directory */
+	static private File createDir(File parent, String name) {
+		File dir = new File(parent, name);
+		dir.mkdirs();
+		return dir;
+	}
+
+	/** Delete a directory tree */
+	static private void delete(File f) {
+		File[] files = f.listFiles();
+		if (files != null) {
+			for (File c: files)
+				delete(c);
+		}
+		f.delete();
+	}
+
+	/** Write a file */
+	static private void writeFile(File f, byte[] data) throws IOException {
+		FileOutputStream os = new FileOutputStream(f);
+		try {
+			os.write(data);
+		}
+		finally {
+			os.close();
+		}
+	}
+
+	/** Create simulated 30-second sample files for one day */
+	static private void createDay(File day, int seed) throws IOException {
+		Random r = new Random(seed);
+		for (int s = 0; s < N_SENSORS; s++) {
+			ByteBuffer v = ByteBuffer.allocate(N_30);
+			ByteBuffer c = ByteBuffer.allocate(N_30 * 2);
+			ByteBuffer sp = ByteBuffer.allocate(N_30);
+			for (int i = 0; i < N_30; i++) {
+				boolean night = i < 600 || i > 2600;
+				boolean missing = (s % 10 == 0) && i > 1500;
+				int vol = missing ? -1 : night ? r.nextInt(2)
+				        : 4 + r.nextInt(8);
+				v.put((byte) vol);
+				c.putShort((short) (missing ? -1 :
+					vol * (150 + r.nextInt(50))));
+				int spd = (i > 900 && i < 1100) ? 25 : 62;
+				sp.put((byte) (missing ? -1 : spd +
+					((i % 20 == 0) ? r.nextInt(3) : 0)));
+			}
+			writeFile(new File(day, s + ".v30"), v.array());
+			writeFile(new File(day, s + ".c30"), c.array());
+			writeFile(new File(day, s + ".s30"), sp.array());
+		}
+		writeFile(new File(day, "1.vlog"),
+			"12:00:00,100\n12:00:01,200\n".getBytes("UTF-8"));
+		// Partial file is stored raw
+		writeFile(new File(day, "2.v30"), new byte[] { 1, 2, 3 });
+	}
+
+	/** Zip a day directory the same way as ArchiveSamplesJob */
+	static private long zipSize(File day, File zip) throws IOException {
+		ZipOutputStream zos = new ZipOutputStream(
+			new FileOutputStream(zip));
+		try {
+			String[] names = day.list();
+			Arrays.sort(names);
+			for (String n: names) {
+				zos.putNextEntry(new ZipEntry(n));
+				zos.write(Files.readAllBytes(
+					new File(day, n).toPath()));
+			}
+		}
+		finally {
+			zos.close();
+		}
+		return zip.length();
+	}
+
+	private File root;
+
+	public ColumnarArchiveTest(String name) {
+		super(name);
+	}
+
+	@Override
+	protected void setUp() throws IOException {
+		root = Files.createTempDirectory("tcol").toFile();
+	}
+
+	@Override
+	protected void tearDown() {
+		delete(root);
+	}
+
+	public void testEncoding() throws IOException {
+		Random r = new Random(3);
+		for (int s_bytes = 1; s_bytes <= 2; s_bytes++) {
+			int max = (s_bytes == 1) ? Byte.MAX_VALUE
+			                         : Short.MAX_VALUE;
+			int[] missing = new int[N_30];
+			Arrays.fill(missing, -1);
+			int[] noise = new int[N_30];
+			int[] smooth = new int[N_30];
+			for (int i = 0; i < N_30; i++) {
+				noise[i] = r.nextInt(max + 2) - 1;
+				smooth[i] = (int) (max / 2 + max / 3 *
+					Math.sin(i / 300.0));
+			}
+			noise[0] = -max - 1;
+			noise[1] = max;
+			int[][] tests = new int[][] { missing, noise, smooth };
+			for (int[] vals: tests) {
+				byte[] b = ColumnarArchive.encodeBlock(vals,
+					s_bytes);
+				assertTrue(Arrays.equals(vals, ColumnarArchive
+					.decodeBlock(b, N_30)));
+			}
+			assertTrue(ColumnarArchive.encodeBlock(missing,
+				s_bytes).length < 20);
+		}
+	}
+
+	public void testRoundTrip() throws IOException {
+		File day = createDir(root, "20160301");
+		createDay(day, 1);
+		String[] names = day.list();
+		File arc = new File(root, "20160301.tcol");
+		new ColumnarArchiveWriter(day).write(names, arc);
+		ColumnarArchiveReader r = new ColumnarArchiveReader(arc);
+		try {
+			assertEquals(names.length, r.listFiles().size());
+			for (String n: names) {
+				byte[] orig = Files.readAllBytes(
+					new File(day, n).toPath());
+				assertTrue(n, Arrays.equals(orig,
+					r.readFile(n)));
+			}
+			assertNull(r.readSamples("2", "v30"));
+			assertNull(r.readFile("99.v30"));
+			int[] v = r.readSamples("3", "v30", 1000, 10);
+			byte[] orig = Files.readAllBytes(
+				new File(day, "3.v30").toPath());
+			for (int i = 0; i < 10; i++)
+				assertEquals(orig[1000 + i], v[i]);
+		}
+		finally {
+			r.close();
+		}
+		long zip = zipSize(day, new File(root, "20160301.traffic"));
+		assertTrue(arc.length() < zip);
+	}
+
+	public void testRange() throws IOException {
+		File year = createDir(root, "2016");
+		Calendar cal = new GregorianCalendar(2016, Calendar.MARCH, 1);
+		long day1 = cal.getTimeInMillis();
+		cal.add(Calendar.DATE, 1);
+		long day2 = cal.getTimeInMillis();
+		File d1 = createDir(root, "20160301");
+		createDay(d1, 1);
+		new ColumnarArchiveWriter(d1).write(d1.list(),
+			new File(year, "20160301.tcol"));
+		File d2 = createDir(root, "20160302");
+		createDay(d2, 2);
+		new ColumnarArchiveWriter(d2).write(d2.list(),
+			new File(year, "20160302.tcol"));
+		// From 23:00 on day 1 through 01:00 on day 3 (missing)
+		long start = day2 - 3600 * 1000;
+		long end = day2 + 26 * 3600 * 1000L;
+		int[] vals = ColumnarArchiveReader.readRange(root, "7", "c30",
+			start, end);
+		assertEquals(27 * 120, vals.length);
+		ByteBuffer b1 = ByteBuffer.wrap(Files.readAllBytes(
+			new File(d1, "7.c30").toPath()));
+		ByteBuffer b2 = ByteBuffer.wrap(Files.readAllBytes(
+			new File(d2, "7.c30").toPath()));
+		for (int i = 0; i < 120; i++)
+			assertEquals(b1.getShort((N_30 - 120 + i) * 2),
+				vals[i]);
+		for (int i = 0; i < N_30; i++)
+			assertEquals(b2.getShort(i * 2), vals[120 + i]);
+		for (int i = 120 + N_30; i < vals.length; i++)
+			assertEquals(-1, vals[i]);
+	}
+}
@@ -0,0 +1,212 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import junit.framework.TestCase;
+
+/**
+ * Corridor travel time table tests
+ *
+ * @author Jacob Barde
+ */
+public class CorridorTravelTimesTest extends TestCase {
+
+	/** Maximum link length (miles) */
+	static private final float MAX_LINK = 0.6f;
+
+	/** Station-by-station reference calculation (former TripTimer) */
+	static private float reference(float[] m, float[] a, float[] l,
+		String[] s, float o, float d, float low_mile)
+		throws BadRouteException
+	{
+		TreeMap<Float, Integer> sd = new TreeMap<Float, Integer>();
+		for (int i = 0; i < m.length; i++) {
+			if (!(tooLong(m[i], o) || tooLong(d, m[i])))
+				sd.put(m[i], i);
+		}
+		if (sd.isEmpty())
+			throw new BadRouteException("No speed data");
+		TreeMap<Float, float[]> st = new TreeMap<Float, float[]>();
+		for (Map.Entry<Float, Integer> e: sd.entrySet()) {
+			int i = e.getValue();
+			st.put(m[i], new float[] { m[i], a[i], l[i], i });
+		}
+		float[] f = st.firstEntry().getValue();
+		if (f[0] > o) {
+			float mm = f[0] - MAX_LINK;
+			if (mm > o)
+				throw new BadRouteException("Start > origin");
+			st.put(mm, new float[] { mm, f[1], f[2], f[3] });
+		}
+		f = st.lastEntry().getValue();
+		if (f[0] < d) {
+			float mm = f[0] + MAX_LINK;
+			if (mm < d)
+				throw new BadRouteException("End < destin");
+			st.put(mm, new float[] { mm, f[1], f[2], f[3] });
+		}
+		float hours = 0;
+		float[] p = null;
+		for (float[] c: st.values()) {
+			if (p != null) {
+				if (tooLong(p[0], c[0])) {
+					throw new BadRouteException(
+						"Link too long (" +
+						(c[0] - p[0]) + ") " +
+						s[(int) c[3]]);
+				}
+				hours += seg(o, low_mile, p[0], c[0], p[1],
+					c[1]) + seg(low_mile, d, p[0], c[0],
+					p[2], c[2]);
+			}
+			p = c;
+		}
+		return hours;
+	}
+
+	static private boolean tooLong(float m0, float m1) {
+		return (m1 - m0) > (3 * MAX_LINK);
+	}
+
+	static private float seg(float o, float d, float m0, float m1,
+		float s0, float s1)
+	{
+		float t = (m1 - m0) / 3;
+		float ma = m0 + t;
+		float mb = m1 - t;
+		return link(o, d, m0, ma, s0)
+		     + link(o, d, ma, mb, (s0 + s1) / 2)
+		     + link(o, d, mb, m1, s1);
+	}
+
+	static private float link(float o, float d, float l0, float l1,
+		float sp)
+	{
+		float ln = Math.min(l1, d) - Math.max(l0, o);
+		return (ln > 0) ? (ln / sp) : 0;
+	}
+
+	public CorridorTravelTimesTest(String name) {
+		super(name);
+	}
+
+	public void testSimple() throws BadRouteException {
+		CorridorTravelTimes tt = new CorridorTravelTimes(0,
+			new float[] { 0, 1, 2 }, new float[] { 60, 60, 30 },
+			new float[] { 60, 30, 30 },
+			new String[] { "a", "b", "c" });
+		// one mile at 60 mph
+		assertEquals(1 / 60f, tt.calculate(0, 1, 1), 1e-6f);
+		// average speeds, then low speeds for the last mile
+		assertEquals(1 / 60f + 1 / 30f, tt.calculate(0, 2, 1), 1e-6f);
+		try {
+			tt.calculate(-2, 1, 1);
+			fail();
+		}
+		catch (BadRouteException e) {
+			assertEquals("Start > origin", e.getMessage());
+		}
+		try {
+			tt.calculate(5, 6, 6);
+			fail();
+		}
+		catch (BadRouteException e) {
+			assertEquals("No speed data", e.getMessage());
+		}
+	}
+
+	public void testEqualMilepoints() throws BadRouteException {
+		float[] m = new float[] { 0, 1, 1, 2, 2 };
+		float[] a = new float[] { 60, 20, 40, 50, 30 };
+		float[] l = new float[] { 60, 20, 30, 50, 25 };
+		String[] s = new String[] { "a", "b", "c", "d", "e" };
+		CorridorTravelTimes tt = new CorridorTravelTimes(0, m, a, l,
+			s);
+		assertEquals(3, tt.size());
+		float[][] trips = new float[][] {
+			{ 0, 2, 2 }, { 0, 2, 1 }, { 0.5f, 1.5f, 1 },
+			{ 1, 2, 2 }, { 0, 1, 0.5f }
+		};
+		for (float[] t: trips) {
+			assertEquals(reference(m, a, l, s, t[0], t[1], t[2]),
+				tt.calculate(t[0], t[1], t[2]), 1e-6f);
+		}
+	}
+
+	public void testRandom() {
+		Random r = new Random(13);
+		for (int c = 0; c < 200; c++) {
+			int n = 1 + r.nextInt(40);
+			float[] m = new float[n];
+			float[] a = new float[n];
+			float[] l = new float[n];
+			String[] s = new String[n];
+			float mp = r.nextFloat() * 5;
+			for (int i = 0; i < n; i++) {
+				mp += 0.1f + r.nextFloat() * ((r.nextInt(20)
+					== 0) ? 3 : 1.2f);
+				m[i] = mp;
+				a[i] = 10 + r.nextInt(60);
+				l[i] = Math.min(a[i], 5 + r.nextInt(60));
+				s[i] = "S" + i;
+			}
+			CorridorTravelTimes tt = new CorridorTravelTimes(0,
+				m, a, l, s);
+			for (int t = 0; t < 50; t++) {
+				float o = r.nextFloat() * (mp + 4) - 2;
+				float d = o + r.nextFloat() * 8;
+				float lm = r.nextBoolean() ? d - 1 : d;
+				String re = null;
+				String ce = null;
+				float rh = 0;
+				float ch = 0;
+				try {
+					rh = reference(m, a, l, s, o, d, lm);
+				}
+				catch (BadRouteException e) {
+					re = e.getMessage();
+				}
+				try {
+					ch = tt.calculate(o, d, lm);
+				}
+				catch (BadRouteException e) {
+					ce = e.getMessage();
+				}
+				assertEquals(re, ce);
+				assertEquals(rh, ch, 1e-5f);
+			}
+		}
+	}
+
+	public void testLong() throws BadRouteException {
+		int n = 200;
+		float[] m = new float[n];
+		float[] a = new float[n];
+		float[] l = new float[n];
+		String[] s = new String[n];
+		for (int i = 0; i < n; i++) {
+			m[i] = i * 0.5f;
+			a[i] = 40 + i % 25;
+			l[i] = 30 + i % 15;
+			s[i] = "S" + i;
+		}
+		CorridorTravelTimes tt = new CorridorTravelTimes(0, m, a, l, s);
+		assertEquals(reference(m, a, l, s, 5, 95, 94),
+			tt.calculate(5, 95, 94), 1e-5f);
+	}
+}
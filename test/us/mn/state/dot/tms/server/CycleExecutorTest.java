@@ -0,0 +1,158 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.util.ArrayList;
+import java.util.Random;
+import junit.framework.TestCase;
+
+/**
+ * Cycle executor tests.  Recorded 30-second samples are replayed through
+ * stateful station and corridor calculations, in serial and parallel mode.
+ *
+ * @author Jacob Barde
+ */
+public class CycleExecutorTest extends TestCase {
+
+	/** Number of corridors */
+	static private final int N_CORRIDORS = 12;
+
+	/** Number of stations per corridor */
+	static private final int N_STATIONS = 40;
+
+	/** Number of 30-second periods to replay */
+	static private final int N_PERIODS = 120;
+
+	/** Number of samples in rolling average */
+	static private final int ROLLING = 6;
+
+	/** Simulated station, with a rolling average speed */
+	static private class TestStation {
+		private final float[] speeds;
+		private final float[] rolling = new float[ROLLING];
+		private float avg;
+		private boolean bottleneck;
+		private TestStation(float[] s) {
+			speeds = s;
+		}
+		private void calculateData(int period) {
+			System.arraycopy(rolling, 0, rolling, 1, ROLLING - 1);
+			rolling[0] = speeds[period];
+			float t = 0;
+			for (float r: rolling)
+				t += r;
+			avg = t / ROLLING;
+		}
+	}
+
+	/** Simulated corridor, which finds bottlenecks */
+	static private class TestCorridor {
+		private final ArrayList<TestStation> stations =
+			new ArrayList<TestStation>();
+		private int n_bottlenecks;
+		private void findBottlenecks() {
+			TestStation up = null;
+			for (TestStation s: stations) {
+				s.bottleneck = up != null && s.avg < 40 &&
+					up.avg - s.avg > 10;
+				if (s.bottleneck)
+					n_bottlenecks++;
+				up = s;
+			}
+		}
+	}
+
+	/** Create corridors with recorded samples */
+	static private ArrayList<TestCorridor> createCorridors() {
+		Random r = new Random(30);
+		ArrayList<TestCorridor> corridors =
+			new ArrayList<TestCorridor>();
+		for (int c = 0; c < N_CORRIDORS; c++) {
+			TestCorridor cor = new TestCorridor();
+			for (int i = 0; i < N_STATIONS; i++) {
+				float[] s = new float[N_PERIODS];
+				for (int p = 0; p < N_PERIODS; p++)
+					s[p] = 5 + r.nextInt(650) / 10f;
+				cor.stations.add(new TestStation(s));
+			}
+			corridors.add(cor);
+		}
+		return corridors;
+	}
+
+	/** Replay all periods through the calculations */
+	static private ArrayList<TestCorridor> replay(CycleExecutor ex) {
+		ArrayList<TestCorridor> corridors = createCorridors();
+		ArrayList<TestStation> stations = new ArrayList<TestStation>();
+		for (TestCorridor c: corridors)
+			stations.addAll(c.stations);
+		for (int p = 0; p < N_PERIODS; p++) {
+			final int period = p;
+			ex.forEach(stations, new CycleExecutor.Work<TestStation>(){
+				public void perform(TestStation s) {
+					s.calculateData(period);
+				}
+			});
+			ex.forEach(corridors,
+				new CycleExecutor.Work<TestCorridor>()
+			{
+				public void perform(TestCorridor c) {
+					c.findBottlenecks();
+				}
+			});
+		}
+		return corridors;
+	}
+
+	public CycleExecutorTest(String name) {
+		super(name);
+	}
+
+	public void testSerial() {
+		CycleExecutor ex = new CycleExecutor(0);
+		assertFalse(ex.isParallel());
+		final ArrayList<Integer> order = new ArrayList<Integer>();
+		ArrayList<Integer> items = new ArrayList<Integer>();
+		for (int i = 0; i < 100; i++)
+			items.add(i);
+		ex.forEach(items, new CycleExecutor.Work<Integer>() {
+			public void perform(Integer i) {
+				order.add(i);
+			}
+		});
+		assertEquals(items, order);
+	}
+
+	public void testReplay() {
+		ArrayList<TestCorridor> serial = replay(new CycleExecutor(0));
+		CycleExecutor ex = new CycleExecutor(4);
+		assertTrue(ex.isParallel());
+		ArrayList<TestCorridor> parallel = replay(ex);
+		int n_bottlenecks = 0;
+		for (int c = 0; c < N_CORRIDORS; c++) {
+			TestCorridor sc = serial.get(c);
+			TestCorridor pc = parallel.get(c);
+			assertEquals(sc.n_bottlenecks, pc.n_bottlenecks);
+			n_bottlenecks += sc.n_bottlenecks;
+			for (int i = 0; i < N_STATIONS; i++) {
+				TestStation ss = sc.stations.get(i);
+				TestStation ps = pc.stations.get(i);
+				assertEquals(ss.avg, ps.avg);
+				assertEquals(ss.bottleneck, ps.bottleneck);
+			}
+		}
+		assertTrue(n_bottlenecks > 0);
+	}
+}
@@ -0,0 +1,117 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.util.Calendar;
+import junit.framework.TestCase;
+
+/**
+ * Monitored scheduler tests
+ *
+ * @author Jacob Barde
+ */
+public class MonitoredSchedulerTest extends TestCase {
+
+	/** One-shot job which is performed after one minute */
+	static private class LaterJob extends MonitoredJob {
+		private LaterJob() {
+			super(60 * 1000);
+		}
+		public void perform() { }
+	}
+
+	/** One-shot job which must not be rejected */
+	static private class StoreJob extends LaterJob {
+		@Override
+		public boolean isRejectable() {
+			return false;
+		}
+	}
+
+	/** Repeating job */
+	static private class RepeatJob extends MonitoredJob {
+		private RepeatJob() {
+			super(Calendar.MINUTE, 1);
+		}
+		public void perform() { }
+	}
+
+	public MonitoredSchedulerTest(String name) {
+		super(name);
+	}
+
+	public void testHistogram() {
+		MonitoredScheduler.Histogram h =
+			new MonitoredScheduler.Histogram();
+		assertEquals(0, h.getCount());
+		assertEquals(0, h.getPercentile(50));
+		for (int i = 0; i < 90; i++)
+			h.record(3);
+		for (int i = 0; i < 10; i++)
+			h.record(1000);
+		assertEquals(100, h.getCount());
+		assertEquals(1000, h.getMax());
+		// 3 ms is in bucket [2, 3]
+		assertEquals(3, h.getPercentile(50));
+		assertEquals(3, h.getPercentile(90));
+		// 1000 ms is in bucket [512, 1023], capped at max
+		assertEquals(1000, h.getPercentile(95));
+		h.record(0);
+		assertEquals(101, h.getCount());
+	}
+
+	public void testLargeValues() {
+		MonitoredScheduler.Histogram h =
+			new MonitoredScheduler.Histogram();
+		h.record(Long.MAX_VALUE / 2);
+		h.record(-5);
+		assertEquals(2, h.getCount());
+		assertEquals(Long.MAX_VALUE / 2, h.getPercentile(100));
+		assertEquals(0, h.getPercentile(1));
+	}
+
+	public void testMaxQueue() {
+		MonitoredScheduler s = new MonitoredScheduler("test");
+		s.setMaxQueue(2);
+		LaterJob j0 = new LaterJob();
+		LaterJob j1 = new LaterJob();
+		LaterJob j2 = new LaterJob();
+		assertTrue(s.addJob(j0));
+		assertTrue(s.addJob(j1));
+		assertFalse(s.addJob(j2));
+		assertEquals(2, s.getDepth());
+		assertEquals(1, s.getRejected());
+		// Repeating jobs are never rejected
+		RepeatJob r = new RepeatJob();
+		assertTrue(s.addJob(r));
+		assertEquals(2, s.getDepth());
+		// Jobs which must not be lost are never rejected
+		StoreJob sj = new StoreJob();
+		assertTrue(s.addJob(sj));
+		assertEquals(3, s.getDepth());
+		s.removeJob(sj);
+		assertEquals(2, s.getDepth());
+		// Removing a job makes room for another
+		s.removeJob(j0);
+		assertEquals(1, s.getDepth());
+		assertTrue(s.addJob(j2));
+		assertEquals(2, s.getDepth());
+		s.removeJob(j1);
+		s.removeJob(j2);
+		s.removeJob(r);
+		assertEquals(0, s.getDepth());
+		assertEquals(1, s.getRejected());
+	}
+}
@@ -149,6 +149,54 @@ public class PeriodicSampleCacheTest extends TestCase {
 		assertFalse(it.hasNext());
 	}
 
+	public void testOutOfOrder() {
+		PeriodicSampleCache cache = new PeriodicSampleCache(
+			PeriodicSampleType.VOLUME);
+		Calendar cal = Calendar.getInstance();
+		cal.setTimeInMillis(0);
+		cal.set(2012, Calendar.JANUARY, 1, 0, 1, 30);
+		cache.add(new PeriodicSample(cal.getTimeInMillis(), 30, 3));
+		cal.set(2012, Calendar.JANUARY, 1, 0, 0, 30);
+		cache.add(new PeriodicSample(cal.getTimeInMillis(), 30, 1));
+		cal.set(2012, Calendar.JANUARY, 1, 0, 1, 0);
+		cache.add(new PeriodicSample(cal.getTimeInMillis(), 30, 2));
+		Iterator<PeriodicSample> it = cache.iterator();
+		for(int v = 1; v <= 3; v++) {
+			assertTrue(it.hasNext());
+			PeriodicSample ps = it.next();
+			assertTrue(ps.value == v);
+			cal.set(2012, Calendar.JANUARY, 1, 0, 0, 30 * v);
+			assertTrue(ps.end() == cal.getTimeInMillis());
+		}
+		assertFalse(it.hasNext());
+		cal.set(2012, Calendar.JANUARY, 1, 0, 5, 0);
+		cache.purge(cal.getTimeInMillis());
+		assertTrue(isEmpty(cache));
+	}
+
+	public void testWindow() {
+		PeriodicSampleCache cache = new PeriodicSampleCache(
+			PeriodicSampleType.SCAN);
+		Calendar cal = Calendar.getInstance();
+		cal.setTimeInMillis(0);
+		cal.set(2012, Calendar.JANUARY, 1, 0, 0, 0);
+		long t = cal.getTimeInMillis();
+		// Two hours of samples -- only most recent are kept
+		for(int i = 1; i <= 240; i++)
+			cache.add(new PeriodicSample(t + i * 30000, 30, i));
+		Iterator<PeriodicSample> it = cache.iterator();
+		int n = 0;
+		int last = 0;
+		while(it.hasNext()) {
+			PeriodicSample ps = it.next();
+			assertTrue(ps.value > last);
+			last = ps.value;
+			n++;
+		}
+		assertTrue(last == 240);
+		assertTrue(n > 20 && n < 240);
+	}
+
 	private boolean isEmpty(PeriodicSampleCache cache) {
 		return !cache.iterator().hasNext();
 	}
@@ -21,6 +21,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.Calendar;
 import junit.framework.TestCase;
+import us.mn.state.dot.sched.TimeSteward;
 
 /** 
  * Periodic Sample Writer test cases
@@ -33,6 +34,44 @@ public class PeriodicSampleWriterTest extends TestCase {
 	}
 
 	public void testWriter() {
+		SampleArchiveFactory factory = new TestFactory();
+		checkWriter(new PeriodicSampleWriter(factory));
+	}
+
+	public void testPositionalWriter() {
+		SampleArchiveFactory factory = new TestFactory();
+		PositionalSampleWriter writer = new PositionalSampleWriter(
+			factory, 4);
+		checkWriter(writer);
+		writer.close();
+	}
+
+	public void testPositionalCloseBefore() throws IOException {
+		SampleArchiveFactory factory = new DayFactory();
+		PositionalSampleWriter writer = new PositionalSampleWriter(
+			factory, 4);
+		PeriodicSampleCache cache = new PeriodicSampleCache(
+			PeriodicSampleType.VOLUME);
+		Calendar cal = Calendar.getInstance();
+		cal.set(2012, Calendar.JANUARY, 1, 23, 59, 30);
+		long day1 = cal.getTimeInMillis();
+		cache.add(new PeriodicSample(day1, 30, 1));
+		cal.set(2012, Calendar.JANUARY, 2, 0, 0, 30);
+		long day2 = cal.getTimeInMillis();
+		cache.add(new PeriodicSample(day2, 30, 2));
+		writer.flush(cache, "TEST");
+		assertEquals(2, writer.getOpenFiles());
+		writer.closeBefore(day1);
+		assertEquals(2, writer.getOpenFiles());
+		writer.closeBefore(day2);
+		assertEquals(1, writer.getOpenFiles());
+		writer.close();
+		assertEquals(0, writer.getOpenFiles());
+		new File("/tmp/TEST.20120101.v30").delete();
+		new File("/tmp/TEST.20120102.v30").delete();
+	}
+
+	private void checkWriter(PeriodicSampleWriter writer) {
 		PeriodicSampleCache cache = new PeriodicSampleCache(
 			PeriodicSampleType.VOLUME);
 		Calendar cal = Calendar.getInstance();
@@ -55,8 +94,6 @@ public class PeriodicSampleWriterTest extends TestCase {
 		cache.add(new PeriodicSample(cal.getTimeInMillis(), 30, 9));
 		cal.set(2012, Calendar.JANUARY, 1, 0, 5, 0);
 		cache.add(new PeriodicSample(cal.getTimeInMillis(), 30, 10));
-		SampleArchiveFactory factory = new TestFactory();
-		PeriodicSampleWriter writer = new PeriodicSampleWriter(factory);
 		try {
 			File file = new File("/tmp/TEST.v30");
 			file.delete();
@@ -87,6 +124,19 @@ public class PeriodicSampleWriterTest extends TestCase {
 		}
 	}
 
+	/** Factory which puts the sample day in the file name */
+	static class DayFactory extends TestFactory {
+		@Override
+		public File createFile(String sensor_id,
+			PeriodicSampleType s_type, PeriodicSample ps)
+			throws IOException
+		{
+			return new File("/tmp", sensor_id + "." +
+				TimeSteward.dateShortString(ps.start()) + "." +
+				s_type.extension + ps.period);
+		}
+	}
+
 	static class TestFactory implements SampleArchiveFactory {
 		public File createFile(String sensor_id, String ext, long stamp)
 			throws IOException
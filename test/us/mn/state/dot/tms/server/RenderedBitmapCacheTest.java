@@ -0,0 +1,69 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import junit.framework.TestCase;
+
+/**
+ * Rendered bitmap cache tests
+ *
+ * @author Jacob Barde
+ */
+public class RenderedBitmapCacheTest extends TestCase {
+
+	public RenderedBitmapCacheTest(String name) {
+		super(name);
+	}
+
+	public void testLookup() {
+		RenderedBitmapCache rc = new RenderedBitmapCache(8);
+		long v = rc.getVersion();
+		assertNull(rc.lookup("A", 96, 48, 0, 0, 1, v));
+		rc.store("A", 96, 48, 0, 0, 1, v, "bmA");
+		assertEquals("bmA", rc.lookup("A", 96, 48, 0, 0, 1, v));
+		// Any difference in geometry or default font is a miss
+		assertNull(rc.lookup("A", 96, 32, 0, 0, 1, v));
+		assertNull(rc.lookup("A", 96, 48, 5, 7, 1, v));
+		assertNull(rc.lookup("A", 96, 48, 0, 0, 2, v));
+		assertEquals(1, rc.getHits());
+		assertEquals(4, rc.getMisses());
+	}
+
+	public void testInvalidate() {
+		RenderedBitmapCache rc = new RenderedBitmapCache(8);
+		long v = rc.getVersion();
+		rc.store("A", 96, 48, 0, 0, 1, v, "bmA");
+		rc.clear();
+		assertEquals(0, rc.size());
+		assertNull(rc.lookup("A", 96, 48, 0, 0, 1, rc.getVersion()));
+		// Rendered before the fonts changed; must not be stored
+		rc.store("A", 96, 48, 0, 0, 1, v, "stale");
+		assertEquals(0, rc.size());
+		assertNull(rc.lookup("A", 96, 48, 0, 0, 1, rc.getVersion()));
+	}
+
+	public void testBounded() {
+		RenderedBitmapCache rc = new RenderedBitmapCache(4);
+		long v = rc.getVersion();
+		for (int i = 0; i < 4; i++)
+			rc.store("M" + i, 96, 48, 0, 0, 1, v, "b" + i);
+		// Access M0 so that M1 is the eldest
+		assertEquals("b0", rc.lookup("M0", 96, 48, 0, 0, 1, v));
+		rc.store("M4", 96, 48, 0, 0, 1, v, "b4");
+		assertEquals(4, rc.size());
+		assertEquals("b0", rc.lookup("M0", 96, 48, 0, 0, 1, v));
+		assertNull(rc.lookup("M1", 96, 48, 0, 0, 1, v));
+	}
+}
@@ -0,0 +1,120 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.text.NumberFormat;
+import java.util.Random;
+import junit.framework.TestCase;
+import static us.mn.state.dot.tms.server.XmlWriter.createAttribute;
+
+/**
+ * Sample XML feed tests
+ *
+ * @author Jacob Barde
+ */
+public class SampleXmlFeedTest extends TestCase {
+
+	public SampleXmlFeedTest(String name) {
+		super(name);
+	}
+
+	/** Create a sample element the same way as XmlWriter */
+	private String element(String sensor, int flow, int speed, float occ){
+		NumberFormat nf = NumberFormat.getNumberInstance();
+		nf.setMaximumFractionDigits(2);
+		StringBuilder sb = new StringBuilder("\t<sample");
+		sb.append(createAttribute("sensor", sensor));
+		if (flow >= 0)
+			sb.append(createAttribute("flow", flow));
+		if (speed > 0)
+			sb.append(createAttribute("speed", speed));
+		if (occ >= 0)
+			sb.append(createAttribute("occ", nf.format(occ)));
+		sb.append("/>\n");
+		return sb.toString();
+	}
+
+	/** Get the body of a feed document (without header / tail) */
+	private String body(SampleXmlFeed.XmlBuffer b) {
+		String doc = b.toString();
+		int s = doc.indexOf("period='30'>\n") + 13;
+		int e = doc.lastIndexOf("</traffic_sample>\n");
+		return doc.substring(s, e);
+	}
+
+	public void testEncoding() {
+		SampleXmlFeed feed = new SampleXmlFeed("test");
+		StringBuilder sb = new StringBuilder();
+		Random r = new Random(7);
+		feed.begin("stamp", false);
+		for (int i = 0; i < 2000; i++) {
+			String n = "D" + i;
+			int f = r.nextInt(3000) - 1;
+			int s = r.nextInt(80) - 1;
+			float o = (r.nextInt(10) == 0)
+			        ? -1
+			        : r.nextInt(1000001) / 10000f;
+			feed.sample(n, f, s, o);
+			sb.append(element(n, f, s, o));
+		}
+		float[] ties = { 0.125f, 0.375f, 12.5f, 0.005f, 0.015f, 100f };
+		for (float o: ties) {
+			feed.sample("T", 0, 0, o);
+			sb.append(element("T", 0, 0, o));
+		}
+		feed.sample("a&b<'\">é", 1, 2, 3);
+		sb.append(element("a&b<'\">é", 1, 2, 3));
+		feed.end();
+		assertEquals(sb.toString(), body(feed.full));
+		String doc = feed.full.toString();
+		assertTrue(doc.startsWith(XmlWriter.XML_DECLARATION));
+		assertTrue(doc.contains("<traffic_sample time_stamp='stamp' " +
+			"period='30'>\n"));
+		assertTrue(doc.endsWith("</traffic_sample>\n"));
+	}
+
+	public void testDelta() {
+		SampleXmlFeed feed = new SampleXmlFeed("test");
+		feed.begin("1", true);
+		feed.sample("A", 100, 50, 5.5f);
+		feed.sample("B", 200, 55, 6.5f);
+		feed.sample("C", 300, 60, 7.5f);
+		feed.end();
+		assertEquals(body(feed.full), body(feed.delta));
+		feed.begin("2", true);
+		feed.sample("A", 100, 50, 5.5f);
+		feed.sample("B", 210, 55, 6.5f);
+		feed.sample("D", -1, 0, -1);
+		feed.end();
+		assertEquals(element("B", 210, 55, 6.5f) +
+			element("D", -1, 0, -1) +
+			element("C", -1, 0, -1), body(feed.delta));
+		feed.begin("3", true);
+		feed.sample("A", 100, 50, 5.5f);
+		feed.sample("B", 210, 55, 6.5f);
+		feed.sample("C", 300, 60, 7.5f);
+		feed.sample("D", -1, 0, -1);
+		feed.end();
+		assertEquals(element("C", 300, 60, 7.5f), body(feed.delta));
+		feed.begin("4", false);
+		feed.sample("A", 100, 50, 5.5f);
+		feed.end();
+		assertEquals("", feed.delta.toString());
+		feed.begin("5", true);
+		feed.sample("A", 100, 50, 5.5f);
+		feed.end();
+		assertEquals(element("A", 100, 50, 5.5f), body(feed.delta));
+	}
+}
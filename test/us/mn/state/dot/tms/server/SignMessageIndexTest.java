@@ -0,0 +1,173 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.util.ArrayList;
+import java.util.Random;
+import junit.framework.TestCase;
+import us.mn.state.dot.tms.DMSMessagePriority;
+import us.mn.state.dot.tms.Incident;
+import us.mn.state.dot.tms.SignMessage;
+import us.mn.state.dot.tms.SignMessageHelper;
+import us.mn.state.dot.tms.SignMsgSource;
+import static us.mn.state.dot.tms.DMSMessagePriority.*;
+import static us.mn.state.dot.tms.SignMsgSource.*;
+
+/**
+ * Sign message index tests
+ *
+ * @author Jacob Barde
+ */
+public class SignMessageIndexTest extends TestCase {
+
+	/** Number of live messages for find test */
+	static private final int N_MESSAGES = 1000;
+
+	/** Simple sign message */
+	static private class TestMessage implements SignMessage {
+		private final String name;
+		private final String multi;
+		private final String bitmaps;
+		private final int ap;
+		private final int rp;
+		private final int src;
+		private final Integer duration;
+		private TestMessage(String n, String m, String b,
+			DMSMessagePriority a, DMSMessagePriority r,
+			SignMsgSource s, Integer d)
+		{
+			name = n;
+			multi = m;
+			bitmaps = b;
+			ap = a.ordinal();
+			rp = r.ordinal();
+			src = s.ordinal();
+			duration = d;
+		}
+		public String getTypeName() {
+			return SONAR_TYPE;
+		}
+		public String getName() {
+			return name;
+		}
+		public void destroy() { }
+		public Incident getIncident() {
+			return null;
+		}
+		public String getMulti() {
+			return multi;
+		}
+		public boolean getBeaconEnabled() {
+			return false;
+		}
+		public String getBitmaps() {
+			return bitmaps;
+		}
+		public int getActivationPriority() {
+			return ap;
+		}
+		public int getRunTimePriority() {
+			return rp;
+		}
+		public int getSource() {
+			return src;
+		}
+		public Integer getDuration() {
+			return duration;
+		}
+	}
+
+	/** Create a bitmap string (similar in size to Base64 bitmaps) */
+	static private String bitmaps(int i) {
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < 2000)
+			sb.append("AAAAf/8AAP//");
+		return sb.append(i).toString();
+	}
+
+	public SignMessageIndexTest(String name) {
+		super(name);
+	}
+
+	public void testFind() {
+		SignMessageIndex idx = new SignMessageIndex();
+		TestMessage a = new TestMessage("a", "A", "B", SCHEDULED,
+			SCHEDULED, schedule, null);
+		TestMessage t = new TestMessage("t", "T", "B", SCHEDULED,
+			SCHEDULED, tolling, 5);
+		idx.add(a);
+		idx.add(t);
+		idx.add(a);
+		assertEquals(2, idx.size());
+		assertSame(a, idx.find("A", "B", SCHEDULED, SCHEDULED,
+			schedule, null));
+		assertNull(idx.find("A", "B", SCHEDULED, SCHEDULED,
+			schedule, 5));
+		assertNull(idx.find("A", "B", OPERATOR, SCHEDULED,
+			schedule, null));
+		assertNull(idx.find("A", "B", SCHEDULED, SCHEDULED,
+			operator, null));
+		assertNull(idx.find("A", "C", SCHEDULED, SCHEDULED,
+			schedule, null));
+		// scheduled message matches tolling, but not the reverse
+		assertSame(t, idx.find("T", "B", SCHEDULED, SCHEDULED,
+			schedule, 5));
+		assertSame(t, idx.find("T", "B", SCHEDULED, SCHEDULED,
+			tolling, 5));
+		assertNull(idx.find("A", "B", SCHEDULED, SCHEDULED,
+			tolling, null));
+		idx.remove(a);
+		assertEquals(1, idx.size());
+		assertNull(idx.find("A", "B", SCHEDULED, SCHEDULED,
+			schedule, null));
+	}
+
+	public void testFindAll() {
+		SignMessageIndex idx = new SignMessageIndex();
+		ArrayList<TestMessage> msgs = new ArrayList<TestMessage>();
+		for (int i = 0; i < N_MESSAGES; i++) {
+			TestMessage sm = new TestMessage("system_" + i,
+				"[jl3]TRAVEL TIME[nl]TO DOWNTOWN " + (i % 40) +
+				" MIN", bitmaps(i), SCHEDULED, SCHEDULED,
+				schedule, 1);
+			msgs.add(sm);
+			idx.add(sm);
+		}
+		Random r = new Random(11);
+		int n_finds = 200;
+		String[] ms = new String[n_finds];
+		String[] bs = new String[n_finds];
+		for (int i = 0; i < n_finds; i++) {
+			TestMessage sm = msgs.get(r.nextInt(N_MESSAGES));
+			// New strings, as if rendered for each request
+			ms[i] = new String(sm.getMulti());
+			bs[i] = new String(sm.getBitmaps());
+		}
+		for (int i = 0; i < n_finds; i++) {
+			SignMessage f = null;
+			for (TestMessage sm: msgs) {
+				if (SignMessageHelper.isMatching(sm, ms[i],
+				    bs[i], SCHEDULED, SCHEDULED, schedule, 1))
+				{
+					f = sm;
+					break;
+				}
+			}
+			assertNotNull(f);
+			assertSame(f, idx.find(ms[i], bs[i], SCHEDULED,
+				SCHEDULED, schedule, 1));
+		}
+	}
+}
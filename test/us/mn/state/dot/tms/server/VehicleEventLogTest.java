@@ -0,0 +1,187 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Calendar;
+import java.util.Random;
+import junit.framework.TestCase;
+import us.mn.state.dot.sched.TimeSteward;
+
+/**
+ * Vehicle event log tests.  The buffered writer output is compared with the
+ * previous (one job per event) formatting, which must be byte-identical.
+ *
+ * @author Jacob Barde
+ */
+public class VehicleEventLogTest extends TestCase {
+
+	/** Previous vehicle event formatting, from formatEvent and logGap
+	 * before events were buffered */
+	static private class LegacyFormat {
+		static private final int MAX_HEADWAY = 90 * 1000;
+		private final StringBuilder out = new StringBuilder();
+		private Calendar p_stamp;
+		private void logVehicle(Calendar stamp, int duration,
+			int headway, int speed)
+		{
+			out.append(formatEvent(stamp, duration, headway,
+				speed));
+		}
+		private void logGap() {
+			p_stamp = null;
+			out.append("*\n");
+		}
+		private String formatEvent(Calendar stamp, int duration,
+			int headway, int speed)
+		{
+			boolean log_stamp = false;
+			StringBuilder b = new StringBuilder();
+			if (duration > 0)
+				b.append(duration);
+			else
+				b.append('?');
+			b.append(',');
+			if (headway > 0 && headway <= MAX_HEADWAY)
+				b.append(headway);
+			else {
+				b.append('?');
+				log_stamp = true;
+			}
+			if (p_stamp == null || (stamp.get(Calendar.HOUR) !=
+				p_stamp.get(Calendar.HOUR)))
+			{
+				log_stamp = true;
+			}
+			b.append(',');
+			p_stamp = stamp;
+			if (log_stamp) {
+				if (headway > 0 || duration > 0) {
+					long st = stamp.getTimeInMillis();
+					b.append(TimeSteward.timeShortString(
+						st));
+				} else
+					p_stamp = null;
+			}
+			b.append(',');
+			if (speed > 0)
+				b.append(speed);
+			while (b.charAt(b.length() - 1) == ',')
+				b.setLength(b.length() - 1);
+			b.append('\n');
+			return b.toString();
+		}
+	}
+
+	/** Archive factory which puts all events in one file */
+	static private class OneFileFactory implements SampleArchiveFactory {
+		private final File file;
+		private OneFileFactory(File f) {
+			file = f;
+		}
+		public File createFile(String sensor_id, String ext,
+			long stamp)
+		{
+			return file;
+		}
+		public File createFile(String sensor_id,
+			PeriodicSampleType s_type, PeriodicSample ps)
+		{
+			return null;
+		}
+		public boolean hasKnownExtension(String name) {
+			return name.endsWith(".vlog");
+		}
+	}
+
+	/** Vehicle event log file */
+	private File file;
+
+	public VehicleEventLogTest(String name) {
+		super(name);
+	}
+
+	@Override
+	protected void setUp() throws IOException {
+		file = File.createTempFile("test", ".vlog");
+	}
+
+	@Override
+	protected void tearDown() {
+		file.delete();
+	}
+
+	/** Read the log file */
+	private String readFile() throws IOException {
+		return new String(Files.readAllBytes(file.toPath()),
+			"US-ASCII");
+	}
+
+	public void testLegacyFormat() throws IOException {
+		VehicleEventWriter w = new VehicleEventWriter();
+		VehicleEventLog log = new VehicleEventLog("T1",
+			new OneFileFactory(file), w);
+		LegacyFormat legacy = new LegacyFormat();
+		Random rand = new Random(17);
+		Calendar cal = Calendar.getInstance();
+		cal.set(2016, Calendar.MARCH, 1, 9, 58, 0);
+		cal.set(Calendar.MILLISECOND, 0);
+		long ms = cal.getTimeInMillis();
+		for (int i = 0; i < 2000; i++) {
+			if (rand.nextInt(50) == 0) {
+				log.bufferGap();
+				legacy.logGap();
+				continue;
+			}
+			int headway = rand.nextInt(10) == 0
+			            ? 95000 + rand.nextInt(1000)
+			            : rand.nextInt(8000);
+			int duration = rand.nextInt(8) == 0
+			             ? 0
+			             : 100 + rand.nextInt(500);
+			int speed = rand.nextInt(4) == 0 ? 0 : rand.nextInt(80);
+			ms += Math.max(headway, 1);
+			Calendar stamp = Calendar.getInstance();
+			stamp.setTimeInMillis(ms);
+			log.bufferVehicle(stamp, duration, headway, speed);
+			legacy.logVehicle(stamp, duration, headway, speed);
+			// Write in several batches
+			if (i % 300 == 299)
+				w.perform();
+		}
+		assertTrue(w.getBufferedCount() > 0);
+		w.close();
+		assertEquals(0, w.getBufferedCount());
+		assertEquals(legacy.out.toString(), readFile());
+	}
+
+	public void testCloseWritesBuffered() throws IOException {
+		VehicleEventWriter w = new VehicleEventWriter();
+		VehicleEventLog log = new VehicleEventLog("T1",
+			new OneFileFactory(file), w);
+		Calendar stamp = Calendar.getInstance();
+		log.bufferVehicle(stamp, 250, 2000, 55);
+		log.bufferGap();
+		assertEquals("", readFile());
+		w.close();
+		String[] lines = readFile().split("\n");
+		assertEquals(2, lines.length);
+		assertTrue(lines[0].startsWith("250,2000,"));
+		assertTrue(lines[0].endsWith(",55"));
+		assertEquals("*", lines[1]);
+	}
+}
@@ -0,0 +1,236 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server.comm;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+
+/**
+ * Load test polling with dedicated poller threads and the shared poller
+ * pool.  Each comm link polls its own simulated controller on localhost.
+ *
+ * @author Jacob Barde
+ */
+public class MessagePollerLoadTest extends TestCase {
+
+	/** Number of comm links */
+	static private final int N_LINKS = 100;
+
+	/** Number of operations per comm link */
+	static private final int N_OPS = 20;
+
+	/** Number of threads in poller pool */
+	static private final int N_THREADS = 4;
+
+	/** Request sent for each poll */
+	static private final byte[] REQUEST = new byte[] { 1, 2, 3, 4 };
+
+	/** Count threads with a name prefix */
+	static private int countThreads(String prefix) {
+		int n = 0;
+		for (Thread t: Thread.getAllStackTraces().keySet()) {
+			if (t.isAlive() && t.getName().startsWith(prefix))
+				n++;
+		}
+		return n;
+	}
+
+	public MessagePollerLoadTest(String name) {
+		super(name);
+	}
+
+	/** Simulated controllers, which echo every request */
+	static private class EchoServer extends Thread {
+		private final Selector selector;
+		private final ServerSocketChannel server;
+		private EchoServer() throws IOException {
+			selector = Selector.open();
+			server = ServerSocketChannel.open();
+			server.bind(new InetSocketAddress(
+				InetAddress.getLoopbackAddress(), 0));
+			server.configureBlocking(false);
+			server.register(selector, SelectionKey.OP_ACCEPT);
+			setDaemon(true);
+		}
+		private SocketAddress getAddress() throws IOException {
+			return server.getLocalAddress();
+		}
+		@Override
+		public void run() {
+			ByteBuffer buf = ByteBuffer.allocate(256);
+			try {
+				while (server.isOpen()) {
+					selector.select();
+					Iterator<SelectionKey> it =
+						selector.selectedKeys().iterator();
+					while (it.hasNext()) {
+						SelectionKey key = it.next();
+						it.remove();
+						if (key.isValid())
+							handleKey(key, buf);
+					}
+				}
+				selector.close();
+			}
+			catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+		private void handleKey(SelectionKey key, ByteBuffer buf)
+			throws IOException
+		{
+			if (key.isAcceptable()) {
+				SocketChannel c = server.accept();
+				if (c != null) {
+					c.configureBlocking(false);
+					c.register(selector, SelectionKey.OP_READ);
+				}
+			} else if (key.isReadable()) {
+				SocketChannel c = (SocketChannel) key.channel();
+				buf.clear();
+				if (c.read(buf) < 0) {
+					key.cancel();
+					c.close();
+					return;
+				}
+				buf.flip();
+				while (buf.hasRemaining())
+					c.write(buf);
+			}
+		}
+		private void close() throws IOException {
+			server.close();
+			selector.wakeup();
+		}
+	}
+
+	/** Poller for simulated controllers */
+	static private class EchoPoller
+		extends MessagePoller<ControllerProperty>
+	{
+		private EchoPoller(String n, Messenger m) {
+			super(n, m);
+		}
+		@Override
+		public boolean isAddressValid(int drop) {
+			return true;
+		}
+		private void add(Operation<ControllerProperty> op) {
+			addOperation(op);
+		}
+	}
+
+	/** Operations remaining */
+	private CountDownLatch remaining;
+
+	/** Operation to poll one simulated controller */
+	private class EchoOp extends Operation<ControllerProperty> {
+		private final Messenger messenger;
+		private boolean done = false;
+		private EchoOp(Messenger m) {
+			super(PriorityLevel.DATA_30_SEC);
+			messenger = m;
+		}
+		@Override
+		protected Phase<ControllerProperty> phaseOne() {
+			return new Echo();
+		}
+		protected class Echo extends Phase<ControllerProperty> {
+			protected Phase<ControllerProperty> poll(
+				CommMessage<ControllerProperty> mess)
+				throws IOException
+			{
+				OutputStream os = messenger.getOutputStream();
+				InputStream is = messenger.getInputStream("");
+				os.write(REQUEST);
+				os.flush();
+				for (int i = 0; i < REQUEST.length; i++) {
+					if (is.read() != REQUEST[i])
+						throw new EOFException();
+				}
+				return null;
+			}
+		}
+		@Override
+		public synchronized void cleanup() {
+			if (!done) {
+				done = true;
+				assertTrue(isSuccess());
+				remaining.countDown();
+			}
+		}
+	}
+
+	/** Poll all simulated controllers.
+	 * @param pool Poller pool, or null for dedicated threads.
+	 * @param prefix Poller thread name prefix.
+	 * @return Number of poller threads used. */
+	private int pollAll(PollerPool pool, String prefix) throws Exception {
+		EchoServer server = new EchoServer();
+		server.start();
+		ArrayList<EchoPoller> pollers = new ArrayList<EchoPoller>();
+		for (int i = 0; i < N_LINKS; i++) {
+			StreamMessenger m = new StreamMessenger(
+				server.getAddress());
+			m.setTimeout(5000);
+			EchoPoller p = new EchoPoller(prefix + i, m);
+			if (pool != null)
+				p.usePool(pool);
+			pollers.add(p);
+		}
+		remaining = new CountDownLatch(N_LINKS * N_OPS);
+		for (int j = 0; j < N_OPS; j++) {
+			for (EchoPoller p: pollers)
+				p.add(new EchoOp(p.messenger));
+		}
+		assertTrue(remaining.await(60, TimeUnit.SECONDS));
+		int n_threads = (pool != null)
+		              ? countThreads("Poller pool:")
+		              : countThreads("Poller: " + prefix);
+		for (EchoPoller p: pollers)
+			p.destroy();
+		server.close();
+		return n_threads;
+	}
+
+	public void testDedicated() throws Exception {
+		assertEquals(N_LINKS, pollAll(null, "dedicated"));
+	}
+
+	public void testPooled() throws Exception {
+		PollerPool pool = new PollerPool(N_THREADS);
+		try {
+			assertTrue(pollAll(pool, "pooled") <= N_THREADS);
+		}
+		finally {
+			pool.shutdown();
+		}
+	}
+}
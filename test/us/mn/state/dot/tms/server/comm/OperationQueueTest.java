@@ -0,0 +1,150 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server.comm;
+
+import java.util.ArrayList;
+import junit.framework.TestCase;
+
+/**
+ * Operation queue tests
+ *
+ * @author Jacob Barde
+ */
+public class OperationQueueTest extends TestCase {
+
+	/** Test operation, equal to any other with the same key */
+	static private class TestOp extends Operation<ControllerProperty> {
+		private final int key;
+		private TestOp(PriorityLevel p, int k) {
+			super(p);
+			key = k;
+		}
+		@Override
+		protected Phase<ControllerProperty> phaseOne() {
+			return new Idle();
+		}
+		protected class Idle extends Phase<ControllerProperty> {
+			protected Phase<ControllerProperty> poll(
+				CommMessage<ControllerProperty> mess)
+			{
+				return this;
+			}
+		}
+		@Override
+		public boolean equals(Object o) {
+			return (o instanceof TestOp) && ((TestOp) o).key == key;
+		}
+		@Override
+		public int hashCode() {
+			return key;
+		}
+	}
+
+	public OperationQueueTest(String name) {
+		super(name);
+	}
+
+	public void testPriority() {
+		OperationQueue<ControllerProperty> q =
+			new OperationQueue<ControllerProperty>();
+		TestOp a = new TestOp(PriorityLevel.DATA_5_MIN, 1);
+		TestOp b = new TestOp(PriorityLevel.DATA_30_SEC, 2);
+		TestOp c = new TestOp(PriorityLevel.DATA_5_MIN, 3);
+		TestOp d = new TestOp(PriorityLevel.URGENT, 4);
+		assertFalse(q.hasNext());
+		assertTrue(q.enqueue(a));
+		assertTrue(q.enqueue(b));
+		assertTrue(q.enqueue(c));
+		assertTrue(q.enqueue(d));
+		assertTrue(q.hasNext());
+		assertSame(d, q.next());
+		assertSame(b, q.next());
+		assertSame(a, q.next());
+		assertSame(c, q.poll());
+		assertFalse(q.hasNext());
+		assertNull(q.poll());
+	}
+
+	public void testDuplicate() {
+		OperationQueue<ControllerProperty> q =
+			new OperationQueue<ControllerProperty>();
+		TestOp a = new TestOp(PriorityLevel.DATA_5_MIN, 1);
+		assertTrue(q.enqueue(a));
+		assertFalse(q.enqueue(new TestOp(PriorityLevel.URGENT, 1)));
+		assertTrue(q.enqueue(new TestOp(PriorityLevel.URGENT, 2)));
+		a.setSucceeded();
+		assertTrue(q.enqueue(new TestOp(PriorityLevel.URGENT, 1)));
+		TestOp w = (TestOp) q.next();
+		assertEquals(2, w.key);
+		// equal to work in progress
+		assertFalse(q.enqueue(new TestOp(PriorityLevel.URGENT, 2)));
+		w.setSucceeded();
+		assertTrue(q.enqueue(new TestOp(PriorityLevel.URGENT, 2)));
+	}
+
+	public void testRequeue() {
+		OperationQueue<ControllerProperty> q =
+			new OperationQueue<ControllerProperty>();
+		TestOp a = new TestOp(PriorityLevel.DATA_5_MIN, 1);
+		TestOp b = new TestOp(PriorityLevel.DATA_5_MIN, 2);
+		TestOp c = new TestOp(PriorityLevel.DATA_5_MIN, 3);
+		assertTrue(q.enqueue(a));
+		assertTrue(q.enqueue(b));
+		assertTrue(q.enqueue(c));
+		assertSame(a, q.next());
+		// requeue work in progress
+		assertTrue(q.requeue(a));
+		// requeue pending operation at higher priority
+		c.setPriority(PriorityLevel.COMMAND);
+		assertTrue(q.requeue(c));
+		assertFalse(q.requeue(new TestOp(PriorityLevel.URGENT, 4)));
+		assertSame(c, q.next());
+		assertSame(b, q.next());
+		assertSame(a, q.next());
+		assertFalse(q.hasNext());
+		q.close();
+		assertFalse(q.requeue(a));
+		assertFalse(q.enqueue(new TestOp(PriorityLevel.URGENT, 5)));
+	}
+
+	public void testForEach() {
+		OperationQueue<ControllerProperty> q =
+			new OperationQueue<ControllerProperty>();
+		TestOp a = new TestOp(PriorityLevel.DATA_5_MIN, 1);
+		TestOp b = new TestOp(PriorityLevel.DIAGNOSTIC, 2);
+		TestOp c = new TestOp(PriorityLevel.DATA_5_MIN, 3);
+		TestOp d = new TestOp(PriorityLevel.COMMAND, 4);
+		q.enqueue(a);
+		q.enqueue(b);
+		q.enqueue(c);
+		q.enqueue(d);
+		assertSame(d, q.next());
+		final ArrayList<Operation<ControllerProperty>> ops =
+			new ArrayList<Operation<ControllerProperty>>();
+		q.forEach(new OperationHandler<ControllerProperty>() {
+			public void handle(PriorityLevel prio,
+				Operation<ControllerProperty> o)
+			{
+				assertSame(prio, o.getPriority());
+				ops.add(o);
+			}
+		});
+		assertEquals(4, ops.size());
+		assertSame(d, ops.get(0));
+		assertSame(a, ops.get(1));
+		assertSame(c, ops.get(2));
+		assertSame(b, ops.get(3));
+	}
+}
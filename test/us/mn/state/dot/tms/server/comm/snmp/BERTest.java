@@ -0,0 +1,296 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server.comm.snmp;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import junit.framework.TestCase;
+import us.mn.state.dot.tms.server.comm.ntcip.mib1203.DmsMessageMemoryType;
+import us.mn.state.dot.tms.server.comm.ntcip.mib1203.PixelFailureDetectionType;
+import static us.mn.state.dot.tms.server.comm.ntcip.mib1203.MIB1203.*;
+
+/**
+ * BER codec tests.  Expected messages were captured from the previous
+ * (front-to-back) encoder, to check wire compatibility.
+ *
+ * @author Jacob Barde
+ */
+public class BERTest extends TestCase {
+
+	/** Captured get-request message */
+	static private final String GET_REQUEST =
+		"305802010004065075626c6963a04b020100020100020100304030110" +
+		"60d2b06010401893604020301030005003014061" +
+		"02b0601040189360402030508010503020500301506112b060104018936" +
+		"040203030401020181480500";
+
+	/** Captured set-request message, up to the bitmap octet string */
+	static private final String SET_REQUEST =
+		"308201c20201000406736563726574a38201b30201010201000201003082" +
+		"01a63013060d2b0601040189360402030103000202ff38301706102b060" +
+		"1040189360402030508010503020203011170301706112b060104018936" +
+		"0402030304010201814802020080301706102b06010401893604020303" +
+		"040102014102038000003082014206102b06010401893604020303040103" +
+		"01410482012c";
+
+	/** Codec for testing encode methods */
+	static private class Codec extends SNMP {
+		private byte[] encoded() {
+			byte[] b = encoder.toByteArray();
+			encoder.reset();
+			return b;
+		}
+		private InputStream input() {
+			return new ByteArrayInputStream(encoded());
+		}
+	}
+
+	/** Format bytes as hex */
+	static private String hex(byte[] b) {
+		StringBuilder sb = new StringBuilder();
+		for (byte x: b)
+			sb.append(String.format("%02x", x & 0xFF));
+		return sb.toString();
+	}
+
+	/** Create a pixel bitmap for testing */
+	static private byte[] createBitmap() {
+		byte[] px = new byte[300];
+		for (int i = 0; i < px.length; i++)
+			px[i] = (byte)(i * 7);
+		return px;
+	}
+
+	/** Create a message writing to a stream */
+	static private SNMP.Message createMessage(SNMP snmp, OutputStream os,
+		String c)
+	{
+		return snmp.new Message(os, new ByteArrayInputStream(
+			new byte[0]), c, SNMP.MAX_WINDOW);
+	}
+
+	public BERTest(String name) {
+		super(name);
+	}
+
+	public void testGetRequest() throws IOException {
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		SNMP.Message mess = createMessage(new SNMP(), os, null);
+		mess.add(dmsSignHeight.makeInt());
+		mess.add(dmsMessageCRC.makeInt(DmsMessageMemoryType.changeable,
+			2));
+		mess.add(characterWidth.makeInt(1, 200));
+		mess.sendQuery();
+		assertEquals(GET_REQUEST, hex(os.toByteArray()));
+	}
+
+	public void testSetRequest() throws IOException {
+		SNMP snmp = new SNMP();
+		ByteArrayOutputStream os = new ByteArrayOutputStream();
+		createMessage(snmp, os, null).sendQuery();
+		os.reset();
+		SNMP.Message mess = createMessage(snmp, os, "secret");
+		ASN1Integer i1 = dmsSignHeight.makeInt();
+		i1.setInteger(-200);
+		ASN1Integer i2 = dmsMessageCRC.makeInt(
+			DmsMessageMemoryType.changeable, 2);
+		i2.setInteger(70000);
+		ASN1Integer i3 = characterWidth.makeInt(1, 200);
+		i3.setInteger(128);
+		ASN1Integer i4 = characterWidth.makeInt(1, 65);
+		i4.setInteger(-8388608);
+		ASN1OctetString bm = new ASN1OctetString(characterBitmap.node,
+			1, 65);
+		bm.setOctetString(createBitmap());
+		mess.add(i1);
+		mess.add(i2);
+		mess.add(i3);
+		mess.add(i4);
+		mess.add(bm);
+		mess.sendStore();
+		assertEquals(SET_REQUEST + hex(createBitmap()),
+			hex(os.toByteArray()));
+	}
+
+	public void testInteger() throws IOException {
+		Codec c = new Codec();
+		int[] values = { 0, 1, -1, 127, 128, -128, -129, 255, 32767,
+			32768, -32768, -32769, 8388607, 8388608, -8388608,
+			Integer.MAX_VALUE, Integer.MIN_VALUE };
+		int[] lens = { 1, 1, 1, 1, 2, 1, 2, 2, 2, 3, 2, 3, 3, 4, 3,
+			4, 4 };
+		for (int i = 0; i < values.length; i++) {
+			c.encodeInteger(values[i]);
+			assertEquals(lens[i] + 2, c.encoder.length());
+			assertEquals(values[i], c.decodeInteger(c.input()));
+		}
+	}
+
+	public void testLength() throws IOException {
+		Codec c = new Codec();
+		c.encodeLength(127);
+		assertEquals("7f", hex(c.encoded()));
+		c.encodeLength(200);
+		assertEquals("81c8", hex(c.encoded()));
+		c.encodeLength(300);
+		assertEquals("82012c", hex(c.encoded()));
+		c.encodeLength(70000);
+		assertEquals("83011170", hex(c.encoded()));
+	}
+
+	public void testIdentifier() throws IOException {
+		Codec c = new Codec();
+		c.encodeIdentifier(new Tag() {
+			public byte getClazz() {
+				return CONTEXT;
+			}
+			public boolean isConstructed() {
+				return true;
+			}
+			public int getNumber() {
+				return 200;
+			}
+		});
+		assertEquals("bf8148", hex(c.encoded()));
+	}
+
+	public void testObjectIdentifier() throws IOException {
+		Codec c = new Codec();
+		c.encodeObjectIdentifier(new int[] { 1, 3, 6, 127, 128,
+			16383, 16384, 2097152 });
+		assertEquals("060e2b067f8100ff7f81800081808000",
+			hex(c.encoded()));
+		c.encodeObjectIdentifier(new int[] { 1, 3, 6, 1 });
+		InputStream is = c.input();
+		assertEquals(0, c.decodeObjectIdentifier(is).length);
+		assertEquals(0, is.available());
+	}
+
+	public void testOctetString() throws IOException {
+		Codec c = new Codec();
+		c.encodeOctetString(createBitmap());
+		c.encodeOctetString(new byte[0]);
+		InputStream is = c.input();
+		assertEquals(0, c.decodeOctetString(is).length);
+		assertEquals(hex(createBitmap()),
+			hex(c.decodeOctetString(is)));
+	}
+
+	public void testBuffer() throws IOException {
+		BERBuffer b = new BERBuffer();
+		byte[] px = createBitmap();
+		for (int i = 0; i < 20; i++)
+			b.prepend(px);
+		b.prepend(0x30);
+		assertEquals(px.length * 20 + 1, b.length());
+		byte[] all = b.toByteArray();
+		assertEquals(0x30, all[0]);
+		assertEquals(px[299], all[all.length - 1]);
+		assertEquals(all.length, b.asByteBuffer().remaining());
+		b.reset();
+		assertEquals(0, b.length());
+	}
+
+	/** Loopback agent, which responds to each request from a list of
+	 * responses, indexed by request-id */
+	static private class Loopback extends OutputStream {
+		private final byte[][] responses;
+		private final BufferInputStream in;
+		private int req = 0;
+		private Loopback(byte[][] r) {
+			responses = r;
+			in = new BufferInputStream(ByteBuffer.allocate(0));
+		}
+		public void write(int b) { }
+		public void write(byte[] b, int off, int len) { }
+		public void flush() {
+			in.setBuffer(ByteBuffer.wrap(responses[req]));
+			req = (req + 1) % responses.length;
+		}
+	}
+
+	/** Create a DMS status query, with 50 variable bindings */
+	static private ArrayList<ASN1Integer> createStatusQuery() {
+		int pt = PixelFailureDetectionType.pixelTest.ordinal();
+		ArrayList<ASN1Integer> mos = new ArrayList<ASN1Integer>();
+		mos.add(shortErrorStatus.makeInt());
+		mos.add(controllerErrorStatus.makeInt());
+		mos.add(dmsStatDoorOpen.makeInt());
+		mos.add(dmsIllumPhotocellLevelStatus.makeInt());
+		mos.add(dmsIllumBrightLevelStatus.makeInt());
+		mos.add(dmsIllumLightOutputStatus.makeInt());
+		mos.add(pixelFailureTableNumRows.makeInt());
+		mos.add(dmsPowerNumRows.makeInt());
+		for (int r = 1; r <= 21; r++) {
+			mos.add(pixelFailureXLocation.makeInt(pt, r));
+			mos.add(pixelFailureYLocation.makeInt(pt, r));
+		}
+		return mos;
+	}
+
+	/** Encode a get-response to a status query */
+	static private byte[] encodeResponse(Codec c, int req,
+		ArrayList<ASN1Integer> mos)
+	{
+		try {
+			for (int i = mos.size() - 1; i >= 0; i--) {
+				int mark = c.encoder.length();
+				c.encodeInteger(i * 1000);
+				c.encodeObjectIdentifier(mos.get(i).oid());
+				c.encodeSequence(c.encoder.length() - mark);
+			}
+			c.encodeSequence(c.encoder.length());
+			c.encodeInteger(0);
+			c.encodeInteger(0);
+			c.encodeInteger(req);
+			c.encodeLength(c.encoder.length());
+			c.encodeIdentifier(SNMPTag.GET_RESPONSE);
+			c.encodeOctetString(SNMP.PUBLIC.getBytes());
+			c.encodeInteger(SNMP.SNMP_VERSION);
+			c.encodeSequence(c.encoder.length());
+			return c.encoded();
+		}
+		catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	public void testStatusQuery() throws IOException {
+		ArrayList<ASN1Integer> mos = createStatusQuery();
+		assertEquals(50, mos.size());
+		Codec c = new Codec();
+		byte[][] responses = new byte[128][];
+		for (int r = 0; r < responses.length; r++)
+			responses[r] = encodeResponse(c, r, mos);
+		Loopback lb = new Loopback(responses);
+		SNMP snmp = new SNMP();
+		// Wrap around the responses, reusing the SNMP buffers
+		for (int r = 0; r <= responses.length; r++) {
+			for (ASN1Integer mo: mos)
+				mo.setInteger(-1);
+			SNMP.Message mess = snmp.new Message(lb, lb.in, null);
+			for (ASN1Integer mo: mos)
+				mess.add(mo);
+			mess.queryProps();
+			for (int i = 0; i < mos.size(); i++)
+				assertEquals(i * 1000, mos.get(i).getInteger());
+		}
+	}
+}
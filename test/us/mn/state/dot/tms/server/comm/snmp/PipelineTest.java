@@ -0,0 +1,307 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server.comm.snmp;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import junit.framework.TestCase;
+import us.mn.state.dot.tms.server.comm.DatagramMessenger;
+import us.mn.state.dot.tms.server.comm.ntcip.mib1203.PixelFailureDetectionType;
+import static us.mn.state.dot.tms.server.comm.ntcip.mib1203.MIB1203.*;
+
+/**
+ * SNMP pipelining tests, using a simulated NTCIP agent on localhost.
+ *
+ * @author Jacob Barde
+ */
+public class PipelineTest extends TestCase {
+
+	/** Simulated round-trip time (ms) */
+	static private final int RTT_MS = 40;
+
+	/** Number of table rows to query */
+	static private final int N_ROWS = 24;
+
+	/** Pixel test detection type */
+	static private final int PIXEL_TEST =
+		PixelFailureDetectionType.pixelTest.ordinal();
+
+	/** Simulated NTCIP agent.  Each response is delayed by the round-trip
+	 * time, plus some jitter, so responses may arrive out of order.  A
+	 * get-request returns 10 times the last sub-identifier of each OID,
+	 * up to a table size; past that, it returns noSuchName.  The agent
+	 * counts requests, and records the most requests outstanding (received
+	 * but not yet answered) at one time. */
+	static private class SimAgent extends SNMP implements Runnable {
+		private final DatagramSocket socket;
+		private final ScheduledExecutorService delay =
+			Executors.newSingleThreadScheduledExecutor();
+		private final Random random = new Random(3);
+		private final int rtt;
+		private final int n_rows;
+		private int n_requests = 0;
+		private int n_outstanding = 0;
+		private int max_outstanding = 0;
+		private SimAgent(int r, int n) throws IOException {
+			rtt = r;
+			n_rows = n;
+			socket = new DatagramSocket(0,
+				InetAddress.getLoopbackAddress());
+			Thread t = new Thread(this, "SimAgent");
+			t.setDaemon(true);
+			t.start();
+		}
+		private SocketAddress getAddress() {
+			return socket.getLocalSocketAddress();
+		}
+		public void run() {
+			byte[] buf = new byte[1024];
+			try {
+				while (true) {
+					DatagramPacket p = new DatagramPacket(
+						buf, buf.length);
+					socket.receive(p);
+					respond(p);
+				}
+			}
+			catch (IOException e) {
+				// socket closed
+			}
+		}
+		private synchronized void requestReceived() {
+			n_requests++;
+			n_outstanding++;
+			max_outstanding = Math.max(max_outstanding,
+				n_outstanding);
+		}
+		private synchronized void responseSent() {
+			n_outstanding--;
+		}
+		private synchronized int getRequests() {
+			return n_requests;
+		}
+		private synchronized int getMaxOutstanding() {
+			return max_outstanding;
+		}
+		private void respond(DatagramPacket p) throws IOException {
+			requestReceived();
+			InputStream is = new ByteArrayInputStream(p.getData(),
+				0, p.getLength());
+			decodeSequence(is);
+			decodeInteger(is);
+			byte[] community = decodeOctetString(is);
+			decodeIdentifier(is);
+			decodeLength(is);
+			int req = decodeInteger(is);
+			decodeInteger(is);
+			decodeInteger(is);
+			decodeSequence(is);
+			ArrayList<byte[]> oids = new ArrayList<byte[]>();
+			ArrayList<Tag> tags = new ArrayList<Tag>();
+			ArrayList<byte[]> vals = new ArrayList<byte[]>();
+			int error = 0;
+			int index = 0;
+			for (int i = 1; is.available() > 0; i++) {
+				decodeSequence(is);
+				decodeIdentifier(is);
+				byte[] oid = readBytes(is);
+				tags.add(decodeIdentifier(is));
+				vals.add(readBytes(is));
+				oids.add(oid);
+				int sub = oid[oid.length - 1];
+				if (sub > n_rows && error == 0) {
+					error = 2;	// noSuchName
+					index = i;
+				}
+			}
+			// Encode the response back-to-front
+			encoder.reset();
+			for (int i = oids.size() - 1; i >= 0; i--) {
+				byte[] oid = oids.get(i);
+				byte[] val = vals.get(i);
+				int mark = encoder.length();
+				if (tags.get(i) == ASN1Tag.NULL)
+					encodeInteger(oid[oid.length - 1] * 10);
+				else {
+					encoder.prepend(val);
+					encodeLength(val.length);
+					encodeIdentifier(tags.get(i));
+				}
+				encoder.prepend(oid);
+				encodeLength(oid.length);
+				encodeIdentifier(ASN1Tag.OBJECT_IDENTIFIER);
+				encodeSequence(encoder.length() - mark);
+			}
+			encodeSequence(encoder.length());
+			encodeInteger(index);
+			encodeInteger(error);
+			encodeInteger(req);
+			encodeLength(encoder.length());
+			encodeIdentifier(SNMPTag.GET_RESPONSE);
+			encodeOctetString(community);
+			encodeInteger(SNMP_VERSION);
+			encodeSequence(encoder.length());
+			byte[] msg = encoder.toByteArray();
+			final DatagramPacket res = new DatagramPacket(msg,
+				msg.length);
+			res.setSocketAddress(p.getSocketAddress());
+			int ms = rtt + random.nextInt(rtt / 2 + 1);
+			delay.schedule(new Runnable() {
+				public void run() {
+					responseSent();
+					try {
+						socket.send(res);
+					}
+					catch (IOException e) {
+						// socket closed
+					}
+				}
+			}, ms, TimeUnit.MILLISECONDS);
+		}
+		private byte[] readBytes(InputStream is) throws IOException {
+			byte[] b = new byte[decodeLength(is)];
+			is.read(b);
+			return b;
+		}
+		private void close() {
+			delay.shutdownNow();
+			socket.close();
+		}
+	}
+
+	public PipelineTest(String name) {
+		super(name);
+	}
+
+	/** Agent for each test */
+	private SimAgent agent;
+
+	/** Messenger for each test */
+	private DatagramMessenger messenger;
+
+	@Override
+	protected void setUp() throws IOException {
+		agent = new SimAgent(RTT_MS, N_ROWS);
+		messenger = new DatagramMessenger(agent.getAddress());
+		messenger.open();
+		messenger.setTimeout(2000);
+	}
+
+	@Override
+	protected void tearDown() {
+		messenger.close();
+		agent.close();
+	}
+
+	/** Create a message with a window */
+	private SNMP.Message createMessage(int w) throws IOException {
+		return new SNMP().new Message(messenger.getOutputStream(),
+			messenger.getInputStream(""), null, w);
+	}
+
+	/** Query table rows, as OpTestDMSPixels does */
+	private void queryRows(int w, int n) throws IOException {
+		int row = 1;
+		while (row <= n) {
+			SNMP.Message mess = createMessage(w);
+			int k = Math.min(mess.getWindow(), n - row + 1);
+			ArrayList<ASN1Integer> xs =
+				new ArrayList<ASN1Integer>();
+			ArrayList<SNMP.Request> reqs =
+				new ArrayList<SNMP.Request>();
+			for (int i = 0; i < k; i++) {
+				ASN1Integer x = pixelFailureXLocation.makeInt(
+					PIXEL_TEST, row + i);
+				mess.add(x);
+				xs.add(x);
+				reqs.add(mess.sendQuery());
+			}
+			for (int i = 0; i < k; i++) {
+				mess.await(reqs.get(i));
+				assertEquals((row + i) * 10,
+					xs.get(i).getInteger());
+			}
+			row += k;
+		}
+	}
+
+	public void testStopAndWait() throws IOException {
+		SNMP.Message mess = createMessage(1);
+		ASN1Integer x = pixelFailureXLocation.makeInt(PIXEL_TEST, 7);
+		ASN1Integer y = pixelFailureYLocation.makeInt(PIXEL_TEST, 7);
+		mess.add(x);
+		mess.add(y);
+		mess.queryProps();
+		assertEquals(70, x.getInteger());
+		assertEquals(70, y.getInteger());
+		x.setInteger(55);
+		mess.add(x);
+		mess.storeProps();
+		assertEquals(55, x.getInteger());
+	}
+
+	public void testOutOfOrder() throws IOException {
+		queryRows(8, N_ROWS);
+	}
+
+	public void testErrorStatus() throws IOException {
+		SNMP.Message mess = createMessage(4);
+		ArrayList<SNMP.Request> reqs = new ArrayList<SNMP.Request>();
+		for (int r = N_ROWS - 1; r <= N_ROWS + 2; r++) {
+			mess.add(pixelFailureXLocation.makeInt(PIXEL_TEST, r));
+			reqs.add(mess.sendQuery());
+		}
+		// Wait for the last response first
+		try {
+			mess.await(reqs.get(3));
+			fail("noSuchName expected");
+		}
+		catch (NoSuchName e) {
+			// expected
+		}
+		mess.await(reqs.get(0));
+		mess.await(reqs.get(1));
+		try {
+			mess.await(reqs.get(2));
+			fail("noSuchName expected");
+		}
+		catch (NoSuchName e) {
+			// expected
+		}
+	}
+
+	public void testStopAndWaitOutstanding() throws IOException {
+		queryRows(1, N_ROWS);
+		assertEquals(N_ROWS, agent.getRequests());
+		assertEquals(1, agent.getMaxOutstanding());
+	}
+
+	public void testPipelineOutstanding() throws IOException {
+		queryRows(8, N_ROWS);
+		assertEquals(N_ROWS, agent.getRequests());
+		int n = agent.getMaxOutstanding();
+		assertTrue("max outstanding: " + n, n > 1 && n <= 8);
+	}
+}
@@ -0,0 +1,203 @@
+/*
+ * IRIS -- Intelligent Roadway Information System
+ * Copyright (C) 2016  California Department of Transportation
+ *
+ * This program is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ */
+package us.mn.state.dot.tms.server.event;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import junit.framework.TestCase;
+import us.mn.state.dot.tms.TMSException;
+import us.mn.state.dot.tms.server.SQLConnection;
+import us.mn.state.dot.tms.server.Storable;
+
+/**
+ * Event writer tests, using a fake database connection which rejects rows
+ * containing the value "bad".
+ *
+ * @author Jacob Barde
+ */
+public class EventWriterTest extends TestCase {
+
+	/** Test event, with one column */
+	static private class TestEvent implements Storable {
+		private final String value;
+		private TestEvent(String v) {
+			value = v;
+		}
+		public String getTable() {
+			return "test_event";
+		}
+		public String getKeyName() {
+			return "v";
+		}
+		public String getKey() {
+			return value;
+		}
+		public Map<String, Object> getColumns() {
+			HashMap<String, Object> map =
+				new HashMap<String, Object>();
+			map.put("v", value);
+			return map;
+		}
+	}
+
+	/** Fake database connection */
+	static private class FakeStore extends SQLConnection {
+		private final ArrayList<String> stored =
+			new ArrayList<String>();
+		private boolean down = false;
+		private FakeStore() throws TMSException {
+			super("jdbc:fake", null, null);
+		}
+		@Override
+		protected PreparedStatement _prepareStatement(String sql)
+			throws SQLException
+		{
+			if (down)
+				throw new SQLException("down", "08006");
+			return (PreparedStatement) Proxy.newProxyInstance(
+				getClass().getClassLoader(),
+				new Class[] { PreparedStatement.class },
+				new Statement());
+		}
+		private class Statement implements InvocationHandler {
+			private final ArrayList<String> params =
+				new ArrayList<String>();
+			public Object invoke(Object p, Method m, Object[] a)
+				throws SQLException
+			{
+				String n = m.getName();
+				if (n.equals("setObject"))
+					params.add((String) a[1]);
+				else if (n.equals("executeUpdate"))
+					return executeUpdate();
+				return null;
+			}
+			private int executeUpdate() throws SQLException {
+				if (down)
+					throw new SQLException("down", "08006");
+				if (params.contains("bad"))
+					throw new SQLException("bad", "23514");
+				stored.addAll(params);
+				int n = params.size();
+				params.clear();
+				return n;
+			}
+		}
+	}
+
+	/** Create a list of events */
+	static private ArrayList<Storable> createEvents(String... vals) {
+		ArrayList<Storable> evs = new ArrayList<Storable>();
+		for (String v: vals)
+			evs.add(new TestEvent(v));
+		return evs;
+	}
+
+	/** Fake database */
+	private FakeStore store;
+
+	/** Journal file */
+	private File file;
+
+	public EventWriterTest(String name) {
+		super(name);
+	}
+
+	@Override
+	protected void setUp() throws IOException, TMSException {
+		store = new FakeStore();
+		file = File.createTempFile("event", ".journal");
+		assertTrue(file.delete());
+	}
+
+	@Override
+	protected void tearDown() {
+		file.delete();
+		new File(file.getPath() + ".replay").delete();
+	}
+
+	public void testRejectRow() throws TMSException {
+		ArrayList<Storable> evs = createEvents("a", "b", "c", "d", "e",
+			"bad", "g", "h", "i", "j");
+		ArrayList<Storable> rejected = new ArrayList<Storable>();
+		store.createAll(evs, rejected);
+		assertTrue(evs.isEmpty());
+		assertEquals(1, rejected.size());
+		assertEquals("bad", rejected.get(0).getKey());
+		assertEquals(9, store.stored.size());
+		assertFalse(store.stored.contains("bad"));
+	}
+
+	public void testDown() {
+		ArrayList<Storable> evs = createEvents("a", "b", "bad");
+		ArrayList<Storable> rejected = new ArrayList<Storable>();
+		store.down = true;
+		try {
+			store.createAll(evs, rejected);
+			fail("TMSException expected");
+		}
+		catch (TMSException e) {
+			// expected
+		}
+		assertEquals(3, evs.size());
+		assertTrue(rejected.isEmpty());
+	}
+
+	public void testBadRowNotJournaled() {
+		EventJournal j = new EventJournal(file);
+		EventWriter w = new EventWriter(store, 100, j);
+		for (Storable ev: createEvents("a", "bad", "c", "d", "e"))
+			w.add(ev);
+		w.perform();
+		assertEquals(4, store.stored.size());
+		assertFalse(j.hasEvents());
+	}
+
+	public void testReplay() {
+		EventJournal j = new EventJournal(file);
+		EventWriter w = new EventWriter(store, 100, j);
+		store.down = true;
+		for (Storable ev: createEvents("a", "b", "bad", "d"))
+			w.add(ev);
+		w.perform();
+		assertTrue(j.hasEvents());
+		store.down = false;
+		w.perform();
+		assertEquals(3, store.stored.size());
+		assertFalse(j.hasEvents());
+	}
+
+	public void testDrain() {
+		EventJournal j = new EventJournal(file);
+		EventWriter w = new EventWriter(store, 1000, j);
+		for (int i = 0; i < 600; i++)
+			w.add(new TestEvent("v" + i));
+		w.drain();
+		assertEquals(600, store.stored.size());
+		store.down = true;
+		for (int i = 0; i < 600; i++)
+			w.add(new TestEvent("v" + i));
+		w.drain();
+		assertTrue(j.hasEvents());
+	}
+}